@@ -2,7 +2,6 @@ package com.sloview;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
@@ -12,7 +11,6 @@ import org.springframework.scheduling.annotation.EnableScheduling;
  * frontend application, including a health check endpoint and GIS API integration.
  */
 @SpringBootApplication
-@EnableAsync
 @EnableScheduling
 public class SLOViewApplication {
 
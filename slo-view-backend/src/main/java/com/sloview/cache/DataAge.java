@@ -0,0 +1,42 @@
+package com.sloview.cache;
+
+import java.time.Duration;
+
+/**
+ * Time since served data was fetched from the GIS API, and whether it is served in place
+ * of a failed fetch.
+ */
+public final class DataAge {
+
+    private final Duration age;
+    private final boolean staleIfError;
+
+    private DataAge(Duration age, boolean staleIfError) {
+        this.age = age;
+        this.staleIfError = staleIfError;
+    }
+
+    /**
+     * @param age Time since the data was fetched
+     * @return Age of data that is served within its lifetime
+     */
+    public static DataAge of(Duration age) {
+        return new DataAge(age, false);
+    }
+
+    /**
+     * @param age Time since the data was fetched
+     * @return Age of data that is served past its lifetime because fetching it again failed
+     */
+    public static DataAge staleIfError(Duration age) {
+        return new DataAge(age, true);
+    }
+
+    public Duration getAge() {
+        return age;
+    }
+
+    public boolean isStaleIfError() {
+        return staleIfError;
+    }
+}
@@ -0,0 +1,67 @@
+package com.sloview.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Response body serialized once, together with its gzip-compressed form.
+ *
+ * Bodies are handed out as read-only buffers over the stored arrays, so serving one
+ * neither serializes nor compresses nor copies anything.
+ */
+public final class EncodedResponse {
+
+    private final byte[] identity;
+    private final byte[] gzip;
+
+    private EncodedResponse(byte[] identity, byte[] gzip) {
+        this.identity = identity;
+        this.gzip = gzip;
+    }
+
+    /**
+     * Compresses a serialized body with the best gzip compression level.
+     *
+     * @param body Serialized body
+     * @return Encoded response
+     */
+    public static EncodedResponse of(byte[] body) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, body.length / 8));
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            out.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new EncodedResponse(body, compressed.toByteArray());
+    }
+
+    /**
+     * @param gzipped Whether to return the gzip-compressed body
+     * @return Read-only view of the body
+     */
+    public ByteBuffer getBody(boolean gzipped) {
+        return ByteBuffer.wrap(gzipped ? gzip : identity).asReadOnlyBuffer();
+    }
+
+    /**
+     * @return Size of the uncompressed body in bytes
+     */
+    public int getSize() {
+        return identity.length;
+    }
+
+    /**
+     * @return Size of the gzip-compressed body in bytes
+     */
+    public int getCompressedSize() {
+        return gzip.length;
+    }
+}
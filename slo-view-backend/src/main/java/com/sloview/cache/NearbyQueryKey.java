@@ -0,0 +1,81 @@
+package com.sloview.cache;
+
+import java.util.Objects;
+
+/**
+ * Cache key of a nearby query.
+ *
+ * Coordinates are snapped to a grid so that requests from clients standing a few meters
+ * apart share one entry; the upstream query is then made for the snapped location.
+ */
+public final class NearbyQueryKey {
+
+    private final String table;
+    private final long lonCell;
+    private final long latCell;
+    private final double scale;
+    private final double distance;
+    private final int limit;
+
+    /**
+     * @param table Table to search
+     * @param lon Longitude
+     * @param lat Latitude
+     * @param distance Search distance in meters
+     * @param limit Maximum number of results
+     * @param precision Number of decimal places of the coordinates that are kept
+     */
+    public NearbyQueryKey(String table, double lon, double lat, double distance, int limit, int precision) {
+        this.table = table;
+        this.scale = Math.pow(10, precision);
+        this.lonCell = Math.round(lon * scale);
+        this.latCell = Math.round(lat * scale);
+        this.distance = distance;
+        this.limit = limit;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    /**
+     * @return Snapped longitude
+     */
+    public double getLon() {
+        return lonCell / scale;
+    }
+
+    /**
+     * @return Snapped latitude
+     */
+    public double getLat() {
+        return latCell / scale;
+    }
+
+    public double getDistance() {
+        return distance;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof NearbyQueryKey)) {
+            return false;
+        }
+        NearbyQueryKey other = (NearbyQueryKey) o;
+        return lonCell == other.lonCell && latCell == other.latCell && scale == other.scale
+                && Double.compare(distance, other.distance) == 0 && limit == other.limit
+                && Objects.equals(table, other.table);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(table, lonCell, latCell, distance, limit);
+    }
+}
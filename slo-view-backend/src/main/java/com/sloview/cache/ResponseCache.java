@@ -0,0 +1,204 @@
+package com.sloview.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Bounded in-memory cache for upstream responses with stale-while-revalidate and
+ * stale-if-error.
+ *
+ * Entries are fresh for the time-to-live and are served directly. For a further
+ * stale period they are still served, while a single background load replaces them.
+ * After that the next request waits for a new load, but the entry is kept for the
+ * stale-if-error period as the last known good value: if the load fails, callers can
+ * serve it with {@link #getLastKnownGood(Object)}, and from then on it is served
+ * directly again while it is revalidated in the background, so an upstream outage
+ * only delays the first request of each key. The cache is
+ * bounded by the total weight of its entries and uses Caffeine's W-TinyLFU eviction, so
+ * frequently requested keys survive bursts of one-off requests. Concurrent loads of the
+ * same key share one call, and failed loads are never cached.
+ *
+ * @param <K> Key type
+ * @param <V> Value type
+ */
+public class ResponseCache<K, V> {
+
+    private static final Logger log = LoggerFactory.getLogger(ResponseCache.class);
+
+    private final String name;
+    private final long ttlNanos;
+    private final long staleNanos;
+    private final Ticker ticker;
+    private final Cache<K, Entry<V>> cache;
+    private final Counter staleHits;
+    private final Counter staleIfErrorHits;
+    private final Counter revalidationErrors;
+    private final SingleFlight<K, V> loads = new SingleFlight<>();
+
+    public ResponseCache(String name, Duration ttl, Duration staleWhileRevalidate, Duration staleIfError,
+                         long maxWeight, ToIntFunction<V> weigher, MeterRegistry meterRegistry) {
+        this(name, ttl, staleWhileRevalidate, staleIfError, maxWeight, weigher, meterRegistry, Ticker.systemTicker());
+    }
+
+    ResponseCache(String name, Duration ttl, Duration staleWhileRevalidate, Duration staleIfError, long maxWeight,
+                  ToIntFunction<V> weigher, MeterRegistry meterRegistry, Ticker ticker) {
+        this.name = name;
+        this.ttlNanos = ttl.toNanos();
+        this.staleNanos = ttl.plus(staleWhileRevalidate).toNanos();
+        this.ticker = ticker;
+        this.cache = Caffeine.newBuilder()
+                .ticker(ticker)
+                .expireAfterWrite(ttl.plus(staleWhileRevalidate).plus(staleIfError).toNanos(), TimeUnit.NANOSECONDS)
+                .maximumWeight(maxWeight)
+                .<K, Entry<V>>weigher((key, entry) -> Math.max(1, weigher.applyAsInt(entry.value)))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, name);
+        this.staleHits = Counter.builder("gis.cache.stale")
+                .description("Cache hits served stale while the entry was revalidated")
+                .tag("cache", name)
+                .register(meterRegistry);
+        this.staleIfErrorHits = Counter.builder("gis.cache.stale.error")
+                .description("Cache hits served stale because loading the entry failed")
+                .tag("cache", name)
+                .register(meterRegistry);
+        this.revalidationErrors = Counter.builder("gis.cache.revalidate.errors")
+                .description("Background revalidations of stale entries that failed")
+                .tag("cache", name)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the cached value of a key, loading it when it is missing or past its stale
+     * period.
+     *
+     * @param key Cache key
+     * @param loader Loads the value of a key from upstream
+     * @return Cached or newly loaded value; fails if the load fails
+     */
+    public Mono<V> get(K key, Function<K, Mono<V>> loader) {
+        return Mono.defer(() -> {
+            Entry<V> entry = cache.getIfPresent(key);
+            if (entry == null || !isServable(entry)) {
+                return load(key, loader);
+            }
+            if (ticker.read() - entry.loadedAt >= ttlNanos) {
+                staleHits.increment();
+                revalidate(key, entry, loader);
+            }
+            return Mono.just(entry.value);
+        });
+    }
+
+    /**
+     * Returns the cached value of a key without loading or revalidating it.
+     *
+     * @param key Cache key
+     * @return Cached value, fresh or stale, if any
+     */
+    public Optional<V> getIfPresent(K key) {
+        Entry<V> entry = cache.getIfPresent(key);
+        return entry != null && isServable(entry) ? Optional.of(entry.value) : Optional.empty();
+    }
+
+    /**
+     * Returns the last known good value of a key after loading it failed, including an
+     * entry kept past its stale period. The entry is then served by {@link #get} again,
+     * and revalidated in the background, until a load replaces it or it expires.
+     *
+     * @param key Cache key
+     * @return Last loaded value, if it has not expired
+     */
+    public Optional<V> getLastKnownGood(K key) {
+        Entry<V> entry = cache.getIfPresent(key);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        entry.failed = true;
+        staleIfErrorHits.increment();
+        return Optional.of(entry.value);
+    }
+
+    /**
+     * Returns how long ago the cached value of a key was loaded, and whether it is served
+     * as the last known good value after a failed load.
+     *
+     * @param key Cache key
+     * @return Age of the cached value, if any
+     */
+    public Optional<DataAge> getAge(K key) {
+        Entry<V> entry = cache.getIfPresent(key);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        Duration age = Duration.ofNanos(ticker.read() - entry.loadedAt);
+        return Optional.of(entry.failed ? DataAge.staleIfError(age) : DataAge.of(age));
+    }
+
+    /**
+     * @return Number of cached entries
+     */
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * @return true if an entry is within its stale period, or is the last known good value
+     *         of a key whose load failed
+     */
+    private boolean isServable(Entry<V> entry) {
+        return entry.failed || ticker.read() - entry.loadedAt < staleNanos;
+    }
+
+    private Mono<V> load(K key, Function<K, Mono<V>> loader) {
+        return loads.execute(key, k -> loader.apply(k)
+                .doOnNext(value -> cache.put(k, new Entry<>(value, ticker.read()))));
+    }
+
+    /**
+     * Replaces a stale entry in the background. Only one revalidation runs per entry;
+     * if it fails the stale value stays until it expires.
+     */
+    private void revalidate(K key, Entry<V> entry, Function<K, Mono<V>> loader) {
+        if (!entry.revalidating.compareAndSet(false, true)) {
+            return;
+        }
+        load(key, loader).subscribe(
+                value -> { },
+                e -> {
+                    entry.revalidating.set(false);
+                    revalidationErrors.increment();
+                    log.warn("Failed to revalidate {} cache entry: {}", name, e.getMessage());
+                });
+    }
+
+    /**
+     * Cached value, the time it was loaded and whether it has been served in place of a
+     * failed load.
+     */
+    private static final class Entry<V> {
+        private final V value;
+        private final long loadedAt;
+        private final AtomicBoolean revalidating = new AtomicBoolean();
+        private volatile boolean failed;
+
+        Entry(V value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
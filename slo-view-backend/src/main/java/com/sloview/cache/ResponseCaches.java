@@ -0,0 +1,61 @@
+package com.sloview.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Response caches of the GIS API endpoints, each with its own time-to-live, stale periods
+ * and size bound.
+ *
+ * The nearby cache is bounded by the total number of cached features; the single-document
+ * endpoints (summary, status, metadata) are keyed by endpoint path.
+ */
+@Component
+public class ResponseCaches {
+
+    private final ResponseCache<NearbyQueryKey, List<Map<String, Object>>> nearby;
+    private final ResponseCache<String, Map<String, Object>> documents;
+    private final int nearbyPrecision;
+
+    public ResponseCaches(@Value("${gis.response-cache.nearby.ttl-ms:300000}") long nearbyTtlMs,
+                          @Value("${gis.response-cache.nearby.stale-ms:900000}") long nearbyStaleMs,
+                          @Value("${gis.response-cache.nearby.stale-if-error-ms:86400000}") long nearbyStaleIfErrorMs,
+                          @Value("${gis.response-cache.nearby.max-features:200000}") long nearbyMaxFeatures,
+                          @Value("${gis.response-cache.nearby.precision:4}") int nearbyPrecision,
+                          @Value("${gis.response-cache.documents.ttl-ms:60000}") long documentTtlMs,
+                          @Value("${gis.response-cache.documents.stale-ms:3600000}") long documentStaleMs,
+                          @Value("${gis.response-cache.documents.stale-if-error-ms:86400000}") long documentStaleIfErrorMs,
+                          MeterRegistry meterRegistry) {
+        this.nearbyPrecision = nearbyPrecision;
+        this.nearby = new ResponseCache<>("gis.nearby", Duration.ofMillis(nearbyTtlMs),
+                Duration.ofMillis(nearbyStaleMs), Duration.ofMillis(nearbyStaleIfErrorMs), nearbyMaxFeatures, List::size, meterRegistry);
+        this.documents = new ResponseCache<>("gis.documents", Duration.ofMillis(documentTtlMs),
+                Duration.ofMillis(documentStaleMs), Duration.ofMillis(documentStaleIfErrorMs), 100, document -> 1, meterRegistry);
+    }
+
+    /**
+     * @return Cache of nearby query results
+     */
+    public ResponseCache<NearbyQueryKey, List<Map<String, Object>>> nearby() {
+        return nearby;
+    }
+
+    /**
+     * @return Cache of summary, status and metadata documents keyed by endpoint path
+     */
+    public ResponseCache<String, Map<String, Object>> documents() {
+        return documents;
+    }
+
+    /**
+     * Builds the cache key of a nearby query.
+     */
+    public NearbyQueryKey nearbyKey(String table, double lon, double lat, double distance, int limit) {
+        return new NearbyQueryKey(table, lon, lat, distance, limit, nearbyPrecision);
+    }
+}
@@ -0,0 +1,69 @@
+package com.sloview.cache;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Coalesces concurrent identical calls into one.
+ *
+ * The first caller of a key starts the call; callers that arrive while it is in flight
+ * receive the same result instead of starting their own. The call runs to completion even
+ * if every caller cancels, and it is forgotten as soon as it completes, so results and
+ * errors are never reused by later callers.
+ *
+ * @param <K> Key type
+ * @param <V> Result type
+ */
+public class SingleFlight<K, V> {
+
+    private final Map<K, Mono<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Runs a call, or joins the identical call that is already in flight.
+     *
+     * @param key Identity of the call
+     * @param call Starts the call for a key
+     * @return Result of the shared call
+     */
+    public Mono<V> execute(K key, Function<K, Mono<V>> call) {
+        return Mono.defer(() -> {
+            Sinks.One<V> sink = Sinks.one();
+            Mono<V> result = sink.asMono();
+            Mono<V> existing = inFlight.putIfAbsent(key, result);
+            if (existing != null) {
+                return existing;
+            }
+            Mono<V> source;
+            try {
+                source = call.apply(key);
+            } catch (RuntimeException e) {
+                source = Mono.error(e);
+            }
+            source.subscribe(
+                    value -> {
+                        inFlight.remove(key, result);
+                        sink.tryEmitValue(value);
+                    },
+                    e -> {
+                        inFlight.remove(key, result);
+                        sink.tryEmitError(e);
+                    },
+                    () -> {
+                        inFlight.remove(key, result);
+                        sink.tryEmitEmpty();
+                    });
+            return result;
+        });
+    }
+
+    /**
+     * @return Number of calls currently in flight
+     */
+    public int size() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,93 @@
+package com.sloview.config;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.Http2SslContextSpec;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * HTTP client used for the GIS API.
+ *
+ * Connections to the VM are pooled with a fixed upper bound and a bounded queue of
+ * requests waiting for a connection, so a slow VM makes requests fail fast instead of
+ * piling up. Idle connections are closed before the server's keep-alive timeout would
+ * close them underneath a request. Connect and response timeouts bound every request,
+ * and responses are requested compressed.
+ */
+@Configuration
+public class GisApiClientConfig {
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider gisApiConnectionProvider(
+            @Value("${gis.client.max-connections:50}") int maxConnections,
+            @Value("${gis.client.pending-acquire-max-count:500}") int pendingAcquireMaxCount,
+            @Value("${gis.client.pending-acquire-timeout-ms:5000}") long pendingAcquireTimeoutMs,
+            @Value("${gis.client.max-idle-time-ms:4000}") long maxIdleTimeMs,
+            @Value("${gis.client.max-life-time-ms:300000}") long maxLifeTimeMs,
+            @Value("${gis.client.evict-interval-ms:10000}") long evictIntervalMs) {
+        return ConnectionProvider.builder("gis-api")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(Duration.ofMillis(pendingAcquireTimeoutMs))
+                .maxIdleTime(Duration.ofMillis(maxIdleTimeMs))
+                .maxLifeTime(Duration.ofMillis(maxLifeTimeMs))
+                .evictInBackground(Duration.ofMillis(evictIntervalMs))
+                .metrics(true)
+                .build();
+    }
+
+    @Bean
+    public WebClient gisApiWebClient(
+            ConnectionProvider gisApiConnectionProvider,
+            @Value("${gis.client.connect-timeout-ms:3000}") int connectTimeoutMs,
+            @Value("${gis.client.response-timeout-ms:30000}") long responseTimeoutMs,
+            @Value("${gis.client.protocols:HTTP11}") String[] protocols,
+            @Value("${gis.client.compress:true}") boolean compress,
+            @Value("${gis.client.max-in-memory-bytes:10485760}") int maxInMemoryBytes) {
+        HttpProtocol[] httpProtocols = parseProtocols(protocols);
+        HttpClient httpClient = HttpClient.create(gisApiConnectionProvider)
+                .protocol(httpProtocols)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .responseTimeout(Duration.ofMillis(responseTimeoutMs))
+                .compress(compress);
+        if (Arrays.asList(httpProtocols).contains(HttpProtocol.H2)) {
+            // HTTP/2 over TLS is negotiated with ALPN; plain http URLs still use H2C or HTTP/1.1
+            httpClient = httpClient.secure(spec -> spec.sslContext(Http2SslContextSpec.forClient()));
+        }
+
+        return WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(maxInMemoryBytes))
+                .build();
+    }
+
+    /**
+     * Parses protocol names: HTTP11, H2C (HTTP/2 over cleartext, with HTTP/1.1 upgrade
+     * when HTTP11 is listed too) and H2 (HTTP/2 over TLS).
+     */
+    private static HttpProtocol[] parseProtocols(String[] names) {
+        List<HttpProtocol> protocols = new ArrayList<>();
+        for (String name : names) {
+            if (!name.isBlank()) {
+                protocols.add(HttpProtocol.valueOf(name.trim().toUpperCase(Locale.ROOT)));
+            }
+        }
+        if (protocols.isEmpty()) {
+            protocols.add(HttpProtocol.HTTP11);
+        }
+        return protocols.toArray(new HttpProtocol[0]);
+    }
+}
@@ -0,0 +1,18 @@
+package com.sloview.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Metrics beans that need the application's meter registry; kept out of the web layer
+ * so controller slice tests run without one.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public ResponseSizeMetricsFilter responseSizeMetricsFilter(MeterRegistry meterRegistry) {
+        return new ResponseSizeMetricsFilter(meterRegistry);
+    }
+}
@@ -0,0 +1,58 @@
+package com.sloview.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the body size of every response as the {@code http.server.response.size}
+ * summary, tagged with the same {@code uri} pattern as the {@code http.server.requests}
+ * timer. Sizes are counted before response compression. Registered by {@link MetricsConfig}.
+ */
+public class ResponseSizeMetricsFilter implements WebFilter {
+
+    private final MeterRegistry meterRegistry;
+
+    public ResponseSizeMetricsFilter(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        AtomicLong bytes = new AtomicLong();
+        ServerHttpResponseDecorator response = new ServerHttpResponseDecorator(exchange.getResponse()) {
+            @Override
+            public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+                return super.writeWith(Flux.from(body).doOnNext(buffer -> bytes.addAndGet(buffer.readableByteCount())));
+            }
+
+            @Override
+            public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+                return super.writeAndFlushWith(Flux.from(body).map(part ->
+                        Flux.from(part).doOnNext(buffer -> bytes.addAndGet(buffer.readableByteCount()))));
+            }
+        };
+        return chain.filter(exchange.mutate().response(response).build())
+                .doFinally(signal -> DistributionSummary.builder("http.server.response.size")
+                        .description("Size of response bodies before compression")
+                        .baseUnit("bytes")
+                        .tag("uri", uri(exchange))
+                        .register(meterRegistry)
+                        .record(bytes.get()));
+    }
+
+    private static String uri(ServerWebExchange exchange) {
+        Object pattern = exchange.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern != null ? pattern.toString() : "UNKNOWN";
+    }
+}
@@ -0,0 +1,65 @@
+package com.sloview.controller;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+
+import java.util.List;
+
+/**
+ * Negotiates the coordinate encoding of feature responses.
+ *
+ * Clients ask for encoded polylines with the {@code encoding=polyline} query parameter or
+ * an {@code encoding=polyline} parameter on an accepted media type, for example
+ * {@code Accept: application/json;encoding=polyline}. The precision is taken from a
+ * {@code precision} parameter in the same place and otherwise from the configured default.
+ */
+final class CoordinateEncoding {
+
+    static final String POLYLINE = "polyline";
+    static final int MAX_PRECISION = 9;
+
+    private CoordinateEncoding() {
+    }
+
+    /**
+     * @param request Request
+     * @param defaultPrecision Precision used when the request does not set one
+     * @return Decimal digits of encoded polylines, or 0 for plain coordinate arrays
+     */
+    static int negotiate(ServerHttpRequest request, int defaultPrecision) {
+        String encoding = request.getQueryParams().getFirst("encoding");
+        String precision = request.getQueryParams().getFirst("precision");
+        if (encoding == null) {
+            for (MediaType mediaType : acceptedMediaTypes(request)) {
+                encoding = mediaType.getParameter("encoding");
+                if (encoding != null) {
+                    if (precision == null) {
+                        precision = mediaType.getParameter("precision");
+                    }
+                    break;
+                }
+            }
+        }
+        if (!POLYLINE.equalsIgnoreCase(encoding)) {
+            return 0;
+        }
+        int digits = defaultPrecision;
+        if (precision != null) {
+            try {
+                digits = Integer.parseInt(precision.trim());
+            } catch (NumberFormatException e) {
+                // Keep the default precision
+            }
+        }
+        return Math.max(1, Math.min(MAX_PRECISION, digits));
+    }
+
+    private static List<MediaType> acceptedMediaTypes(ServerHttpRequest request) {
+        try {
+            return request.getHeaders().getAccept();
+        } catch (InvalidMediaTypeException e) {
+            return List.of();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.sloview.controller;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Validators and cache headers for map responses.
+ *
+ * The strong ETag of a response is derived from the version of the data it is built from,
+ * the request path and query, and the headers the representation depends on, so it can be
+ * checked before any data is read or serialized. Only versioned responses may be cached;
+ * responses whose data has no version come from the GIS API fallback paths, cannot be
+ * revalidated and may be partial, so they are marked {@code no-store}.
+ */
+final class HttpCaching {
+
+    private HttpCaching() {
+    }
+
+    /**
+     * Sets the cache headers of a response and checks the request's {@code If-None-Match}
+     * header against the ETag of the data version, if there is one.
+     *
+     * @param exchange Current exchange
+     * @param version Version of the data the response is built from
+     * @param cacheControl Cache-Control of the response if its data is versioned
+     * @return true if the client already holds the current representation; the status is
+     *         then set to 304 and no body should be written
+     */
+    static boolean checkNotModified(ServerWebExchange exchange, Optional<String> version, CacheControl cacheControl) {
+        HttpHeaders headers = exchange.getResponse().getHeaders();
+        headers.setCacheControl(version.isPresent() ? cacheControl : CacheControl.noStore());
+        headers.setVary(List.of(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING));
+        return version.isPresent() && exchange.checkNotModified(etag(exchange.getRequest(), version.get()));
+    }
+
+    /**
+     * @return true if the client accepts gzip-compressed responses
+     */
+    static boolean acceptsGzip(ServerHttpRequest request) {
+        for (String value : request.getHeaders().getOrEmpty(HttpHeaders.ACCEPT_ENCODING)) {
+            for (String coding : value.split(",")) {
+                String[] parts = coding.trim().split(";");
+                if (parts[0].trim().equalsIgnoreCase("gzip") && !parts[parts.length - 1].replace(" ", "").equals("q=0")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Quoted strong ETag of a request's representation of a data version
+     */
+    static String etag(ServerHttpRequest request, String version) {
+        StringBuilder input = new StringBuilder(version)
+                .append('\n').append(request.getPath().value())
+                .append('\n').append(request.getURI().getRawQuery())
+                .append('\n').append(request.getHeaders().getFirst(HttpHeaders.ACCEPT));
+        // Compressed and identity bodies are different representations
+        input.append('\n').append(acceptsGzip(request));
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(input.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder etag = new StringBuilder("\"");
+            for (int i = 0; i < 16; i++) {
+                etag.append(Character.forDigit((digest[i] >> 4) & 0xf, 16)).append(Character.forDigit(digest[i] & 0xf, 16));
+            }
+            return etag.append('"').toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,56 +1,148 @@
 package com.sloview.controller;
 
+import com.sloview.cache.DataAge;
+import com.sloview.cache.EncodedResponse;
+import com.sloview.model.FeatureTable;
+import com.sloview.service.ClusterService;
+import com.sloview.service.DataUnavailableException;
 import com.sloview.service.GISApiService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/map")
 @CrossOrigin(origins = "*")
 public class MapDataController {
     
+    // Seconds since the data of a response was fetched from the GIS API
+    static final String DATA_AGE_HEADER = "X-Data-Age";
+    
     @Autowired
     private GISApiService gisApiService;
     
+    @Autowired
+    private ClusterService clusterService;
+    
+    @Value("${gis.encoding.polyline-precision:5}")
+    private int polylinePrecision;
+    
+    @Value("${gis.http.max-age-seconds.restaurants:300}")
+    private long restaurantsMaxAge;
+    
+    @Value("${gis.http.max-age-seconds.features:60}")
+    private long featuresMaxAge;
+    
+    @Value("${gis.http.max-age-seconds.documents:60}")
+    private long documentsMaxAge;
+    
     /**
      * Get restaurants from the GIS API.
-     * This is the main endpoint used by the frontend.
+     * This is the main endpoint used by the frontend. Cached restaurants are written from
+     * their pre-serialized (and pre-compressed) bytes, with an X-Data-Age header giving the
+     * seconds since they were loaded.
      */
     @GetMapping("/points/amenity/restaurant/wgs84")
-    public ResponseEntity<List<Map<String, Object>>> getRestaurants(
-            @RequestParam(required = false) Integer limit) {
-        List<Map<String, Object>> restaurants = gisApiService.getRestaurants(limit);
-        return ResponseEntity.ok(restaurants);
+    public Mono<ResponseEntity<?>> getRestaurants(
+            @RequestParam(required = false) Integer limit,
+            ServerWebExchange exchange) {
+        if (HttpCaching.checkNotModified(exchange, gisApiService.getRestaurantsVersion(), cacheControl(restaurantsMaxAge))) {
+            return Mono.just(notModified());
+        }
+        if (CoordinateEncoding.negotiate(exchange.getRequest(), polylinePrecision) == 0) {
+            Optional<EncodedResponse> encoded = gisApiService.getEncodedRestaurants(limit);
+            if (encoded.isPresent()) {
+                boolean gzip = HttpCaching.acceptsGzip(exchange.getRequest());
+                ResponseEntity.BodyBuilder response = ok(gisApiService.getRestaurantsAge()).contentType(MediaType.APPLICATION_JSON);
+                if (gzip) {
+                    response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+                }
+                return Mono.just(response.body(encoded.get().getBody(gzip)));
+            }
+        }
+        return gisApiService.getRestaurants(limit)
+                .<ResponseEntity<?>>map(restaurants -> ok(gisApiService.getRestaurantsAge()).body(encode(restaurants, exchange)))
+                .onErrorResume(DataUnavailableException.class, e -> Mono.just(unavailable()));
     }
     
     /**
      * Placeholder for other amenity types - currently only restaurants are supported.
      */
     @GetMapping("/points/amenity/{amenity}/wgs84")
-    public ResponseEntity<List<Map<String, Object>>> getPointsByAmenityWGS84(@PathVariable String amenity) {
+    public Mono<ResponseEntity<?>> getPointsByAmenityWGS84(@PathVariable String amenity,
+                                                           ServerWebExchange exchange) {
         if ("restaurant".equals(amenity)) {
-            return getRestaurants(null);
+            return getRestaurants(null, exchange);
         } else {
             // Return empty list for unsupported amenity types
-            return ResponseEntity.ok(List.of());
+            return Mono.just(ResponseEntity.ok(List.of()));
         }
     }
     
     /**
-     * Placeholder for other query types - currently not implemented.
+     * Get the features of an indexed table within a map viewport.
+     * The result count is capped according to the zoom level. While the table is not
+     * indexed yet the answer is 503, so an empty viewport is never cached in its place, and
+     * viewports reaching outside the replicated area are answered with 422.
      */
     @GetMapping("/points")
     public ResponseEntity<List<Map<String, Object>>> getPointsInBounds(
             @RequestParam double minLon,
             @RequestParam double minLat,
             @RequestParam double maxLon,
-            @RequestParam double maxLat) {
-        // TODO: Implement spatial queries when the GIS API supports them
-        return ResponseEntity.ok(List.of());
+            @RequestParam double maxLat,
+            @RequestParam(required = false, defaultValue = "mv_restaurants") String table,
+            @RequestParam(required = false) Integer zoom,
+            ServerWebExchange exchange) {
+        if (gisApiService.getIndexVersion(table).isEmpty()) {
+            return unavailable();
+        }
+        Optional<String> version = gisApiService.getBoundsVersion(table, minLon, minLat, maxLon, maxLat);
+        if (version.isEmpty()) {
+            // Only part of the viewport is replicated, so the result would be incomplete
+            return ResponseEntity.unprocessableEntity().cacheControl(CacheControl.noStore()).build();
+        }
+        if (HttpCaching.checkNotModified(exchange, version, cacheControl(featuresMaxAge))) {
+            return notModified();
+        }
+        List<Map<String, Object>> points = gisApiService.getFeaturesInBounds(minLon, minLat, maxLon, maxLat, table, zoom);
+        return ResponseEntity.ok(encode(points, exchange));
+    }
+    
+    /**
+     * Get the point clusters of an indexed table within a map viewport.
+     * Points within a fixed screen distance of each other at the zoom level are merged into
+     * clusters with a count; points that are not part of a cluster are returned as features.
+     * While the table is not indexed yet the answer is 503.
+     */
+    @GetMapping("/clusters")
+    public Mono<ResponseEntity<List<Map<String, Object>>>> getClusters(
+            @RequestParam double minLon,
+            @RequestParam double minLat,
+            @RequestParam double maxLon,
+            @RequestParam double maxLat,
+            @RequestParam int zoom,
+            @RequestParam(required = false, defaultValue = "planet_osm_point") String table,
+            ServerWebExchange exchange) {
+        if (HttpCaching.checkNotModified(exchange, clusterService.getVersion(table), cacheControl(featuresMaxAge))) {
+            return Mono.just(notModified());
+        }
+        return clusterService.getClusters(table, minLon, minLat, maxLon, maxLat, zoom)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(unavailable());
     }
     
     @GetMapping("/points/tourism/{tourism}")
@@ -75,80 +167,249 @@ public class MapDataController {
      * Get restaurants near a specific location.
      */
     @GetMapping("/restaurants")
-    public ResponseEntity<List<Map<String, Object>>> getRestaurants(
+    public Mono<ResponseEntity<List<Map<String, Object>>>> getRestaurants(
             @RequestParam double lon,
             @RequestParam double lat,
             @RequestParam(required = false, defaultValue = "5000") double distance,
-            @RequestParam(required = false, defaultValue = "1000") Integer limit) {
-        List<Map<String, Object>> restaurants = gisApiService.findNearbyFeatures(lon, lat, distance, "mv_restaurants", limit);
-        return ResponseEntity.ok(restaurants);
+            @RequestParam(required = false, defaultValue = "1000") Integer limit,
+            ServerWebExchange exchange) {
+        if (HttpCaching.checkNotModified(exchange, gisApiService.getNearbyVersion("mv_restaurants", lon, lat, distance),
+                cacheControl(featuresMaxAge))) {
+            return Mono.just(notModified());
+        }
+        return orUnavailable(gisApiService.findNearbyFeatures(lon, lat, distance, "mv_restaurants", limit)
+                .map(features -> ok(gisApiService.getNearbyAge("mv_restaurants", lon, lat, distance, limit))
+                        .body(encode(features, exchange))));
     }
     
     /**
      * Get roads near a specific location.
+     * Road geometry is simplified for the map zoom level or tolerance in meters, if given.
      */
     @GetMapping("/roads")
-    public ResponseEntity<List<Map<String, Object>>> getRoads(
+    public Mono<ResponseEntity<List<Map<String, Object>>>> getRoads(
             @RequestParam double lon,
             @RequestParam double lat,
             @RequestParam(required = false, defaultValue = "5000") double distance,
-            @RequestParam(required = false, defaultValue = "1000") Integer limit) {
-        List<Map<String, Object>> roads = gisApiService.findNearbyFeatures(lon, lat, distance, "mv_road_network", limit);
-        return ResponseEntity.ok(roads);
+            @RequestParam(required = false, defaultValue = "1000") Integer limit,
+            @RequestParam(required = false) Integer zoom,
+            @RequestParam(required = false) Double tolerance,
+            ServerWebExchange exchange) {
+        if (HttpCaching.checkNotModified(exchange, gisApiService.getNearbyVersion("mv_road_network", lon, lat, distance),
+                cacheControl(featuresMaxAge))) {
+            return Mono.just(notModified());
+        }
+        return orUnavailable(gisApiService.findNearbyFeatures(lon, lat, distance, "mv_road_network", limit, zoom, tolerance)
+                .map(features -> ok(gisApiService.getNearbyAge("mv_road_network", lon, lat, distance, limit))
+                        .body(encode(features, exchange))));
     }
     
     /**
      * Get points of interest near a specific location.
      */
     @GetMapping("/pois")
-    public ResponseEntity<List<Map<String, Object>>> getPOIs(
+    public Mono<ResponseEntity<List<Map<String, Object>>>> getPOIs(
+            @RequestParam double lon,
+            @RequestParam double lat,
+            @RequestParam(required = false, defaultValue = "5000") double distance,
+            @RequestParam(required = false, defaultValue = "1000") Integer limit,
+            ServerWebExchange exchange) {
+        if (HttpCaching.checkNotModified(exchange, gisApiService.getNearbyVersion("planet_osm_point", lon, lat, distance),
+                cacheControl(featuresMaxAge))) {
+            return Mono.just(notModified());
+        }
+        return orUnavailable(gisApiService.findNearbyFeatures(lon, lat, distance, "planet_osm_point", limit)
+                .map(features -> ok(gisApiService.getNearbyAge("planet_osm_point", lon, lat, distance, limit))
+                        .body(encode(features, exchange))));
+    }
+    
+    
+    /**
+     * Stream restaurants near a specific location as newline-delimited JSON, one feature per line.
+     */
+    @GetMapping(value = "/restaurants", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Map<String, Object>> streamRestaurants(
             @RequestParam double lon,
             @RequestParam double lat,
             @RequestParam(required = false, defaultValue = "5000") double distance,
-            @RequestParam(required = false, defaultValue = "1000") Integer limit) {
-        List<Map<String, Object>> pois = gisApiService.findNearbyFeatures(lon, lat, distance, "planet_osm_point", limit);
-        return ResponseEntity.ok(pois);
+            @RequestParam(required = false, defaultValue = "1000") Integer limit,
+            ServerWebExchange exchange) {
+        if (HttpCaching.checkNotModified(exchange, gisApiService.getNearbyVersion("mv_restaurants", lon, lat, distance),
+                cacheControl(featuresMaxAge))) {
+            return Flux.empty();
+        }
+        int precision = CoordinateEncoding.negotiate(exchange.getRequest(), polylinePrecision);
+        return orUnavailable(gisApiService.streamNearbyFeatures(lon, lat, distance, "mv_restaurants", limit)
+                .map(feature -> FeatureTable.withPolylineCoordinates(feature, precision)), exchange);
     }
     
+    /**
+     * Stream roads near a specific location as newline-delimited JSON, one feature per line.
+     */
+    @GetMapping(value = "/roads", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Map<String, Object>> streamRoads(
+            @RequestParam double lon,
+            @RequestParam double lat,
+            @RequestParam(required = false, defaultValue = "5000") double distance,
+            @RequestParam(required = false, defaultValue = "1000") Integer limit,
+            @RequestParam(required = false) Integer zoom,
+            @RequestParam(required = false) Double tolerance,
+            ServerWebExchange exchange) {
+        if (HttpCaching.checkNotModified(exchange, gisApiService.getNearbyVersion("mv_road_network", lon, lat, distance),
+                cacheControl(featuresMaxAge))) {
+            return Flux.empty();
+        }
+        int precision = CoordinateEncoding.negotiate(exchange.getRequest(), polylinePrecision);
+        return orUnavailable(gisApiService.streamNearbyFeatures(lon, lat, distance, "mv_road_network", limit, zoom, tolerance)
+                .map(feature -> FeatureTable.withPolylineCoordinates(feature, precision)), exchange);
+    }
+    
+    /**
+     * Stream points of interest near a specific location as newline-delimited JSON, one feature per line.
+     */
+    @GetMapping(value = "/pois", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Map<String, Object>> streamPOIs(
+            @RequestParam double lon,
+            @RequestParam double lat,
+            @RequestParam(required = false, defaultValue = "5000") double distance,
+            @RequestParam(required = false, defaultValue = "1000") Integer limit,
+            ServerWebExchange exchange) {
+        if (HttpCaching.checkNotModified(exchange, gisApiService.getNearbyVersion("planet_osm_point", lon, lat, distance),
+                cacheControl(featuresMaxAge))) {
+            return Flux.empty();
+        }
+        int precision = CoordinateEncoding.negotiate(exchange.getRequest(), polylinePrecision);
+        return orUnavailable(gisApiService.streamNearbyFeatures(lon, lat, distance, "planet_osm_point", limit)
+                .map(feature -> FeatureTable.withPolylineCoordinates(feature, precision)), exchange);
+    }
     
     /**
      * Get spatial summary statistics from the GIS API.
      */
     @GetMapping("/spatial/summary")
-    public ResponseEntity<Map<String, Object>> getSpatialSummary() {
-        Map<String, Object> summary = gisApiService.getSpatialSummary();
-        return ResponseEntity.ok(summary);
+    public Mono<ResponseEntity<Map<String, Object>>> getSpatialSummary() {
+        return orUnavailable(gisApiService.getSpatialSummary().map(document -> ok(gisApiService.getSpatialSummaryAge())
+                .cacheControl(cacheControl(documentsMaxAge))
+                .body(document)));
     }
     
     /**
      * Find nearby features using optimized spatial search.
+     * Line and polygon geometry is simplified for the map zoom level or tolerance in meters, if given.
      */
     @GetMapping("/spatial/nearby")
-    public ResponseEntity<List<Map<String, Object>>> findNearbyFeatures(
+    public Mono<ResponseEntity<List<Map<String, Object>>>> findNearbyFeatures(
+            @RequestParam double lon,
+            @RequestParam double lat,
+            @RequestParam(required = false, defaultValue = "1000") double distance,
+            @RequestParam(required = false, defaultValue = "mv_restaurants") String table,
+            @RequestParam(required = false, defaultValue = "1000") Integer limit,
+            @RequestParam(required = false) Integer zoom,
+            @RequestParam(required = false) Double tolerance,
+            ServerWebExchange exchange) {
+        if (HttpCaching.checkNotModified(exchange, gisApiService.getNearbyVersion(table, lon, lat, distance),
+                cacheControl(featuresMaxAge))) {
+            return Mono.just(notModified());
+        }
+        return orUnavailable(gisApiService.findNearbyFeatures(lon, lat, distance, table, limit, zoom, tolerance)
+                .map(features -> ok(gisApiService.getNearbyAge(table, lon, lat, distance, limit))
+                        .body(encode(features, exchange))));
+    }
+    
+    /**
+     * Stream nearby features as newline-delimited JSON, one feature per line.
+     */
+    @GetMapping(value = "/spatial/nearby", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Map<String, Object>> streamNearbyFeatures(
             @RequestParam double lon,
             @RequestParam double lat,
             @RequestParam(required = false, defaultValue = "1000") double distance,
             @RequestParam(required = false, defaultValue = "mv_restaurants") String table,
-            @RequestParam(required = false, defaultValue = "1000") Integer limit) {
-        List<Map<String, Object>> features = gisApiService.findNearbyFeatures(lon, lat, distance, table, limit);
-        return ResponseEntity.ok(features);
+            @RequestParam(required = false, defaultValue = "1000") Integer limit,
+            @RequestParam(required = false) Integer zoom,
+            @RequestParam(required = false) Double tolerance,
+            ServerWebExchange exchange) {
+        if (HttpCaching.checkNotModified(exchange, gisApiService.getNearbyVersion(table, lon, lat, distance),
+                cacheControl(featuresMaxAge))) {
+            return Flux.empty();
+        }
+        int precision = CoordinateEncoding.negotiate(exchange.getRequest(), polylinePrecision);
+        return orUnavailable(gisApiService.streamNearbyFeatures(lon, lat, distance, table, limit, zoom, tolerance)
+                .map(feature -> FeatureTable.withPolylineCoordinates(feature, precision)), exchange);
     }
     
     /**
      * Get data status and health information from the GIS API.
      */
     @GetMapping("/data/status")
-    public ResponseEntity<Map<String, Object>> getDataStatus() {
-        Map<String, Object> status = gisApiService.getDataStatus();
-        return ResponseEntity.ok(status);
+    public Mono<ResponseEntity<Map<String, Object>>> getDataStatus() {
+        return orUnavailable(gisApiService.getDataStatus().map(document -> ok(gisApiService.getDataStatusAge())
+                .cacheControl(cacheControl(documentsMaxAge))
+                .body(document)));
     }
     
     /**
      * Get data metadata and schema information from the GIS API.
      */
     @GetMapping("/data/metadata")
-    public ResponseEntity<Map<String, Object>> getDataMetadata() {
-        Map<String, Object> metadata = gisApiService.getDataMetadata();
-        return ResponseEntity.ok(metadata);
+    public Mono<ResponseEntity<Map<String, Object>>> getDataMetadata() {
+        return orUnavailable(gisApiService.getDataMetadata().map(document -> ok(gisApiService.getDataMetadataAge())
+                .cacheControl(cacheControl(documentsMaxAge))
+                .body(document)));
+    }
+    
+    /**
+     * Switches features to encoded polyline coordinates if the request asks for them.
+     */
+    private List<Map<String, Object>> encode(List<Map<String, Object>> features, ServerWebExchange exchange) {
+        int precision = CoordinateEncoding.negotiate(exchange.getRequest(), polylinePrecision);
+        return precision > 0 ? FeatureTable.withPolylineCoordinates(features, precision) : features;
+    }
+    
+    /**
+     * Starts a successful response, with an X-Data-Age header if its data was served from a
+     * cache. The Age header is only added for data served past its lifetime because the GIS
+     * API failed, so clients do not count the age of fresh cached data against max-age.
+     */
+    private static ResponseEntity.BodyBuilder ok(Optional<DataAge> age) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        age.ifPresent(value -> {
+            String seconds = Long.toString(value.getAge().getSeconds());
+            response.header(DATA_AGE_HEADER, seconds);
+            if (value.isStaleIfError()) {
+                response.header(HttpHeaders.AGE, seconds);
+            }
+        });
+        return response;
+    }
+    
+    /**
+     * Answers with 503 if the data of a response is neither available from the GIS API nor cached.
+     */
+    private static <T> Mono<ResponseEntity<T>> orUnavailable(Mono<ResponseEntity<T>> response) {
+        return response.onErrorResume(DataUnavailableException.class, e -> Mono.just(unavailable()));
+    }
+    
+    /**
+     * Answers a stream with 503 if its data is neither available from the GIS API nor cached.
+     */
+    private static <T> Flux<T> orUnavailable(Flux<T> stream, ServerWebExchange exchange) {
+        return stream.onErrorResume(DataUnavailableException.class, e -> {
+            exchange.getResponse().setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+            exchange.getResponse().getHeaders().setCacheControl(CacheControl.noStore());
+            return Flux.empty();
+        });
+    }
+    
+    private static CacheControl cacheControl(long maxAgeSeconds) {
+        return CacheControl.maxAge(Duration.ofSeconds(maxAgeSeconds)).cachePublic();
+    }
+    
+    private static <T> ResponseEntity<T> notModified() {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+    }
+    
+    private static <T> ResponseEntity<T> unavailable() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).cacheControl(CacheControl.noStore()).build();
     }
 }
@@ -0,0 +1,80 @@
+package com.sloview.controller;
+
+import com.sloview.service.TileCacheService;
+import com.sloview.service.VectorTileService;
+import com.sloview.tiles.WebMercator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+
+/**
+ * REST controller for Mapbox Vector Tiles.
+ *
+ * Serves the indexed restaurants, roads and points of interest as binary tiles in the
+ * XYZ scheme, so map clients only download what is visible at the current zoom.
+ */
+@RestController
+@RequestMapping("/api/map/tiles")
+@CrossOrigin(origins = "*")
+public class TileController {
+
+    /** Media type of Mapbox Vector Tiles. */
+    public static final MediaType VECTOR_TILE = MediaType.parseMediaType("application/vnd.mapbox-vector-tile");
+
+    private final VectorTileService vectorTileService;
+    private final TileCacheService tileCacheService;
+    private final long maxAgeSeconds;
+
+    public TileController(VectorTileService vectorTileService, TileCacheService tileCacheService,
+                          @Value("${gis.tiles.max-age-seconds:300}") long maxAgeSeconds) {
+        this.vectorTileService = vectorTileService;
+        this.tileCacheService = tileCacheService;
+        this.maxAgeSeconds = maxAgeSeconds;
+    }
+
+    /**
+     * Get a vector tile of a layer.
+     * Stored tiles are written straight from the memory-mapped tile cache; missing tiles
+     * are built off the event loop.
+     *
+     * @param layer Tile layer: restaurants, roads or pois
+     * @param z Zoom level
+     * @param x Tile column
+     * @param y Tile row
+     * @param exchange Current exchange, for conditional requests
+     * @return Tile; 304 if the client holds the current tile, 404 for unknown layers or tiles,
+     *         503 while the layer is not indexed yet
+     */
+    @GetMapping("/{layer}/{z}/{x}/{y}.mvt")
+    public Mono<ResponseEntity<ByteBuffer>> getTile(@PathVariable String layer, @PathVariable int z,
+                                                    @PathVariable int x, @PathVariable int y,
+                                                    ServerWebExchange exchange) {
+        if (!vectorTileService.hasLayer(layer) || !WebMercator.isValidTile(z, x, y)) {
+            return Mono.just(ResponseEntity.notFound().build());
+        }
+        CacheControl cacheControl = CacheControl.maxAge(Duration.ofSeconds(maxAgeSeconds)).cachePublic();
+        if (HttpCaching.checkNotModified(exchange, vectorTileService.getLayerVersion(layer), cacheControl)) {
+            return Mono.just(ResponseEntity.status(HttpStatus.NOT_MODIFIED).build());
+        }
+        return tileCacheService.getTile(layer, z, x, y)
+                .map(tile -> ResponseEntity.ok()
+                        .contentType(VECTOR_TILE)
+                        .cacheControl(cacheControl)
+                        .body(tile))
+                .defaultIfEmpty(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .cacheControl(CacheControl.noStore())
+                        .build());
+    }
+}
@@ -0,0 +1,98 @@
+package com.sloview.model;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.util.AbstractMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Read-only map view of one row of a {@link FeatureTable}.
+ *
+ * Single keys are looked up directly in the columns; the full entry set is only
+ * materialized when a caller iterates the map. JSON serialization bypasses the map
+ * entirely, see {@link FeatureRowSerializer}.
+ */
+@JsonSerialize(using = FeatureRowSerializer.class)
+final class FeatureRow extends AbstractMap<String, Object> {
+
+    private final FeatureTable table;
+    private final int index;
+
+    FeatureRow(FeatureTable table, int index) {
+        this.table = table;
+        this.index = index;
+    }
+
+    FeatureTable getTable() {
+        return table;
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        String name = (String) key;
+        if (!FeatureTable.isColumnKey(name)) {
+            return table.getProperty(index, name);
+        }
+        switch (name) {
+            case FeatureTable.OSM_ID:
+                return table.getOsmId(index);
+            case FeatureTable.LONGITUDE:
+                return boxed(table.round(table.getLongitude(index)));
+            case FeatureTable.LATITUDE:
+                return boxed(table.round(table.getLatitude(index)));
+            case FeatureTable.DISTANCE:
+                return boxed(table.getDistance(index));
+            case FeatureTable.GEOMETRY:
+                FeatureTable.GeometryType type = table.getGeometryType(index);
+                return type != null ? type.getJsonName() : null;
+            default:
+                int precision = table.getPolylinePrecision();
+                return precision > 0 ? table.getEncodedCoordinates(index, precision) : table.getCoordinates(index);
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (!(key instanceof String)) {
+            return false;
+        }
+        String name = (String) key;
+        if (!FeatureTable.isColumnKey(name)) {
+            return table.hasProperty(index, name);
+        }
+        if (FeatureTable.OSM_ID.equals(name)) {
+            return true;
+        }
+        return get(name) != null;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        Map<String, Object> entries = new LinkedHashMap<>();
+        entries.put(FeatureTable.OSM_ID, table.getOsmId(index));
+        for (int p = 0; p < table.getPropertyCount(index); p++) {
+            entries.put(table.getPropertyKey(index, p), table.getPropertyValue(index, p));
+        }
+        for (String key : new String[] {FeatureTable.DISTANCE, FeatureTable.GEOMETRY, FeatureTable.COORDINATES,
+                FeatureTable.LONGITUDE, FeatureTable.LATITUDE}) {
+            Object value = get(key);
+            if (value != null) {
+                entries.put(key, value);
+            }
+        }
+        return entries.entrySet();
+    }
+
+    private static Double boxed(double value) {
+        return Double.isNaN(value) ? null : value;
+    }
+}
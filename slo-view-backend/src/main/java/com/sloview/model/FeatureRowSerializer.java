@@ -0,0 +1,79 @@
+package com.sloview.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+/**
+ * Writes a feature row as a JSON object directly from the table columns, with the same
+ * fields the map view reports. Parts are written as coordinate arrays or, for views with
+ * polyline coordinates, as encoded polyline strings.
+ */
+class FeatureRowSerializer extends StdSerializer<FeatureRow> {
+
+    FeatureRowSerializer() {
+        super(FeatureRow.class);
+    }
+
+    @Override
+    public void serialize(FeatureRow row, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        FeatureTable table = row.getTable();
+        int index = row.getIndex();
+
+        gen.writeStartObject();
+        gen.writeNumberField(FeatureTable.OSM_ID, table.getOsmId(index));
+        for (int p = 0; p < table.getPropertyCount(index); p++) {
+            gen.writeFieldName(table.getPropertyKey(index, p));
+            provider.defaultSerializeValue(table.getPropertyValue(index, p), gen);
+        }
+        double distance = table.getDistance(index);
+        if (!Double.isNaN(distance)) {
+            gen.writeNumberField(FeatureTable.DISTANCE, distance);
+        }
+        FeatureTable.GeometryType type = table.getGeometryType(index);
+        if (type != null) {
+            gen.writeStringField(FeatureTable.GEOMETRY, type.getJsonName());
+        }
+        if (type == FeatureTable.GeometryType.LINE_STRING) {
+            gen.writeFieldName(FeatureTable.COORDINATES);
+            writePart(table, index, 0, gen);
+        } else if (type == FeatureTable.GeometryType.POLYGON) {
+            gen.writeFieldName(FeatureTable.COORDINATES);
+            gen.writeStartArray();
+            for (int part = 0; part < table.getPartCount(index); part++) {
+                writePart(table, index, part, gen);
+            }
+            gen.writeEndArray();
+        }
+        double lon = table.round(table.getLongitude(index));
+        double lat = table.round(table.getLatitude(index));
+        if (!Double.isNaN(lon) && !Double.isNaN(lat)) {
+            gen.writeNumberField(FeatureTable.LONGITUDE, lon);
+            gen.writeNumberField(FeatureTable.LATITUDE, lat);
+        }
+        gen.writeEndObject();
+    }
+
+    private static void writePart(FeatureTable table, int index, int part, JsonGenerator gen) throws IOException {
+        int precision = table.getPolylinePrecision();
+        if (precision > 0) {
+            gen.writeString(part < table.getPartCount(index) ? table.encodePart(index, part, precision) : "");
+            return;
+        }
+        gen.writeStartArray();
+        if (part < table.getPartCount(index)) {
+            for (int v = table.getPartStart(index, part); v < table.getPartEnd(index, part); v++) {
+                if (!table.isVertexKept(v)) {
+                    continue;
+                }
+                gen.writeStartArray();
+                gen.writeNumber(table.getVertexLon(v));
+                gen.writeNumber(table.getVertexLat(v));
+                gen.writeEndArray();
+            }
+        }
+        gen.writeEndArray();
+    }
+}
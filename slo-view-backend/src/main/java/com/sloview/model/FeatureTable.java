@@ -0,0 +1,711 @@
+package com.sloview.model;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * Immutable, column-oriented collection of map features.
+ *
+ * Ids, representative coordinates and distances are stored in primitive arrays, geometries
+ * in one packed vertex array, and properties as pairs of indexes into per-table key and
+ * value dictionaries, so repeated names, types and {@code null} placeholders are stored once.
+ * The table is exposed as a list of read-only maps with the same keys the transforms used
+ * to produce; rows are lightweight views that are serialized straight from the columns.
+ *
+ * Slices and selections share the columns of the table they were taken from. A view can
+ * also be simplified to a tolerance, which hides the line and ring vertices that
+ * Douglas-Peucker simplification would drop; the levels of detail behind this are computed
+ * once per table and shared by all its views. Views can also report their coordinates as
+ * encoded polylines instead of nested arrays.
+ */
+public final class FeatureTable extends AbstractList<Map<String, Object>> implements RandomAccess {
+
+    /**
+     * Geometry type of a feature, as reported in the {@code geometry} field.
+     */
+    public enum GeometryType {
+        POINT("Point"),
+        LINE_STRING("LineString"),
+        POLYGON("Polygon");
+
+        private final String jsonName;
+
+        GeometryType(String jsonName) {
+            this.jsonName = jsonName;
+        }
+
+        public String getJsonName() {
+            return jsonName;
+        }
+    }
+
+    static final String OSM_ID = "osmId";
+    static final String LONGITUDE = "longitude";
+    static final String LATITUDE = "latitude";
+    static final String DISTANCE = "distance";
+    static final String GEOMETRY = "geometry";
+    static final String COORDINATES = "coordinates";
+
+    private static final Set<String> COLUMN_KEYS = Set.of(OSM_ID, LONGITUDE, LATITUDE, DISTANCE, GEOMETRY, COORDINATES);
+    private static final GeometryType[] GEOMETRY_TYPES = GeometryType.values();
+    private static final FeatureTable EMPTY = new Builder().build();
+
+    private final Columns columns;
+    // Rows of the columns in this view, or null for the range starting at offset
+    private final int[] rows;
+    private final int offset;
+    private final int length;
+    // Distances replacing the stored ones, or null
+    private final double[] distances;
+    // Simplification tolerance in meters, 0 for full detail
+    private final double tolerance;
+    // Decimal digits of encoded polyline coordinates, 0 for coordinate arrays
+    private final int polylinePrecision;
+
+    private FeatureTable(Columns columns, int[] rows, int offset, int length, double[] distances,
+                         double tolerance, int polylinePrecision) {
+        this.columns = columns;
+        this.rows = rows;
+        this.offset = offset;
+        this.length = length;
+        this.distances = distances;
+        this.tolerance = tolerance;
+        this.polylinePrecision = polylinePrecision;
+    }
+
+    /**
+     * @return New builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return Empty table
+     */
+    public static FeatureTable empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Concatenates tables into a new compact table.
+     *
+     * @param tables Tables in order
+     * @return Table holding the rows of all tables
+     */
+    public static FeatureTable concat(List<FeatureTable> tables) {
+        Builder builder = new Builder();
+        for (FeatureTable table : tables) {
+            for (int i = 0; i < table.length; i++) {
+                builder.addRow(table, i);
+            }
+        }
+        return builder.build();
+    }
+
+    @Override
+    public Map<String, Object> get(int index) {
+        checkIndex(index);
+        return new FeatureRow(this, index);
+    }
+
+    @Override
+    public int size() {
+        return length;
+    }
+
+    /**
+     * Returns a view of a range of rows without copying.
+     *
+     * @param from First row, inclusive
+     * @param to Last row, exclusive
+     * @return Table view
+     */
+    public FeatureTable slice(int from, int to) {
+        if (from < 0 || to > length || from > to) {
+            throw new IndexOutOfBoundsException("Slice " + from + ".." + to + " of " + length);
+        }
+        if (from == 0 && to == length) {
+            return this;
+        }
+        if (rows == null) {
+            return new FeatureTable(columns, null, offset + from, to - from,
+                    distances == null ? null : Arrays.copyOfRange(distances, from, to), tolerance, polylinePrecision);
+        }
+        return new FeatureTable(columns, Arrays.copyOfRange(rows, from, to), 0, to - from,
+                distances == null ? null : Arrays.copyOfRange(distances, from, to), tolerance, polylinePrecision);
+    }
+
+    /**
+     * Returns a view of selected rows without copying their data.
+     *
+     * @param indexes Rows of this table, in the order of the view
+     * @param newDistances Distances of the selected rows, or null to keep the stored ones
+     * @return Table view
+     */
+    public FeatureTable select(int[] indexes, double[] newDistances) {
+        int[] selected = new int[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            checkIndex(indexes[i]);
+            selected[i] = row(indexes[i]);
+        }
+        return new FeatureTable(columns, selected, 0, selected.length, newDistances, tolerance, polylinePrecision);
+    }
+
+    /**
+     * Returns a view whose line strings and polygon rings are simplified with the
+     * Douglas-Peucker algorithm. Part endpoints are always kept and rings keep at least
+     * three distinct vertices.
+     *
+     * @param toleranceMeters Maximum distance in meters between the original and the
+     *                        simplified geometry, 0 for full detail
+     * @return Table view
+     */
+    public FeatureTable simplify(double toleranceMeters) {
+        double newTolerance = Math.max(0, toleranceMeters);
+        if (newTolerance == tolerance) {
+            return this;
+        }
+        if (newTolerance > 0) {
+            columns.significance();
+        }
+        return new FeatureTable(columns, rows, offset, length, distances, newTolerance, polylinePrecision);
+    }
+
+    /**
+     * @return Simplification tolerance of this view in meters, 0 for full detail
+     */
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    /**
+     * Returns a view that reports line string and polygon coordinates as Google encoded
+     * polylines, one string per line or ring, and rounds representative coordinates to
+     * the same precision.
+     *
+     * @param precision Number of decimal digits kept, 0 for coordinate arrays
+     * @return Table view
+     */
+    public FeatureTable withPolylineCoordinates(int precision) {
+        if (precision < 0) {
+            throw new IllegalArgumentException("Negative polyline precision " + precision);
+        }
+        if (precision == polylinePrecision) {
+            return this;
+        }
+        return new FeatureTable(columns, rows, offset, length, distances, tolerance, precision);
+    }
+
+    /**
+     * @return Decimal digits of encoded polyline coordinates, 0 for coordinate arrays
+     */
+    public int getPolylinePrecision() {
+        return polylinePrecision;
+    }
+
+    /**
+     * Applies {@link #withPolylineCoordinates(int)} to a list of features. Lists that are
+     * not feature tables hold no line or polygon geometry and are returned unchanged.
+     */
+    public static List<Map<String, Object>> withPolylineCoordinates(List<Map<String, Object>> features, int precision) {
+        if (features instanceof FeatureTable) {
+            return ((FeatureTable) features).withPolylineCoordinates(precision);
+        }
+        return features;
+    }
+
+    /**
+     * Applies {@link #withPolylineCoordinates(int)} to a single feature taken from a table.
+     * Other maps are returned unchanged.
+     */
+    public static Map<String, Object> withPolylineCoordinates(Map<String, Object> feature, int precision) {
+        if (feature instanceof FeatureRow) {
+            FeatureRow row = (FeatureRow) feature;
+            return new FeatureRow(row.getTable().withPolylineCoordinates(precision), row.getIndex());
+        }
+        return feature;
+    }
+
+    public long getOsmId(int index) {
+        return columns.ids[row(index)];
+    }
+
+    /**
+     * @return Longitude of the representative point, or NaN if the feature has none
+     */
+    public double getLongitude(int index) {
+        return columns.lon[row(index)];
+    }
+
+    /**
+     * @return Latitude of the representative point, or NaN if the feature has none
+     */
+    public double getLatitude(int index) {
+        return columns.lat[row(index)];
+    }
+
+    /**
+     * @return Distance to the query point, or NaN if the feature has none
+     */
+    public double getDistance(int index) {
+        return distances != null ? distances[index] : columns.distance[row(index)];
+    }
+
+    /**
+     * @return Geometry type, or null for plain point records without a geometry field
+     */
+    public GeometryType getGeometryType(int index) {
+        byte type = columns.geometry[row(index)];
+        return type < 0 ? null : GEOMETRY_TYPES[type];
+    }
+
+    /**
+     * @return Number of vertex sequences of the geometry: one for a line string, one per
+     *         ring for a polygon and none for points
+     */
+    public int getPartCount(int index) {
+        int row = row(index);
+        return columns.partStart[row + 1] - columns.partStart[row];
+    }
+
+    /**
+     * @return First vertex of a part, as an index into the vertex accessors
+     */
+    public int getPartStart(int index, int part) {
+        return columns.vertexStart[columns.partStart[row(index)] + part];
+    }
+
+    /**
+     * @return Vertex after the last vertex of a part
+     */
+    public int getPartEnd(int index, int part) {
+        return columns.vertexStart[columns.partStart[row(index)] + part + 1];
+    }
+
+    public double getVertexLon(int vertex) {
+        return columns.vertices[vertex * 2];
+    }
+
+    public double getVertexLat(int vertex) {
+        return columns.vertices[vertex * 2 + 1];
+    }
+
+    /**
+     * @return false if the vertex is dropped by the simplification of this view
+     */
+    public boolean isVertexKept(int vertex) {
+        return tolerance == 0 || columns.significance()[vertex] > tolerance;
+    }
+
+    /**
+     * @return Number of properties stored for a feature
+     */
+    public int getPropertyCount(int index) {
+        int row = row(index);
+        return columns.propStart[row + 1] - columns.propStart[row];
+    }
+
+    public String getPropertyKey(int index, int property) {
+        return columns.keys[columns.propKeys[columns.propStart[row(index)] + property]];
+    }
+
+    public Object getPropertyValue(int index, int property) {
+        return columns.values[columns.propValues[columns.propStart[row(index)] + property]];
+    }
+
+    /**
+     * Looks up a property by key.
+     *
+     * @return Property value, or null if absent
+     */
+    public Object getProperty(int index, String key) {
+        int row = row(index);
+        for (int p = columns.propStart[row]; p < columns.propStart[row + 1]; p++) {
+            if (columns.keys[columns.propKeys[p]].equals(key)) {
+                return columns.values[columns.propValues[p]];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return true if the feature has a property with the given key, even a null one
+     */
+    public boolean hasProperty(int index, String key) {
+        int row = row(index);
+        for (int p = columns.propStart[row]; p < columns.propStart[row + 1]; p++) {
+            if (columns.keys[columns.propKeys[p]].equals(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Builds the coordinates of a line string or polygon as nested lists, in GeoJSON order.
+     *
+     * @return Coordinates, or null for points
+     */
+    public List<?> getCoordinates(int index) {
+        GeometryType type = getGeometryType(index);
+        if (type != GeometryType.LINE_STRING && type != GeometryType.POLYGON) {
+            return null;
+        }
+        List<List<List<Double>>> parts = new ArrayList<>();
+        for (int part = 0; part < getPartCount(index); part++) {
+            List<List<Double>> vertices = new ArrayList<>();
+            for (int v = getPartStart(index, part); v < getPartEnd(index, part); v++) {
+                if (isVertexKept(v)) {
+                    vertices.add(List.of(getVertexLon(v), getVertexLat(v)));
+                }
+            }
+            parts.add(vertices);
+        }
+        if (type == GeometryType.LINE_STRING) {
+            return parts.isEmpty() ? new ArrayList<>() : parts.get(0);
+        }
+        return parts;
+    }
+
+    /**
+     * Encodes the coordinates of a line string as one polyline, or of a polygon as a list
+     * with one polyline per ring.
+     *
+     * @return Encoded coordinates, or null for points
+     */
+    public Object getEncodedCoordinates(int index, int precision) {
+        GeometryType type = getGeometryType(index);
+        if (type != GeometryType.LINE_STRING && type != GeometryType.POLYGON) {
+            return null;
+        }
+        List<String> parts = new ArrayList<>();
+        for (int part = 0; part < getPartCount(index); part++) {
+            parts.add(encodePart(index, part, precision));
+        }
+        if (type == GeometryType.LINE_STRING) {
+            return parts.isEmpty() ? "" : parts.get(0);
+        }
+        return parts;
+    }
+
+    /**
+     * Encodes the vertices of one part that the simplification of this view keeps.
+     */
+    String encodePart(int index, int part, int precision) {
+        PolylineEncoder encoder = new PolylineEncoder(precision);
+        for (int v = getPartStart(index, part); v < getPartEnd(index, part); v++) {
+            if (isVertexKept(v)) {
+                encoder.add(getVertexLon(v), getVertexLat(v));
+            }
+        }
+        return encoder.toString();
+    }
+
+    /**
+     * Rounds a coordinate to the polyline precision of this view, if any.
+     */
+    double round(double value) {
+        if (polylinePrecision == 0 || Double.isNaN(value)) {
+            return value;
+        }
+        double factor = Math.pow(10, polylinePrecision);
+        return Math.round(value * factor) / factor;
+    }
+
+    /**
+     * Hashes the content of the rows of this view, including the vertices its
+     * simplification keeps. The hash only depends on the data, so tables with the same
+     * content hash alike in every JVM.
+     *
+     * @return Content hash
+     */
+    public long contentHash() {
+        long hash = 17;
+        for (int i = 0; i < length; i++) {
+            hash = hash * 31 + getOsmId(i);
+            hash = hash * 31 + Double.hashCode(getLongitude(i));
+            hash = hash * 31 + Double.hashCode(getLatitude(i));
+            hash = hash * 31 + Double.hashCode(getDistance(i));
+            hash = hash * 31 + columns.geometry[row(i)];
+            for (int part = 0; part < getPartCount(i); part++) {
+                hash = hash * 31 + part;
+                for (int v = getPartStart(i, part); v < getPartEnd(i, part); v++) {
+                    if (isVertexKept(v)) {
+                        hash = hash * 31 + Double.hashCode(getVertexLon(v));
+                        hash = hash * 31 + Double.hashCode(getVertexLat(v));
+                    }
+                }
+            }
+            for (int p = 0; p < getPropertyCount(i); p++) {
+                hash = hash * 31 + getPropertyKey(i, p).hashCode();
+                hash = hash * 31 + Objects.hashCode(getPropertyValue(i, p));
+            }
+        }
+        return hash;
+    }
+
+    static boolean isColumnKey(String key) {
+        return COLUMN_KEYS.contains(key);
+    }
+
+    private int row(int index) {
+        return rows != null ? rows[index] : offset + index;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " of " + length);
+        }
+    }
+
+    /**
+     * Column arrays shared by a table and its views.
+     */
+    private static final class Columns {
+        private final long[] ids;
+        private final double[] lon;
+        private final double[] lat;
+        private final double[] distance;
+        private final byte[] geometry;
+        private final int[] partStart;
+        private final int[] vertexStart;
+        private final double[] vertices;
+        private final int[] propStart;
+        private final int[] propKeys;
+        private final int[] propValues;
+        private final String[] keys;
+        private final Object[] values;
+        // Douglas-Peucker tolerance up to which each vertex is kept, computed on first use
+        private volatile float[] significance;
+
+        Columns(Builder builder) {
+            int n = builder.size;
+            this.ids = Arrays.copyOf(builder.ids, n);
+            this.lon = Arrays.copyOf(builder.lon, n);
+            this.lat = Arrays.copyOf(builder.lat, n);
+            this.distance = Arrays.copyOf(builder.distance, n);
+            this.geometry = Arrays.copyOf(builder.geometry, n);
+            this.partStart = Arrays.copyOf(builder.partStart, n + 1);
+            this.vertexStart = Arrays.copyOf(builder.vertexStart, builder.partCount + 1);
+            this.vertices = Arrays.copyOf(builder.vertices, builder.vertexCount * 2);
+            this.propStart = Arrays.copyOf(builder.propStart, n + 1);
+            this.propKeys = Arrays.copyOf(builder.propKeys, builder.propCount);
+            this.propValues = Arrays.copyOf(builder.propValues, builder.propCount);
+            this.keys = builder.keys.toArray(new String[0]);
+            this.values = builder.values.toArray();
+        }
+
+        float[] significance() {
+            float[] result = significance;
+            if (result == null) {
+                result = VertexSignificance.compute(vertices, vertexStart, partStart, geometry);
+                significance = result;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Appends features one at a time. A feature is started with {@link #beginFeature(long)},
+     * described with the remaining methods and finished with {@link #endFeature()}.
+     */
+    public static final class Builder {
+        private int size;
+        private long[] ids = new long[16];
+        private double[] lon = new double[16];
+        private double[] lat = new double[16];
+        private double[] distance = new double[16];
+        private byte[] geometry = new byte[16];
+        private int[] partStart = new int[17];
+        private int partCount;
+        private int[] vertexStart = new int[17];
+        private int vertexCount;
+        private double[] vertices = new double[32];
+        private int[] propStart = new int[17];
+        private int propCount;
+        private int[] propKeys = new int[64];
+        private int[] propValues = new int[64];
+        private final List<String> keys = new ArrayList<>();
+        private final Map<String, Integer> keyIndex = new HashMap<>();
+        private final List<Object> values = new ArrayList<>();
+        private final Map<Object, Integer> valueIndex = new HashMap<>();
+        private boolean inFeature;
+
+        private Builder() {
+        }
+
+        /**
+         * Starts a feature with no location, distance, geometry or properties.
+         */
+        public Builder beginFeature(long osmId) {
+            if (inFeature) {
+                throw new IllegalStateException("Previous feature was not ended");
+            }
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                lon = Arrays.copyOf(lon, capacity);
+                lat = Arrays.copyOf(lat, capacity);
+                distance = Arrays.copyOf(distance, capacity);
+                geometry = Arrays.copyOf(geometry, capacity);
+                partStart = Arrays.copyOf(partStart, capacity + 1);
+                propStart = Arrays.copyOf(propStart, capacity + 1);
+            }
+            inFeature = true;
+            ids[size] = osmId;
+            lon[size] = Double.NaN;
+            lat[size] = Double.NaN;
+            distance[size] = Double.NaN;
+            geometry[size] = -1;
+            return this;
+        }
+
+        /**
+         * Sets the representative point reported as longitude and latitude.
+         */
+        public Builder location(double longitude, double latitude) {
+            lon[size] = longitude;
+            lat[size] = latitude;
+            return this;
+        }
+
+        public Builder distance(double value) {
+            distance[size] = value;
+            return this;
+        }
+
+        public Builder geometry(GeometryType type) {
+            geometry[size] = (byte) type.ordinal();
+            return this;
+        }
+
+        /**
+         * Starts a new vertex sequence: the line of a line string or a ring of a polygon.
+         */
+        public Builder beginPart() {
+            if (partCount + 2 > vertexStart.length) {
+                vertexStart = Arrays.copyOf(vertexStart, vertexStart.length * 2);
+            }
+            vertexStart[partCount++] = vertexCount;
+            vertexStart[partCount] = vertexCount;
+            return this;
+        }
+
+        /**
+         * Appends a vertex to the current part.
+         */
+        public Builder vertex(double longitude, double latitude) {
+            if (vertexCount * 2 + 2 > vertices.length) {
+                vertices = Arrays.copyOf(vertices, vertices.length * 2);
+            }
+            vertices[vertexCount * 2] = longitude;
+            vertices[vertexCount * 2 + 1] = latitude;
+            vertexCount++;
+            vertexStart[partCount] = vertexCount;
+            return this;
+        }
+
+        /**
+         * Adds a property. Keys that are reported from the feature columns (osmId, longitude,
+         * latitude, distance, geometry, coordinates) are ignored, and a key that is already
+         * present keeps its first value.
+         */
+        public Builder property(String key, Object value) {
+            if (isColumnKey(key) || hasProperty(key)) {
+                return this;
+            }
+            if (propCount == propKeys.length) {
+                propKeys = Arrays.copyOf(propKeys, propCount * 2);
+                propValues = Arrays.copyOf(propValues, propCount * 2);
+            }
+            propKeys[propCount] = intern(keyIndex, keys, key);
+            propValues[propCount] = intern(valueIndex, values, value);
+            propCount++;
+            return this;
+        }
+
+        /**
+         * @return true if the current feature already has a property with the given key
+         */
+        public boolean hasProperty(String key) {
+            Integer k = keyIndex.get(key);
+            if (k == null) {
+                return false;
+            }
+            for (int p = propStart[size]; p < propCount; p++) {
+                if (propKeys[p] == k) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return true if a distance was set for the current feature
+         */
+        public boolean hasDistance() {
+            return !Double.isNaN(distance[size]);
+        }
+
+        public Builder endFeature() {
+            if (!inFeature) {
+                throw new IllegalStateException("No feature was started");
+            }
+            inFeature = false;
+            size++;
+            partStart[size] = partCount;
+            propStart[size] = propCount;
+            return this;
+        }
+
+        /**
+         * Copies one row of another table, with the vertices its simplification keeps.
+         */
+        public Builder addRow(FeatureTable table, int index) {
+            beginFeature(table.getOsmId(index));
+            location(table.getLongitude(index), table.getLatitude(index));
+            distance(table.getDistance(index));
+            GeometryType type = table.getGeometryType(index);
+            if (type != null) {
+                geometry(type);
+            }
+            for (int part = 0; part < table.getPartCount(index); part++) {
+                beginPart();
+                for (int v = table.getPartStart(index, part); v < table.getPartEnd(index, part); v++) {
+                    if (table.isVertexKept(v)) {
+                        vertex(table.getVertexLon(v), table.getVertexLat(v));
+                    }
+                }
+            }
+            for (int p = 0; p < table.getPropertyCount(index); p++) {
+                property(table.getPropertyKey(index, p), table.getPropertyValue(index, p));
+            }
+            return endFeature();
+        }
+
+        public FeatureTable build() {
+            if (inFeature) {
+                throw new IllegalStateException("Last feature was not ended");
+            }
+            return new FeatureTable(new Columns(this), null, 0, size, null, 0, 0);
+        }
+
+        private static <T> int intern(Map<T, Integer> index, List<T> dictionary, T value) {
+            Integer existing = index.get(value);
+            if (existing != null) {
+                return existing;
+            }
+            dictionary.add(value);
+            index.put(value, dictionary.size() - 1);
+            return dictionary.size() - 1;
+        }
+    }
+}
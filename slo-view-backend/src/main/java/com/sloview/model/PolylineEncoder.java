@@ -0,0 +1,51 @@
+package com.sloview.model;
+
+/**
+ * Encodes vertex sequences in the Google encoded polyline format.
+ *
+ * Coordinates are rounded to a number of decimal digits and written as deltas from the
+ * previous vertex, latitude before longitude, in variable-length chunks of five bits
+ * mapped to printable ASCII characters. At the default precision of five digits a vertex
+ * typically takes four to eight characters instead of around 36 for a JSON pair.
+ */
+final class PolylineEncoder {
+
+    private final double factor;
+    private final StringBuilder out = new StringBuilder();
+    private long lastLat;
+    private long lastLon;
+
+    /**
+     * @param precision Number of decimal digits kept
+     */
+    PolylineEncoder(int precision) {
+        this.factor = Math.pow(10, precision);
+    }
+
+    /**
+     * Appends a vertex to the polyline.
+     */
+    PolylineEncoder add(double lon, double lat) {
+        long latValue = Math.round(lat * factor);
+        long lonValue = Math.round(lon * factor);
+        appendValue(latValue - lastLat);
+        appendValue(lonValue - lastLon);
+        lastLat = latValue;
+        lastLon = lonValue;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+
+    private void appendValue(long delta) {
+        long value = delta < 0 ? ~(delta << 1) : delta << 1;
+        while (value >= 0x20) {
+            out.append((char) ((0x20 | (value & 0x1f)) + 63));
+            value >>>= 5;
+        }
+        out.append((char) (value + 63));
+    }
+}
@@ -0,0 +1,115 @@
+package com.sloview.model;
+
+import java.util.Arrays;
+
+/**
+ * Precomputes Douglas-Peucker levels of detail for the packed vertices of a table.
+ *
+ * Every vertex gets the largest tolerance at which Douglas-Peucker simplification still
+ * keeps it: its distance to the simplified segment it splits, capped by the value of the
+ * vertex that split the enclosing segment. Simplifying to any tolerance then only means
+ * skipping the vertices whose value is not above it, without running the algorithm again.
+ * Part endpoints are always kept, and so are the two most significant vertices of every
+ * polygon ring, so rings never collapse below a triangle.
+ */
+final class VertexSignificance {
+
+    private static final double METERS_PER_DEGREE = 111319.49;
+
+    private VertexSignificance() {
+    }
+
+    /**
+     * @param vertices Interleaved lon/lat vertices
+     * @param vertexStart First vertex of every part, followed by the vertex count
+     * @param partStart First part of every row, followed by the part count
+     * @param geometry Geometry type ordinal of every row
+     * @return Tolerance in meters up to which each vertex is kept
+     */
+    static float[] compute(double[] vertices, int[] vertexStart, int[] partStart, byte[] geometry) {
+        float[] significance = new float[vertices.length / 2];
+        int[] stack = new int[64];
+        for (int row = 0; row + 1 < partStart.length; row++) {
+            boolean ring = geometry[row] == FeatureTable.GeometryType.POLYGON.ordinal();
+            for (int part = partStart[row]; part < partStart[row + 1]; part++) {
+                stack = computePart(vertices, vertexStart[part], vertexStart[part + 1] - 1, ring, significance, stack);
+            }
+        }
+        return significance;
+    }
+
+    private static int[] computePart(double[] vertices, int first, int last, boolean ring,
+                                     float[] significance, int[] stack) {
+        if (last < first) {
+            return stack;
+        }
+        significance[first] = Float.POSITIVE_INFINITY;
+        significance[last] = Float.POSITIVE_INFINITY;
+
+        // Project to local meters around the first vertex
+        double kx = Math.cos(Math.toRadians(vertices[first * 2 + 1])) * METERS_PER_DEGREE;
+        double ky = METERS_PER_DEGREE;
+
+        int size = 0;
+        stack[size++] = first;
+        stack[size++] = last;
+        while (size > 0) {
+            int b = stack[--size];
+            int a = stack[--size];
+            if (b - a < 2) {
+                continue;
+            }
+            float cap = Math.min(significance[a], significance[b]);
+            double ax = vertices[a * 2] * kx;
+            double ay = vertices[a * 2 + 1] * ky;
+            double bx = vertices[b * 2] * kx;
+            double by = vertices[b * 2 + 1] * ky;
+            int farthest = a + 1;
+            double max = -1;
+            for (int v = a + 1; v < b; v++) {
+                double d = segmentDistance(vertices[v * 2] * kx, vertices[v * 2 + 1] * ky, ax, ay, bx, by);
+                if (d > max) {
+                    max = d;
+                    farthest = v;
+                }
+            }
+            significance[farthest] = Math.min(cap, (float) max);
+            if (size + 4 > stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+            stack[size++] = a;
+            stack[size++] = farthest;
+            stack[size++] = farthest;
+            stack[size++] = b;
+        }
+
+        if (ring) {
+            keepMostSignificant(significance, first + 1, last);
+            keepMostSignificant(significance, first + 1, last);
+        }
+        return stack;
+    }
+
+    private static void keepMostSignificant(float[] significance, int from, int to) {
+        int best = -1;
+        for (int v = from; v < to; v++) {
+            if (significance[v] != Float.POSITIVE_INFINITY && (best < 0 || significance[v] > significance[best])) {
+                best = v;
+            }
+        }
+        if (best >= 0) {
+            significance[best] = Float.POSITIVE_INFINITY;
+        }
+    }
+
+    private static double segmentDistance(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : ((px - ax) * dx + (py - ay) * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        double ex = px - (ax + t * dx);
+        double ey = py - (ay + t * dy);
+        return Math.sqrt(ex * ex + ey * ey);
+    }
+}
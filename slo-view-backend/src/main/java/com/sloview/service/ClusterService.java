@@ -0,0 +1,100 @@
+package com.sloview.service;
+
+import com.sloview.cache.SingleFlight;
+import com.sloview.spatial.IndexedLayer;
+import com.sloview.spatial.PointClusterIndex;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Clusters the points of the indexed tables for map display.
+ *
+ * A {@link PointClusterIndex} is built from the most recently published layer of a table
+ * on the first cluster query and kept until a newer layer is published, so the clusters
+ * for every zoom level are computed once per index refresh. The index is built on the
+ * bounded elastic scheduler, and concurrent queries share one build.
+ */
+@Service
+public class ClusterService {
+
+    private final SpatialIndexService spatialIndexService;
+    private final GisMetrics metrics;
+    private final int maxZoom;
+    private final double radiusPixels;
+    private final Map<String, ClusteredLayer> clusteredLayers = new ConcurrentHashMap<>();
+    private final SingleFlight<String, ClusteredLayer> builds = new SingleFlight<>();
+
+    public ClusterService(SpatialIndexService spatialIndexService, GisMetrics metrics,
+                          @Value("${gis.clusters.max-zoom:16}") int maxZoom,
+                          @Value("${gis.clusters.radius-pixels:60}") double radiusPixels) {
+        this.spatialIndexService = spatialIndexService;
+        this.metrics = metrics;
+        this.maxZoom = maxZoom;
+        this.radiusPixels = radiusPixels;
+    }
+
+    /**
+     * Finds the point clusters of an indexed table within a map viewport.
+     *
+     * @param table Table name
+     * @param minLon Minimum longitude
+     * @param minLat Minimum latitude
+     * @param maxLon Maximum longitude
+     * @param maxLat Maximum latitude
+     * @param zoom Map zoom level
+     * @return Clusters followed by single features, or empty if the table is not indexed yet
+     */
+    public Mono<List<Map<String, Object>>> getClusters(String table, double minLon, double minLat,
+                                                       double maxLon, double maxLat, int zoom) {
+        return Mono.justOrEmpty(spatialIndexService.getLayer(table))
+                .flatMap(layer -> clusterIndex(table, layer))
+                .map(index -> index.getClusters(minLon, minLat, maxLon, maxLat, zoom));
+    }
+
+    /**
+     * @param table Table name
+     * @return Version of the clusters of a table, or empty if the table is not indexed yet
+     */
+    public Optional<String> getVersion(String table) {
+        return spatialIndexService.getLayer(table)
+                .map(layer -> layer.getContentTag() + "/" + maxZoom + "/" + radiusPixels);
+    }
+
+    private Mono<PointClusterIndex> clusterIndex(String table, IndexedLayer layer) {
+        ClusteredLayer clustered = clusteredLayers.get(table);
+        if (clustered != null && clustered.layer == layer) {
+            return Mono.just(clustered.index);
+        }
+        return builds.execute(table + "@" + layer.getContentTag(), key -> Mono.fromCallable(() -> {
+                    PointClusterIndex index = metrics.transform("clusters.build",
+                            () -> PointClusterIndex.build(layer.getFeatures(), maxZoom, radiusPixels));
+                    ClusteredLayer built = new ClusteredLayer(layer, index);
+                    // Keep it unless a newer layer was published while it was built
+                    if (spatialIndexService.getLayer(table).orElse(null) == layer) {
+                        clusteredLayers.put(table, built);
+                    }
+                    return built;
+                }).subscribeOn(Schedulers.boundedElastic()))
+                .map(built -> built.index);
+    }
+
+    /**
+     * Cluster index together with the layer it was built from.
+     */
+    private static final class ClusteredLayer {
+        private final IndexedLayer layer;
+        private final PointClusterIndex index;
+
+        ClusteredLayer(IndexedLayer layer, PointClusterIndex index) {
+            this.layer = layer;
+            this.index = index;
+        }
+    }
+}
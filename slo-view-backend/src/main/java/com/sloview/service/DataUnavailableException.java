@@ -0,0 +1,12 @@
+package com.sloview.service;
+
+/**
+ * Thrown when data cannot be fetched from the GIS API and no previously fetched data can
+ * be served in its place.
+ */
+public class DataUnavailableException extends RuntimeException {
+
+    public DataUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
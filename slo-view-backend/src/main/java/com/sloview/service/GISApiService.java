@@ -2,43 +2,164 @@ package com.sloview.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sloview.cache.DataAge;
+import com.sloview.cache.EncodedResponse;
+import com.sloview.cache.NearbyQueryKey;
+import com.sloview.cache.ResponseCaches;
+import com.sloview.cache.SingleFlight;
+import com.sloview.model.FeatureTable;
+import com.sloview.spatial.IndexedLayer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
 
 import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
 /**
  * Service for making API calls to the SLO GIS FastAPI on the VM.
  * 
  * This service handles all communication with the remote PostGIS API,
  * transforming the GeoJSON responses into the format expected by the frontend.
+ * All upstream calls are non-blocking, and pass the circuit breakers, bulkheads and
+ * adaptive timeouts of the {@link UpstreamGuard} before the {@link UpstreamRateLimiter}.
+ * The response transformations are package-private so that the JMH benchmarks in
+ * {@code slo-view-benchmarks} can measure them directly.
  */
 @Service
 public class GISApiService {
     
+    private static final Logger log = LoggerFactory.getLogger(GISApiService.class);
+    
+    // Ground size of a 256 pixel web map tile pixel at zoom 0 on the equator
+    private static final double METERS_PER_PIXEL_AT_ZOOM_0 = 156543.03392;
+    
+    private static final String SPATIAL_SUMMARY_PATH = "/api/v1/spatial/summary";
+    private static final String DATA_STATUS_PATH = "/api/v1/data/status";
+    private static final String DATA_METADATA_PATH = "/api/v1/data/metadata";
+    
+    // Status and metadata fields that identify a version of the dataset, when reported
+    private static final String[] DATASET_VERSION_FIELDS = {
+            "version", "data_version", "last_updated", "updated_at", "last_modified"
+    };
+    
     private final WebClient webClient;
     private final ObjectMapper objectMapper;
+    private final GeoJsonFeatureDecoder featureDecoder;
+    private final SpatialIndexService spatialIndexService;
+    private final UpstreamGuard upstreamGuard;
+    private final ResponseCaches responseCaches;
+    private final GisMetrics metrics;
+    private final SingleFlight<String, String> inFlightRequests = new SingleFlight<>();
     
     @Value("${gis.api.base-url:http://34.83.60.201}")
     private String gisApiBaseUrl;
     
-    // Cache for restaurant data
-    private List<Map<String, Object>> cachedRestaurants = new ArrayList<>();
-    private boolean cacheInitialized = false;
+    @Value("${gis.index.enabled:true}")
+    private boolean indexEnabled;
+    
+    @Value("${gis.index.tables:mv_restaurants,mv_road_network,planet_osm_point}")
+    private String[] indexTables;
+    
+    @Value("${gis.index.center-lon:-120.6596}")
+    private double indexCenterLon;
+    
+    @Value("${gis.index.center-lat:35.2828}")
+    private double indexCenterLat;
+    
+    @Value("${gis.index.radius:60000}")
+    private double indexRadius;
+    
+    @Value("${gis.index.max-features:100000}")
+    private int indexMaxFeatures;
+    
+    @Value("${gis.bounds.base-zoom:10}")
+    private int boundsBaseZoom;
+    
+    @Value("${gis.bounds.base-results:50}")
+    private int boundsBaseResults;
+    
+    @Value("${gis.bounds.max-results:2000}")
+    private int boundsMaxResults;
+    
+    @Value("${gis.simplify.pixel-tolerance:1.0}")
+    private double simplifyPixelTolerance;
     
-    public GISApiService() {
-        this.webClient = WebClient.builder()
-                .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(10 * 1024 * 1024)) // 10MB
-                .build();
+    @Value("${gis.cache.page-size:256}")
+    private int maxRestaurantPageSize;
+    
+    @Value("${gis.cache.min-page-size:16}")
+    private int minRestaurantPageSize;
+    
+    @Value("${gis.cache.load-concurrency:4}")
+    private int restaurantLoadConcurrency;
+    
+    @Value("${gis.cache.page-retries:2}")
+    private int restaurantPageRetries;
+    
+    @Value("${gis.cache.full-reload-ms:21600000}")
+    private long restaurantFullReloadMs;
+    
+    @Value("${gis.cache.unversioned-refresh-ms:3600000}")
+    private long restaurantUnversionedRefreshMs;
+    
+    @Value("${gis.cache.encoded-limits:100,500,1000}")
+    private Set<Integer> encodedRestaurantLimits;
+    
+    // Page size of the next restaurant load, reduced when pages had to be split
+    private volatile int restaurantPageSize;
+    
+    // Cache for restaurant data, replaced as a whole by each load
+    private final AtomicReference<RestaurantSnapshot> restaurantSnapshot =
+            new AtomicReference<>(RestaurantSnapshot.EMPTY);
+    
+    public GISApiService(SpatialIndexService spatialIndexService, UpstreamGuard upstreamGuard,
+                         ResponseCaches responseCaches, WebClient gisApiWebClient, GisMetrics metrics,
+                         MeterRegistry meterRegistry) {
+        this.spatialIndexService = spatialIndexService;
+        this.upstreamGuard = upstreamGuard;
+        this.responseCaches = responseCaches;
+        this.webClient = gisApiWebClient;
+        this.metrics = metrics;
         this.objectMapper = new ObjectMapper();
+        this.featureDecoder = new GeoJsonFeatureDecoder(objectMapper);
+        
+        Gauge.builder("gis.restaurants.cached", restaurantSnapshot, snapshot -> snapshot.get().restaurants.size())
+                .description("Restaurants in the cache snapshot")
+                .register(meterRegistry);
+        Gauge.builder("gis.restaurants.snapshot.age", restaurantSnapshot, snapshot -> snapshot.get().age())
+                .description("Seconds since the restaurant snapshot was loaded")
+                .baseUnit("seconds")
+                .register(meterRegistry);
     }
     
     /**
@@ -46,154 +167,647 @@ public class GISApiService {
      */
     @PostConstruct
     public void initializeCache() {
-        loadRestaurantsInBackground();
+        configureRestaurantPageSizes();
+        // Give the application a moment to start before the first upstream calls
+        Mono.delay(Duration.ofSeconds(2))
+                .then(loadRestaurantsInBackground())
+                .subscribe();
     }
     
     /**
-     * Load restaurants in the background to avoid blocking startup
+     * Rounds the configured page size down to a power of two. A failing page is fetched
+     * again as pages {@code 2p-1} and {@code 2p} of half the size, which only cover the same
+     * rows as page {@code p} when the size is even at every level of splitting.
      */
-    @Async
-    public CompletableFuture<Void> loadRestaurantsInBackground() {
-        try {
-            // Wait a bit before making the first request to avoid rate limiting
-            Thread.sleep(2000);
-            
-            List<Map<String, Object>> restaurants = fetchAllRestaurantsWithPagination();
-            synchronized (this) {
-                this.cachedRestaurants = restaurants;
-                this.cacheInitialized = true;
-            }
-            System.out.println("Loaded " + restaurants.size() + " restaurants into cache");
-        } catch (Exception e) {
-            System.err.println("Failed to load restaurants into cache: " + e.getMessage());
-            synchronized (this) {
-                this.cacheInitialized = true; // Mark as initialized even if failed
-            }
-        }
-        return CompletableFuture.completedFuture(null);
+    private void configureRestaurantPageSizes() {
+        maxRestaurantPageSize = Integer.highestOneBit(Math.max(1, maxRestaurantPageSize));
+        minRestaurantPageSize = Math.max(1, Math.min(minRestaurantPageSize, maxRestaurantPageSize));
+        restaurantPageSize = maxRestaurantPageSize;
     }
     
     /**
-     * Refresh cache every hour
+     * Loads or refreshes the restaurant cache in the background.
+     * 
+     * The dataset fingerprint from the data status and metadata endpoints is checked
+     * first; when it is unchanged the cache is kept without fetching any restaurant page.
+     * When it changed, every page is fetched conditionally and only the pages whose
+     * content changed are parsed again. When the endpoints report no version field the
+     * fingerprint is only the record count, which misses edits, so the pages are also
+     * fetched conditionally every {@code gis.cache.unversioned-refresh-ms}. A full reload
+     * that reuses nothing runs when the cache is empty and every {@code gis.cache.full-reload-ms}.
      */
-    @Scheduled(fixedRate = 3600000) // 1 hour in milliseconds
+    public Mono<Void> loadRestaurantsInBackground() {
+        return fetchRestaurantFingerprint()
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(fingerprint -> {
+                    RestaurantSnapshot current = restaurantSnapshot.get();
+                    long now = System.currentTimeMillis();
+                    boolean fullReload = current.restaurants.isEmpty() ||
+                            now - current.fullLoadAt >= restaurantFullReloadMs;
+                    // A count-only fingerprint misses edits, so it is only trusted for a while
+                    boolean trusted = fingerprint.isPresent() && (fingerprint.get().versioned ||
+                            now - current.loadedAt < restaurantUnversionedRefreshMs);
+                    boolean unchanged = fingerprint.isEmpty() ||
+                            (trusted && fingerprint.get().value.equals(current.fingerprint));
+                    if (!fullReload && unchanged) {
+                        // Unchanged, or the change cannot be detected until the status endpoint recovers
+                        metrics.cacheLoad("unchanged");
+                        return Mono.empty();
+                    }
+                    RestaurantLoad load = new RestaurantLoad(
+                            fullReload ? Collections.<String, CachedPage>emptyMap() : current.pages);
+                    return fetchAllRestaurantsWithPagination(load)
+                            .doOnNext(restaurants -> {
+                                RestaurantSnapshot next = new RestaurantSnapshot(current.version + 1, restaurants,
+                                        Collections.unmodifiableMap(load.pages),
+                                        fingerprint.map(known -> known.value).orElse(null),
+                                        fullReload ? System.currentTimeMillis() : current.fullLoadAt);
+                                if (!restaurantSnapshot.compareAndSet(current, next)) {
+                                    // A concurrent load published first; its snapshot is at least as new
+                                    metrics.cacheLoad("discarded");
+                                    log.info("Discarded restaurant load superseded by a concurrent load");
+                                    return;
+                                }
+                                // Serialize the full list before the first request asks for it
+                                encodeRestaurants(next, null);
+                                if (fullReload) {
+                                    metrics.cacheLoad("loaded");
+                                    log.info("Loaded {} restaurants into cache", restaurants.size());
+                                } else {
+                                    metrics.cacheLoad("refreshed");
+                                    log.info("Refreshed restaurant cache: {} of {} pages changed, {} restaurants",
+                                            load.changedPages.get(), load.pages.size(), restaurants.size());
+                                }
+                            });
+                })
+                .onErrorResume(e -> {
+                    // The previous snapshot stays in place
+                    metrics.cacheLoad("failed");
+                    log.warn("Failed to load restaurants into cache: {}", e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+    
+    /**
+     * Checks the restaurant dataset for changes
+     */
+    @Scheduled(fixedRateString = "${gis.cache.check-interval-ms:600000}", initialDelayString = "${gis.cache.check-interval-ms:600000}")
     public void refreshCache() {
-        loadRestaurantsInBackground();
+        loadRestaurantsInBackground().subscribe();
+    }
+    
+    /**
+     * Computes a fingerprint of the restaurant dataset from the record counts and any
+     * version or modification fields reported by the data status and metadata endpoints.
+     * 
+     * @return Fingerprint, or empty if the endpoints could not be read
+     */
+    private Mono<DatasetFingerprint> fetchRestaurantFingerprint() {
+        return Mono.zip(
+                        fetch(gisApiBaseUrl + DATA_STATUS_PATH, UpstreamRateLimiter.Priority.BACKGROUND),
+                        fetch(gisApiBaseUrl + DATA_METADATA_PATH, UpstreamRateLimiter.Priority.BACKGROUND))
+                .map(responses -> {
+                    try {
+                        JsonNode status = objectMapper.readTree(responses.getT1()).path("data");
+                        JsonNode metadata = objectMapper.readTree(responses.getT2()).path("data");
+                        StringBuilder fingerprint = new StringBuilder();
+                        fingerprint.append(status.path("record_counts").path("restaurants").asText());
+                        boolean versioned = false;
+                        for (String field : DATASET_VERSION_FIELDS) {
+                            String statusValue = status.path(field).asText();
+                            String metadataValue = metadata.path(field).asText();
+                            versioned |= !statusValue.isEmpty() || !metadataValue.isEmpty();
+                            fingerprint.append('|').append(statusValue).append('|').append(metadataValue);
+                        }
+                        return new DatasetFingerprint(fingerprint.toString(), versioned);
+                    } catch (Exception e) {
+                        throw new RuntimeException("Failed to read dataset fingerprint", e);
+                    }
+                })
+                .onErrorResume(e -> {
+                    log.warn("Failed to check restaurant dataset version: {}", e.getMessage());
+                    return Mono.empty();
+                });
+    }
+    
+    /**
+     * Replicates the indexed tables into memory so that nearby queries inside the
+     * replicated area are answered locally instead of by the GIS API.
+     * Each table is fetched with a single wide nearby query around the configured center.
+     */
+    @Scheduled(fixedRateString = "${gis.index.refresh-ms:3600000}", initialDelayString = "${gis.index.initial-delay-ms:10000}")
+    public void refreshSpatialIndex() {
+        if (!indexEnabled) {
+            return;
+        }
+        Flux.fromArray(indexTables)
+                .concatMap(this::loadSpatialIndexLayer)
+                .subscribe();
+    }
+    
+    /**
+     * Fetches and indexes one table. The response is decoded as it streams in; decoding and
+     * index construction run on the bounded elastic scheduler to keep them off the network
+     * event loop.
+     */
+    private Mono<IndexedLayer> loadSpatialIndexLayer(String table) {
+        String url = gisApiBaseUrl + "/api/v1/spatial/optimized/nearby" +
+                "?lon=" + indexCenterLon + "&lat=" + indexCenterLat + "&distance=" + indexRadius +
+                "&table=" + table + "&limit=" + indexMaxFeatures;
+        
+        return transformNearbyFeatures(fetchFeatures(url, UpstreamRateLimiter.Priority.BACKGROUND, true))
+                .map(features -> metrics.transform("index.build", () -> IndexedLayer.build(table, features,
+                        indexCenterLon, indexCenterLat, indexRadius, features.size() >= indexMaxFeatures)))
+                .doOnNext(layer -> {
+                    spatialIndexService.publish(layer);
+                    metrics.indexLoad(table, "loaded");
+                    log.info("Indexed {} features from {}", layer.size(), table);
+                })
+                .onErrorResume(e -> {
+                    metrics.indexLoad(table, "failed");
+                    log.warn("Failed to index {}: {}", table, e.getMessage());
+                    return Mono.empty();
+                });
+    }
+    
+    /**
+     * Performs an interactive GET request against the GIS API once the rate limiter allows it.
+     * 
+     * @param url Full request URL
+     * @return Raw response body
+     */
+    private Mono<String> fetch(String url) {
+        return fetch(url, UpstreamRateLimiter.Priority.INTERACTIVE);
+    }
+    
+    /**
+     * Performs a guarded GET request against the GIS API once the rate limiter allows it.
+     * Concurrent requests for the same URL and priority share one upstream call; an
+     * interactive request never waits on a queued background request.
+     * 
+     * @param url Full request URL
+     * @param priority Budget priority of the request
+     * @return Raw response body
+     */
+    private Mono<String> fetch(String url, UpstreamRateLimiter.Priority priority) {
+        return inFlightRequests.execute(priority + " " + url, key -> upstreamGuard.call(url, priority,
+                timeout -> metrics.upstream(url, webClient.get()
+                        .uri(url)
+                        .retrieve()
+                        .bodyToMono(String.class)
+                        .timeout(timeout), GisMetrics::utf8Length)));
+    }
+    
+    /**
+     * Performs a guarded GET request against the GIS API once the rate limiter allows it,
+     * and decodes the GeoJSON features of the response as they arrive instead of buffering
+     * the whole body. The timeout applies to the first part of the body.
+     * 
+     * @param url Full request URL
+     * @param priority Budget priority of the request
+     * @param offEventLoop Whether to decode on the bounded elastic scheduler, for large responses
+     * @return Decoded features in response order
+     */
+    private Flux<JsonNode> fetchFeatures(String url, UpstreamRateLimiter.Priority priority, boolean offEventLoop) {
+        Flux<DataBuffer> body = upstreamGuard.stream(url, priority, timeout -> metrics.upstreamStream(url, webClient.get()
+                .uri(url)
+                .retrieve()
+                .bodyToFlux(DataBuffer.class)
+                .timeout(Mono.delay(timeout), buffer -> Mono.never())));
+        return featureDecoder.decode(offEventLoop ? body.publishOn(Schedulers.boundedElastic()) : body);
     }
     
     /**
      * Fetches restaurants from cache or API.
+     * The last loaded snapshot is served even while reloads fail; only before the first
+     * load does a failing GIS API fail the request.
      * 
      * @param limit Maximum number of restaurants to return (null for all)
-     * @return List of restaurant data in frontend-compatible format
-     */
-    public List<Map<String, Object>> getRestaurants(Integer limit) {
-        synchronized (this) {
-            if (cacheInitialized && !cachedRestaurants.isEmpty()) {
-                // Return cached data
-                if (limit != null && limit < cachedRestaurants.size()) {
-                    return new ArrayList<>(cachedRestaurants.subList(0, limit));
-                }
-                return new ArrayList<>(cachedRestaurants);
+     * @return List of restaurant data in frontend-compatible format; fails with a
+     *         {@link DataUnavailableException} if there is none
+     */
+    public Mono<List<Map<String, Object>>> getRestaurants(Integer limit) {
+        // Return cached data; snapshots are immutable, so they are served without locking or copying
+        FeatureTable cachedRestaurants = restaurantSnapshot.get().restaurants;
+        if (!cachedRestaurants.isEmpty()) {
+            metrics.source("restaurants", "snapshot");
+            if (limit != null && limit < cachedRestaurants.size()) {
+                return Mono.just(cachedRestaurants.slice(0, limit));
             }
+            return Mono.just(cachedRestaurants);
         }
         
         // If cache is not ready, try to fetch a small amount directly
         // Use a very conservative approach to avoid rate limiting
+        int pageSize = limit != null ? Math.min(limit, 10) : 10; // Very small page size
+        String url = gisApiBaseUrl + "/api/v1/restaurants?page=1&limit=" + pageSize;
+        
+        return fetch(url)
+                .<List<Map<String, Object>>>map(this::transformRestaurantsResponse)
+                .doOnNext(restaurants -> metrics.source("restaurants", "upstream"))
+                .onErrorMap(e -> {
+                    log.warn("Failed to fetch restaurants from GIS API: {}", e.getMessage());
+                    metrics.source("restaurants", "unavailable");
+                    return new DataUnavailableException("Restaurants are not loaded yet and the GIS API is unavailable", e);
+                });
+    }
+    
+    /**
+     * Returns the version of the restaurants served by {@link #getRestaurants(Integer)}, which
+     * only changes when the cache loads different data.
+     * 
+     * @return Content version, or empty while the cache is not loaded
+     */
+    public Optional<String> getRestaurantsVersion() {
+        RestaurantSnapshot snapshot = restaurantSnapshot.get();
+        return snapshot.restaurants.isEmpty() ? Optional.empty() : Optional.of(snapshot.contentTag);
+    }
+    
+    /**
+     * Returns how long ago the restaurants served by {@link #getRestaurants(Integer)} were
+     * loaded from the GIS API.
+     * 
+     * @return Age of the restaurant cache, or empty while it is not loaded
+     */
+    public Optional<DataAge> getRestaurantsAge() {
+        RestaurantSnapshot snapshot = restaurantSnapshot.get();
+        return snapshot.restaurants.isEmpty() ? Optional.empty()
+                : Optional.of(DataAge.of(Duration.ofMillis(System.currentTimeMillis() - snapshot.loadedAt)));
+    }
+    
+    /**
+     * Returns the cached restaurants as they are serialized by {@link #getRestaurants(Integer)},
+     * so hot requests can be answered without serializing them again. Each snapshot encodes
+     * the full list and the configured limits once, on first use.
+     * 
+     * @param limit Maximum number of restaurants to return (null for all)
+     * @return Serialized restaurants, or empty while the cache is not loaded or for limits
+     *         that are not pre-encoded
+     */
+    public Optional<EncodedResponse> getEncodedRestaurants(Integer limit) {
+        Optional<EncodedResponse> encoded = encodeRestaurants(restaurantSnapshot.get(), limit);
+        if (encoded.isPresent()) {
+            metrics.source("restaurants", "snapshot");
+        }
+        return encoded;
+    }
+    
+    private Optional<EncodedResponse> encodeRestaurants(RestaurantSnapshot snapshot, Integer limit) {
+        int size = snapshot.restaurants.size();
+        if (size == 0 || (limit != null && limit < size && (limit < 0 || !encodedRestaurantLimits.contains(limit)))) {
+            return Optional.empty();
+        }
+        int count = limit != null ? Math.min(limit, size) : size;
+        return Optional.of(snapshot.encoded.computeIfAbsent(count, key -> metrics.transform("restaurants.encode", () -> {
+            try {
+                return EncodedResponse.of(objectMapper.writeValueAsBytes(snapshot.restaurants.slice(0, key)));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to encode restaurants", e);
+            }
+        })));
+    }
+    
+    /**
+     * Fetches all restaurants with pagination (used for cache loading).
+     * 
+     * The first page reports the total number of restaurants (falling back to the spatial
+     * summary when it does not), after which the remaining pages are fetched concurrently
+     * under the background request budget. Failed pages are retried, and a page that keeps
+     * failing is split into two pages of half the size. The result is only emitted once
+     * every page has been fetched, so a failed load never replaces a complete cache.
+     */
+    private Mono<FeatureTable> fetchAllRestaurantsWithPagination(RestaurantLoad load) {
+        return fetchAllRestaurants(restaurantPageSize, load);
+    }
+    
+    /**
+     * Loads all restaurants at the given page size, starting over at half the size if the
+     * first page keeps failing.
+     */
+    private Mono<FeatureTable> fetchAllRestaurants(int pageSize, RestaurantLoad load) {
+        return fetchRestaurantPage(1, pageSize, load)
+                .onErrorResume(e -> {
+                    int halfSize = pageSize / 2;
+                    if (e instanceof UpstreamRejectedException || halfSize < minRestaurantPageSize) {
+                        return Mono.error(e);
+                    }
+                    metrics.pageSplit();
+                    log.warn("Retrying first restaurant page with size {} after error: {}", halfSize, e.getMessage());
+                    load.recordSplit(halfSize);
+                    return Mono.empty();
+                })
+                .flatMap(first -> {
+                    Mono<Integer> total = first.total != null
+                            ? Mono.just(first.total)
+                            : fetchRestaurantCount();
+                    return total
+                            .flatMap(count -> fetchRemainingRestaurantPages(first, count, pageSize, load))
+                            .switchIfEmpty(Mono.defer(() -> fetchRestaurantWaves(first, 2, pageSize, load)));
+                })
+                .switchIfEmpty(Mono.defer(() -> fetchAllRestaurants(pageSize / 2, load)))
+                .doOnNext(restaurants -> {
+                    // Grow back towards the configured page size once loads succeed without splitting
+                    restaurantPageSize = load.splitPageSize > 0
+                            ? load.splitPageSize
+                            : Math.min(maxRestaurantPageSize, pageSize * 2);
+                });
+    }
+    
+    /**
+     * Fetches pages 2..n concurrently once the total number of restaurants is known.
+     */
+    private Mono<FeatureTable> fetchRemainingRestaurantPages(RestaurantPage first, int total,
+                                                             int pageSize, RestaurantLoad load) {
+        int pageCount = (total + pageSize - 1) / pageSize;
+        return Flux.range(2, Math.max(0, pageCount - 1))
+                .flatMapSequential(page -> fetchRestaurantRange(page, pageSize, load), restaurantLoadConcurrency)
+                .startWith(first.features)
+                .collectList()
+                .map(pages -> {
+                    FeatureTable restaurants = FeatureTable.concat(pages);
+                    if (restaurants.size() < total) {
+                        throw new IllegalStateException("Incomplete restaurant load: got " + restaurants.size() +
+                                " of " + total + " restaurants");
+                    }
+                    return restaurants;
+                });
+    }
+    
+    /**
+     * Fetches pages in concurrent waves when the total is unknown, stopping at the first
+     * page that is not full. Pages after that one must be empty; otherwise the dataset
+     * changed during the load and the load fails rather than missing rows.
+     */
+    private Mono<FeatureTable> fetchRestaurantWaves(RestaurantPage first, int startPage,
+                                                    int pageSize, RestaurantLoad load) {
+        List<FeatureTable> pages = new ArrayList<>();
+        pages.add(first.features);
+        if (first.features.size() < pageSize) {
+            return Mono.just(FeatureTable.concat(pages));
+        }
+        return fetchRestaurantWave(startPage, pageSize, load, pages);
+    }
+    
+    private Mono<FeatureTable> fetchRestaurantWave(int startPage, int pageSize, RestaurantLoad load,
+                                                   List<FeatureTable> pages) {
+        return Flux.range(startPage, restaurantLoadConcurrency)
+                .flatMapSequential(page -> fetchRestaurantRange(page, pageSize, load), restaurantLoadConcurrency)
+                .collectList()
+                .flatMap(wave -> {
+                    for (int i = 0; i < wave.size(); i++) {
+                        FeatureTable page = wave.get(i);
+                        pages.add(page);
+                        if (page.size() < pageSize) {
+                            for (int j = i + 1; j < wave.size(); j++) {
+                                if (!wave.get(j).isEmpty()) {
+                                    return Mono.error(new IllegalStateException("Incomplete restaurant load: page " +
+                                            (startPage + i) + " returned " + page.size() + " of " + pageSize +
+                                            " restaurants but page " + (startPage + j) + " is not empty"));
+                                }
+                            }
+                            return Mono.just(FeatureTable.concat(pages));
+                        }
+                    }
+                    return fetchRestaurantWave(startPage + restaurantLoadConcurrency, pageSize, load, pages);
+                });
+    }
+    
+    /**
+     * Fetches the restaurants of one page. If the page keeps failing, the same range is
+     * fetched as two pages of half the size, down to the minimum page size. Page sizes are
+     * powers of two, so the halves cover exactly the rows of the original page.
+     */
+    private Mono<FeatureTable> fetchRestaurantRange(int page, int pageSize, RestaurantLoad load) {
+        return fetchRestaurantPage(page, pageSize, load)
+                .map(result -> result.features)
+                .onErrorResume(e -> {
+                    int halfSize = pageSize / 2;
+                    if (e instanceof UpstreamRejectedException || halfSize < minRestaurantPageSize) {
+                        return Mono.error(e);
+                    }
+                    metrics.pageSplit();
+                    log.warn("Splitting restaurant page {} of size {} after error: {}", page, pageSize, e.getMessage());
+                    load.recordSplit(halfSize);
+                    return Flux.concat(
+                                    fetchRestaurantRange(page * 2 - 1, halfSize, load),
+                                    fetchRestaurantRange(page * 2, halfSize, load))
+                            .collectList()
+                            .map(FeatureTable::concat);
+                });
+    }
+    
+    /**
+     * Fetches and parses one restaurant page, retrying transient failures.
+     * 
+     * A page that was cached by the previous load is requested with its ETag, and is
+     * only parsed again if the GIS API returns new content.
+     */
+    private Mono<RestaurantPage> fetchRestaurantPage(int page, int pageSize, RestaurantLoad load) {
+        String url = gisApiBaseUrl + "/api/v1/restaurants?page=" + page + "&limit=" + pageSize;
+        CachedPage previous = load.previousPages.get(url);
+        
+        return upstreamGuard.call(url, UpstreamRateLimiter.Priority.BACKGROUND, timeout -> metrics.upstream(url,
+                        webClient.get()
+                                .uri(url)
+                                .headers(headers -> {
+                                    if (previous != null && previous.etag != null) {
+                                        headers.setIfNoneMatch(previous.etag);
+                                    }
+                                })
+                                .retrieve()
+                                .toEntity(String.class)
+                                .timeout(timeout),
+                        response -> response.getBody() != null ? GisMetrics.utf8Length(response.getBody()) : 0))
+                .map(response -> {
+                    CachedPage cached = toCachedPage(response, previous);
+                    load.pages.put(url, cached);
+                    if (cached != previous) {
+                        load.changedPages.incrementAndGet();
+                    }
+                    return cached.page;
+                })
+                .retryWhen(Retry.backoff(restaurantPageRetries, Duration.ofMillis(500))
+                        .filter(e -> !(e instanceof UpstreamRejectedException)));
+    }
+    
+    /**
+     * Returns the previously cached page if the response is a 304 or has the same content,
+     * and a newly parsed page otherwise.
+     */
+    private CachedPage toCachedPage(ResponseEntity<String> response, CachedPage previous) {
+        if (response.getStatusCode() == HttpStatus.NOT_MODIFIED) {
+            if (previous == null) {
+                throw new IllegalStateException("Unexpected 304 response for an uncached restaurant page");
+            }
+            return previous;
+        }
+        String body = response.getBody() != null ? response.getBody() : "";
+        byte[] digest = sha256(body);
+        if (previous != null && Arrays.equals(previous.digest, digest)) {
+            return previous;
+        }
+        return new CachedPage(response.getHeaders().getETag(), digest,
+                metrics.transform("restaurants.page", () -> parseRestaurantPage(body)));
+    }
+    
+    private static byte[] sha256(String body) {
         try {
-            // Wait a bit to avoid rate limiting
-            Thread.sleep(1000);
-            
-            int pageSize = limit != null ? Math.min(limit, 10) : 10; // Very small page size
-            String url = gisApiBaseUrl + "/api/v1/restaurants?page=1&limit=" + pageSize;
-            
-            String response = webClient.get()
-                    .uri(url)
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .block();
-            
-            return transformRestaurantsResponse(response);
+            return MessageDigest.getInstance("SHA-256").digest(body.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * Reads the number of restaurants from the spatial summary.
+     * 
+     * @return Restaurant count, or empty if the summary does not report it
+     */
+    private Mono<Integer> fetchRestaurantCount() {
+        return fetch(gisApiBaseUrl + SPATIAL_SUMMARY_PATH, UpstreamRateLimiter.Priority.BACKGROUND)
+                .map(this::transformSpatialSummaryResponse)
+                .flatMap(summary -> {
+                    Object count = summary.get("restaurants");
+                    return count instanceof Number ? Mono.just(((Number) count).intValue()) : Mono.<Integer>empty();
+                })
+                .onErrorResume(e -> Mono.empty());
+    }
+    
+    /**
+     * Parses a restaurants response, keeping the pagination total when present.
+     */
+    private RestaurantPage parseRestaurantPage(String jsonResponse) {
+        JsonNode root;
+        try {
+            root = objectMapper.readTree(jsonResponse);
         } catch (Exception e) {
-            System.err.println("Warning: Failed to fetch restaurants from GIS API: " + e.getMessage());
-            // Return some sample data if API fails
-            return getSampleRestaurants(limit);
+            throw new RuntimeException("Failed to transform restaurants response", e);
         }
+        JsonNode total = root.path("data").path("pagination").path("total");
+        return new RestaurantPage(transformRestaurants(root), total.isNumber() ? total.asInt() : null);
     }
     
     /**
-     * Returns sample restaurant data when API is unavailable
+     * Fingerprint of the restaurant dataset, and whether it includes a version field or
+     * is only the record count.
      */
-    private List<Map<String, Object>> getSampleRestaurants(Integer limit) {
-        List<Map<String, Object>> sampleRestaurants = new ArrayList<>();
+    private static final class DatasetFingerprint {
+        private final String value;
+        private final boolean versioned;
         
-        // Sample restaurants in San Luis Obispo area
-        sampleRestaurants.add(createSampleRestaurant(1L, "Sample Restaurant 1", "restaurant", 35.2828, -120.6596));
-        sampleRestaurants.add(createSampleRestaurant(2L, "Sample Restaurant 2", "fast_food", 35.2900, -120.6500));
-        sampleRestaurants.add(createSampleRestaurant(3L, "Sample Restaurant 3", "bar", 35.2700, -120.6700));
-        sampleRestaurants.add(createSampleRestaurant(4L, "Sample Restaurant 4", "restaurant", 35.3000, -120.6400));
-        sampleRestaurants.add(createSampleRestaurant(5L, "Sample Restaurant 5", "fast_food", 35.2600, -120.6800));
-        
-        if (limit != null && limit < sampleRestaurants.size()) {
-            return sampleRestaurants.subList(0, limit);
+        DatasetFingerprint(String value, boolean versioned) {
+            this.value = value;
+            this.versioned = versioned;
         }
-        return sampleRestaurants;
     }
     
-    private Map<String, Object> createSampleRestaurant(Long id, String name, String amenity, double lat, double lon) {
-        Map<String, Object> restaurant = new HashMap<>();
-        restaurant.put("osmId", id);
-        restaurant.put("name", name);
-        restaurant.put("amenity", amenity);
-        restaurant.put("latitude", lat);
-        restaurant.put("longitude", lon);
-        restaurant.put("tourism", null);
-        restaurant.put("shop", null);
-        restaurant.put("highway", null);
-        restaurant.put("natural", null);
-        restaurant.put("leisure", null);
-        return restaurant;
+    /**
+     * One page of transformed restaurants and the total reported by the GIS API.
+     */
+    private static final class RestaurantPage {
+        private final FeatureTable features;
+        private final Integer total;
+        
+        RestaurantPage(FeatureTable features, Integer total) {
+            this.features = features;
+            this.total = total;
+        }
     }
     
     /**
-     * Fetches all restaurants with pagination (used for cache loading)
+     * Immutable state of the restaurant cache: the restaurants, the pages they were loaded
+     * from, the dataset fingerprint they were loaded under and the time of the last load
+     * that did not reuse any page.
      */
-    private List<Map<String, Object>> fetchAllRestaurantsWithPagination() {
-        List<Map<String, Object>> allRestaurants = new ArrayList<>();
-        int page = 1;
-        int pageSize = 10; // Very small page size to respect rate limits
-        boolean hasMoreData = true;
+    private static final class RestaurantSnapshot {
+        private static final RestaurantSnapshot EMPTY =
+                new RestaurantSnapshot(0, FeatureTable.empty(), Collections.emptyMap(), null, 0);
+        
+        private final long version;
+        private final FeatureTable restaurants;
+        private final Map<String, CachedPage> pages;
+        private final String fingerprint;
+        private final long fullLoadAt;
+        private final long loadedAt = System.currentTimeMillis();
+        // Digest of the page contents, the same on every instance that loaded the same data
+        private final String contentTag;
+        // Serialized restaurant lists by limit, encoded on first use
+        private final Map<Integer, EncodedResponse> encoded = new ConcurrentHashMap<>();
         
-        while (hasMoreData) {
+        RestaurantSnapshot(long version, FeatureTable restaurants, Map<String, CachedPage> pages,
+                           String fingerprint, long fullLoadAt) {
+            this.version = version;
+            this.restaurants = restaurants;
+            this.pages = pages;
+            this.fingerprint = fingerprint;
+            this.fullLoadAt = fullLoadAt;
+            this.contentTag = contentTag(pages);
+        }
+        
+        /**
+         * @return Seconds since this snapshot was loaded, NaN before the first load
+         */
+        double age() {
+            return restaurants.isEmpty() ? Double.NaN : (System.currentTimeMillis() - loadedAt) / 1000.0;
+        }
+        
+        private static String contentTag(Map<String, CachedPage> pages) {
             try {
-                String url = gisApiBaseUrl + "/api/v1/restaurants?page=" + page + "&limit=" + pageSize;
-                
-                String response = webClient.get()
-                        .uri(url)
-                        .retrieve()
-                        .bodyToMono(String.class)
-                        .block();
-                
-                List<Map<String, Object>> pageRestaurants = transformRestaurantsResponse(response);
-                
-                if (pageRestaurants.isEmpty()) {
-                    hasMoreData = false;
-                } else {
-                    allRestaurants.addAll(pageRestaurants);
-                    page++;
-                    
-                    // Add delay between requests to respect rate limits
-                    Thread.sleep(500); // 500ms delay between requests
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                List<String> urls = new ArrayList<>(pages.keySet());
+                Collections.sort(urls);
+                for (String url : urls) {
+                    digest.update(url.getBytes(StandardCharsets.UTF_8));
+                    digest.update(pages.get(url).digest);
+                }
+                StringBuilder tag = new StringBuilder();
+                for (byte b : digest.digest()) {
+                    tag.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
                 }
-            } catch (Exception e) {
-                System.err.println("Error fetching page " + page + ": " + e.getMessage());
-                hasMoreData = false;
+                return tag.toString();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
             }
         }
+    }
+    
+    /**
+     * Restaurant page as cached between loads, identified by its ETag and content digest.
+     */
+    private static final class CachedPage {
+        private final String etag;
+        private final byte[] digest;
+        private final RestaurantPage page;
         
-        return allRestaurants;
+        CachedPage(String etag, byte[] digest, RestaurantPage page) {
+            this.etag = etag;
+            this.digest = digest;
+            this.page = page;
+        }
     }
     
+    /**
+     * State of one restaurant load: the pages of the previous load that may be reused,
+     * the pages fetched so far and the smallest page size the load had to fall back to.
+     */
+    private static final class RestaurantLoad {
+        private final Map<String, CachedPage> previousPages;
+        private final Map<String, CachedPage> pages = new ConcurrentHashMap<>();
+        private final AtomicInteger changedPages = new AtomicInteger();
+        private volatile int splitPageSize;
+        
+        RestaurantLoad(Map<String, CachedPage> previousPages) {
+            this.previousPages = previousPages;
+        }
+        
+        synchronized void recordSplit(int pageSize) {
+            if (splitPageSize == 0 || pageSize < splitPageSize) {
+                splitPageSize = pageSize;
+            }
+        }
+    }
     
     /**
      * Transforms the GeoJSON response from the GIS API into the format expected by the frontend.
@@ -201,23 +815,34 @@ public class GISApiService {
      * @param jsonResponse Raw JSON response from the GIS API
      * @return Transformed list of restaurant data
      */
-    private List<Map<String, Object>> transformRestaurantsResponse(String jsonResponse) {
+    FeatureTable transformRestaurantsResponse(String jsonResponse) {
+        try {
+            return transformRestaurants(objectMapper.readTree(jsonResponse));
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to transform restaurants response", e);
+        }
+    }
+    
+    /**
+     * Transforms the features of a parsed restaurants response.
+     * 
+     * @param root Parsed JSON response from the GIS API
+     * @return Transformed list of restaurant data
+     */
+    private FeatureTable transformRestaurants(JsonNode root) {
         try {
-            JsonNode root = objectMapper.readTree(jsonResponse);
             JsonNode features = root.path("data").path("features");
             
-            List<Map<String, Object>> restaurants = new ArrayList<>();
+            FeatureTable.Builder restaurants = FeatureTable.builder();
             
             for (JsonNode feature : features) {
-                Map<String, Object> restaurant = new HashMap<>();
-                
                 // Extract ID
-                restaurant.put("osmId", Long.parseLong(feature.path("id").asText()));
+                restaurants.beginFeature(Long.parseLong(feature.path("id").asText()));
                 
                 // Extract properties
                 JsonNode properties = feature.path("properties");
-                restaurant.put("name", properties.path("name").asText());
-                restaurant.put("amenity", properties.path("type").asText());
+                restaurants.property("name", properties.path("name").asText());
+                restaurants.property("amenity", properties.path("type").asText());
                 
                 // Extract coordinates and transform from 3857 to 4326
                 JsonNode geometry = feature.path("geometry");
@@ -228,21 +853,20 @@ public class GISApiService {
                     
                     // Transform from Web Mercator (3857) to WGS84 (4326)
                     double[] wgs84 = transformToWGS84(x, y);
-                    restaurant.put("longitude", wgs84[0]);
-                    restaurant.put("latitude", wgs84[1]);
+                    restaurants.location(wgs84[0], wgs84[1]);
                 }
                 
                 // Set other fields to null for compatibility
-                restaurant.put("tourism", null);
-                restaurant.put("shop", null);
-                restaurant.put("highway", null);
-                restaurant.put("natural", null);
-                restaurant.put("leisure", null);
+                restaurants.property("tourism", null);
+                restaurants.property("shop", null);
+                restaurants.property("highway", null);
+                restaurants.property("natural", null);
+                restaurants.property("leisure", null);
                 
-                restaurants.add(restaurant);
+                restaurants.endFeature();
             }
             
-            return restaurants;
+            return restaurants.build();
         } catch (Exception e) {
             throw new RuntimeException("Failed to transform restaurants response", e);
         }
@@ -254,28 +878,20 @@ public class GISApiService {
      * 
      * @return Spatial summary data
      */
-    public Map<String, Object> getSpatialSummary() {
-        try {
-            // Wait a bit to avoid rate limiting
-            Thread.sleep(1000);
-            
-            String url = gisApiBaseUrl + "/api/v1/spatial/summary";
-            
-            String response = webClient.get()
-                    .uri(url)
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .block();
-            
-            return transformSpatialSummaryResponse(response);
-        } catch (Exception e) {
-            System.err.println("Warning: Failed to fetch spatial summary from GIS API: " + e.getMessage());
-            return getSampleSpatialSummary();
-        }
+    public Mono<Map<String, Object>> getSpatialSummary() {
+        return fetchDocument(SPATIAL_SUMMARY_PATH, this::transformSpatialSummaryResponse, "spatial summary");
+    }
+    
+    /**
+     * @return Age of the spatial summary served by {@link #getSpatialSummary()}, if it is cached
+     */
+    public Optional<DataAge> getSpatialSummaryAge() {
+        return responseCaches.documents().getAge(SPATIAL_SUMMARY_PATH);
     }
     
     /**
      * Finds nearby features using the optimized spatial search.
+     * Queries inside the replicated area of an indexed table are answered from memory.
      * 
      * @param lon Longitude
      * @param lat Latitude
@@ -284,143 +900,339 @@ public class GISApiService {
      * @param limit Maximum number of results
      * @return List of nearby features
      */
-    public List<Map<String, Object>> findNearbyFeatures(double lon, double lat, double distance, String table, Integer limit) {
-        try {
-            // Wait a bit to avoid rate limiting
-            Thread.sleep(1000);
-            
-            // Use a reasonable default limit if none specified
-            int effectiveLimit = limit != null ? limit : 1000;
-            String url = gisApiBaseUrl + "/api/v1/spatial/optimized/nearby" +
-                    "?lon=" + lon + "&lat=" + lat + "&distance=" + distance + 
-                    "&table=" + table + "&limit=" + effectiveLimit;
-            
-            String response = webClient.get()
-                    .uri(url)
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .block();
-            
-            
-            return transformNearbyFeaturesResponse(response);
-        } catch (Exception e) {
-            System.err.println("Warning: Failed to fetch nearby features from GIS API: " + e.getMessage());
-            return getSampleNearbyFeatures(limit);
+    public Mono<List<Map<String, Object>>> findNearbyFeatures(double lon, double lat, double distance, String table, Integer limit) {
+        return findNearbyFeatures(lon, lat, distance, table, limit, null, null);
+    }
+    
+    /**
+     * Finds nearby features using the optimized spatial search, with line strings and
+     * polygons simplified for display at a map zoom level.
+     * Queries inside the replicated area of an indexed table are answered from memory, and
+     * if the GIS API fails the last cached result of the query is served.
+     * 
+     * @param lon Longitude
+     * @param lat Latitude
+     * @param distance Search distance in meters
+     * @param table Table to search (default: mv_restaurants)
+     * @param limit Maximum number of results
+     * @param zoom Map zoom level the geometry is simplified for (null for full detail)
+     * @param tolerance Simplification tolerance in meters, overriding the zoom level
+     * @return List of nearby features; fails with a {@link DataUnavailableException} if they
+     *         cannot be fetched and are not cached
+     */
+    public Mono<List<Map<String, Object>>> findNearbyFeatures(double lon, double lat, double distance, String table,
+                                                              Integer limit, Integer zoom, Double tolerance) {
+        // Use a reasonable default limit if none specified
+        int effectiveLimit = limit != null ? limit : 1000;
+        double simplification = simplificationTolerance(lat, zoom, tolerance);
+        
+        // Answer from the in-memory index when the query lies inside the replicated area
+        Optional<List<Map<String, Object>>> local = spatialIndexService.findNearby(table, lon, lat, distance, effectiveLimit);
+        if (local.isPresent()) {
+            metrics.source("nearby", "index");
+            return Mono.just(simplify(local.get(), simplification));
         }
+        
+        NearbyQueryKey key = responseCaches.nearbyKey(table, lon, lat, distance, effectiveLimit);
+        AtomicBoolean loaded = new AtomicBoolean();
+        return responseCaches.nearby().get(key, k -> {
+                    loaded.set(true);
+                    return fetchNearbyFeatures(k);
+                })
+                .doOnNext(features -> metrics.source("nearby", loaded.get() ? "upstream" : "cache"))
+                .onErrorResume(e -> {
+                    log.warn("Failed to fetch nearby features from GIS API: {}", e.getMessage());
+                    return lastKnownGood("nearby", responseCaches.nearby().getLastKnownGood(key), e);
+                })
+                .map(features -> simplify(features, simplification));
     }
     
     /**
-     * Fetches data status from the GIS API.
+     * Returns how long ago the data a nearby query is answered from was fetched from the
+     * GIS API, if it is answered from the nearby cache.
      * 
-     * @return Data status information
+     * @param table Table to search
+     * @param lon Longitude
+     * @param lat Latitude
+     * @param distance Search distance in meters
+     * @param limit Maximum number of results
+     * @return Age of the cached result, or empty if the query is answered from the index or not cached
      */
-    public Map<String, Object> getDataStatus() {
-        try {
-            // Wait a bit to avoid rate limiting
-            Thread.sleep(1000);
-            
-            String url = gisApiBaseUrl + "/api/v1/data/status";
-            
-            String response = webClient.get()
-                    .uri(url)
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .block();
-            
-            return transformDataStatusResponse(response);
-        } catch (Exception e) {
-            System.err.println("Warning: Failed to fetch data status from GIS API: " + e.getMessage());
-            return getSampleDataStatus();
+    public Optional<DataAge> getNearbyAge(String table, double lon, double lat, double distance, Integer limit) {
+        if (getNearbyVersion(table, lon, lat, distance).isPresent()) {
+            return Optional.empty();
         }
+        int effectiveLimit = limit != null ? limit : 1000;
+        return responseCaches.nearby().getAge(responseCaches.nearbyKey(table, lon, lat, distance, effectiveLimit));
     }
     
     /**
-     * Fetches data metadata from the GIS API.
+     * Serves the last known good data of a query whose upstream call failed.
      * 
-     * @return Data metadata information
+     * @param query Query name for the source metric
+     * @param lastKnownGood Last data fetched for the query, if still cached
+     * @param error Upstream failure
+     * @return The last known good data; fails with a {@link DataUnavailableException} if there is none
      */
-    public Map<String, Object> getDataMetadata() {
-        try {
-            // Wait a bit to avoid rate limiting
-            Thread.sleep(1000);
-            
-            String url = gisApiBaseUrl + "/api/v1/data/metadata";
-            
-            String response = webClient.get()
-                    .uri(url)
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .block();
-            
-            return transformDataMetadataResponse(response);
-        } catch (Exception e) {
-            System.err.println("Warning: Failed to fetch data metadata from GIS API: " + e.getMessage());
-            return getSampleDataMetadata();
+    private <T> Mono<T> lastKnownGood(String query, Optional<T> lastKnownGood, Throwable error) {
+        metrics.source(query, lastKnownGood.isPresent() ? "stale" : "unavailable");
+        return lastKnownGood.map(Mono::just)
+                .orElseGet(() -> Mono.error(new DataUnavailableException(
+                        "No " + query + " data is cached and the GIS API is unavailable", error)));
+    }
+    
+    /**
+     * Converts the requested level of detail into a simplification tolerance: an explicit
+     * tolerance wins, otherwise the ground size of the configured number of pixels at the
+     * zoom level and latitude is used.
+     * 
+     * @return Tolerance in meters, 0 for full detail
+     */
+    private double simplificationTolerance(double lat, Integer zoom, Double tolerance) {
+        if (tolerance != null) {
+            return Math.max(0, tolerance);
+        }
+        if (zoom == null) {
+            return 0;
         }
+        double metersPerPixel = METERS_PER_PIXEL_AT_ZOOM_0 * Math.cos(Math.toRadians(lat))
+                / Math.pow(2, Math.max(0, Math.min(30, zoom)));
+        return simplifyPixelTolerance * metersPerPixel;
     }
     
     /**
-     * Returns sample spatial summary data when API is unavailable
+     * Simplifies the geometry of transformed features; the levels of detail are computed
+     * once per cached table and shared by every request.
      */
-    private Map<String, Object> getSampleSpatialSummary() {
-        Map<String, Object> summary = new HashMap<>();
-        summary.put("restaurants", 710);
-        summary.put("roads", 54534);
-        summary.put("pois", 3629);
-        return summary;
+    private List<Map<String, Object>> simplify(List<Map<String, Object>> features, double tolerance) {
+        if (tolerance > 0 && features instanceof FeatureTable) {
+            return metrics.transform("simplify", () -> ((FeatureTable) features).simplify(tolerance));
+        }
+        return features;
     }
     
     /**
-     * Returns sample nearby features data when API is unavailable
+     * Finds nearby features as a stream, for clients that render results as they arrive.
+     * Index and cache hits are streamed from memory. Otherwise each upstream feature is
+     * transformed and emitted as soon as it is decoded, so the response never holds the
+     * whole result; such streamed results are not added to the nearby cache. If the GIS API
+     * fails before the first feature, the last cached result of the query is streamed instead.
+     * 
+     * @param lon Longitude
+     * @param lat Latitude
+     * @param distance Search distance in meters
+     * @param table Table to search (default: mv_restaurants)
+     * @param limit Maximum number of results
+     * @return Nearby features in response order
      */
-    private List<Map<String, Object>> getSampleNearbyFeatures(Integer limit) {
-        List<Map<String, Object>> features = new ArrayList<>();
+    public Flux<Map<String, Object>> streamNearbyFeatures(double lon, double lat, double distance, String table, Integer limit) {
+        return streamNearbyFeatures(lon, lat, distance, table, limit, null, null);
+    }
+    
+    /**
+     * Finds nearby features as a stream, with line strings and polygons simplified for
+     * display at a map zoom level.
+     * 
+     * @param lon Longitude
+     * @param lat Latitude
+     * @param distance Search distance in meters
+     * @param table Table to search (default: mv_restaurants)
+     * @param limit Maximum number of results
+     * @param zoom Map zoom level the geometry is simplified for (null for full detail)
+     * @param tolerance Simplification tolerance in meters, overriding the zoom level
+     * @return Nearby features in response order
+     */
+    public Flux<Map<String, Object>> streamNearbyFeatures(double lon, double lat, double distance, String table,
+                                                          Integer limit, Integer zoom, Double tolerance) {
+        int effectiveLimit = limit != null ? limit : 1000;
+        double simplification = simplificationTolerance(lat, zoom, tolerance);
         
-        // Sample nearby features
-        features.add(createSampleNearbyFeature(1L, "Sample Restaurant", "restaurant", 35.2828, -120.6596, 0.0));
-        features.add(createSampleNearbyFeature(2L, "Sample POI", "atm", 35.2830, -120.6598, 25.5));
+        Optional<List<Map<String, Object>>> local = spatialIndexService.findNearby(table, lon, lat, distance, effectiveLimit);
+        if (local.isPresent()) {
+            metrics.source("nearby.stream", "index");
+            return Flux.fromIterable(simplify(local.get(), simplification));
+        }
         
-        if (limit != null && limit < features.size()) {
-            return features.subList(0, limit);
+        NearbyQueryKey key = responseCaches.nearbyKey(table, lon, lat, distance, effectiveLimit);
+        Optional<List<Map<String, Object>>> cached = responseCaches.nearby().getIfPresent(key);
+        if (cached.isPresent()) {
+            metrics.source("nearby.stream", "cache");
+            return Flux.fromIterable(simplify(cached.get(), simplification));
         }
-        return features;
+        
+        AtomicBoolean emitted = new AtomicBoolean();
+        return fetchFeatures(nearbyUrl(key), UpstreamRateLimiter.Priority.INTERACTIVE, false)
+                .map(feature -> transformNearbyFeature(feature, simplification))
+                .doOnNext(feature -> emitted.set(true))
+                .doOnComplete(() -> metrics.source("nearby.stream", "upstream"))
+                .onErrorResume(e -> {
+                    // Once features were sent the response can only be cut short
+                    if (emitted.get()) {
+                        return Flux.error(e);
+                    }
+                    log.warn("Failed to stream nearby features from GIS API: {}", e.getMessage());
+                    return lastKnownGood("nearby.stream", responseCaches.nearby().getLastKnownGood(key), e)
+                            .flatMapIterable(features -> simplify(features, simplification));
+                });
+    }
+    
+    /**
+     * Fetches the features of a nearby query from the GIS API, for the snapped location of its key.
+     */
+    private Mono<List<Map<String, Object>>> fetchNearbyFeatures(NearbyQueryKey key) {
+        // Mono.from returns the Mono itself, widened to the cached type without an extra operator
+        return Mono.from(transformNearbyFeatures(
+                fetchFeatures(nearbyUrl(key), UpstreamRateLimiter.Priority.INTERACTIVE, false)));
+    }
+    
+    private String nearbyUrl(NearbyQueryKey key) {
+        return gisApiBaseUrl + "/api/v1/spatial/optimized/nearby" +
+                "?lon=" + key.getLon() + "&lat=" + key.getLat() + "&distance=" + key.getDistance() +
+                "&table=" + key.getTable() + "&limit=" + key.getLimit();
+    }
+    
+    /**
+     * Fetches a single JSON document from the GIS API through the document cache, serving
+     * the last fetched document if the GIS API fails.
+     * 
+     * @param path Endpoint path
+     * @param transform Transforms the raw response
+     * @param description Document name for log messages
+     * @return Cached or newly fetched document; fails with a {@link DataUnavailableException}
+     *         if it cannot be fetched and is not cached
+     */
+    private Mono<Map<String, Object>> fetchDocument(String path, Function<String, Map<String, Object>> transform,
+                                                    String description) {
+        return responseCaches.documents().get(path, key -> fetch(gisApiBaseUrl + key)
+                        .map(response -> Collections.unmodifiableMap(metrics.transform("document", () -> transform.apply(response)))))
+                .onErrorResume(e -> {
+                    log.warn("Failed to fetch {} from GIS API: {}", description, e.getMessage());
+                    return lastKnownGood("document", responseCaches.documents().getLastKnownGood(path), e);
+                });
+    }
+    
+    /**
+     * Finds the indexed features of a table within a map viewport.
+     * The number of results is capped per zoom level: the cap doubles with every zoom level
+     * above the base zoom, up to the configured maximum.
+     * 
+     * @param minLon Minimum longitude
+     * @param minLat Minimum latitude
+     * @param maxLon Maximum longitude
+     * @param maxLat Maximum latitude
+     * @param table Table to search (default: mv_restaurants)
+     * @param zoom Map zoom level (null for the maximum cap)
+     * @return Features in the viewport, ordered by OSM id; empty if the table is not indexed or
+     *         the viewport reaches outside the replicated area, which callers check with
+     *         {@link #getBoundsVersion}
+     */
+    public List<Map<String, Object>> getFeaturesInBounds(double minLon, double minLat, double maxLon, double maxLat,
+                                                         String table, Integer zoom) {
+        int cap = boundsMaxResults;
+        if (zoom != null) {
+            int shift = Math.max(0, Math.min(30, zoom - boundsBaseZoom));
+            cap = (int) Math.min(boundsMaxResults, (long) boundsBaseResults << shift);
+        }
+        return spatialIndexService.findInBounds(table, minLon, minLat, maxLon, maxLat, cap)
+                .orElseGet(ArrayList::new);
+    }
+    
+    /**
+     * Returns the version of the indexed data of a table, which changes whenever the
+     * index is reloaded with different data.
+     * 
+     * @param table Table name
+     * @return Content version, or empty while the table is not indexed
+     */
+    public Optional<String> getIndexVersion(String table) {
+        return spatialIndexService.getLayer(table).map(IndexedLayer::getContentTag);
+    }
+    
+    /**
+     * Returns the version of the indexed data a viewport query is answered from, if the
+     * viewport lies inside the replicated area of the table.
+     * 
+     * @param table Table name
+     * @param minLon Minimum longitude
+     * @param minLat Minimum latitude
+     * @param maxLon Maximum longitude
+     * @param maxLat Maximum latitude
+     * @return Content version, or empty if the table is not indexed or does not cover the viewport
+     */
+    public Optional<String> getBoundsVersion(String table, double minLon, double minLat, double maxLon, double maxLat) {
+        return spatialIndexService.getLayer(table)
+                .filter(layer -> layer.coversBounds(minLon, minLat, maxLon, maxLat))
+                .map(IndexedLayer::getContentTag);
+    }
+    
+    /**
+     * Returns the version of the data a nearby query is answered from, if it is answered
+     * from the in-memory index.
+     * 
+     * @param table Table to search
+     * @param lon Longitude
+     * @param lat Latitude
+     * @param distance Search distance in meters
+     * @return Content version, or empty if the query goes to the GIS API
+     */
+    public Optional<String> getNearbyVersion(String table, double lon, double lat, double distance) {
+        return spatialIndexService.getLayer(table)
+                .filter(layer -> layer.covers(lon, lat, distance))
+                .map(IndexedLayer::getContentTag);
+    }
+    
+    /**
+     * Fetches data status from the GIS API.
+     * 
+     * @return Data status information
+     */
+    public Mono<Map<String, Object>> getDataStatus() {
+        return fetchDocument(DATA_STATUS_PATH, this::transformDataStatusResponse, "data status");
     }
     
     /**
-     * Returns sample data status when API is unavailable
+     * @return Age of the data status served by {@link #getDataStatus()}, if it is cached
      */
-    private Map<String, Object> getSampleDataStatus() {
-        Map<String, Object> status = new HashMap<>();
-        status.put("database", Map.of("status", "healthy", "database_size", "591 MB"));
-        status.put("record_counts", Map.of("restaurants", 710, "roads", 54534, "pois", 3629));
-        status.put("health", "healthy");
-        return status;
+    public Optional<DataAge> getDataStatusAge() {
+        return responseCaches.documents().getAge(DATA_STATUS_PATH);
     }
     
     /**
-     * Returns sample data metadata when API is unavailable
+     * Fetches data metadata from the GIS API.
+     * 
+     * @return Data metadata information
      */
-    private Map<String, Object> getSampleDataMetadata() {
-        Map<String, Object> metadata = new HashMap<>();
-        metadata.put("layers", List.of(
-            Map.of("name", "restaurants", "description", "Restaurant locations", "geometry_type", "point"),
-            Map.of("name", "roads", "description", "Road network", "geometry_type", "linestring"),
-            Map.of("name", "pois", "description", "Points of Interest", "geometry_type", "point")
-        ));
-        metadata.put("coordinate_systems", List.of("EPSG:3857", "EPSG:4326"));
-        return metadata;
+    public Mono<Map<String, Object>> getDataMetadata() {
+        return fetchDocument(DATA_METADATA_PATH, this::transformDataMetadataResponse, "data metadata");
     }
     
-    private Map<String, Object> createSampleNearbyFeature(Long id, String name, String type, double lat, double lon, double distance) {
-        Map<String, Object> feature = new HashMap<>();
-        feature.put("osmId", id);
-        feature.put("name", name);
-        feature.put("type", type);
-        feature.put("latitude", lat);
-        feature.put("longitude", lon);
-        feature.put("distance", distance);
-        feature.put("geometry", "Point");
-        return feature;
+    /**
+     * @return Age of the data metadata served by {@link #getDataMetadata()}, if it is cached
+     */
+    public Optional<DataAge> getDataMetadataAge() {
+        return responseCaches.documents().getAge(DATA_METADATA_PATH);
+    }
+    
+    /**
+     * Fetches the version of the dataset served by the GIS API from its metadata, combining
+     * the version fields it reports.
+     * 
+     * @return Dataset version; fails if the metadata cannot be fetched
+     */
+    public Mono<String> fetchDatasetVersion() {
+        return fetch(gisApiBaseUrl + DATA_METADATA_PATH, UpstreamRateLimiter.Priority.BACKGROUND)
+                .map(response -> {
+                    try {
+                        JsonNode metadata = objectMapper.readTree(response).path("data");
+                        StringBuilder version = new StringBuilder();
+                        for (String field : DATASET_VERSION_FIELDS) {
+                            version.append(metadata.path(field).asText()).append('|');
+                        }
+                        return version.toString();
+                    } catch (Exception e) {
+                        throw new RuntimeException("Failed to read dataset version", e);
+                    }
+                });
     }
     
     /**
@@ -440,122 +1252,132 @@ public class GISApiService {
     }
     
     /**
-     * Transforms the nearby features response from the GIS API.
+     * Transforms a stream of nearby features from the GIS API into a feature table.
      * 
-     * @param jsonResponse Raw JSON response from the GIS API
-     * @return Transformed list of nearby features
+     * @param features Decoded GeoJSON features
+     * @return Transformed nearby features
      */
-    private List<Map<String, Object>> transformNearbyFeaturesResponse(String jsonResponse) {
-        try {
-            JsonNode root = objectMapper.readTree(jsonResponse);
-            JsonNode features = root.path("data").path("features");
-            
-            List<Map<String, Object>> nearbyFeatures = new ArrayList<>();
+    Mono<FeatureTable> transformNearbyFeatures(Flux<JsonNode> features) {
+        return features
+                .collect(FeatureTable::builder, this::appendNearbyFeature)
+                .map(FeatureTable.Builder::build);
+    }
+    
+    /**
+     * Transforms a single GeoJSON feature of a nearby features response.
+     * 
+     * @param feature GeoJSON feature
+     * @param tolerance Simplification tolerance in meters, 0 for full detail
+     * @return Transformed feature
+     */
+    private Map<String, Object> transformNearbyFeature(JsonNode feature, double tolerance) {
+        FeatureTable.Builder builder = FeatureTable.builder();
+        appendNearbyFeature(builder, feature);
+        return builder.build().simplify(tolerance).get(0);
+    }
+    
+    /**
+     * Transforms one GeoJSON feature of a nearby features response and appends it to a table.
+     * 
+     * @param nearbyFeatures Table being built
+     * @param feature GeoJSON feature
+     */
+    private void appendNearbyFeature(FeatureTable.Builder nearbyFeatures, JsonNode feature) {
+        // Extract ID
+        String idStr = feature.path("id").asText();
+        nearbyFeatures.beginFeature(!idStr.isEmpty() ? Long.parseLong(idStr) : 0L);
+        
+        // Extract properties - now includes ALL OSM fields from VM response
+        JsonNode properties = feature.path("properties");
+        
+        // Process all properties and include them (frontend will filter based on config)
+        properties.fields().forEachRemaining(entry -> {
+            String fieldName = entry.getKey();
+            JsonNode fieldValue = entry.getValue();
             
-            for (JsonNode feature : features) {
-                Map<String, Object> nearbyFeature = new HashMap<>();
-                
-                // Extract ID
-                String idStr = feature.path("id").asText();
-                if (!idStr.isEmpty()) {
-                    nearbyFeature.put("osmId", Long.parseLong(idStr));
-                } else {
-                    nearbyFeature.put("osmId", 0L);
-                }
-                
-                // Extract properties - now includes ALL OSM fields from VM response
-                JsonNode properties = feature.path("properties");
-                
-                // Process all properties and include them (frontend will filter based on config)
-                properties.fields().forEachRemaining(entry -> {
-                    String fieldName = entry.getKey();
-                    JsonNode fieldValue = entry.getValue();
-                    
-                    // Convert field value based on type, handling nulls and empty strings
-                    Object value = convertJsonNodeToObject(fieldValue);
-                    if (value != null) {
-                        nearbyFeature.put(fieldName, value);
-                    }
-                });
-                
-                // Ensure core fields are always present with defaults
-                if (!nearbyFeature.containsKey("name")) {
-                    nearbyFeature.put("name", properties.path("name").asText(""));
-                }
-                if (!nearbyFeature.containsKey("type")) {
-                    nearbyFeature.put("type", properties.path("type").asText(""));
-                }
-                if (!nearbyFeature.containsKey("distance")) {
-                    nearbyFeature.put("distance", properties.path("distance").asDouble(0.0));
-                }
-                
-                // Extract coordinates and handle different geometry types
-                JsonNode geometry = feature.path("geometry");
-                String geometryType = geometry.path("type").asText();
-                JsonNode coordinates = geometry.path("coordinates");
-                
-                if ("LineString".equals(geometryType)) {
-                    // Handle LineString geometry - extract coordinates as proper Java structure
-                    List<List<Double>> coordinateList = new ArrayList<>();
-                    if (coordinates.isArray()) {
-                        for (JsonNode coord : coordinates) {
-                            if (coord.isArray() && coord.size() >= 2) {
-                                coordinateList.add(List.of(
-                                    coord.get(0).asDouble(),
-                                    coord.get(1).asDouble()
-                                ));
-                            }
+            // Convert field value based on type, handling nulls and empty strings
+            Object value = convertJsonNodeToObject(fieldValue);
+            if ("distance".equals(fieldName) && value instanceof Number) {
+                nearbyFeatures.distance(((Number) value).doubleValue());
+            } else if (value != null) {
+                nearbyFeatures.property(fieldName, value);
+            }
+        });
+        
+        // Ensure core fields are always present with defaults
+        if (!nearbyFeatures.hasProperty("name")) {
+            nearbyFeatures.property("name", properties.path("name").asText(""));
+        }
+        if (!nearbyFeatures.hasProperty("type")) {
+            nearbyFeatures.property("type", properties.path("type").asText(""));
+        }
+        if (!nearbyFeatures.hasDistance()) {
+            nearbyFeatures.distance(properties.path("distance").asDouble(0.0));
+        }
+        
+        // Extract coordinates and handle different geometry types
+        JsonNode geometry = feature.path("geometry");
+        String geometryType = geometry.path("type").asText();
+        JsonNode coordinates = geometry.path("coordinates");
+        
+        if ("LineString".equals(geometryType)) {
+            // Handle LineString geometry - store the vertices in the packed vertex array
+            nearbyFeatures.geometry(FeatureTable.GeometryType.LINE_STRING).beginPart();
+            boolean first = true;
+            if (coordinates.isArray()) {
+                for (JsonNode coord : coordinates) {
+                    if (coord.isArray() && coord.size() >= 2) {
+                        double lon = coord.get(0).asDouble();
+                        double lat = coord.get(1).asDouble();
+                        nearbyFeatures.vertex(lon, lat);
+                        
+                        // For compatibility, also set a representative point (first coordinate)
+                        if (first) {
+                            nearbyFeatures.location(lon, lat);
+                            first = false;
                         }
                     }
-                    nearbyFeature.put("coordinates", coordinateList);
-                    nearbyFeature.put("geometry", "LineString");
-                    
-                    // For compatibility, also set a representative point (first coordinate)
-                    if (!coordinateList.isEmpty()) {
-                        List<Double> firstCoord = coordinateList.get(0);
-                        nearbyFeature.put("longitude", firstCoord.get(0));
-                        nearbyFeature.put("latitude", firstCoord.get(1));
+                }
+            }
+        } else if ("Polygon".equals(geometryType)) {
+            // Handle Polygon geometry - preserve every ring
+            nearbyFeatures.geometry(FeatureTable.GeometryType.POLYGON);
+            for (JsonNode ring : coordinates) {
+                nearbyFeatures.beginPart();
+                for (JsonNode coord : ring) {
+                    if (coord.isArray() && coord.size() >= 2) {
+                        nearbyFeatures.vertex(coord.get(0).asDouble(), coord.get(1).asDouble());
                     }
-                } else if ("Polygon".equals(geometryType)) {
-                    // Handle Polygon geometry - preserve full coordinate array
-                    nearbyFeature.put("coordinates", coordinates);
-                    nearbyFeature.put("geometry", "Polygon");
-                    
-                    // For compatibility, calculate centroid as representative point
-                    if (coordinates.isArray() && coordinates.size() > 0) {
-                        JsonNode exteriorRing = coordinates.get(0);
-                        if (exteriorRing.isArray() && exteriorRing.size() > 0) {
-                            // Calculate centroid of first ring (exterior ring)
-                            double sumLon = 0, sumLat = 0;
-                            int pointCount = 0;
-                            for (JsonNode coord : exteriorRing) {
-                                if (coord.isArray() && coord.size() >= 2) {
-                                    sumLon += coord.get(0).asDouble();
-                                    sumLat += coord.get(1).asDouble();
-                                    pointCount++;
-                                }
-                            }
-                            if (pointCount > 0) {
-                                nearbyFeature.put("longitude", sumLon / pointCount);
-                                nearbyFeature.put("latitude", sumLat / pointCount);
-                            }
+                }
+            }
+            
+            // For compatibility, calculate centroid as representative point
+            if (coordinates.isArray() && coordinates.size() > 0) {
+                JsonNode exteriorRing = coordinates.get(0);
+                if (exteriorRing.isArray() && exteriorRing.size() > 0) {
+                    // Calculate centroid of first ring (exterior ring)
+                    double sumLon = 0, sumLat = 0;
+                    int pointCount = 0;
+                    for (JsonNode coord : exteriorRing) {
+                        if (coord.isArray() && coord.size() >= 2) {
+                            sumLon += coord.get(0).asDouble();
+                            sumLat += coord.get(1).asDouble();
+                            pointCount++;
                         }
                     }
-                } else {
-                    // Handle Point geometry (default behavior)
-                    if (coordinates.isArray() && coordinates.size() >= 2) {
-                        nearbyFeature.put("longitude", coordinates.get(0).asDouble());
-                        nearbyFeature.put("latitude", coordinates.get(1).asDouble());
+                    if (pointCount > 0) {
+                        nearbyFeatures.location(sumLon / pointCount, sumLat / pointCount);
                     }
-                    nearbyFeature.put("geometry", "Point");
                 }
-                nearbyFeatures.add(nearbyFeature);
             }
-            
-            return nearbyFeatures;
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to transform nearby features response", e);
+        } else {
+            // Handle Point geometry (default behavior)
+            if (coordinates.isArray() && coordinates.size() >= 2) {
+                nearbyFeatures.location(coordinates.get(0).asDouble(), coordinates.get(1).asDouble());
+            }
+            nearbyFeatures.geometry(FeatureTable.GeometryType.POINT);
         }
+        nearbyFeatures.endFeature();
     }
     
     /**
@@ -642,7 +1464,7 @@ public class GISApiService {
      * @param y Web Mercator Y coordinate
      * @return Array with [longitude, latitude] in WGS84
      */
-    private double[] transformToWGS84(double x, double y) {
+    double[] transformToWGS84(double x, double y) {
         // Web Mercator to WGS84 transformation
         // Web Mercator uses a sphere with radius 6378137 meters
         double longitude = x / 6378137.0 * 180.0 / Math.PI;
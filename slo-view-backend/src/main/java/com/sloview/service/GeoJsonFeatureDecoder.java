@@ -0,0 +1,152 @@
+package com.sloview.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Incrementally decodes the features of a GIS API GeoJSON response.
+ *
+ * The body is fed to Jackson's non-blocking parser buffer by buffer as it arrives. Only
+ * the feature currently being read is buffered; each element of the
+ * {@code data.features} array is emitted as a small tree once it is complete, and
+ * everything else in the document is skipped. Memory use therefore depends on the size
+ * of the largest feature rather than on the size of the response.
+ */
+public class GeoJsonFeatureDecoder {
+
+    private static final String[] FEATURES_PATH = {null, "data", "features"};
+
+    private final ObjectMapper objectMapper;
+
+    public GeoJsonFeatureDecoder(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Decodes the features of a response body.
+     *
+     * @param body Response body buffers, released once read
+     * @return Features in document order
+     */
+    public Flux<JsonNode> decode(Flux<DataBuffer> body) {
+        return Flux.defer(() -> {
+            State state = new State();
+            return body.concatMapIterable(state::feed)
+                    .concatWith(Flux.defer(() -> Flux.fromIterable(state.finish())))
+                    .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+        });
+    }
+
+    /**
+     * Parser state of one response.
+     */
+    private final class State {
+        private final JsonParser parser;
+        private final ByteArrayFeeder feeder;
+        // Field name of each open container, null for the root and array elements
+        private String[] path = new String[16];
+        private int depth;
+        private boolean inFeatures;
+        private TokenBuffer feature;
+        private int featureDepth;
+
+        State() {
+            try {
+                this.parser = objectMapper.getFactory().createNonBlockingByteArrayParser();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+        }
+
+        List<JsonNode> feed(DataBuffer buffer) {
+            byte[] bytes = new byte[buffer.readableByteCount()];
+            buffer.read(bytes);
+            DataBufferUtils.release(buffer);
+            try {
+                feeder.feedInput(bytes, 0, bytes.length);
+                return readAvailable();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        List<JsonNode> finish() {
+            try {
+                feeder.endOfInput();
+                List<JsonNode> features = readAvailable();
+                if (depth != 0) {
+                    throw new IOException("Unexpected end of GeoJSON response");
+                }
+                return features;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                try {
+                    parser.close();
+                } catch (IOException ignored) {
+                    // Nothing left to release
+                }
+            }
+        }
+
+        private List<JsonNode> readAvailable() throws IOException {
+            List<JsonNode> features = new ArrayList<>();
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                if (feature != null) {
+                    feature.copyCurrentEvent(parser);
+                    if (token.isStructStart()) {
+                        featureDepth++;
+                    } else if (token.isStructEnd() && --featureDepth == 0) {
+                        features.add(objectMapper.readTree(feature.asParser(objectMapper)));
+                        feature = null;
+                    }
+                    continue;
+                }
+                if (token.isStructStart()) {
+                    if (inFeatures && token == JsonToken.START_OBJECT) {
+                        feature = new TokenBuffer(objectMapper, false);
+                        feature.copyCurrentEvent(parser);
+                        featureDepth = 1;
+                        continue;
+                    }
+                    push(parser.getParsingContext().getParent().inObject() ? parser.currentName() : null);
+                    inFeatures = atFeatures();
+                } else if (token.isStructEnd()) {
+                    depth--;
+                    inFeatures = atFeatures();
+                }
+            }
+            return features;
+        }
+
+        /**
+         * @return true if the innermost open container is the features array
+         */
+        private boolean atFeatures() {
+            return parser.getParsingContext().inArray() && depth == FEATURES_PATH.length
+                    && Arrays.equals(path, 0, depth, FEATURES_PATH, 0, FEATURES_PATH.length);
+        }
+
+        private void push(String name) {
+            if (depth == path.length) {
+                path = Arrays.copyOf(path, depth * 2);
+            }
+            path[depth++] = name;
+        }
+    }
+}
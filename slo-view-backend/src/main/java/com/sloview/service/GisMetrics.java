@@ -0,0 +1,225 @@
+package com.sloview.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Meters of the GIS API calls and of the work done on their results.
+ *
+ * <ul>
+ *   <li>{@code gis.upstream.requests}: latency of upstream calls by endpoint path and
+ *       outcome, measured from the moment the rate limiter admitted the call</li>
+ *   <li>{@code gis.upstream.response.size}: upstream response bodies in bytes, by endpoint path</li>
+ *   <li>{@code gis.transform}: time spent parsing, converting and serializing data, by operation</li>
+ *   <li>{@code gis.responses}: where the data of a query came from (snapshot, index, cache,
+ *       upstream, stale when the upstream call failed, or unavailable)</li>
+ *   <li>{@code gis.cache.loads}: restaurant cache loads by result</li>
+ *   <li>{@code gis.restaurants.page.splits}: restaurant pages fetched again at half the size</li>
+ *   <li>{@code gis.index.loads}: spatial index loads by table and result</li>
+ * </ul>
+ */
+@Component
+public class GisMetrics {
+
+    private final MeterRegistry meterRegistry;
+
+    public GisMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Times an upstream call that returns a buffered body.
+     *
+     * @param url Request URL; only its path is used as a tag
+     * @param call Upstream call, subscribed once the call is admitted
+     * @param bodySize Size of the response body in bytes
+     * @return The call, timed
+     */
+    public <T> Mono<T> upstream(String url, Mono<T> call, ToLongFunction<T> bodySize) {
+        String endpoint = endpoint(url);
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return call
+                    .doOnNext(body -> recordSize(endpoint, bodySize.applyAsLong(body)))
+                    .doOnSuccess(body -> recordUpstream(endpoint, "success", start))
+                    .doOnError(e -> recordUpstream(endpoint, outcome(e), start))
+                    .doOnCancel(() -> recordUpstream(endpoint, "cancelled", start));
+        });
+    }
+
+    /**
+     * Times an upstream call whose body is streamed; the time covers the whole body.
+     *
+     * @param url Request URL; only its path is used as a tag
+     * @param body Response body, subscribed once the call is admitted
+     * @return The body, timed
+     */
+    public Flux<DataBuffer> upstreamStream(String url, Flux<DataBuffer> body) {
+        String endpoint = endpoint(url);
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            AtomicLong bytes = new AtomicLong();
+            return body
+                    .doOnNext(buffer -> bytes.addAndGet(buffer.readableByteCount()))
+                    .doOnComplete(() -> recordSize(endpoint, bytes.get()))
+                    .doFinally(signal -> {
+                        if (signal == SignalType.ON_COMPLETE) {
+                            recordUpstream(endpoint, "success", start);
+                        } else if (signal == SignalType.CANCEL) {
+                            recordUpstream(endpoint, "cancelled", start);
+                        }
+                    })
+                    .doOnError(e -> recordUpstream(endpoint, outcome(e), start));
+        });
+    }
+
+    /**
+     * Times a transformation of data.
+     *
+     * @param operation Name of the operation, used as a tag
+     * @param transform Transformation to run
+     * @return Result of the transformation
+     */
+    public <T> T transform(String operation, Supplier<T> transform) {
+        long start = System.nanoTime();
+        try {
+            return transform.get();
+        } finally {
+            Timer.builder("gis.transform")
+                    .description("Time spent transforming GIS data")
+                    .tag("operation", operation)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Counts a query answered from a data source.
+     *
+     * @param query Kind of query, e.g. {@code nearby}
+     * @param source Where the data came from, e.g. {@code index} or {@code upstream}
+     */
+    public void source(String query, String source) {
+        Counter.builder("gis.responses")
+                .description("Queries by the source of their data")
+                .tag("query", query)
+                .tag("source", source)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * Counts a run of the restaurant cache loader.
+     *
+     * @param result {@code loaded}, {@code refreshed}, {@code unchanged}, {@code discarded}
+     *               when a concurrent load published first, or {@code failed}
+     */
+    public void cacheLoad(String result) {
+        Counter.builder("gis.cache.loads")
+                .description("Restaurant cache loads by result")
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * Counts a restaurant page that kept failing and is fetched again at half the size.
+     */
+    public void pageSplit() {
+        Counter.builder("gis.restaurants.page.splits")
+                .description("Restaurant pages split after repeated failures")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * Counts a load of an indexed table.
+     *
+     * @param table Table name
+     * @param result {@code loaded} or {@code failed}
+     */
+    public void indexLoad(String table, String result) {
+        Counter.builder("gis.index.loads")
+                .description("Spatial index loads by table and result")
+                .tag("table", table)
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private void recordUpstream(String endpoint, String outcome, long start) {
+        Timer.builder("gis.upstream.requests")
+                .description("Latency of GIS API calls after admission by the rate limiter")
+                .tag("endpoint", endpoint)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private void recordSize(String endpoint, long bytes) {
+        DistributionSummary.builder("gis.upstream.response.size")
+                .description("Size of GIS API response bodies")
+                .baseUnit("bytes")
+                .tag("endpoint", endpoint)
+                .register(meterRegistry)
+                .record(bytes);
+    }
+
+    private static String outcome(Throwable e) {
+        if (e instanceof TimeoutException) {
+            return "timeout";
+        }
+        if (e instanceof WebClientResponseException) {
+            return ((WebClientResponseException) e).getStatusCode().is4xxClientError() ? "client_error" : "server_error";
+        }
+        return "error";
+    }
+
+    /**
+     * @return Path of a URL, keeping the tag cardinality independent of query parameters
+     */
+    static String endpoint(String url) {
+        try {
+            String path = URI.create(url).getPath();
+            return path != null && !path.isEmpty() ? path : "/";
+        } catch (IllegalArgumentException e) {
+            return "unknown";
+        }
+    }
+
+    /**
+     * @return Number of bytes of a string in UTF-8, without encoding it
+     */
+    static long utf8Length(String s) {
+        long length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,102 @@
+package com.sloview.service;
+
+import com.sloview.spatial.IndexedLayer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the in-memory spatial indexes of the replicated GIS tables.
+ *
+ * Layers are built and published by {@link GISApiService}; this service only answers
+ * queries against the most recently published layer of each table. The number of features
+ * and the age of each layer are published as the {@code gis.index.features} and
+ * {@code gis.index.age} gauges.
+ */
+@Service
+public class SpatialIndexService {
+
+    private final Map<String, IndexedLayer> layers = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+
+    public SpatialIndexService(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Replaces the indexed layer for its table.
+     *
+     * @param layer Newly built layer
+     */
+    public void publish(IndexedLayer layer) {
+        String table = layer.getTable();
+        if (layers.put(table, layer) == null) {
+            Gauge.builder("gis.index.features", layers, indexed -> indexed.get(table).size())
+                    .description("Features in the indexed layer of a table")
+                    .tag("table", table)
+                    .register(meterRegistry);
+            Gauge.builder("gis.index.age", layers,
+                            indexed -> (System.currentTimeMillis() - indexed.get(table).getLoadedAt()) / 1000.0)
+                    .description("Seconds since the layer of a table was indexed")
+                    .tag("table", table)
+                    .baseUnit("seconds")
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Returns the indexed layer of a table, if one has been loaded.
+     *
+     * @param table Table name
+     * @return Indexed layer
+     */
+    public Optional<IndexedLayer> getLayer(String table) {
+        return Optional.ofNullable(layers.get(table));
+    }
+
+    /**
+     * Answers a nearby query locally when the table is indexed and the query lies within
+     * the replicated area.
+     *
+     * @param table Table to search
+     * @param lon Longitude
+     * @param lat Latitude
+     * @param distance Search distance in meters
+     * @param limit Maximum number of results
+     * @return Nearby features, or empty if the query must go to the GIS API
+     */
+    public Optional<List<Map<String, Object>>> findNearby(String table, double lon, double lat,
+                                                          double distance, int limit) {
+        IndexedLayer layer = layers.get(table);
+        if (layer == null || !layer.covers(lon, lat, distance)) {
+            return Optional.empty();
+        }
+        return Optional.of(layer.nearby(lon, lat, distance, limit));
+    }
+
+    /**
+     * Finds the indexed features of a table that intersect a bounding box.
+     *
+     * @param table Table to search
+     * @param minLon Minimum longitude
+     * @param minLat Minimum latitude
+     * @param maxLon Maximum longitude
+     * @param maxLat Maximum latitude
+     * @param limit Maximum number of results
+     * @return Matching features in stable order, or empty if the table is not indexed yet or
+     *         the box reaches outside the replicated area
+     */
+    public Optional<List<Map<String, Object>>> findInBounds(String table, double minLon, double minLat,
+                                                            double maxLon, double maxLat, int limit) {
+        IndexedLayer layer = layers.get(table);
+        if (layer == null || !layer.coversBounds(minLon, minLat, maxLon, maxLat)) {
+            return Optional.empty();
+        }
+        return Optional.of(layer.inBounds(minLon, minLat, maxLon, maxLat, limit));
+    }
+}
@@ -0,0 +1,356 @@
+package com.sloview.service;
+
+import com.sloview.cache.SingleFlight;
+import com.sloview.tiles.TileStore;
+import com.sloview.tiles.WebMercator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Stores encoded vector tiles in a memory-mapped {@link TileStore}, so every tile is only
+ * built once per dataset version.
+ *
+ * The store file is tagged with the dataset version reported by the GIS API metadata and
+ * the tile settings. A store left by a previous run is served right away and kept if the
+ * version is unchanged; otherwise it is replaced by an empty one and the spatial index is
+ * reloaded. Tiles are keyed by the content tag of the indexed data they were built from,
+ * so a reloaded index with different data never serves tiles of the previous data, even
+ * when the GIS API reports no dataset version. Tiles are only added once the index holds
+ * data loaded after the version was confirmed, and the configured area is warmed in the
+ * background whenever all layers are indexed with data it has not been warmed for. Before
+ * warming, a store holding tiles of data that is no longer indexed is replaced by a copy
+ * without them, so the file does not grow with every content change.
+ */
+@Service
+public class TileCacheService {
+
+    private static final Logger log = LoggerFactory.getLogger(TileCacheService.class);
+    private static final String STORE_FILE = "tiles.dat";
+    private static final String COMPACT_FILE = "tiles.dat.compact";
+
+    private final VectorTileService vectorTileService;
+    private final GISApiService gisApiService;
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentSize;
+    private final double[] warmBounds;
+    private final int warmMinZoom;
+    private final int warmMaxZoom;
+    private final long startedAt = System.currentTimeMillis();
+    private final AtomicBoolean warming = new AtomicBoolean();
+    private final Counter warmedTiles;
+    private final SingleFlight<String, byte[]> tileBuilds = new SingleFlight<>();
+
+    private volatile TileStore store;
+    // Whether the store version was checked against the GIS API since startup
+    private volatile boolean confirmed;
+    // Layers indexed before this time may hold data of an older dataset version
+    private volatile long validFrom;
+    private volatile TileStore warmed;
+    // Content tags of the layers the store was warmed for
+    private volatile Map<String, String> warmedTags;
+
+    public TileCacheService(VectorTileService vectorTileService, GISApiService gisApiService,
+                            @Value("${gis.tiles.cache.enabled:true}") boolean enabled,
+                            @Value("${gis.tiles.cache.dir:${java.io.tmpdir}/slo-view-tiles}") String directory,
+                            @Value("${gis.tiles.cache.segment-bytes:16777216}") int segmentSize,
+                            @Value("${gis.tiles.cache.warm.bbox:-121.35,34.89,-119.47,35.80}") double[] warmBounds,
+                            @Value("${gis.tiles.cache.warm.min-zoom:8}") int warmMinZoom,
+                            @Value("${gis.tiles.cache.warm.max-zoom:14}") int warmMaxZoom,
+                            MeterRegistry meterRegistry) {
+        this.vectorTileService = vectorTileService;
+        this.gisApiService = gisApiService;
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.segmentSize = segmentSize;
+        this.warmBounds = warmBounds;
+        this.warmMinZoom = warmMinZoom;
+        this.warmMaxZoom = Math.min(warmMaxZoom, WebMercator.MAX_ZOOM);
+
+        this.warmedTiles = Counter.builder("gis.tiles.warmed")
+                .description("Vector tiles built and stored by cache warm-ups")
+                .register(meterRegistry);
+        Gauge.builder("gis.tiles.cache.tiles", this, TileCacheService::storedTiles)
+                .description("Number of stored vector tiles")
+                .register(meterRegistry);
+        Gauge.builder("gis.tiles.cache.bytes", this, TileCacheService::storedBytes)
+                .description("Bytes used by stored vector tiles")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Opens the store left by a previous run, if any.
+     */
+    @PostConstruct
+    public void openStore() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            store = TileStore.open(directory.resolve(STORE_FILE), segmentSize).orElse(null);
+            if (store != null) {
+                log.info("Opened tile cache with {} tiles", store.size());
+            }
+        } catch (IOException e) {
+            log.warn("Failed to open tile cache: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void closeStore() throws IOException {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    /**
+     * Returns a tile from the store, building and storing it if needed.
+     *
+     * Stored tiles are returned right away. Missing tiles are built on the bounded elastic
+     * scheduler to keep encoding off the network event loop, and concurrent requests for
+     * the same missing tile share one build.
+     *
+     * @param layer Tile layer name
+     * @param zoom Zoom level
+     * @param x Tile column
+     * @param y Tile row
+     * @return Tile bytes, or empty if the layer's table is not indexed yet
+     */
+    public Mono<ByteBuffer> getTile(String layer, int zoom, int x, int y) {
+        Optional<String> contentTag = vectorTileService.getLayerContentTag(layer);
+        if (contentTag.isEmpty()) {
+            return Mono.empty();
+        }
+        String storedLayer = storedLayer(layer, contentTag.get());
+        TileStore current = store;
+        if (current != null) {
+            Optional<ByteBuffer> cached = current.get(storedLayer, zoom, x, y);
+            if (cached.isPresent()) {
+                return Mono.just(cached.get());
+            }
+        }
+        return tileBuilds.execute(storedLayer + "/" + zoom + "/" + x + "/" + y,
+                        key -> Mono.fromCallable(() -> buildTile(layer, contentTag.get(), zoom, x, y))
+                                .subscribeOn(Schedulers.boundedElastic()))
+                // Every caller gets its own buffer position
+                .map(ByteBuffer::wrap);
+    }
+
+    /**
+     * Builds a tile and stores it if the layer holds current data.
+     *
+     * @return Tile bytes, or null if the layer's table is no longer indexed
+     */
+    private byte[] buildTile(String layer, String contentTag, int zoom, int x, int y) {
+        TileStore current = store;
+        boolean storable = current != null && confirmed && isCurrent(layer);
+        Optional<byte[]> tile = vectorTileService.getTile(layer, zoom, x, y);
+        // The index may have been reloaded while the tile was built
+        if (storable && tile.isPresent()
+                && vectorTileService.getLayerContentTag(layer).equals(Optional.of(contentTag))) {
+            store(current, storedLayer(layer, contentTag), zoom, x, y, tile.get());
+        }
+        return tile.orElse(null);
+    }
+
+    /**
+     * Compares the stored dataset version with the GIS API and replaces the store when it changed.
+     */
+    @Scheduled(fixedDelayString = "${gis.tiles.cache.check-interval-ms:600000}",
+            initialDelayString = "${gis.tiles.cache.initial-delay-ms:5000}")
+    public void checkDatasetVersion() {
+        if (!enabled) {
+            return;
+        }
+        gisApiService.fetchDatasetVersion()
+                .map(version -> version + vectorTileService.getSignature())
+                .subscribe(this::useVersion,
+                        e -> log.warn("Failed to check tile cache version: {}", e.getMessage()));
+    }
+
+    /**
+     * Builds and stores the tiles of the warm-up area once every layer is indexed with
+     * current data.
+     */
+    @Scheduled(fixedDelayString = "${gis.tiles.cache.warm.check-interval-ms:30000}",
+            initialDelayString = "${gis.tiles.cache.warm.check-interval-ms:30000}")
+    public void warmIfReady() {
+        TileStore current = store;
+        if (current == null || !confirmed
+                || !vectorTileService.getLayers().stream().allMatch(this::isCurrent)) {
+            return;
+        }
+        Map<String, String> contentTags = new HashMap<>();
+        for (String layer : vectorTileService.getLayers()) {
+            vectorTileService.getLayerContentTag(layer).ifPresent(tag -> contentTags.put(layer, tag));
+        }
+        if ((warmed == current && contentTags.equals(warmedTags)) || !warming.compareAndSet(false, true)) {
+            return;
+        }
+        Mono.fromRunnable(() -> warm(current, contentTags))
+                .subscribeOn(Schedulers.boundedElastic())
+                .doFinally(signal -> warming.set(false))
+                .subscribe(
+                        value -> { },
+                        e -> log.warn("Failed to warm tile cache: {}", e.getMessage()));
+    }
+
+    private synchronized void useVersion(String version) {
+        TileStore current = store;
+        if (current != null && current.getVersion().equals(version)) {
+            confirmed = true;
+            return;
+        }
+        try {
+            store = TileStore.create(directory.resolve(STORE_FILE), segmentSize, version);
+            if (current != null) {
+                current.close();
+            }
+        } catch (IOException e) {
+            store = null;
+            log.warn("Failed to create tile cache: {}", e.getMessage());
+            return;
+        }
+        if (!confirmed) {
+            // First check since startup: layers indexed by this run are current
+            validFrom = startedAt;
+            confirmed = true;
+        } else {
+            validFrom = System.currentTimeMillis();
+            log.info("Dataset version changed, reloading the spatial index for new tiles");
+            gisApiService.refreshSpatialIndex();
+        }
+    }
+
+    private void warm(TileStore current, Map<String, String> contentTags) {
+        TileStore target = removeStaleTiles(current, contentTags);
+        if (target == null) {
+            return;
+        }
+        long started = System.currentTimeMillis();
+        int built = 0;
+        for (int zoom = warmMinZoom; zoom <= warmMaxZoom; zoom++) {
+            int minX = (int) Math.floor(WebMercator.worldX(warmBounds[0], zoom));
+            int maxX = (int) Math.floor(WebMercator.worldX(warmBounds[2], zoom));
+            int minY = (int) Math.floor(WebMercator.worldY(warmBounds[3], zoom));
+            int maxY = (int) Math.floor(WebMercator.worldY(warmBounds[1], zoom));
+            for (String layer : vectorTileService.getLayers()) {
+                String contentTag = contentTags.get(layer);
+                String storedLayer = storedLayer(layer, contentTag);
+                for (int x = minX; x <= maxX; x++) {
+                    for (int y = minY; y <= maxY; y++) {
+                        if (store != target || !vectorTileService.getLayerContentTag(layer).equals(Optional.of(contentTag))) {
+                            return;
+                        }
+                        if (target.get(storedLayer, zoom, x, y).isEmpty()) {
+                            Optional<byte[]> tile = vectorTileService.getTile(layer, zoom, x, y);
+                            if (tile.isPresent() && store(target, storedLayer, zoom, x, y, tile.get())) {
+                                warmedTiles.increment();
+                                built++;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        warmed = target;
+        warmedTags = contentTags;
+        log.info("Warmed tile cache with {} new tiles in {} ms", built, System.currentTimeMillis() - started);
+    }
+
+    /**
+     * Replaces the store by a copy holding only the tiles of the indexed data, if it holds
+     * tiles of data that is no longer indexed. The copy is written without holding the lock,
+     * and discarded if the store was replaced meanwhile.
+     *
+     * @return Store to warm, or null if the store was replaced meanwhile
+     */
+    private TileStore removeStaleTiles(TileStore current, Map<String, String> contentTags) {
+        Set<String> storedLayers = new HashSet<>();
+        contentTags.forEach((layer, tag) -> storedLayers.add(storedLayer(layer, tag)));
+        if (storedLayers.containsAll(current.getLayers())) {
+            return current;
+        }
+        Path compactFile = directory.resolve(COMPACT_FILE);
+        try {
+            current.copyTo(compactFile, storedLayers::contains);
+            synchronized (this) {
+                if (store != current) {
+                    Files.deleteIfExists(compactFile);
+                    return null;
+                }
+                Files.move(compactFile, directory.resolve(STORE_FILE),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                store = TileStore.open(directory.resolve(STORE_FILE), segmentSize)
+                        .orElseThrow(() -> new IOException("Compacted tile cache is unreadable"));
+                current.close();
+                return store;
+            }
+        } catch (IOException e) {
+            log.warn("Failed to remove stale tiles from tile cache: {}", e.getMessage());
+            return store == current ? current : null;
+        }
+    }
+
+    /**
+     * @return true if the layer is indexed with data of the stored dataset version
+     */
+    private boolean isCurrent(String layer) {
+        OptionalLong loadedAt = vectorTileService.getLayerLoadedAt(layer);
+        return loadedAt.isPresent() && loadedAt.getAsLong() >= validFrom;
+    }
+
+    /**
+     * @return Name under which the tiles of a layer built from indexed data with a content tag are stored
+     */
+    private static String storedLayer(String layer, String contentTag) {
+        return layer + "@" + contentTag;
+    }
+
+    private double storedTiles() {
+        TileStore current = store;
+        return current != null ? current.size() : 0;
+    }
+
+    private double storedBytes() {
+        TileStore current = store;
+        return current != null ? current.getBytesUsed() : 0;
+    }
+
+    private boolean store(TileStore target, String layer, int zoom, int x, int y, byte[] tile) {
+        if (store != target) {
+            return false;
+        }
+        try {
+            return target.put(layer, zoom, x, y, tile);
+        } catch (IOException e) {
+            log.warn("Failed to store tile {}/{}/{}/{}: {}", layer, zoom, x, y, e.getMessage());
+            return false;
+        }
+    }
+}
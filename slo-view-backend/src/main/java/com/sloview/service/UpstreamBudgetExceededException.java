@@ -0,0 +1,11 @@
+package com.sloview.service;
+
+/**
+ * Thrown when an upstream request is shed because the GIS API request budget is exhausted.
+ */
+public class UpstreamBudgetExceededException extends UpstreamRejectedException {
+
+    public UpstreamBudgetExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,386 @@
+package com.sloview.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Protects callers from a slow or failing GIS API.
+ *
+ * Every upstream call passes three guards before it is sent, in this order:
+ * <ul>
+ *   <li>A circuit breaker per endpoint path. It opens when too large a share of the most
+ *       recent calls failed, and then rejects calls immediately. After the open period a
+ *       single probe call is let through: if it succeeds the circuit closes, otherwise it
+ *       stays open for another period.</li>
+ *   <li>A bulkhead per priority that caps the calls in flight, including calls waiting for
+ *       budget, so background loads can never take the capacity of interactive requests.
+ *       Calls over the cap are rejected instead of queued.</li>
+ *   <li>The {@link UpstreamRateLimiter}.</li>
+ * </ul>
+ * Rejected calls fail with an {@link UpstreamUnavailableException} within microseconds, so
+ * callers fall back to cached data instead of waiting for a failure.
+ *
+ * Interactive calls time out adaptively: each endpoint tracks a smoothed latency and its
+ * mean deviation from recent successful interactive calls, and calls time out after the
+ * smoothed latency plus a number of deviations, within configured bounds. Like TCP's
+ * retransmission timeout, every timed out call doubles the timeout, and the backoff decays
+ * again as calls succeed, so an endpoint that became slower, or serves some slower
+ * queries, is not cut off by an estimate learned from faster calls. Probe calls use the
+ * maximum timeout. Background calls use a fixed timeout. 5xx responses, 429 responses,
+ * timeouts and connection errors count as failures; other 4xx responses do not.
+ */
+@Component
+public class UpstreamGuard {
+
+    private static final Logger log = LoggerFactory.getLogger(UpstreamGuard.class);
+
+    /**
+     * State of an endpoint's circuit; the gauge value is the ordinal.
+     */
+    enum State {
+        CLOSED,
+        HALF_OPEN,
+        OPEN
+    }
+
+    private final UpstreamRateLimiter rateLimiter;
+    private final MeterRegistry meterRegistry;
+    private final int windowSize;
+    private final int minCalls;
+    private final double failureRateThreshold;
+    private final long openNanos;
+    private final Map<UpstreamRateLimiter.Priority, Integer> bulkheadLimits =
+            new EnumMap<>(UpstreamRateLimiter.Priority.class);
+    private final Map<UpstreamRateLimiter.Priority, AtomicInteger> inFlight =
+            new EnumMap<>(UpstreamRateLimiter.Priority.class);
+    private final long minTimeoutNanos;
+    private final long maxTimeoutNanos;
+    private final double timeoutDeviations;
+    private final Duration backgroundTimeout;
+    private final Map<String, Circuit> circuits = new ConcurrentHashMap<>();
+
+    public UpstreamGuard(UpstreamRateLimiter rateLimiter,
+                         @Value("${gis.guard.circuit.window-size:20}") int windowSize,
+                         @Value("${gis.guard.circuit.min-calls:10}") int minCalls,
+                         @Value("${gis.guard.circuit.failure-rate-threshold:50}") double failureRateThreshold,
+                         @Value("${gis.guard.circuit.open-ms:30000}") long openMs,
+                         @Value("${gis.guard.bulkhead.interactive:40}") int interactiveBulkhead,
+                         @Value("${gis.guard.bulkhead.background:10}") int backgroundBulkhead,
+                         @Value("${gis.guard.timeout.min-ms:1000}") long minTimeoutMs,
+                         @Value("${gis.guard.timeout.max-ms:10000}") long maxTimeoutMs,
+                         @Value("${gis.guard.timeout.deviations:4}") double timeoutDeviations,
+                         @Value("${gis.guard.timeout.background-ms:30000}") long backgroundTimeoutMs,
+                         MeterRegistry meterRegistry) {
+        this.rateLimiter = rateLimiter;
+        this.meterRegistry = meterRegistry;
+        this.windowSize = windowSize;
+        this.minCalls = Math.min(minCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMs);
+        this.minTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(minTimeoutMs);
+        this.maxTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(maxTimeoutMs);
+        this.timeoutDeviations = timeoutDeviations;
+        this.backgroundTimeout = Duration.ofMillis(backgroundTimeoutMs);
+
+        bulkheadLimits.put(UpstreamRateLimiter.Priority.INTERACTIVE, interactiveBulkhead);
+        bulkheadLimits.put(UpstreamRateLimiter.Priority.BACKGROUND, backgroundBulkhead);
+        for (UpstreamRateLimiter.Priority priority : UpstreamRateLimiter.Priority.values()) {
+            AtomicInteger active = new AtomicInteger();
+            inFlight.put(priority, active);
+            Gauge.builder("gis.upstream.bulkhead.active", active, AtomicInteger::get)
+                    .description("Upstream calls in flight or waiting for budget")
+                    .tag("priority", priority.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Makes a guarded upstream call with a buffered result.
+     *
+     * @param url Request URL; its path identifies the circuit
+     * @param priority Budget priority of the call
+     * @param request Makes the call, with the timeout it must apply
+     * @return Result of the call, or an {@link UpstreamRejectedException} if it was not made
+     */
+    public <T> Mono<T> call(String url, UpstreamRateLimiter.Priority priority, Function<Duration, Mono<T>> request) {
+        return stream(url, priority, timeout -> request.apply(timeout).flux()).singleOrEmpty();
+    }
+
+    /**
+     * Makes a guarded upstream call with a streamed result. The timeout passed to the
+     * request is meant for the first element; the latency of interactive calls is measured
+     * up to it.
+     *
+     * @param url Request URL; its path identifies the circuit
+     * @param priority Budget priority of the call
+     * @param request Makes the call, with the timeout it must apply
+     * @return Result of the call, or an {@link UpstreamRejectedException} if it was not made
+     */
+    public <T> Flux<T> stream(String url, UpstreamRateLimiter.Priority priority, Function<Duration, Flux<T>> request) {
+        String endpoint = GisMetrics.endpoint(url);
+        return Flux.defer(() -> {
+            Circuit circuit = circuits.computeIfAbsent(endpoint, Circuit::new);
+            State state = circuit.enter(System.nanoTime());
+            if (state == State.OPEN) {
+                return reject(endpoint, "circuit_open", "circuit open for " + endpoint);
+            }
+            boolean probe = state == State.HALF_OPEN;
+            AtomicInteger active = inFlight.get(priority);
+            if (active.incrementAndGet() > bulkheadLimits.get(priority)) {
+                active.decrementAndGet();
+                circuit.abandon(probe);
+                return reject(endpoint, "bulkhead_full",
+                        priority.name().toLowerCase(Locale.ROOT) + " bulkhead full for " + endpoint);
+            }
+            boolean interactive = priority == UpstreamRateLimiter.Priority.INTERACTIVE;
+            AtomicBoolean recorded = new AtomicBoolean();
+            return rateLimiter.acquire(priority)
+                    .thenMany(Flux.defer(() -> {
+                        long start = System.nanoTime();
+                        AtomicBoolean first = new AtomicBoolean(true);
+                        // A probe must not fail only because the learned timeout is too short
+                        Duration timeout = probe && interactive ? Duration.ofNanos(maxTimeoutNanos) : timeout(circuit, priority);
+                        return request.apply(timeout)
+                                .doOnNext(item -> {
+                                    if (interactive && first.compareAndSet(true, false)) {
+                                        circuit.recordLatency(System.nanoTime() - start);
+                                    }
+                                })
+                                .doOnComplete(() -> {
+                                    recorded.set(true);
+                                    circuit.record(false, probe);
+                                })
+                                .doOnError(e -> {
+                                    recorded.set(true);
+                                    if (interactive && e instanceof TimeoutException) {
+                                        circuit.backOff();
+                                    }
+                                    circuit.record(isFailure(e), probe);
+                                });
+                    }))
+                    .doFinally(signal -> {
+                        active.decrementAndGet();
+                        if (!recorded.get()) {
+                            // Cancelled, or shed by the rate limiter before the call was made
+                            circuit.abandon(probe);
+                        }
+                    });
+        });
+    }
+
+    /**
+     * @param url Request URL
+     * @return State of the circuit of the URL's endpoint
+     */
+    State getState(String url) {
+        Circuit circuit = circuits.get(GisMetrics.endpoint(url));
+        return circuit != null ? circuit.currentState() : State.CLOSED;
+    }
+
+    /**
+     * @param url Request URL
+     * @return Current timeout of interactive calls to the URL's endpoint
+     */
+    Duration getTimeout(String url) {
+        Circuit circuit = circuits.get(GisMetrics.endpoint(url));
+        return circuit != null
+                ? timeout(circuit, UpstreamRateLimiter.Priority.INTERACTIVE)
+                : Duration.ofNanos(maxTimeoutNanos);
+    }
+
+    private Duration timeout(Circuit circuit, UpstreamRateLimiter.Priority priority) {
+        return priority == UpstreamRateLimiter.Priority.INTERACTIVE
+                ? Duration.ofNanos(circuit.timeoutNanos())
+                : backgroundTimeout;
+    }
+
+    private <T> Flux<T> reject(String endpoint, String reason, String message) {
+        Counter.builder("gis.upstream.rejected")
+                .description("Upstream calls rejected by an open circuit or a full bulkhead")
+                .tag("endpoint", endpoint)
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+        return Flux.error(new UpstreamUnavailableException("Upstream call rejected: " + message));
+    }
+
+    /**
+     * @return Whether an error indicates that the GIS API is unhealthy
+     */
+    private static boolean isFailure(Throwable e) {
+        if (e instanceof WebClientResponseException) {
+            HttpStatus status = HttpStatus.resolve(((WebClientResponseException) e).getRawStatusCode());
+            return status == null || status.is5xxServerError() || status == HttpStatus.TOO_MANY_REQUESTS;
+        }
+        return !(e instanceof UpstreamRejectedException);
+    }
+
+    /**
+     * Circuit and latency statistics of one endpoint.
+     */
+    private final class Circuit {
+        private final String endpoint;
+        // Outcomes of the most recent calls while closed, true for failures
+        private final boolean[] outcomes = new boolean[windowSize];
+        private int head;
+        private int count;
+        private int failures;
+        private State state = State.CLOSED;
+        private long openedAt;
+        private boolean probing;
+        // Smoothed latency and its mean deviation, negative until the first sample
+        private double smoothedNanos = -1;
+        private double deviationNanos;
+        // Timeout raised by timed out calls, 0 without backoff
+        private double backoffNanos;
+
+        Circuit(String endpoint) {
+            this.endpoint = endpoint;
+            Gauge.builder("gis.upstream.circuit.state", this, circuit -> circuit.currentState().ordinal())
+                    .description("Circuit state of a GIS API endpoint: 0 closed, 1 half-open, 2 open")
+                    .tag("endpoint", endpoint)
+                    .register(meterRegistry);
+            Gauge.builder("gis.upstream.timeout", this, circuit -> circuit.timeoutNanos() / 1e9)
+                    .description("Timeout of interactive calls to a GIS API endpoint")
+                    .tag("endpoint", endpoint)
+                    .baseUnit("seconds")
+                    .register(meterRegistry);
+        }
+
+        /**
+         * Decides whether a call may be made.
+         *
+         * @return CLOSED for a normal call, HALF_OPEN for a probe, OPEN to reject
+         */
+        synchronized State enter(long now) {
+            if (state == State.OPEN && now - openedAt >= openNanos) {
+                state = State.HALF_OPEN;
+            }
+            if (state == State.HALF_OPEN) {
+                if (probing) {
+                    return State.OPEN;
+                }
+                probing = true;
+            }
+            return state;
+        }
+
+        synchronized void record(boolean failure, boolean probe) {
+            if (probe) {
+                probing = false;
+                if (failure) {
+                    open("probe call failed");
+                } else {
+                    close();
+                }
+                return;
+            }
+            if (state != State.CLOSED) {
+                // Calls that started before the circuit opened do not decide its state
+                return;
+            }
+            if (count == outcomes.length) {
+                if (outcomes[head]) {
+                    failures--;
+                }
+            } else {
+                count++;
+            }
+            outcomes[head] = failure;
+            head = (head + 1) % outcomes.length;
+            if (failure) {
+                failures++;
+            }
+            if (count >= minCalls && failures * 100.0 >= failureRateThreshold * count) {
+                open(failures + " of the last " + count + " calls failed");
+            }
+        }
+
+        /**
+         * Releases a probe that ended without an outcome, so the next call probes instead.
+         */
+        synchronized void abandon(boolean probe) {
+            if (probe) {
+                probing = false;
+            }
+        }
+
+        /**
+         * Updates the smoothed latency and deviation the way TCP estimates its round-trip time.
+         */
+        synchronized void recordLatency(long nanos) {
+            if (smoothedNanos < 0) {
+                smoothedNanos = nanos;
+                deviationNanos = nanos / 2.0;
+            } else {
+                deviationNanos = 0.75 * deviationNanos + 0.25 * Math.abs(smoothedNanos - nanos);
+                smoothedNanos = 0.875 * smoothedNanos + 0.125 * nanos;
+            }
+            backoffNanos *= 0.875;
+        }
+
+        /**
+         * Doubles the timeout after a call timed out, up to the maximum.
+         */
+        synchronized void backOff() {
+            backoffNanos = Math.min(maxTimeoutNanos, 2.0 * timeoutNanos());
+        }
+
+        synchronized long timeoutNanos() {
+            if (smoothedNanos < 0) {
+                return maxTimeoutNanos;
+            }
+            long timeout = (long) Math.max(smoothedNanos + timeoutDeviations * deviationNanos, backoffNanos);
+            return Math.max(minTimeoutNanos, Math.min(maxTimeoutNanos, timeout));
+        }
+
+        synchronized State currentState() {
+            return state;
+        }
+
+        private void open(String reason) {
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+            transition(State.OPEN);
+            log.warn("Opened circuit for {} ({})", endpoint, reason);
+        }
+
+        private void close() {
+            state = State.CLOSED;
+            head = 0;
+            count = 0;
+            failures = 0;
+            transition(State.CLOSED);
+            log.info("Closed circuit for {} after a successful probe call", endpoint);
+        }
+
+        private void transition(State to) {
+            Counter.builder("gis.upstream.circuit.transitions")
+                    .description("Circuit state changes of a GIS API endpoint")
+                    .tag("endpoint", endpoint)
+                    .tag("state", to.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry)
+                    .increment();
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package com.sloview.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Central, non-blocking scheduler for the GIS API request budget.
+ *
+ * Admission is controlled by two limits: a token bucket that lets bursts up to its capacity
+ * through at full speed, and a sliding one-hour window that never admits more than the
+ * hourly quota. Requests that cannot be admitted right away wait in a per-priority queue
+ * without holding a thread; interactive requests are always served before background
+ * refresh work, and background work may not dip into the last part of the hourly quota.
+ * Requests are shed with an {@link UpstreamBudgetExceededException} when their queue is full
+ * or they have waited longer than allowed for their priority.
+ */
+@Component
+public class UpstreamRateLimiter {
+
+    /**
+     * Priority of an upstream request.
+     */
+    public enum Priority {
+        /** Request made on behalf of a waiting client. */
+        INTERACTIVE,
+        /** Cache loads and refreshes. */
+        BACKGROUND
+    }
+
+    private static final long WINDOW_NANOS = TimeUnit.HOURS.toNanos(1);
+
+    private final double capacity;
+    private final double nanosPerToken;
+    private final int hourlyQuota;
+    private final int backgroundReserve;
+    private final Map<Priority, Integer> maxQueue = new EnumMap<>(Priority.class);
+    private final Map<Priority, Long> maxWaitNanos = new EnumMap<>(Priority.class);
+    private final Map<Priority, ArrayDeque<Waiter>> queues = new EnumMap<>(Priority.class);
+    private final Map<Priority, Counter> shedCounters = new EnumMap<>(Priority.class);
+    private final Map<Priority, Timer> waitTimers = new EnumMap<>(Priority.class);
+
+    // Admission times of the last hour, oldest first
+    private final long[] window;
+    private int windowHead;
+    private int windowCount;
+
+    private double tokens;
+    private long lastRefillNanos;
+    private boolean drainScheduled;
+
+    public UpstreamRateLimiter(@Value("${gis.rate-limit.capacity:20}") int capacity,
+                               @Value("${gis.rate-limit.requests-per-hour:900}") int requestsPerHour,
+                               @Value("${gis.rate-limit.background-reserve:100}") int backgroundReserve,
+                               @Value("${gis.rate-limit.interactive.max-queue:200}") int interactiveMaxQueue,
+                               @Value("${gis.rate-limit.interactive.max-wait-ms:5000}") long interactiveMaxWaitMs,
+                               @Value("${gis.rate-limit.background.max-queue:1000}") int backgroundMaxQueue,
+                               @Value("${gis.rate-limit.background.max-wait-ms:600000}") long backgroundMaxWaitMs,
+                               MeterRegistry meterRegistry) {
+        this.capacity = capacity;
+        this.nanosPerToken = WINDOW_NANOS / (double) requestsPerHour;
+        this.hourlyQuota = requestsPerHour;
+        this.backgroundReserve = backgroundReserve;
+        this.window = new long[requestsPerHour];
+        this.tokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+
+        maxQueue.put(Priority.INTERACTIVE, interactiveMaxQueue);
+        maxQueue.put(Priority.BACKGROUND, backgroundMaxQueue);
+        maxWaitNanos.put(Priority.INTERACTIVE, TimeUnit.MILLISECONDS.toNanos(interactiveMaxWaitMs));
+        maxWaitNanos.put(Priority.BACKGROUND, TimeUnit.MILLISECONDS.toNanos(backgroundMaxWaitMs));
+
+        Gauge.builder("gis.upstream.budget.remaining", this, UpstreamRateLimiter::getRemainingHourlyBudget)
+                .description("Upstream requests left in the current one-hour window")
+                .register(meterRegistry);
+        Gauge.builder("gis.upstream.budget.tokens", this, UpstreamRateLimiter::getAvailableTokens)
+                .description("Burst tokens currently available")
+                .register(meterRegistry);
+        for (Priority priority : Priority.values()) {
+            queues.put(priority, new ArrayDeque<>());
+            String tag = priority.name().toLowerCase(Locale.ROOT);
+            Gauge.builder("gis.upstream.queue.size", this, limiter -> limiter.getQueueSize(priority))
+                    .description("Upstream requests waiting for budget")
+                    .tag("priority", tag)
+                    .register(meterRegistry);
+            shedCounters.put(priority, Counter.builder("gis.upstream.shed")
+                    .description("Upstream requests rejected for lack of budget")
+                    .tag("priority", tag)
+                    .register(meterRegistry));
+            waitTimers.put(priority, Timer.builder("gis.upstream.wait")
+                    .description("Time upstream requests waited for budget before they were admitted")
+                    .tag("priority", tag)
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Reserves one interactive upstream call.
+     *
+     * @return Mono that completes when the call may be made
+     */
+    public Mono<Void> acquire() {
+        return acquire(Priority.INTERACTIVE);
+    }
+
+    /**
+     * Reserves one upstream call.
+     *
+     * @param priority Priority of the call
+     * @return Mono that completes when the call may be made, or fails with
+     *         {@link UpstreamBudgetExceededException} if the call is shed
+     */
+    public Mono<Void> acquire(Priority priority) {
+        return Mono.create(sink -> {
+            Waiter waiter = new Waiter(sink, priority, System.nanoTime());
+            boolean admitted = false;
+            boolean shed = false;
+            synchronized (this) {
+                if (!hasPriorityWaiters(priority) && tryAdmit(priority, waiter.enqueuedAt)) {
+                    admitted = true;
+                } else if (queues.get(priority).size() >= maxQueue.get(priority)) {
+                    shed = true;
+                } else {
+                    queues.get(priority).addLast(waiter);
+                    scheduleDrain(waiter.enqueuedAt);
+                }
+            }
+            if (admitted) {
+                waitTimers.get(priority).record(0, TimeUnit.NANOSECONDS);
+                sink.success();
+            } else if (shed) {
+                reject(waiter, "queue full");
+            } else {
+                sink.onCancel(() -> {
+                    synchronized (this) {
+                        queues.get(priority).remove(waiter);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * @return Number of requests still allowed in the sliding one-hour window
+     */
+    public synchronized int getRemainingHourlyBudget() {
+        expireWindow(System.nanoTime());
+        return hourlyQuota - windowCount;
+    }
+
+    /**
+     * @return Burst tokens currently available
+     */
+    public synchronized double getAvailableTokens() {
+        refill(System.nanoTime());
+        return tokens;
+    }
+
+    /**
+     * @param priority Queue priority
+     * @return Number of requests waiting in the queue
+     */
+    public synchronized int getQueueSize(Priority priority) {
+        return queues.get(priority).size();
+    }
+
+    /**
+     * Admits queued requests in priority order and sheds the ones that waited too long.
+     */
+    private void drain() {
+        List<Waiter> admitted = new ArrayList<>();
+        List<Waiter> expired = new ArrayList<>();
+        synchronized (this) {
+            drainScheduled = false;
+            long now = System.nanoTime();
+            for (Priority priority : Priority.values()) {
+                ArrayDeque<Waiter> queue = queues.get(priority);
+                while (!queue.isEmpty() && now - queue.peekFirst().enqueuedAt > maxWaitNanos.get(priority)) {
+                    expired.add(queue.pollFirst());
+                }
+            }
+            for (Priority priority : Priority.values()) {
+                ArrayDeque<Waiter> queue = queues.get(priority);
+                while (!queue.isEmpty() && tryAdmit(priority, now)) {
+                    admitted.add(queue.pollFirst());
+                }
+                if (!queue.isEmpty()) {
+                    // Lower priorities wait until this queue is empty
+                    break;
+                }
+            }
+            if (hasWaiters()) {
+                scheduleDrain(now);
+            }
+        }
+        long admittedAt = System.nanoTime();
+        for (Waiter waiter : admitted) {
+            waitTimers.get(waiter.priority).record(admittedAt - waiter.enqueuedAt, TimeUnit.NANOSECONDS);
+            waiter.sink.success();
+        }
+        expired.forEach(waiter -> reject(waiter, "waited too long"));
+    }
+
+    /**
+     * Takes a token and records the call in the hourly window if both limits allow it.
+     */
+    private boolean tryAdmit(Priority priority, long now) {
+        refill(now);
+        expireWindow(now);
+        int remaining = hourlyQuota - windowCount;
+        if (tokens < 1 || remaining <= 0) {
+            return false;
+        }
+        if (priority == Priority.BACKGROUND && remaining <= backgroundReserve) {
+            return false;
+        }
+        tokens -= 1;
+        window[(windowHead + windowCount) % window.length] = now;
+        windowCount++;
+        return true;
+    }
+
+    /**
+     * @return true if a request of any priority is queued
+     */
+    private boolean hasWaiters() {
+        for (ArrayDeque<Waiter> queue : queues.values()) {
+            if (!queue.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if a request of the given or a higher priority is queued
+     */
+    private boolean hasPriorityWaiters(Priority priority) {
+        for (Priority other : Priority.values()) {
+            if (!queues.get(other).isEmpty()) {
+                return true;
+            }
+            if (other == priority) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Schedules a drain for the moment the first queued request can be admitted.
+     */
+    private void scheduleDrain(long now) {
+        if (drainScheduled) {
+            return;
+        }
+        Priority next = Priority.INTERACTIVE;
+        for (Priority priority : Priority.values()) {
+            if (!queues.get(priority).isEmpty()) {
+                next = priority;
+                break;
+            }
+        }
+        drainScheduled = true;
+        // Wake up at least once a second so that expired waiters are shed on time
+        long delay = Math.min(admissionDelay(next, now), TimeUnit.SECONDS.toNanos(1));
+        Schedulers.parallel().schedule(this::drain, Math.max(delay, TimeUnit.MILLISECONDS.toNanos(1)),
+                TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Computes how long a request of the given priority has to wait for both a token and
+     * room in the hourly window.
+     */
+    private long admissionDelay(Priority priority, long now) {
+        refill(now);
+        expireWindow(now);
+        long tokenWait = tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) * nanosPerToken);
+        int limit = priority == Priority.BACKGROUND ? hourlyQuota - backgroundReserve : hourlyQuota;
+        int mustExpire = windowCount - limit + 1;
+        long windowWait = 0;
+        if (mustExpire > windowCount) {
+            windowWait = Long.MAX_VALUE;
+        } else if (mustExpire > 0) {
+            windowWait = window[(windowHead + mustExpire - 1) % window.length] + WINDOW_NANOS - now;
+        }
+        return Math.max(tokenWait, windowWait);
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) / nanosPerToken);
+        lastRefillNanos = now;
+    }
+
+    private void expireWindow(long now) {
+        while (windowCount > 0 && now - window[windowHead] >= WINDOW_NANOS) {
+            windowHead = (windowHead + 1) % window.length;
+            windowCount--;
+        }
+    }
+
+    private void reject(Waiter waiter, String reason) {
+        shedCounters.get(waiter.priority).increment();
+        waiter.sink.error(new UpstreamBudgetExceededException(
+                "Upstream request budget exhausted for " + waiter.priority.name().toLowerCase(Locale.ROOT)
+                        + " request (" + reason + ")"));
+    }
+
+    /**
+     * Request waiting for budget.
+     */
+    private static final class Waiter {
+        private final MonoSink<Void> sink;
+        private final Priority priority;
+        private final long enqueuedAt;
+
+        Waiter(MonoSink<Void> sink, Priority priority, long enqueuedAt) {
+            this.sink = sink;
+            this.priority = priority;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
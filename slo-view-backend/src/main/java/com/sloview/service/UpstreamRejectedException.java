@@ -0,0 +1,12 @@
+package com.sloview.service;
+
+/**
+ * Thrown when an upstream request is rejected before it is sent to the GIS API.
+ * Such requests are not retried, since retrying immediately would be rejected the same way.
+ */
+public class UpstreamRejectedException extends RuntimeException {
+
+    public UpstreamRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,12 @@
+package com.sloview.service;
+
+/**
+ * Thrown when an upstream request is rejected because the circuit of its GIS API endpoint
+ * is open or the bulkhead of its priority is full.
+ */
+public class UpstreamUnavailableException extends UpstreamRejectedException {
+
+    public UpstreamUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,162 @@
+package com.sloview.service;
+
+import com.sloview.model.FeatureTable;
+import com.sloview.spatial.IndexedLayer;
+import com.sloview.tiles.VectorTileEncoder;
+import com.sloview.tiles.WebMercator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+
+/**
+ * Builds Mapbox Vector Tiles from the in-memory spatial indexes.
+ *
+ * Each tile layer is backed by one indexed table. The number of features per tile is
+ * capped per zoom level like viewport queries, keeping the features with the lowest OSM
+ * ids so that neighbouring tiles make the same choice; below the full detail zoom, points
+ * closer together than the point spacing are thinned as well. Lines and polygons are
+ * simplified with a tolerance of a fixed number of tile units before they are encoded.
+ */
+@Service
+public class VectorTileService {
+
+    private static final Map<String, String> LAYER_TABLES = Map.of(
+            "restaurants", "mv_restaurants",
+            "roads", "mv_road_network",
+            "pois", "planet_osm_point");
+
+    private static final double EARTH_CIRCUMFERENCE = 40075016.686;
+
+    private final SpatialIndexService spatialIndexService;
+    private final GisMetrics metrics;
+    private final VectorTileEncoder encoder;
+    private final int extent;
+    private final int buffer;
+    private final int baseZoom;
+    private final int baseFeatures;
+    private final int maxFeatures;
+    private final int pointSpacing;
+    private final int fullDetailZoom;
+    private final double simplifyUnits;
+
+    public VectorTileService(SpatialIndexService spatialIndexService, GisMetrics metrics,
+                             @Value("${gis.tiles.extent:4096}") int extent,
+                             @Value("${gis.tiles.buffer:64}") int buffer,
+                             @Value("${gis.tiles.base-zoom:12}") int baseZoom,
+                             @Value("${gis.tiles.base-features:500}") int baseFeatures,
+                             @Value("${gis.tiles.max-features:8000}") int maxFeatures,
+                             @Value("${gis.tiles.point-spacing:64}") int pointSpacing,
+                             @Value("${gis.tiles.full-detail-zoom:16}") int fullDetailZoom,
+                             @Value("${gis.tiles.simplify-units:1.0}") double simplifyUnits) {
+        this.spatialIndexService = spatialIndexService;
+        this.metrics = metrics;
+        this.encoder = new VectorTileEncoder(extent, buffer);
+        this.extent = extent;
+        this.buffer = buffer;
+        this.baseZoom = baseZoom;
+        this.baseFeatures = baseFeatures;
+        this.maxFeatures = maxFeatures;
+        this.pointSpacing = pointSpacing;
+        this.fullDetailZoom = fullDetailZoom;
+        this.simplifyUnits = simplifyUnits;
+    }
+
+    /**
+     * @param layer Tile layer name
+     * @return true if tiles can be built for the layer
+     */
+    public boolean hasLayer(String layer) {
+        return LAYER_TABLES.containsKey(layer);
+    }
+
+    /**
+     * @return Names of the tile layers
+     */
+    public Set<String> getLayers() {
+        return LAYER_TABLES.keySet();
+    }
+
+    /**
+     * @param layer Tile layer name
+     * @return Time the layer's table was indexed in milliseconds, or empty if it is not indexed yet
+     */
+    public OptionalLong getLayerLoadedAt(String layer) {
+        String table = LAYER_TABLES.get(layer);
+        Optional<IndexedLayer> indexed = table != null ? spatialIndexService.getLayer(table) : Optional.empty();
+        return indexed.isPresent() ? OptionalLong.of(indexed.get().getLoadedAt()) : OptionalLong.empty();
+    }
+
+    /**
+     * @param layer Tile layer name
+     * @return Version of the tiles of a layer, or empty if the layer's table is not indexed yet
+     */
+    public Optional<String> getLayerVersion(String layer) {
+        return getLayerContentTag(layer).map(tag -> tag + "/" + getSignature());
+    }
+
+    /**
+     * @param layer Tile layer name
+     * @return Content tag of the indexed data of a layer, or empty if the layer's table is not indexed yet
+     */
+    public Optional<String> getLayerContentTag(String layer) {
+        String table = LAYER_TABLES.get(layer);
+        Optional<IndexedLayer> indexed = table != null ? spatialIndexService.getLayer(table) : Optional.empty();
+        return indexed.map(IndexedLayer::getContentTag);
+    }
+
+    /**
+     * Describes the settings that affect the content of tiles, so stored tiles can be
+     * discarded when they change.
+     *
+     * @return Settings signature
+     */
+    public String getSignature() {
+        return "extent=" + extent + ",buffer=" + buffer + ",base-zoom=" + baseZoom + ",base-features=" + baseFeatures
+                + ",max-features=" + maxFeatures + ",point-spacing=" + pointSpacing + ",full-detail-zoom=" + fullDetailZoom
+                + ",simplify-units=" + simplifyUnits;
+    }
+
+    /**
+     * Builds a tile of a layer.
+     *
+     * @param layer Tile layer name
+     * @param zoom Zoom level
+     * @param x Tile column
+     * @param y Tile row
+     * @return Encoded tile, or empty if the layer's table is not indexed yet
+     */
+    public Optional<byte[]> getTile(String layer, int zoom, int x, int y) {
+        String table = LAYER_TABLES.get(layer);
+        if (table == null) {
+            throw new IllegalArgumentException("Unknown tile layer: " + layer);
+        }
+        Optional<IndexedLayer> indexed = spatialIndexService.getLayer(table);
+        if (indexed.isEmpty()) {
+            return Optional.empty();
+        }
+
+        return Optional.of(metrics.transform("tile.encode", () -> {
+            double[] bounds = WebMercator.tileBounds(zoom, x, y, buffer / (double) extent);
+            double centerLat = WebMercator.latitude(y + 0.5, zoom);
+            double metersPerUnit = EARTH_CIRCUMFERENCE * Math.cos(Math.toRadians(centerLat)) / ((1L << zoom) * (double) extent);
+            FeatureTable features = indexed.get()
+                    .inBounds(bounds[0], bounds[1], bounds[2], bounds[3], featureCap(zoom))
+                    .simplify(simplifyUnits * metersPerUnit);
+            int spacing = zoom < fullDetailZoom ? pointSpacing : 0;
+            return encoder.encode(layer, features, zoom, x, y, spacing);
+        }));
+    }
+
+    /**
+     * The cap doubles with every zoom level above the base zoom, up to the configured maximum.
+     */
+    private int featureCap(int zoom) {
+        int shift = Math.max(-30, Math.min(30, zoom - baseZoom));
+        long cap = shift >= 0 ? (long) baseFeatures << shift : baseFeatures >> -shift;
+        return (int) Math.max(1, Math.min(maxFeatures, cap));
+    }
+}
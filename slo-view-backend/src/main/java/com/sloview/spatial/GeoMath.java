@@ -0,0 +1,108 @@
+package com.sloview.spatial;
+
+/**
+ * Geodesic helpers for WGS84 longitude/latitude coordinates.
+ *
+ * Distances use a spherical earth model, which is within a fraction of a percent of the
+ * PostGIS geography distances returned by the GIS API at the scale of a county.
+ */
+public final class GeoMath {
+
+    /** Mean earth radius in meters. */
+    public static final double EARTH_RADIUS = 6371008.8;
+
+    private static final double METERS_PER_DEGREE = Math.PI * EARTH_RADIUS / 180.0;
+
+    private GeoMath() {
+    }
+
+    /**
+     * Great-circle distance between two points.
+     *
+     * @return Distance in meters
+     */
+    public static double haversine(double lon1, double lat1, double lon2, double lat2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    /**
+     * Bounding box in degrees that contains every point within the given radius.
+     *
+     * @return Array with [minLon, minLat, maxLon, maxLat]
+     */
+    public static double[] radiusBounds(double lon, double lat, double meters) {
+        double dLat = meters / METERS_PER_DEGREE;
+        double cosLat = Math.cos(Math.toRadians(Math.min(89.0, Math.abs(lat) + dLat)));
+        double dLon = meters / (METERS_PER_DEGREE * Math.max(cosLat, 1e-6));
+        return new double[]{lon - dLon, lat - dLat, lon + dLon, lat + dLat};
+    }
+
+    /**
+     * Shortest distance from a point to a polyline, measured in a local equirectangular
+     * projection centered on the point.
+     *
+     * @param lon Point longitude
+     * @param lat Point latitude
+     * @param coords Interleaved lon/lat vertex array
+     * @param from Index of the first vertex (in vertices, not array slots)
+     * @param to Exclusive index of the last vertex
+     * @return Distance in meters
+     */
+    public static double distanceToPolyline(double lon, double lat, double[] coords, int from, int to) {
+        if (to - from == 1) {
+            return haversine(lon, lat, coords[from * 2], coords[from * 2 + 1]);
+        }
+        double kx = METERS_PER_DEGREE * Math.cos(Math.toRadians(lat));
+        double best = Double.POSITIVE_INFINITY;
+        double ax = (coords[from * 2] - lon) * kx;
+        double ay = (coords[from * 2 + 1] - lat) * METERS_PER_DEGREE;
+        for (int i = from + 1; i < to; i++) {
+            double bx = (coords[i * 2] - lon) * kx;
+            double by = (coords[i * 2 + 1] - lat) * METERS_PER_DEGREE;
+            best = Math.min(best, originToSegmentSquared(ax, ay, bx, by));
+            ax = bx;
+            ay = by;
+        }
+        return Math.sqrt(best);
+    }
+
+    /**
+     * Ray-casting point-in-polygon test for a single closed ring.
+     *
+     * @param lon Point longitude
+     * @param lat Point latitude
+     * @param coords Interleaved lon/lat vertex array
+     * @param from Index of the first ring vertex
+     * @param to Exclusive index of the last ring vertex
+     * @return true if the point lies inside the ring
+     */
+    public static boolean ringContains(double lon, double lat, double[] coords, int from, int to) {
+        boolean inside = false;
+        for (int i = from, j = to - 1; i < to; j = i++) {
+            double xi = coords[i * 2];
+            double yi = coords[i * 2 + 1];
+            double xj = coords[j * 2];
+            double yj = coords[j * 2 + 1];
+            if ((yi > lat) != (yj > lat) && lon < (xj - xi) * (lat - yi) / (yj - yi) + xi) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    private static double originToSegmentSquared(double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : -(ax * dx + ay * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        double px = ax + t * dx;
+        double py = ay + t * dy;
+        return px * px + py * py;
+    }
+}
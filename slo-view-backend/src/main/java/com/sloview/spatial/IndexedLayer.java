@@ -0,0 +1,400 @@
+package com.sloview.spatial;
+
+import com.sloview.model.FeatureTable;
+
+import java.util.Arrays;
+
+/**
+ * Read-only, in-memory replica of one GIS table, indexed with a {@link PackedRTree}.
+ *
+ * The layer keeps the features in the table produced by the nearby features transform
+ * of {@code GISApiService}, plus a packed vertex array used for exact distance
+ * computations; query results are views of that table. It only answers queries that fall
+ * entirely inside the area it was replicated from, so a local answer matches what the
+ * GIS API would return.
+ */
+public final class IndexedLayer {
+
+    private static final byte POINT = 0;
+    private static final byte LINE = 1;
+    private static final byte POLYGON = 2;
+
+    private final String table;
+    private final FeatureTable features;
+    private final byte[] kinds;
+    private final int[] vertexOffsets;
+    private final double[] vertices;
+    private final int[] ranks;
+    private final PackedRTree tree;
+    private final double coverageLon;
+    private final double coverageLat;
+    private final double coverageRadius;
+    private final long loadedAt;
+    // Hash of the features, computed on first use
+    private volatile String contentTag;
+
+    private IndexedLayer(String table, FeatureTable features, byte[] kinds, int[] vertexOffsets,
+                         double[] vertices, int[] ranks, PackedRTree tree, double coverageLon,
+                         double coverageLat, double coverageRadius) {
+        this.table = table;
+        this.features = features;
+        this.kinds = kinds;
+        this.vertexOffsets = vertexOffsets;
+        this.vertices = vertices;
+        this.ranks = ranks;
+        this.tree = tree;
+        this.coverageLon = coverageLon;
+        this.coverageLat = coverageLat;
+        this.coverageRadius = coverageRadius;
+        this.loadedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Builds a layer from the features returned by a nearby query around a center point.
+     *
+     * @param table Source table name
+     * @param features Transformed nearby features
+     * @param centerLon Longitude the replication query was centered on
+     * @param centerLat Latitude the replication query was centered on
+     * @param radius Distance of the replication query in meters
+     * @param truncated Whether the replication query hit its feature limit. In that case only
+     *                  the radius up to the farthest returned feature is considered complete,
+     *                  since the GIS API returns the nearest features first.
+     * @return Indexed layer
+     */
+    public static IndexedLayer build(String table, FeatureTable features,
+                                     double centerLon, double centerLat, double radius, boolean truncated) {
+        int n = features.size();
+        byte[] kinds = new byte[n];
+        int[] vertexOffsets = new int[n + 1];
+        double[] minX = new double[n];
+        double[] minY = new double[n];
+        double[] maxX = new double[n];
+        double[] maxY = new double[n];
+        VertexBuffer buffer = new VertexBuffer(n * 2);
+        double farthest = 0;
+
+        for (int i = 0; i < n; i++) {
+            kinds[i] = appendGeometry(features, i, buffer);
+            vertexOffsets[i + 1] = buffer.size;
+
+            double bMinX = Double.POSITIVE_INFINITY;
+            double bMinY = Double.POSITIVE_INFINITY;
+            double bMaxX = Double.NEGATIVE_INFINITY;
+            double bMaxY = Double.NEGATIVE_INFINITY;
+            for (int v = vertexOffsets[i]; v < vertexOffsets[i + 1]; v++) {
+                bMinX = Math.min(bMinX, buffer.data[v * 2]);
+                bMinY = Math.min(bMinY, buffer.data[v * 2 + 1]);
+                bMaxX = Math.max(bMaxX, buffer.data[v * 2]);
+                bMaxY = Math.max(bMaxY, buffer.data[v * 2 + 1]);
+            }
+            minX[i] = bMinX;
+            minY[i] = bMinY;
+            maxX[i] = bMaxX;
+            maxY[i] = bMaxY;
+
+            double distance = features.getDistance(i);
+            if (!Double.isNaN(distance)) {
+                farthest = Math.max(farthest, distance);
+            }
+        }
+
+        double coverageRadius = truncated ? Math.min(radius, farthest) : radius;
+        return new IndexedLayer(table, features, kinds,
+                vertexOffsets, Arrays.copyOf(buffer.data, buffer.size * 2), rankByOsmId(features),
+                PackedRTree.build(minX, minY, maxX, maxY), centerLon, centerLat, coverageRadius);
+    }
+
+    /**
+     * Ranks features by ascending OSM id, which gives bounding box queries an ordering that
+     * does not change as the viewport moves.
+     */
+    private static int[] rankByOsmId(FeatureTable features) {
+        Integer[] order = new Integer[features.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> {
+            int byId = Long.compare(features.getOsmId(a), features.getOsmId(b));
+            return byId != 0 ? byId : Integer.compare(a, b);
+        });
+        int[] ranks = new int[order.length];
+        for (int rank = 0; rank < order.length; rank++) {
+            ranks[order[rank]] = rank;
+        }
+        return ranks;
+    }
+
+    /**
+     * Appends the vertices used for distance computations and returns the geometry kind:
+     * the line of a line string, the exterior ring of a polygon or the representative point.
+     * Features without a usable geometry are indexed as an unreachable empty entry.
+     */
+    private static byte appendGeometry(FeatureTable features, int index, VertexBuffer buffer) {
+        FeatureTable.GeometryType type = features.getGeometryType(index);
+        boolean hasParts = features.getPartCount(index) > 0;
+
+        if (type == FeatureTable.GeometryType.LINE_STRING || type == FeatureTable.GeometryType.POLYGON) {
+            if (hasParts) {
+                for (int v = features.getPartStart(index, 0); v < features.getPartEnd(index, 0); v++) {
+                    buffer.add(features.getVertexLon(v), features.getVertexLat(v));
+                }
+            }
+            return type == FeatureTable.GeometryType.LINE_STRING ? LINE : POLYGON;
+        }
+
+        double lon = features.getLongitude(index);
+        double lat = features.getLatitude(index);
+        if (!Double.isNaN(lon) && !Double.isNaN(lat)) {
+            buffer.add(lon, lat);
+        }
+        return POINT;
+    }
+
+    /**
+     * Checks whether a radius query lies entirely inside the replicated area.
+     *
+     * @param lon Query longitude
+     * @param lat Query latitude
+     * @param distance Query distance in meters
+     * @return true if the layer can answer the query on its own
+     */
+    public boolean covers(double lon, double lat, double distance) {
+        return GeoMath.haversine(coverageLon, coverageLat, lon, lat) + distance <= coverageRadius;
+    }
+
+    /**
+     * Checks whether a bounding box lies entirely inside the replicated area.
+     *
+     * @param minLon Minimum longitude
+     * @param minLat Minimum latitude
+     * @param maxLon Maximum longitude
+     * @param maxLat Maximum latitude
+     * @return true if the layer holds every feature of the box
+     */
+    public boolean coversBounds(double minLon, double minLat, double maxLon, double maxLat) {
+        // The replicated area is a circle, so it contains the box if it contains its corners
+        return covers(minLon, minLat, 0) && covers(minLon, maxLat, 0)
+                && covers(maxLon, minLat, 0) && covers(maxLon, maxLat, 0);
+    }
+
+    /**
+     * Finds the features within a distance of a point, nearest first.
+     *
+     * @param lon Query longitude
+     * @param lat Query latitude
+     * @param distance Search distance in meters
+     * @param limit Maximum number of results
+     * @return Matching features with their distance to the query point
+     */
+    public FeatureTable nearby(double lon, double lat, double distance, int limit) {
+        if (limit <= 0) {
+            return FeatureTable.empty();
+        }
+        double[] bounds = GeoMath.radiusBounds(lon, lat, distance);
+        BoundedHeap heap = new BoundedHeap(limit);
+        tree.search(bounds[0], bounds[1], bounds[2], bounds[3], index -> {
+            double d = distanceTo(index, lon, lat);
+            if (d <= distance) {
+                heap.offer(index, d);
+            }
+        });
+
+        int[] order = heap.drainSorted();
+        return features.select(order, heap.sortedKeys());
+    }
+
+    /**
+     * Finds the features intersecting a bounding box, ordered by OSM id.
+     * Because the ordering is global, the features returned for a viewport are stable
+     * while panning, and a smaller cap always returns a subset of a larger one.
+     *
+     * @param minLon Minimum longitude
+     * @param minLat Minimum latitude
+     * @param maxLon Maximum longitude
+     * @param maxLat Maximum latitude
+     * @param limit Maximum number of results
+     * @return Matching features
+     */
+    public FeatureTable inBounds(double minLon, double minLat, double maxLon, double maxLat, int limit) {
+        if (limit <= 0) {
+            return FeatureTable.empty();
+        }
+        BoundedHeap heap = new BoundedHeap(limit);
+        tree.search(minLon, minLat, maxLon, maxLat, index -> heap.offer(index, ranks[index]));
+
+        return features.select(heap.drainSorted(), null);
+    }
+
+    private double distanceTo(int index, double lon, double lat) {
+        int from = vertexOffsets[index];
+        int to = vertexOffsets[index + 1];
+        if (from == to) {
+            return Double.POSITIVE_INFINITY;
+        }
+        if (kinds[index] == POLYGON && GeoMath.ringContains(lon, lat, vertices, from, to)) {
+            return 0.0;
+        }
+        return GeoMath.distanceToPolyline(lon, lat, vertices, from, to);
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public int size() {
+        return features.size();
+    }
+
+    /**
+     * @return All replicated features of the layer
+     */
+    public FeatureTable getFeatures() {
+        return features;
+    }
+
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+
+    /**
+     * @return Hash of the features and the replicated area, equal for layers loaded with
+     *         the same data
+     */
+    public String getContentTag() {
+        String tag = contentTag;
+        if (tag == null) {
+            long hash = features.contentHash();
+            hash = hash * 31 + Double.hashCode(coverageLon);
+            hash = hash * 31 + Double.hashCode(coverageLat);
+            hash = hash * 31 + Double.hashCode(coverageRadius);
+            tag = table + "-" + Long.toHexString(hash);
+            contentTag = tag;
+        }
+        return tag;
+    }
+
+    /**
+     * Growable interleaved lon/lat array used while building the layer.
+     */
+    private static final class VertexBuffer {
+        private double[] data;
+        private int size;
+
+        VertexBuffer(int initialVertices) {
+            this.data = new double[Math.max(16, initialVertices * 2)];
+        }
+
+        void add(double lon, double lat) {
+            if (size * 2 + 2 > data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            data[size * 2] = lon;
+            data[size * 2 + 1] = lat;
+            size++;
+        }
+    }
+
+    /**
+     * Bounded max-heap keeping the {@code limit} candidates with the smallest keys, ties broken
+     * by index so that results are stable between identical queries.
+     */
+    private static final class BoundedHeap {
+        private final int limit;
+        private int[] indices;
+        private double[] keys;
+        private int size;
+        private double[] sortedKeys = new double[0];
+
+        BoundedHeap(int limit) {
+            this.limit = limit;
+            int capacity = Math.min(limit, 64);
+            this.indices = new int[capacity];
+            this.keys = new double[capacity];
+        }
+
+        void offer(int index, double key) {
+            if (size < limit) {
+                if (size == indices.length) {
+                    int capacity = (int) Math.min(limit, indices.length * 2L);
+                    indices = Arrays.copyOf(indices, capacity);
+                    keys = Arrays.copyOf(keys, capacity);
+                }
+                indices[size] = index;
+                keys[size] = key;
+                siftUp(size++);
+            } else if (above(indices[0], keys[0], index, key)) {
+                indices[0] = index;
+                keys[0] = key;
+                siftDown(0);
+            }
+        }
+
+        /**
+         * Empties the heap into an array of feature indices ordered by ascending key.
+         */
+        int[] drainSorted() {
+            int[] order = new int[size];
+            sortedKeys = new double[size];
+            while (size > 0) {
+                int last = --size;
+                order[last] = indices[0];
+                sortedKeys[last] = keys[0];
+                indices[0] = indices[last];
+                keys[0] = keys[last];
+                siftDown(0);
+            }
+            return order;
+        }
+
+        /**
+         * @return Keys of the last drained indices, in the same order
+         */
+        double[] sortedKeys() {
+            return sortedKeys;
+        }
+
+        private static boolean above(int indexA, double keyA, int indexB, double keyB) {
+            return keyA > keyB || (keyA == keyB && indexA > indexB);
+        }
+
+        private void siftUp(int position) {
+            while (position > 0) {
+                int parent = (position - 1) / 2;
+                if (!above(indices[position], keys[position], indices[parent], keys[parent])) {
+                    return;
+                }
+                swap(position, parent);
+                position = parent;
+            }
+        }
+
+        private void siftDown(int position) {
+            while (true) {
+                int left = position * 2 + 1;
+                int largest = position;
+                if (left < size && above(indices[left], keys[left], indices[largest], keys[largest])) {
+                    largest = left;
+                }
+                int right = left + 1;
+                if (right < size && above(indices[right], keys[right], indices[largest], keys[largest])) {
+                    largest = right;
+                }
+                if (largest == position) {
+                    return;
+                }
+                swap(position, largest);
+                position = largest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int index = indices[a];
+            indices[a] = indices[b];
+            indices[b] = index;
+            double key = keys[a];
+            keys[a] = keys[b];
+            keys[b] = key;
+        }
+    }
+}
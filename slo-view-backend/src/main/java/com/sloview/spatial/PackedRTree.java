@@ -0,0 +1,236 @@
+package com.sloview.spatial;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Static, read-only R-tree bulk loaded with the Sort-Tile-Recursive (STR) algorithm.
+ *
+ * The tree is built once from the bounding boxes of a layer and stored in flat primitive
+ * arrays (no node objects), so a fully packed tree over tens of thousands of features
+ * costs a few megabytes and can be searched without allocation.
+ * Each level is laid out contiguously: level 0 holds the item boxes, the last level
+ * holds the root.
+ */
+public final class PackedRTree {
+
+    private static final int NODE_CAPACITY = 16;
+
+    // 4 values per node: minX, minY, maxX, maxY
+    private final double[] boxes;
+    // For level 0 the item id, for upper levels the position of the first child
+    private final int[] refs;
+    // Exclusive end position of every level
+    private final int[] levelEnds;
+    private final int size;
+
+    private PackedRTree(double[] boxes, int[] refs, int[] levelEnds, int size) {
+        this.boxes = boxes;
+        this.refs = refs;
+        this.levelEnds = levelEnds;
+        this.size = size;
+    }
+
+    /**
+     * Builds a packed tree over the given item boxes.
+     *
+     * @param minX Minimum X of each item
+     * @param minY Minimum Y of each item
+     * @param maxX Maximum X of each item
+     * @param maxY Maximum Y of each item
+     * @return Packed tree whose search results are indices into the input arrays
+     */
+    public static PackedRTree build(double[] minX, double[] minY, double[] maxX, double[] maxY) {
+        int n = minX.length;
+        if (n == 0) {
+            return new PackedRTree(new double[0], new int[0], new int[0], 0);
+        }
+
+        // Count nodes for all levels up front
+        int total = 0;
+        int levelCount = 0;
+        int levelSize = n;
+        do {
+            total += levelSize;
+            levelCount++;
+            levelSize = levelSize == 1 ? 0 : (levelSize + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        } while (levelSize > 0);
+
+        double[] boxes = new double[total * 4];
+        int[] refs = new int[total];
+        int[] levelEnds = new int[levelCount];
+
+        // Current level entries before STR ordering
+        double[] levelBoxes = new double[n * 4];
+        int[] levelRefs = new int[n];
+        for (int i = 0; i < n; i++) {
+            levelBoxes[i * 4] = minX[i];
+            levelBoxes[i * 4 + 1] = minY[i];
+            levelBoxes[i * 4 + 2] = maxX[i];
+            levelBoxes[i * 4 + 3] = maxY[i];
+            levelRefs[i] = i;
+        }
+
+        int position = 0;
+        int level = 0;
+        int count = n;
+        while (true) {
+            int[] order = strOrder(levelBoxes, count);
+            int levelStart = position;
+            for (int i = 0; i < count; i++) {
+                int src = order[i];
+                System.arraycopy(levelBoxes, src * 4, boxes, position * 4, 4);
+                refs[position] = levelRefs[src];
+                position++;
+            }
+            levelEnds[level++] = position;
+            if (count == 1) {
+                break;
+            }
+
+            // Group consecutive entries into parent nodes
+            int parentCount = (count + NODE_CAPACITY - 1) / NODE_CAPACITY;
+            double[] parentBoxes = new double[parentCount * 4];
+            int[] parentRefs = new int[parentCount];
+            for (int p = 0; p < parentCount; p++) {
+                int childStart = levelStart + p * NODE_CAPACITY;
+                int childEnd = Math.min(childStart + NODE_CAPACITY, position);
+                double bMinX = Double.POSITIVE_INFINITY;
+                double bMinY = Double.POSITIVE_INFINITY;
+                double bMaxX = Double.NEGATIVE_INFINITY;
+                double bMaxY = Double.NEGATIVE_INFINITY;
+                for (int c = childStart; c < childEnd; c++) {
+                    bMinX = Math.min(bMinX, boxes[c * 4]);
+                    bMinY = Math.min(bMinY, boxes[c * 4 + 1]);
+                    bMaxX = Math.max(bMaxX, boxes[c * 4 + 2]);
+                    bMaxY = Math.max(bMaxY, boxes[c * 4 + 3]);
+                }
+                parentBoxes[p * 4] = bMinX;
+                parentBoxes[p * 4 + 1] = bMinY;
+                parentBoxes[p * 4 + 2] = bMaxX;
+                parentBoxes[p * 4 + 3] = bMaxY;
+                parentRefs[p] = childStart;
+            }
+            levelBoxes = parentBoxes;
+            levelRefs = parentRefs;
+            count = parentCount;
+        }
+
+        return new PackedRTree(boxes, refs, levelEnds, n);
+    }
+
+    /**
+     * Computes the Sort-Tile-Recursive ordering of a level: entries are sorted by center X,
+     * cut into vertical slices, and each slice is sorted by center Y.
+     */
+    private static int[] strOrder(double[] levelBoxes, int count) {
+        int[] order = new int[count];
+        if (count <= NODE_CAPACITY) {
+            for (int i = 0; i < count; i++) {
+                order[i] = i;
+            }
+            return order;
+        }
+
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            double centerX = levelBoxes[i * 4] + levelBoxes[i * 4 + 2];
+            keys[i] = sortKey(centerX, i);
+        }
+        Arrays.sort(keys);
+        for (int i = 0; i < count; i++) {
+            order[i] = (int) keys[i];
+        }
+
+        int nodeCount = (count + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        int sliceCount = (int) Math.ceil(Math.sqrt(nodeCount));
+        int sliceSize = sliceCount * NODE_CAPACITY;
+        for (int sliceStart = 0; sliceStart < count; sliceStart += sliceSize) {
+            int sliceEnd = Math.min(sliceStart + sliceSize, count);
+            long[] sliceKeys = new long[sliceEnd - sliceStart];
+            for (int i = sliceStart; i < sliceEnd; i++) {
+                int entry = order[i];
+                double centerY = levelBoxes[entry * 4 + 1] + levelBoxes[entry * 4 + 3];
+                sliceKeys[i - sliceStart] = sortKey(centerY, entry);
+            }
+            Arrays.sort(sliceKeys);
+            for (int i = sliceStart; i < sliceEnd; i++) {
+                order[i] = (int) sliceKeys[i - sliceStart];
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Packs a coordinate and an entry index into a single sortable long.
+     * The coordinate is reduced to its float bits, which is precise enough for tiling purposes.
+     */
+    private static long sortKey(double value, int entry) {
+        int bits = Float.floatToIntBits((float) value);
+        // Flip the magnitude of negative values so that signed int order matches float order
+        if (bits < 0) {
+            bits ^= Integer.MAX_VALUE;
+        }
+        return ((long) bits << 32) | (entry & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Visits every item whose bounding box intersects the query box.
+     *
+     * @param minX Query minimum X
+     * @param minY Query minimum Y
+     * @param maxX Query maximum X
+     * @param maxY Query maximum Y
+     * @param visitor Receives the index of each intersecting item
+     */
+    public void search(double minX, double minY, double maxX, double maxY, IntConsumer visitor) {
+        if (size == 0) {
+            return;
+        }
+        int[] nodeStack = new int[levelEnds.length * NODE_CAPACITY + 1];
+        int[] levelStack = new int[nodeStack.length];
+        int top = 0;
+        nodeStack[top] = levelEnds[levelEnds.length - 1] - 1;
+        levelStack[top] = levelEnds.length - 1;
+        top++;
+
+        while (top > 0) {
+            top--;
+            int node = nodeStack[top];
+            int level = levelStack[top];
+            if (!intersects(node, minX, minY, maxX, maxY)) {
+                continue;
+            }
+            if (level == 0) {
+                visitor.accept(refs[node]);
+                continue;
+            }
+            int childStart = refs[node];
+            int childEnd = Math.min(childStart + NODE_CAPACITY, levelEnds[level - 1]);
+            for (int child = childStart; child < childEnd; child++) {
+                if (level - 1 == 0) {
+                    if (intersects(child, minX, minY, maxX, maxY)) {
+                        visitor.accept(refs[child]);
+                    }
+                } else {
+                    nodeStack[top] = child;
+                    levelStack[top] = level - 1;
+                    top++;
+                }
+            }
+        }
+    }
+
+    private boolean intersects(int node, double minX, double minY, double maxX, double maxY) {
+        int offset = node * 4;
+        return boxes[offset] <= maxX && boxes[offset + 1] <= maxY
+                && boxes[offset + 2] >= minX && boxes[offset + 3] >= minY;
+    }
+
+    /**
+     * @return Number of indexed items
+     */
+    public int size() {
+        return size;
+    }
+}
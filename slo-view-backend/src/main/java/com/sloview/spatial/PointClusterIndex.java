@@ -0,0 +1,244 @@
+package com.sloview.spatial;
+
+import com.sloview.model.FeatureTable;
+import com.sloview.tiles.WebMercator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hierarchical point clusters of a feature table, one level per zoom, in the style of
+ * the supercluster library.
+ *
+ * The representative points of the features form the level above the maximum zoom. Every
+ * lower level is built from the one above it by greedily merging the entries within a
+ * fixed screen radius of each other into their weighted centroid, so a level never holds
+ * more entries than fit on screen at that zoom. Each level is indexed with its own
+ * {@link PackedRTree}, which makes a viewport query proportional to the number of visible
+ * clusters rather than to the number of points.
+ */
+public final class PointClusterIndex {
+
+    static final String CLUSTER = "cluster";
+    static final String COUNT = "count";
+    static final String EXPANSION_ZOOM = "expansionZoom";
+    static final String LONGITUDE = "longitude";
+    static final String LATITUDE = "latitude";
+
+    private static final int TILE_SIZE = 256;
+
+    private final FeatureTable features;
+    private final int maxZoom;
+    // Levels by zoom; the level at maxZoom + 1 holds the unclustered points
+    private final Level[] levels;
+
+    private PointClusterIndex(FeatureTable features, int maxZoom, Level[] levels) {
+        this.features = features;
+        this.maxZoom = maxZoom;
+        this.levels = levels;
+    }
+
+    /**
+     * Clusters the representative points of a table. Features without one are left out.
+     *
+     * @param features Features to cluster
+     * @param maxZoom Highest zoom level at which points are clustered
+     * @param radiusPixels Cluster radius in pixels of a 256 pixel tile
+     * @return Cluster index
+     */
+    public static PointClusterIndex build(FeatureTable features, int maxZoom, double radiusPixels) {
+        int n = features.size();
+        double[] x = new double[n];
+        double[] y = new double[n];
+        int[] count = new int[n];
+        int[] ref = new int[n];
+        int size = 0;
+        for (int i = 0; i < n; i++) {
+            double lon = features.getLongitude(i);
+            double lat = features.getLatitude(i);
+            if (Double.isNaN(lon) || Double.isNaN(lat)) {
+                continue;
+            }
+            x[size] = WebMercator.worldX(lon, 0);
+            y[size] = WebMercator.worldY(lat, 0);
+            count[size] = 1;
+            ref[size] = i;
+            size++;
+        }
+
+        Level[] levels = new Level[maxZoom + 2];
+        levels[maxZoom + 1] = new Level(Arrays.copyOf(x, size), Arrays.copyOf(y, size),
+                Arrays.copyOf(count, size), Arrays.copyOf(ref, size), maxZoom + 1);
+        for (int zoom = maxZoom; zoom >= 0; zoom--) {
+            levels[zoom] = cluster(levels[zoom + 1], radiusPixels / (TILE_SIZE * (double) (1L << zoom)));
+        }
+        return new PointClusterIndex(features, maxZoom, levels);
+    }
+
+    /**
+     * Merges the entries of a level that lie within a radius of each other.
+     *
+     * @param source Level of the next higher zoom
+     * @param radius Cluster radius in world units of zoom 0
+     * @return Level of the given zoom
+     */
+    private static Level cluster(Level source, double radius) {
+        int n = source.x.length;
+        double[] x = new double[n];
+        double[] y = new double[n];
+        int[] count = new int[n];
+        int[] ref = new int[n];
+        int[] formedAt = new int[n];
+        boolean[] merged = new boolean[n];
+        IntBuffer neighbors = new IntBuffer();
+        double radiusSquared = radius * radius;
+        int size = 0;
+
+        for (int i = 0; i < n; i++) {
+            if (merged[i]) {
+                continue;
+            }
+            merged[i] = true;
+            double px = source.x[i];
+            double py = source.y[i];
+            neighbors.size = 0;
+            source.tree.search(px - radius, py - radius, px + radius, py + radius, j -> {
+                double dx = source.x[j] - px;
+                double dy = source.y[j] - py;
+                if (!merged[j] && dx * dx + dy * dy <= radiusSquared) {
+                    neighbors.add(j);
+                }
+            });
+
+            if (neighbors.size == 0) {
+                x[size] = px;
+                y[size] = py;
+                count[size] = source.count[i];
+                ref[size] = source.ref[i];
+                formedAt[size] = source.formedAt[i];
+                size++;
+                continue;
+            }
+
+            double wx = px * source.count[i];
+            double wy = py * source.count[i];
+            int total = source.count[i];
+            for (int k = 0; k < neighbors.size; k++) {
+                int j = neighbors.values[k];
+                merged[j] = true;
+                wx += source.x[j] * source.count[j];
+                wy += source.y[j] * source.count[j];
+                total += source.count[j];
+            }
+            x[size] = wx / total;
+            y[size] = wy / total;
+            count[size] = total;
+            ref[size] = -1;
+            formedAt[size] = source.zoom - 1;
+            size++;
+        }
+
+        return new Level(Arrays.copyOf(x, size), Arrays.copyOf(y, size), Arrays.copyOf(count, size),
+                Arrays.copyOf(ref, size), Arrays.copyOf(formedAt, size), source.zoom - 1);
+    }
+
+    /**
+     * Finds the clusters and single points within a bounding box at a zoom level.
+     * Clusters are reported first as maps with {@code cluster}, {@code count},
+     * {@code expansionZoom} (the zoom at which the cluster splits up), {@code longitude} and
+     * {@code latitude}; they are followed by the features that are not part of any cluster.
+     * Above the maximum zoom all points are returned unclustered.
+     *
+     * @param minLon Minimum longitude
+     * @param minLat Minimum latitude
+     * @param maxLon Maximum longitude
+     * @param maxLat Maximum latitude
+     * @param zoom Map zoom level
+     * @return Clusters followed by single features
+     */
+    public List<Map<String, Object>> getClusters(double minLon, double minLat, double maxLon, double maxLat, int zoom) {
+        Level level = levels[Math.max(0, Math.min(maxZoom + 1, zoom))];
+        List<Map<String, Object>> clusters = new ArrayList<>();
+        IntBuffer points = new IntBuffer();
+        level.tree.search(WebMercator.worldX(minLon, 0), WebMercator.worldY(maxLat, 0),
+                WebMercator.worldX(maxLon, 0), WebMercator.worldY(minLat, 0), i -> {
+                    if (level.ref[i] >= 0) {
+                        points.add(level.ref[i]);
+                        return;
+                    }
+                    Map<String, Object> cluster = new LinkedHashMap<>();
+                    cluster.put(CLUSTER, true);
+                    cluster.put(COUNT, level.count[i]);
+                    cluster.put(EXPANSION_ZOOM, level.formedAt[i] + 1);
+                    cluster.put(LONGITUDE, WebMercator.longitude(level.x[i], 0));
+                    cluster.put(LATITUDE, WebMercator.latitude(level.y[i], 0));
+                    clusters.add(cluster);
+                });
+
+        int[] sorted = Arrays.copyOf(points.values, points.size);
+        Arrays.sort(sorted);
+        clusters.addAll(features.select(sorted, null));
+        return clusters;
+    }
+
+    /**
+     * @return Number of points that were clustered
+     */
+    public int size() {
+        return levels[maxZoom + 1].x.length;
+    }
+
+    /**
+     * @return Number of clusters and single points at a zoom level
+     */
+    public int size(int zoom) {
+        return levels[Math.max(0, Math.min(maxZoom + 1, zoom))].x.length;
+    }
+
+    /**
+     * Entries of one zoom level: either a single point, referencing its feature, or a
+     * cluster with the zoom level it was formed at.
+     */
+    private static final class Level {
+        private final double[] x;
+        private final double[] y;
+        private final int[] count;
+        // Feature index of single points, -1 for clusters
+        private final int[] ref;
+        private final int[] formedAt;
+        private final int zoom;
+        private final PackedRTree tree;
+
+        Level(double[] x, double[] y, int[] count, int[] ref, int zoom) {
+            this(x, y, count, ref, new int[x.length], zoom);
+        }
+
+        Level(double[] x, double[] y, int[] count, int[] ref, int[] formedAt, int zoom) {
+            this.x = x;
+            this.y = y;
+            this.count = count;
+            this.ref = ref;
+            this.formedAt = formedAt;
+            this.zoom = zoom;
+            this.tree = PackedRTree.build(x, y, x, y);
+        }
+    }
+
+    /**
+     * Growable int array reused for search results.
+     */
+    private static final class IntBuffer {
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.sloview.tiles;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Minimal Protocol Buffers writer covering the wire types used by vector tiles.
+ *
+ * Messages are written into a growable byte array; nested messages are written into
+ * their own writer and appended as a length-delimited field.
+ */
+final class ProtobufWriter {
+
+    private static final int VARINT = 0;
+    private static final int FIXED64 = 1;
+    private static final int LENGTH_DELIMITED = 2;
+
+    private byte[] buffer;
+    private int size;
+
+    ProtobufWriter() {
+        this(64);
+    }
+
+    ProtobufWriter(int initialCapacity) {
+        this.buffer = new byte[Math.max(16, initialCapacity)];
+    }
+
+    void writeVarintField(int field, long value) {
+        writeTag(field, VARINT);
+        writeVarint(value);
+    }
+
+    void writeSignedVarintField(int field, long value) {
+        writeVarintField(field, zigZag(value));
+    }
+
+    void writeDoubleField(int field, double value) {
+        writeTag(field, FIXED64);
+        long bits = Double.doubleToLongBits(value);
+        ensureCapacity(8);
+        for (int i = 0; i < 8; i++) {
+            buffer[size++] = (byte) (bits >>> (i * 8));
+        }
+    }
+
+    void writeStringField(int field, String value) {
+        writeBytesField(field, value.getBytes(StandardCharsets.UTF_8), 0, -1);
+    }
+
+    void writeMessageField(int field, ProtobufWriter message) {
+        writeBytesField(field, message.buffer, 0, message.size);
+    }
+
+    /**
+     * Appends the fields of another message to this one.
+     */
+    void writeRaw(ProtobufWriter fields) {
+        ensureCapacity(fields.size);
+        System.arraycopy(fields.buffer, 0, buffer, size, fields.size);
+        size += fields.size;
+    }
+
+    /**
+     * Writes a packed repeated field of unsigned 32-bit values.
+     */
+    void writePackedField(int field, int[] values, int count) {
+        if (count == 0) {
+            return;
+        }
+        int length = 0;
+        for (int i = 0; i < count; i++) {
+            length += varintSize(values[i] & 0xFFFFFFFFL);
+        }
+        writeTag(field, LENGTH_DELIMITED);
+        writeVarint(length);
+        for (int i = 0; i < count; i++) {
+            writeVarint(values[i] & 0xFFFFFFFFL);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private void writeBytesField(int field, byte[] bytes, int offset, int length) {
+        int count = length < 0 ? bytes.length : length;
+        writeTag(field, LENGTH_DELIMITED);
+        writeVarint(count);
+        ensureCapacity(count);
+        System.arraycopy(bytes, offset, buffer, size, count);
+        size += count;
+    }
+
+    private void writeTag(int field, int wireType) {
+        writeVarint((long) field << 3 | wireType);
+    }
+
+    private void writeVarint(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[size++] = (byte) value;
+    }
+
+    private static int varintSize(long value) {
+        int bytes = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            bytes++;
+        }
+        return bytes;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.sloview.tiles;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+
+/**
+ * Append-only, memory-mapped file of encoded tiles for one dataset version.
+ *
+ * The file starts with a header holding the dataset version, followed by tile records:
+ * <pre>
+ *   int keyLength   (0 marks the end of the data, -1 padding up to the next segment)
+ *   int tileLength
+ *   key             (UTF-8 "layer/z/x/y")
+ *   tile
+ * </pre>
+ * The file grows in fixed-size segments that are mapped read-write, and a record never
+ * spans two segments. The key length is written last, so a record only becomes visible
+ * once it is complete; reopening a file scans the records to rebuild the offset index.
+ * Tiles are returned as read-only slices of the mapping and are never copied onto the
+ * heap. Records are never updated or removed: a new dataset version gets a new file, and
+ * tiles that are no longer served are dropped by copying the others to a new file.
+ */
+public final class TileStore implements Closeable {
+
+    private static final int MAGIC = 0x534C5654;
+    private static final int FORMAT = 1;
+    private static final int END = 0;
+    private static final int PADDING = -1;
+    private static final int RECORD_HEADER = 8;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final int segmentSize;
+    private final String version;
+    private final List<MappedByteBuffer> segments = new CopyOnWriteArrayList<>();
+    // Tile key to record position: segment index in the high bits, offset in the low bits
+    private final Map<String, Long> index = new ConcurrentHashMap<>();
+    private volatile long bytesUsed;
+    private int writeSegment;
+    private int writeOffset;
+
+    private TileStore(Path file, FileChannel channel, int segmentSize, String version) {
+        this.file = file;
+        this.channel = channel;
+        this.segmentSize = segmentSize;
+        this.version = version;
+    }
+
+    /**
+     * Creates an empty store, replacing any existing file.
+     *
+     * @param file Store file
+     * @param segmentSize Size of each mapped segment in bytes
+     * @param version Dataset version of the tiles
+     * @return Empty store
+     * @throws IOException if the file cannot be created
+     */
+    public static TileStore create(Path file, int segmentSize, String version) throws IOException {
+        Files.deleteIfExists(file);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        TileStore store = new TileStore(file, channel, segmentSize, version);
+        try {
+            byte[] versionBytes = version.getBytes(StandardCharsets.UTF_8);
+            if (12 + versionBytes.length > segmentSize) {
+                throw new IOException("Tile store version does not fit in a segment");
+            }
+            ByteBuffer header = store.segment(0);
+            header.putInt(0, MAGIC);
+            header.putInt(4, FORMAT);
+            header.putInt(8, versionBytes.length);
+            header.position(12);
+            header.put(versionBytes);
+            store.writeOffset = 12 + versionBytes.length;
+            return store;
+        } catch (IOException e) {
+            store.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens an existing store and indexes its tiles.
+     *
+     * @param file Store file
+     * @param segmentSize Size of each mapped segment in bytes, as used to create the file
+     * @return Store, or empty if the file is missing or not a tile store
+     * @throws IOException if the file cannot be read
+     */
+    public static Optional<TileStore> open(Path file, int segmentSize) throws IOException {
+        if (!Files.isRegularFile(file) || Files.size(file) < segmentSize || Files.size(file) % segmentSize != 0) {
+            return Optional.empty();
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer first = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        int versionLength = first.getInt(8);
+        if (first.getInt(0) != MAGIC || first.getInt(4) != FORMAT
+                || versionLength < 0 || 12 + versionLength > segmentSize) {
+            channel.close();
+            return Optional.empty();
+        }
+        byte[] versionBytes = new byte[versionLength];
+        first.position(12);
+        first.get(versionBytes);
+
+        TileStore store = new TileStore(file, channel, segmentSize, new String(versionBytes, StandardCharsets.UTF_8));
+        store.segments.add(first);
+        store.writeOffset = 12 + versionLength;
+        store.scan();
+        return Optional.of(store);
+    }
+
+    /**
+     * Returns a stored tile.
+     *
+     * @return Read-only view of the tile bytes, or empty if the tile is not stored
+     */
+    public Optional<ByteBuffer> get(String layer, int zoom, int x, int y) {
+        Long position = index.get(key(layer, zoom, x, y));
+        return position != null ? Optional.of(read(position)) : Optional.empty();
+    }
+
+    private ByteBuffer read(long position) {
+        ByteBuffer segment = segments.get((int) (position >>> 32));
+        int offset = (int) (long) position;
+        int keyLength = segment.getInt(offset);
+        int tileLength = segment.getInt(offset + 4);
+        ByteBuffer tile = segment.duplicate();
+        tile.limit(offset + RECORD_HEADER + keyLength + tileLength).position(offset + RECORD_HEADER + keyLength);
+        return tile.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Appends a tile. Tiles that are already stored are left unchanged.
+     *
+     * @return false if the tile is larger than a segment and cannot be stored
+     * @throws IOException if the file cannot grow
+     */
+    public boolean put(String layer, int zoom, int x, int y, byte[] tile) throws IOException {
+        return append(key(layer, zoom, x, y), tile);
+    }
+
+    /**
+     * Writes the tiles of some layers to a new store file of the same version, which is
+     * closed once complete. Tiles appended while copying may be missed.
+     *
+     * @param target File of the new store, replaced if it exists
+     * @param keepLayer Selects the layers whose tiles are copied
+     * @throws IOException if the new file cannot be written
+     */
+    public void copyTo(Path target, Predicate<String> keepLayer) throws IOException {
+        try (TileStore copy = create(target, segmentSize, version)) {
+            for (Map.Entry<String, Long> entry : index.entrySet()) {
+                if (keepLayer.test(layerOf(entry.getKey()))) {
+                    ByteBuffer tile = read(entry.getValue());
+                    byte[] bytes = new byte[tile.remaining()];
+                    tile.get(bytes);
+                    copy.append(entry.getKey(), bytes);
+                }
+            }
+        }
+    }
+
+    private synchronized boolean append(String key, byte[] tile) throws IOException {
+        if (index.containsKey(key)) {
+            return true;
+        }
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int recordLength = RECORD_HEADER + keyBytes.length + tile.length;
+        // Always leave room for the end marker
+        if (recordLength + 4 > segmentSize) {
+            return false;
+        }
+        if (writeOffset + recordLength + 4 > segmentSize) {
+            segment(writeSegment).putInt(writeOffset, PADDING);
+            writeSegment++;
+            writeOffset = 0;
+        }
+
+        ByteBuffer segment = segment(writeSegment).duplicate();
+        int offset = writeOffset;
+        segment.putInt(offset + 4, tile.length);
+        segment.position(offset + RECORD_HEADER);
+        segment.put(keyBytes);
+        segment.put(tile);
+        segment.putInt(offset, keyBytes.length);
+
+        writeOffset += recordLength;
+        bytesUsed += recordLength;
+        index.put(key, (long) writeSegment << 32 | offset);
+        return true;
+    }
+
+    /**
+     * @return Dataset version of the stored tiles
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * @return Names of the layers with stored tiles
+     */
+    public Set<String> getLayers() {
+        Set<String> layers = new HashSet<>();
+        for (String key : index.keySet()) {
+            layers.add(layerOf(key));
+        }
+        return layers;
+    }
+
+    /**
+     * @return Number of stored tiles
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * @return Bytes used by tile records
+     */
+    public long getBytesUsed() {
+        return bytesUsed;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Closes the file. Tiles already handed out stay readable until they are garbage
+     * collected, since the mapping outlives the channel.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Rebuilds the index from the records of an opened file.
+     */
+    private void scan() throws IOException {
+        long segmentCount = channel.size() / segmentSize;
+        while (true) {
+            ByteBuffer segment = segment(writeSegment);
+            int keyLength = segment.getInt(writeOffset);
+            if (keyLength == PADDING && writeSegment + 1 < segmentCount) {
+                writeSegment++;
+                writeOffset = 0;
+                continue;
+            }
+            int tileLength = keyLength > 0 ? segment.getInt(writeOffset + 4) : -1;
+            if (keyLength <= 0 || tileLength < 0
+                    || writeOffset + RECORD_HEADER + (long) keyLength + tileLength + 4 > segmentSize) {
+                // End of the data, or a record cut short by a crash that will be overwritten
+                segment.putInt(writeOffset, END);
+                return;
+            }
+            byte[] keyBytes = new byte[keyLength];
+            ByteBuffer key = segment.duplicate();
+            key.position(writeOffset + RECORD_HEADER);
+            key.get(keyBytes);
+            index.put(new String(keyBytes, StandardCharsets.UTF_8), (long) writeSegment << 32 | writeOffset);
+            int recordLength = RECORD_HEADER + keyLength + tileLength;
+            writeOffset += recordLength;
+            bytesUsed += recordLength;
+        }
+    }
+
+    private MappedByteBuffer segment(int number) throws IOException {
+        while (segments.size() <= number) {
+            segments.add(channel.map(FileChannel.MapMode.READ_WRITE, (long) segments.size() * segmentSize, segmentSize));
+        }
+        return segments.get(number);
+    }
+
+    private static String key(String layer, int zoom, int x, int y) {
+        return layer + "/" + zoom + "/" + x + "/" + y;
+    }
+
+    private static String layerOf(String key) {
+        return key.substring(0, key.indexOf('/'));
+    }
+}
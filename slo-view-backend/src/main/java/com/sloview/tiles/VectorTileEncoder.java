@@ -0,0 +1,458 @@
+package com.sloview.tiles;
+
+import com.sloview.model.FeatureTable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Encodes features into Mapbox Vector Tiles (MVT 2.1).
+ *
+ * Geometry is projected to Web Mercator, clipped to the tile plus a buffer and quantized
+ * to the tile extent. Vertices that quantize to the same position as their predecessor
+ * are dropped, which simplifies geometry in proportion to the zoom level: a road that
+ * needs hundreds of vertices at street level collapses to a handful on a regional tile.
+ * Optionally, points are thinned so that only the first point in every grid cell of a
+ * given size is kept.
+ */
+public final class VectorTileEncoder {
+
+    /** Default tile extent in tile units. */
+    public static final int DEFAULT_EXTENT = 4096;
+
+    private static final int GEOM_POINT = 1;
+    private static final int GEOM_LINE_STRING = 2;
+    private static final int GEOM_POLYGON = 3;
+
+    private static final int MOVE_TO = 1;
+    private static final int LINE_TO = 2;
+    private static final int CLOSE_PATH = 7;
+
+    private final int extent;
+    private final int buffer;
+
+    /**
+     * @param extent Tile extent in tile units
+     * @param buffer Width of the area around the tile that is kept when clipping, in tile units
+     */
+    public VectorTileEncoder(int extent, int buffer) {
+        this.extent = extent;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Encodes features as a single-layer tile.
+     *
+     * @param layerName Name of the tile layer
+     * @param features Features intersecting the tile, in priority order
+     * @param zoom Tile zoom level
+     * @param x Tile column
+     * @param y Tile row
+     * @param pointSpacing Size of the point thinning grid in tile units, 0 to keep every point
+     * @return Encoded tile; empty if no feature is visible in the tile
+     */
+    public byte[] encode(String layerName, FeatureTable features, int zoom, int x, int y, int pointSpacing) {
+        LayerBuilder layer = new LayerBuilder(layerName);
+        Set<Long> occupiedCells = new HashSet<>();
+        Path path = new Path();
+        Geometry geometry = new Geometry();
+
+        for (int i = 0; i < features.size(); i++) {
+            geometry.reset();
+            int type = encodeGeometry(features, i, zoom, x, y, path, geometry);
+            if (type == 0) {
+                continue;
+            }
+            if (type == GEOM_POINT && pointSpacing > 0) {
+                long cell = (long) Math.floorDiv(geometry.pointX, pointSpacing) << 32
+                        | (Math.floorDiv(geometry.pointY, pointSpacing) & 0xFFFFFFFFL);
+                if (!occupiedCells.add(cell)) {
+                    continue;
+                }
+            }
+            layer.addFeature(features, i, type, geometry);
+        }
+
+        if (layer.featureCount == 0) {
+            return new byte[0];
+        }
+        ProtobufWriter tile = new ProtobufWriter(layer.message.size() + 16);
+        tile.writeMessageField(3, layer.finish(extent));
+        return tile.toByteArray();
+    }
+
+    /**
+     * Writes the geometry commands of a feature.
+     *
+     * @return MVT geometry type, or 0 if nothing of the feature is visible in the tile
+     */
+    private int encodeGeometry(FeatureTable features, int index, int zoom, int x, int y,
+                               Path path, Geometry geometry) {
+        FeatureTable.GeometryType type = features.getGeometryType(index);
+        int parts = features.getPartCount(index);
+
+        if (type == FeatureTable.GeometryType.LINE_STRING && parts > 0) {
+            for (int part = 0; part < parts; part++) {
+                project(features, features.getPartStart(index, part), features.getPartEnd(index, part),
+                        zoom, x, y, path);
+                clipLine(path, geometry);
+            }
+            return geometry.size > 0 ? GEOM_LINE_STRING : 0;
+        }
+
+        if (type == FeatureTable.GeometryType.POLYGON && parts > 0) {
+            for (int part = 0; part < parts; part++) {
+                project(features, features.getPartStart(index, part), features.getPartEnd(index, part),
+                        zoom, x, y, path);
+                clipRing(path);
+                boolean written = writeRing(path, part == 0, geometry);
+                if (part == 0 && !written) {
+                    return 0;
+                }
+            }
+            return GEOM_POLYGON;
+        }
+
+        double lon = features.getLongitude(index);
+        double lat = features.getLatitude(index);
+        if (Double.isNaN(lon) || Double.isNaN(lat)) {
+            return 0;
+        }
+        double px = (WebMercator.worldX(lon, zoom) - x) * extent;
+        double py = (WebMercator.worldY(lat, zoom) - y) * extent;
+        if (px < -buffer || px > extent + buffer || py < -buffer || py > extent + buffer) {
+            return 0;
+        }
+        geometry.pointX = (int) Math.round(px);
+        geometry.pointY = (int) Math.round(py);
+        geometry.command(MOVE_TO, 1);
+        geometry.move(geometry.pointX, geometry.pointY);
+        return GEOM_POINT;
+    }
+
+    private void project(FeatureTable features, int from, int to, int zoom, int x, int y, Path path) {
+        path.clear();
+        for (int v = from; v < to; v++) {
+            if (!features.isVertexKept(v)) {
+                continue;
+            }
+            path.add((WebMercator.worldX(features.getVertexLon(v), zoom) - x) * extent,
+                    (WebMercator.worldY(features.getVertexLat(v), zoom) - y) * extent);
+        }
+    }
+
+    /**
+     * Clips a line to the buffered tile (Liang-Barsky) and writes every visible piece.
+     */
+    private void clipLine(Path line, Geometry geometry) {
+        double min = -buffer;
+        double max = extent + buffer;
+        Path piece = new Path();
+        for (int i = 0; i + 1 < line.size; i++) {
+            double x0 = line.x(i);
+            double y0 = line.y(i);
+            double dx = line.x(i + 1) - x0;
+            double dy = line.y(i + 1) - y0;
+            double[] t = {0.0, 1.0};
+            if (!clipT(-dx, x0 - min, t) || !clipT(dx, max - x0, t)
+                    || !clipT(-dy, y0 - min, t) || !clipT(dy, max - y0, t)) {
+                writeLine(piece, geometry);
+                continue;
+            }
+            if (piece.size == 0 || t[0] > 0) {
+                writeLine(piece, geometry);
+                piece.add(x0 + t[0] * dx, y0 + t[0] * dy);
+            }
+            piece.add(x0 + t[1] * dx, y0 + t[1] * dy);
+            if (t[1] < 1) {
+                writeLine(piece, geometry);
+            }
+        }
+        writeLine(piece, geometry);
+    }
+
+    private static boolean clipT(double p, double q, double[] t) {
+        if (p == 0) {
+            return q >= 0;
+        }
+        double r = q / p;
+        if (p < 0) {
+            if (r > t[1]) {
+                return false;
+            }
+            t[0] = Math.max(t[0], r);
+        } else {
+            if (r < t[0]) {
+                return false;
+            }
+            t[1] = Math.min(t[1], r);
+        }
+        return true;
+    }
+
+    /**
+     * Clips a ring to the buffered tile in place (Sutherland-Hodgman).
+     */
+    private void clipRing(Path ring) {
+        double min = -buffer;
+        double max = extent + buffer;
+        for (int edge = 0; edge < 4 && ring.size > 0; edge++) {
+            boolean vertical = edge < 2;
+            double bound = edge % 2 == 0 ? min : max;
+            boolean keepAbove = edge % 2 == 0;
+            double[] input = Arrays.copyOf(ring.data, ring.size * 2);
+            int count = ring.size;
+            ring.clear();
+            for (int i = 0; i < count; i++) {
+                int j = (i + count - 1) % count;
+                double cx = input[i * 2];
+                double cy = input[i * 2 + 1];
+                double px = input[j * 2];
+                double py = input[j * 2 + 1];
+                double c = vertical ? cx : cy;
+                double p = vertical ? px : py;
+                boolean currentInside = keepAbove ? c >= bound : c <= bound;
+                boolean previousInside = keepAbove ? p >= bound : p <= bound;
+                if (currentInside != previousInside) {
+                    double t = (bound - p) / (c - p);
+                    ring.add(px + t * (cx - px), py + t * (cy - py));
+                }
+                if (currentInside) {
+                    ring.add(cx, cy);
+                }
+            }
+        }
+    }
+
+    private void writeLine(Path line, Geometry geometry) {
+        int[] points = quantize(line, false);
+        line.clear();
+        int count = points.length / 2;
+        if (count < 2) {
+            return;
+        }
+        geometry.command(MOVE_TO, 1);
+        geometry.move(points[0], points[1]);
+        geometry.command(LINE_TO, count - 1);
+        for (int i = 1; i < count; i++) {
+            geometry.move(points[i * 2], points[i * 2 + 1]);
+        }
+    }
+
+    /**
+     * Writes a polygon ring, oriented clockwise in tile coordinates for the exterior ring
+     * and counter-clockwise for holes as required by the specification.
+     *
+     * @return false if the ring collapsed at this zoom level
+     */
+    private boolean writeRing(Path ring, boolean exterior, Geometry geometry) {
+        int[] points = quantize(ring, true);
+        int count = points.length / 2;
+        if (count < 3) {
+            return false;
+        }
+        long area = 0;
+        for (int i = 0; i < count; i++) {
+            int j = (i + 1) % count;
+            area += (long) points[i * 2] * points[j * 2 + 1] - (long) points[j * 2] * points[i * 2 + 1];
+        }
+        if (area == 0) {
+            return false;
+        }
+        boolean reverse = exterior ? area < 0 : area > 0;
+        geometry.command(MOVE_TO, 1);
+        geometry.move(points[reverse ? (count - 1) * 2 : 0], points[reverse ? (count - 1) * 2 + 1 : 1]);
+        geometry.command(LINE_TO, count - 1);
+        for (int k = 1; k < count; k++) {
+            int i = reverse ? count - 1 - k : k;
+            geometry.move(points[i * 2], points[i * 2 + 1]);
+        }
+        geometry.command(CLOSE_PATH, 1);
+        return true;
+    }
+
+    /**
+     * Rounds a path to tile units and drops vertices equal to their predecessor, and for
+     * rings the closing vertex.
+     */
+    private static int[] quantize(Path path, boolean ring) {
+        int[] points = new int[path.size * 2];
+        int count = 0;
+        for (int i = 0; i < path.size; i++) {
+            int px = (int) Math.round(path.x(i));
+            int py = (int) Math.round(path.y(i));
+            if (count > 0 && points[(count - 1) * 2] == px && points[(count - 1) * 2 + 1] == py) {
+                continue;
+            }
+            points[count * 2] = px;
+            points[count * 2 + 1] = py;
+            count++;
+        }
+        if (ring && count > 1 && points[0] == points[(count - 1) * 2] && points[1] == points[(count - 1) * 2 + 1]) {
+            count--;
+        }
+        return Arrays.copyOf(points, count * 2);
+    }
+
+    /**
+     * Growable list of projected coordinates.
+     */
+    private static final class Path {
+        private double[] data = new double[64];
+        private int size;
+
+        void add(double x, double y) {
+            if (size * 2 + 2 > data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            data[size * 2] = x;
+            data[size * 2 + 1] = y;
+            size++;
+        }
+
+        double x(int i) {
+            return data[i * 2];
+        }
+
+        double y(int i) {
+            return data[i * 2 + 1];
+        }
+
+        void clear() {
+            size = 0;
+        }
+    }
+
+    /**
+     * Geometry commands of the feature being encoded, with the cursor position they
+     * are relative to.
+     */
+    private static final class Geometry {
+        private int[] commands = new int[64];
+        private int size;
+        private int cursorX;
+        private int cursorY;
+        private int pointX;
+        private int pointY;
+
+        void reset() {
+            size = 0;
+            cursorX = 0;
+            cursorY = 0;
+        }
+
+        void command(int id, int count) {
+            add(id | count << 3);
+        }
+
+        void move(int x, int y) {
+            add(ProtobufWriter.zigZag(x - cursorX));
+            add(ProtobufWriter.zigZag(y - cursorY));
+            cursorX = x;
+            cursorY = y;
+        }
+
+        private void add(int value) {
+            if (size == commands.length) {
+                commands = Arrays.copyOf(commands, size * 2);
+            }
+            commands[size++] = value;
+        }
+    }
+
+    /**
+     * Accumulates the features of a layer together with its key and value dictionaries.
+     */
+    private static final class LayerBuilder {
+        private final String name;
+        private final ProtobufWriter message = new ProtobufWriter(1024);
+        private final Map<String, Integer> keys = new HashMap<>();
+        private final List<String> keyList = new ArrayList<>();
+        private final Map<Object, Integer> values = new HashMap<>();
+        private final List<Object> valueList = new ArrayList<>();
+        private int[] tags = new int[32];
+        private int featureCount;
+
+        LayerBuilder(String name) {
+            this.name = name;
+        }
+
+        void addFeature(FeatureTable features, int index, int type, Geometry geometry) {
+            int tagCount = 0;
+            for (int p = 0; p < features.getPropertyCount(index); p++) {
+                Object value = normalize(features.getPropertyValue(index, p));
+                if (value == null) {
+                    continue;
+                }
+                if (tagCount + 2 > tags.length) {
+                    tags = Arrays.copyOf(tags, tags.length * 2);
+                }
+                tags[tagCount++] = keys.computeIfAbsent(features.getPropertyKey(index, p), key -> {
+                    keyList.add(key);
+                    return keyList.size() - 1;
+                });
+                tags[tagCount++] = values.computeIfAbsent(value, v -> {
+                    valueList.add(v);
+                    return valueList.size() - 1;
+                });
+            }
+
+            ProtobufWriter feature = new ProtobufWriter(geometry.size * 2 + tagCount + 16);
+            long osmId = features.getOsmId(index);
+            if (osmId > 0) {
+                feature.writeVarintField(1, osmId);
+            }
+            feature.writePackedField(2, tags, tagCount);
+            feature.writeVarintField(3, type);
+            feature.writePackedField(4, geometry.commands, geometry.size);
+            message.writeMessageField(2, feature);
+            featureCount++;
+        }
+
+        ProtobufWriter finish(int extent) {
+            ProtobufWriter layer = new ProtobufWriter(message.size() + 256);
+            layer.writeVarintField(15, 2);
+            layer.writeStringField(1, name);
+            layer.writeRaw(message);
+            for (String key : keyList) {
+                layer.writeStringField(3, key);
+            }
+            for (Object value : valueList) {
+                ProtobufWriter encoded = new ProtobufWriter(16);
+                if (value instanceof String) {
+                    encoded.writeStringField(1, (String) value);
+                } else if (value instanceof Double) {
+                    encoded.writeDoubleField(3, (Double) value);
+                } else if (value instanceof Long) {
+                    encoded.writeSignedVarintField(6, (Long) value);
+                } else {
+                    encoded.writeVarintField(7, (Boolean) value ? 1 : 0);
+                }
+                layer.writeMessageField(4, encoded);
+            }
+            layer.writeVarintField(5, extent);
+            return layer;
+        }
+
+        /**
+         * Maps property values to the scalar types a tile can hold; other values are dropped.
+         */
+        private static Object normalize(Object value) {
+            if (value instanceof String || value instanceof Boolean) {
+                return value;
+            }
+            if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+                return ((Number) value).longValue();
+            }
+            if (value instanceof Number) {
+                return ((Number) value).doubleValue();
+            }
+            return null;
+        }
+    }
+}
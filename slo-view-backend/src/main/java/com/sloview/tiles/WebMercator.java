@@ -0,0 +1,78 @@
+package com.sloview.tiles;
+
+/**
+ * Web Mercator (EPSG:3857) helpers for the XYZ tile scheme used by web maps.
+ *
+ * World coordinates range from 0 to 2^zoom on both axes, with the origin at the top left
+ * corner of the map, so the integer part of a world coordinate is the tile number.
+ */
+public final class WebMercator {
+
+    /** Highest latitude that Web Mercator can represent. */
+    public static final double MAX_LATITUDE = 85.0511287798066;
+
+    /** Highest zoom level accepted for tiles. */
+    public static final int MAX_ZOOM = 22;
+
+    private WebMercator() {
+    }
+
+    /**
+     * @return World X coordinate of a longitude at a zoom level
+     */
+    public static double worldX(double lon, int zoom) {
+        return (lon + 180.0) / 360.0 * (1L << zoom);
+    }
+
+    /**
+     * @return World Y coordinate of a latitude at a zoom level
+     */
+    public static double worldY(double lat, int zoom) {
+        double sin = Math.sin(Math.toRadians(Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, lat))));
+        return (0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI)) * (1L << zoom);
+    }
+
+    /**
+     * @return Longitude of a world X coordinate at a zoom level
+     */
+    public static double longitude(double worldX, int zoom) {
+        return worldX / (1L << zoom) * 360.0 - 180.0;
+    }
+
+    /**
+     * @return Latitude of a world Y coordinate at a zoom level
+     */
+    public static double latitude(double worldY, int zoom) {
+        double n = Math.PI * (1 - 2 * worldY / (1L << zoom));
+        return Math.toDegrees(Math.atan(Math.sinh(n)));
+    }
+
+    /**
+     * Checks whether tile coordinates address an existing tile.
+     */
+    public static boolean isValidTile(int zoom, int x, int y) {
+        if (zoom < 0 || zoom > MAX_ZOOM) {
+            return false;
+        }
+        long tiles = 1L << zoom;
+        return x >= 0 && x < tiles && y >= 0 && y < tiles;
+    }
+
+    /**
+     * Bounding box of a tile, grown on every side by a fraction of the tile size.
+     *
+     * @param zoom Zoom level
+     * @param x Tile column
+     * @param y Tile row
+     * @param buffer Fraction of the tile size added on every side
+     * @return Array with [minLon, minLat, maxLon, maxLat]
+     */
+    public static double[] tileBounds(int zoom, int x, int y, double buffer) {
+        return new double[] {
+                longitude(x - buffer, zoom),
+                latitude(y + 1 + buffer, zoom),
+                longitude(x + 1 + buffer, zoom),
+                latitude(y - buffer, zoom)
+        };
+    }
+}
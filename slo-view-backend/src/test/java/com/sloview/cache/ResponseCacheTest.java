@@ -0,0 +1,126 @@
+package com.sloview.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the ResponseCache.
+ *
+ * Tests fresh hits, stale-while-revalidate, stale-if-error and expiry using a manual clock.
+ */
+class ResponseCacheTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private final ResponseCache<String, Integer> cache = new ResponseCache<>("test",
+            Duration.ofSeconds(10), Duration.ofSeconds(20), Duration.ofSeconds(60), 100, value -> 1,
+            new SimpleMeterRegistry(), now::get);
+
+    /**
+     * Test that fresh entries are served without loading again.
+     */
+    @Test
+    void get_FreshEntry_ShouldNotReload() {
+        StepVerifier.create(cache.get("key", this::load)).expectNext(1).verifyComplete();
+        advance(Duration.ofSeconds(5));
+        StepVerifier.create(cache.get("key", this::load)).expectNext(1).verifyComplete();
+
+        assertEquals(1, loads.get());
+    }
+
+    /**
+     * Test that stale entries are served immediately while a single reload replaces them.
+     */
+    @Test
+    void get_StaleEntry_ShouldServeStaleAndRevalidateOnce() {
+        StepVerifier.create(cache.get("key", this::load)).expectNext(1).verifyComplete();
+        advance(Duration.ofSeconds(15));
+
+        StepVerifier.create(cache.get("key", this::load)).expectNext(1).verifyComplete();
+        StepVerifier.create(cache.get("key", this::load)).expectNext(2).verifyComplete();
+
+        assertEquals(2, loads.get());
+    }
+
+    /**
+     * Test that expired entries are loaded again before being served.
+     */
+    @Test
+    void get_ExpiredEntry_ShouldReload() {
+        StepVerifier.create(cache.get("key", this::load)).expectNext(1).verifyComplete();
+        advance(Duration.ofSeconds(31));
+
+        StepVerifier.create(cache.get("key", this::load)).expectNext(2).verifyComplete();
+    }
+
+    /**
+     * Test that failed loads are not cached.
+     */
+    @Test
+    void get_FailedLoad_ShouldNotBeCached() {
+        StepVerifier.create(cache.get("key", key -> Mono.<Integer>error(new IllegalStateException("down"))))
+                .expectError(IllegalStateException.class)
+                .verify();
+
+        StepVerifier.create(cache.get("key", this::load)).expectNext(1).verifyComplete();
+    }
+
+    /**
+     * Test that an entry past its stale period is kept as the last known good value when
+     * reloading it fails, and is then served directly while it is revalidated in the background.
+     */
+    @Test
+    void get_ExpiredEntryLoadFails_ShouldServeLastKnownGood() {
+        StepVerifier.create(cache.get("key", this::load)).expectNext(1).verifyComplete();
+        advance(Duration.ofSeconds(31));
+
+        StepVerifier.create(cache.get("key", this::fail)).expectError(IllegalStateException.class).verify();
+        assertFalse(cache.getAge("key").orElseThrow().isStaleIfError());
+        assertEquals(Optional.of(1), cache.getLastKnownGood("key"));
+        DataAge age = cache.getAge("key").orElseThrow();
+        assertEquals(Duration.ofSeconds(31), age.getAge());
+        assertTrue(age.isStaleIfError());
+
+        StepVerifier.create(cache.get("key", this::fail)).expectNext(1).verifyComplete();
+        StepVerifier.create(cache.get("key", this::load)).expectNext(1).verifyComplete();
+        StepVerifier.create(cache.get("key", this::load)).expectNext(2).verifyComplete();
+    }
+
+    /**
+     * Test that no last known good value is kept past the stale-if-error period.
+     */
+    @Test
+    void getLastKnownGood_AfterStaleIfErrorPeriod_ShouldBeEmpty() {
+        StepVerifier.create(cache.get("key", this::load)).expectNext(1).verifyComplete();
+        advance(Duration.ofSeconds(89));
+        assertEquals(Optional.of(1), cache.getLastKnownGood("key"));
+
+        advance(Duration.ofSeconds(2));
+        assertEquals(Optional.empty(), cache.getLastKnownGood("key"));
+        assertEquals(Optional.empty(), cache.getAge("key"));
+    }
+
+    private Mono<Integer> fail(String key) {
+        return Mono.error(new IllegalStateException("down"));
+    }
+
+    private Mono<Integer> load(String key) {
+        return Mono.fromCallable(loads::incrementAndGet);
+    }
+
+    private void advance(Duration duration) {
+        now.addAndGet(duration.toNanos());
+    }
+}
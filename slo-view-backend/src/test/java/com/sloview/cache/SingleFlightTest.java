@@ -0,0 +1,70 @@
+package com.sloview.cache;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Unit tests for SingleFlight.
+ *
+ * Tests that concurrent identical calls share one call and that finished calls are not reused.
+ */
+class SingleFlightTest {
+
+    private final SingleFlight<String, String> flights = new SingleFlight<>();
+    private final AtomicInteger calls = new AtomicInteger();
+
+    /**
+     * Test that callers arriving while a call is in flight share its result.
+     */
+    @Test
+    void execute_ConcurrentCalls_ShouldShareOneCall() {
+        Sinks.One<String> upstream = Sinks.one();
+
+        StepVerifier first = StepVerifier.create(flights.execute("key", key -> call(upstream)))
+                .expectNext("result")
+                .expectComplete()
+                .verifyLater();
+        StepVerifier second = StepVerifier.create(flights.execute("key", key -> call(upstream)))
+                .expectNext("result")
+                .expectComplete()
+                .verifyLater();
+
+        upstream.tryEmitValue("result");
+        first.verify();
+        second.verify();
+        assertEquals(1, calls.get());
+        assertEquals(0, flights.size());
+    }
+
+    /**
+     * Test that a failed call is shared by its callers but not by later ones.
+     */
+    @Test
+    void execute_FailedCall_ShouldNotBeReused() {
+        Sinks.One<String> failing = Sinks.one();
+        StepVerifier failed = StepVerifier.create(flights.execute("key", key -> call(failing)))
+                .expectError(IllegalStateException.class)
+                .verifyLater();
+        failing.tryEmitError(new IllegalStateException("down"));
+        failed.verify();
+
+        StepVerifier.create(flights.execute("key", key -> {
+                    calls.incrementAndGet();
+                    return Mono.just("recovered");
+                }))
+                .expectNext("recovered")
+                .verifyComplete();
+        assertEquals(2, calls.get());
+    }
+
+    private Mono<String> call(Sinks.One<String> upstream) {
+        calls.incrementAndGet();
+        return upstream.asMono();
+    }
+}
@@ -2,24 +2,21 @@ package com.sloview.controller;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
-import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.reactive.server.WebTestClient;
 import com.sloview.service.GISApiService;
 
-import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
-
 /**
  * Unit tests for the HealthController.
  * 
  * Tests the health check endpoint to ensure it returns the expected response.
  */
-@WebMvcTest(controllers = HealthController.class)
+@WebFluxTest(controllers = HealthController.class)
 class HealthControllerTest {
 
     @Autowired
-    private MockMvc mockMvc;
+    private WebTestClient webTestClient;
 
     @MockBean
     private GISApiService gisApiService;
@@ -31,11 +28,13 @@ class HealthControllerTest {
      */
     @Test
     void health_ShouldReturnUpStatus() throws Exception {
-        mockMvc.perform(get("/health"))
-                .andExpect(status().isOk())
-                .andExpect(content().contentType("application/json"))
-                .andExpect(jsonPath("$.status").value("UP"))
-                .andExpect(jsonPath("$.service").value("slo-view-backend"))
-                .andExpect(jsonPath("$.timestamp").exists());
+        webTestClient.get().uri("/health")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType("application/json")
+                .expectBody()
+                .jsonPath("$.status").isEqualTo("UP")
+                .jsonPath("$.service").isEqualTo("slo-view-backend")
+                .jsonPath("$.timestamp").exists();
     }
 }
@@ -1,38 +1,63 @@
 package com.sloview.controller;
 
+import com.sloview.cache.DataAge;
+import com.sloview.cache.EncodedResponse;
+import com.sloview.model.FeatureTable;
+import com.sloview.service.ClusterService;
+import com.sloview.service.DataUnavailableException;
 import com.sloview.service.GISApiService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
-import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyDouble;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
-import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 /**
  * Unit tests for the MapDataController.
  * 
  * Tests the map data endpoints to ensure they properly integrate with the GIS API service.
  */
-@WebMvcTest(controllers = MapDataController.class)
+@WebFluxTest(controllers = MapDataController.class)
 class MapDataControllerTest {
 
     @Autowired
-    private MockMvc mockMvc;
+    private WebTestClient webTestClient;
 
     @MockBean
     private GISApiService gisApiService;
 
+    @MockBean
+    private ClusterService clusterService;
+
     /**
      * Test that the restaurants endpoint returns data from the GIS API service.
      * 
@@ -48,17 +73,19 @@ class MapDataControllerTest {
         mockRestaurant.put("longitude", -120.6596);
         mockRestaurant.put("latitude", 35.2828);
         
-        when(gisApiService.getRestaurants(any())).thenReturn(List.of(mockRestaurant));
-
-        mockMvc.perform(get("/api/map/points/amenity/restaurant/wgs84"))
-                .andExpect(status().isOk())
-                .andExpect(content().contentType("application/json"))
-                .andExpect(jsonPath("$").isArray())
-                .andExpect(jsonPath("$[0].osmId").value(12345))
-                .andExpect(jsonPath("$[0].name").value("Test Restaurant"))
-                .andExpect(jsonPath("$[0].amenity").value("restaurant"))
-                .andExpect(jsonPath("$[0].longitude").value(-120.6596))
-                .andExpect(jsonPath("$[0].latitude").value(35.2828));
+        when(gisApiService.getRestaurants(any())).thenReturn(Mono.just(List.of(mockRestaurant)));
+
+        webTestClient.get().uri("/api/map/points/amenity/restaurant/wgs84")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType("application/json")
+                .expectBody()
+                .jsonPath("$").isArray()
+                .jsonPath("$[0].osmId").isEqualTo(12345)
+                .jsonPath("$[0].name").isEqualTo("Test Restaurant")
+                .jsonPath("$[0].amenity").isEqualTo("restaurant")
+                .jsonPath("$[0].longitude").isEqualTo(-120.6596)
+                .jsonPath("$[0].latitude").isEqualTo(35.2828);
     }
 
     /**
@@ -69,12 +96,98 @@ class MapDataControllerTest {
     @Test
     void getRestaurants_WithLimit_ShouldPassLimitToService() throws Exception {
         // Mock the GIS API service response
-        when(gisApiService.getRestaurants(5)).thenReturn(List.of());
+        when(gisApiService.getRestaurants(5)).thenReturn(Mono.just(List.of()));
+
+        webTestClient.get().uri("/api/map/points/amenity/restaurant/wgs84?limit=5")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType("application/json")
+                .expectBody()
+                .jsonPath("$").isArray();
+    }
+
+    /**
+     * Test that restaurants carry an ETag and Cache-Control, and that a request with a
+     * matching If-None-Match header gets 304 without reading the restaurants.
+     * 
+     * @throws Exception if the test fails
+     */
+    @Test
+    void getRestaurants_IfNoneMatch_ShouldReturnNotModified() throws Exception {
+        when(gisApiService.getRestaurantsVersion()).thenReturn(Optional.of("v1"));
+        when(gisApiService.getRestaurants(any())).thenReturn(Mono.just(List.of()));
+
+        String etag = webTestClient.get().uri("/api/map/points/amenity/restaurant/wgs84")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().cacheControl(CacheControl.maxAge(Duration.ofSeconds(300)).cachePublic())
+                .returnResult(String.class)
+                .getResponseHeaders()
+                .getETag();
+        assertTrue(etag.startsWith("\""));
+
+        webTestClient.get().uri("/api/map/points/amenity/restaurant/wgs84")
+                .header(HttpHeaders.IF_NONE_MATCH, etag)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, etag)
+                .expectBody().isEmpty();
+        verify(gisApiService, times(1)).getRestaurants(any());
 
-        mockMvc.perform(get("/api/map/points/amenity/restaurant/wgs84?limit=5"))
-                .andExpect(status().isOk())
-                .andExpect(content().contentType("application/json"))
-                .andExpect(jsonPath("$").isArray());
+        when(gisApiService.getRestaurantsVersion()).thenReturn(Optional.of("v2"));
+        webTestClient.get().uri("/api/map/points/amenity/restaurant/wgs84")
+                .header(HttpHeaders.IF_NONE_MATCH, etag)
+                .exchange()
+                .expectStatus().isOk();
+    }
+
+    /**
+     * Test that restaurants fetched from the GIS API before the cache is loaded are not
+     * stored by clients, since they are only a first page and have no version.
+     * 
+     * @throws Exception if the test fails
+     */
+    @Test
+    void getRestaurants_CacheNotLoaded_ShouldNotBeStored() throws Exception {
+        when(gisApiService.getRestaurants(any())).thenReturn(Mono.just(List.of()));
+
+        webTestClient.get().uri("/api/map/points/amenity/restaurant/wgs84")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().cacheControl(CacheControl.noStore())
+                .expectHeader().doesNotExist(HttpHeaders.ETAG);
+    }
+
+    /**
+     * Test that cached restaurants are written from their pre-serialized bytes, compressed
+     * only for clients that accept gzip.
+     * 
+     * @throws Exception if the test fails
+     */
+    @Test
+    void getRestaurants_Encoded_ShouldWritePreSerializedBody() throws Exception {
+        byte[] json = "[{\"osmId\":1,\"name\":\"Cached Restaurant\"}]".getBytes(StandardCharsets.UTF_8);
+        when(gisApiService.getEncodedRestaurants(isNull())).thenReturn(Optional.of(EncodedResponse.of(json)));
+
+        webTestClient.get().uri("/api/map/points/amenity/restaurant/wgs84")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType("application/json")
+                .expectHeader().doesNotExist(HttpHeaders.CONTENT_ENCODING)
+                .expectBody(byte[].class).isEqualTo(json);
+
+        byte[] gzipped = webTestClient.get().uri("/api/map/points/amenity/restaurant/wgs84")
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_ENCODING, "gzip")
+                .expectBody(byte[].class)
+                .returnResult()
+                .getResponseBody();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+            assertArrayEquals(json, in.readAllBytes());
+        }
+        verify(gisApiService, never()).getRestaurants(any());
     }
 
     /**
@@ -84,11 +197,123 @@ class MapDataControllerTest {
      */
     @Test
     void getPointsByAmenityWGS84_UnsupportedAmenity_ShouldReturnEmptyList() throws Exception {
-        mockMvc.perform(get("/api/map/points/amenity/shop/wgs84"))
-                .andExpect(status().isOk())
-                .andExpect(content().contentType("application/json"))
-                .andExpect(jsonPath("$").isArray())
-                .andExpect(jsonPath("$").isEmpty());
+        webTestClient.get().uri("/api/map/points/amenity/shop/wgs84")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType("application/json")
+                .expectBody()
+                .jsonPath("$").isArray()
+                .jsonPath("$").isEmpty();
+    }
+
+    /**
+     * Test that the bounding box endpoint returns the features from the spatial index.
+     * 
+     * @throws Exception if the test fails
+     */
+    @Test
+    void getPointsInBounds_ShouldReturnFeaturesFromIndex() throws Exception {
+        // Mock the GIS API service response
+        Map<String, Object> mockPoint = new HashMap<>();
+        mockPoint.put("osmId", 12345L);
+        mockPoint.put("name", "Test Restaurant");
+        mockPoint.put("type", "restaurant");
+        mockPoint.put("longitude", -120.6596);
+        mockPoint.put("latitude", 35.2828);
+        mockPoint.put("geometry", "Point");
+        
+        when(gisApiService.getIndexVersion("mv_restaurants")).thenReturn(Optional.of("v1"));
+        when(gisApiService.getBoundsVersion("mv_restaurants", -120.7, 35.2, -120.6, 35.3)).thenReturn(Optional.of("v1"));
+        when(gisApiService.getFeaturesInBounds(-120.7, 35.2, -120.6, 35.3, "mv_restaurants", 14))
+                .thenReturn(List.of(mockPoint));
+
+        webTestClient.get().uri("/api/map/points?minLon=-120.7&minLat=35.2&maxLon=-120.6&maxLat=35.3&zoom=14")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType("application/json")
+                .expectBody()
+                .jsonPath("$").isArray()
+                .jsonPath("$[0].osmId").isEqualTo(12345)
+                .jsonPath("$[0].name").isEqualTo("Test Restaurant")
+                .jsonPath("$[0].geometry").isEqualTo("Point");
+    }
+
+    /**
+     * Test that the bounding box endpoint answers 503, and is not cached, while the table
+     * is not indexed yet.
+     * 
+     * @throws Exception if the test fails
+     */
+    @Test
+    void getPointsInBounds_NotIndexed_ShouldReturnServiceUnavailable() throws Exception {
+        when(gisApiService.getIndexVersion("mv_restaurants")).thenReturn(Optional.empty());
+
+        webTestClient.get().uri("/api/map/points?minLon=-120.7&minLat=35.2&maxLon=-120.6&maxLat=35.3&zoom=14")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.SERVICE_UNAVAILABLE)
+                .expectHeader().cacheControl(CacheControl.noStore());
+        verify(gisApiService, never()).getFeaturesInBounds(anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyString(), any());
+    }
+
+    /**
+     * Test that the bounding box endpoint rejects viewports reaching outside the replicated
+     * area instead of answering with an incomplete result.
+     * 
+     * @throws Exception if the test fails
+     */
+    @Test
+    void getPointsInBounds_OutsideIndexedArea_ShouldReturnUnprocessable() throws Exception {
+        when(gisApiService.getIndexVersion("mv_restaurants")).thenReturn(Optional.of("v1"));
+        when(gisApiService.getBoundsVersion("mv_restaurants", -122.0, 34.0, -119.0, 36.0)).thenReturn(Optional.empty());
+
+        webTestClient.get().uri("/api/map/points?minLon=-122.0&minLat=34.0&maxLon=-119.0&maxLat=36.0")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY)
+                .expectHeader().cacheControl(CacheControl.noStore());
+        verify(gisApiService, never()).getFeaturesInBounds(anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyString(), any());
+    }
+
+    /**
+     * Test that the clusters endpoint returns the clusters of the requested table and viewport.
+     * 
+     * @throws Exception if the test fails
+     */
+    @Test
+    void getClusters_ShouldReturnClustersFromService() throws Exception {
+        Map<String, Object> cluster = new HashMap<>();
+        cluster.put("cluster", true);
+        cluster.put("count", 42);
+        cluster.put("expansionZoom", 13);
+        cluster.put("longitude", -120.6596);
+        cluster.put("latitude", 35.2828);
+        
+        when(clusterService.getClusters("mv_restaurants", -120.7, 35.2, -120.6, 35.3, 12))
+                .thenReturn(Mono.just(List.of(cluster)));
+
+        webTestClient.get().uri("/api/map/clusters?minLon=-120.7&minLat=35.2&maxLon=-120.6&maxLat=35.3&zoom=12&table=mv_restaurants")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType("application/json")
+                .expectBody()
+                .jsonPath("$[0].cluster").isEqualTo(true)
+                .jsonPath("$[0].count").isEqualTo(42)
+                .jsonPath("$[0].expansionZoom").isEqualTo(13);
+    }
+
+    /**
+     * Test that the clusters endpoint answers 503, and is not cached, while the table is
+     * not indexed yet.
+     * 
+     * @throws Exception if the test fails
+     */
+    @Test
+    void getClusters_NotIndexed_ShouldReturnServiceUnavailable() throws Exception {
+        when(clusterService.getClusters("mv_restaurants", -120.7, 35.2, -120.6, 35.3, 12)).thenReturn(Mono.empty());
+
+        webTestClient.get().uri("/api/map/clusters?minLon=-120.7&minLat=35.2&maxLon=-120.6&maxLat=35.3&zoom=12&table=mv_restaurants")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.SERVICE_UNAVAILABLE)
+                .expectHeader().cacheControl(CacheControl.noStore());
     }
 
     /**
@@ -107,21 +332,45 @@ class MapDataControllerTest {
         mockRoad.put("latitude", 35.2828);
         mockRoad.put("geometry", "LineString");
         
-        when(gisApiService.findNearbyFeatures(anyDouble(), anyDouble(), anyDouble(), anyString(), anyInt()))
-                .thenReturn(List.of(mockRoad));
-
-        mockMvc.perform(get("/api/map/roads")
-                .param("lon", "-120.6596")
-                .param("lat", "35.2828"))
-                .andExpect(status().isOk())
-                .andExpect(content().contentType("application/json"))
-                .andExpect(jsonPath("$").isArray())
-                .andExpect(jsonPath("$[0].osmId").value(67890))
-                .andExpect(jsonPath("$[0].name").value("Test Road"))
-                .andExpect(jsonPath("$[0].type").value("primary"))
-                .andExpect(jsonPath("$[0].longitude").value(-120.6596))
-                .andExpect(jsonPath("$[0].latitude").value(35.2828))
-                .andExpect(jsonPath("$[0].geometry").value("LineString"));
+        when(gisApiService.findNearbyFeatures(anyDouble(), anyDouble(), anyDouble(), anyString(), anyInt(), isNull(), isNull()))
+                .thenReturn(Mono.just(List.of(mockRoad)));
+
+        webTestClient.get().uri("/api/map/roads?lon=-120.6596&lat=35.2828")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType("application/json")
+                .expectBody()
+                .jsonPath("$").isArray()
+                .jsonPath("$[0].osmId").isEqualTo(67890)
+                .jsonPath("$[0].name").isEqualTo("Test Road")
+                .jsonPath("$[0].type").isEqualTo("primary")
+                .jsonPath("$[0].longitude").isEqualTo(-120.6596)
+                .jsonPath("$[0].latitude").isEqualTo(35.2828)
+                .jsonPath("$[0].geometry").isEqualTo("LineString");
+    }
+
+    /**
+     * Test that nearby features are only cacheable when they are answered from the index,
+     * and not stored when they are fetched from the GIS API.
+     * 
+     * @throws Exception if the test fails
+     */
+    @Test
+    void getRoads_Unversioned_ShouldNotBeStored() throws Exception {
+        when(gisApiService.findNearbyFeatures(anyDouble(), anyDouble(), anyDouble(), anyString(), anyInt(), isNull(), isNull()))
+                .thenReturn(Mono.just(List.of()));
+
+        webTestClient.get().uri("/api/map/roads?lon=-120.6596&lat=35.2828")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().cacheControl(CacheControl.noStore());
+
+        when(gisApiService.getNearbyVersion("mv_road_network", -120.6596, 35.2828, 5000))
+                .thenReturn(Optional.of("v1"));
+        webTestClient.get().uri("/api/map/roads?lon=-120.6596&lat=35.2828")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().cacheControl(CacheControl.maxAge(Duration.ofSeconds(60)).cachePublic());
     }
 
     /**
@@ -132,16 +381,113 @@ class MapDataControllerTest {
     @Test
     void getRoads_WithLimit_ShouldPassLimitToService() throws Exception {
         // Mock the GIS API service response
-        when(gisApiService.findNearbyFeatures(anyDouble(), anyDouble(), anyDouble(), anyString(), anyInt()))
-                .thenReturn(List.of());
-
-        mockMvc.perform(get("/api/map/roads")
-                .param("lon", "-120.6596")
-                .param("lat", "35.2828")
-                .param("limit", "10"))
-                .andExpect(status().isOk())
-                .andExpect(content().contentType("application/json"))
-                .andExpect(jsonPath("$").isArray());
+        when(gisApiService.findNearbyFeatures(anyDouble(), anyDouble(), anyDouble(), anyString(), anyInt(), isNull(), isNull()))
+                .thenReturn(Mono.just(List.of()));
+
+        webTestClient.get().uri("/api/map/roads?lon=-120.6596&lat=35.2828&limit=10")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType("application/json")
+                .expectBody()
+                .jsonPath("$").isArray();
+    }
+
+    /**
+     * Test that the roads endpoint passes the zoom level for simplification to the service.
+     * 
+     * @throws Exception if the test fails
+     */
+    @Test
+    void getRoads_WithZoom_ShouldPassZoomToService() throws Exception {
+        when(gisApiService.findNearbyFeatures(anyDouble(), anyDouble(), anyDouble(), eq("mv_road_network"), anyInt(),
+                eq(11), isNull()))
+                .thenReturn(Mono.just(List.of()));
+
+        webTestClient.get().uri("/api/map/roads?lon=-120.6596&lat=35.2828&zoom=11")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$").isArray();
+    }
+
+    /**
+     * Test that the roads endpoint streams one feature per line when NDJSON is requested.
+     * 
+     * @throws Exception if the test fails
+     */
+    @Test
+    void getRoads_AcceptNdjson_ShouldStreamFeatures() throws Exception {
+        Map<String, Object> firstRoad = new HashMap<>();
+        firstRoad.put("osmId", 1L);
+        firstRoad.put("name", "First Road");
+        Map<String, Object> secondRoad = new HashMap<>();
+        secondRoad.put("osmId", 2L);
+        secondRoad.put("name", "Second Road");
+        
+        when(gisApiService.streamNearbyFeatures(anyDouble(), anyDouble(), anyDouble(), eq("mv_road_network"), anyInt(),
+                isNull(), isNull()))
+                .thenReturn(Flux.just(firstRoad, secondRoad));
+
+        String body = webTestClient.get().uri("/api/map/roads?lon=-120.6596&lat=35.2828")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBody(String.class)
+                .returnResult()
+                .getResponseBody();
+        
+        String[] lines = body.trim().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].contains("\"name\":\"First Road\""));
+        assertTrue(lines[1].contains("\"name\":\"Second Road\""));
+    }
+
+    /**
+     * Test that the roads endpoint writes encoded polylines when requested by query parameter.
+     * 
+     * @throws Exception if the test fails
+     */
+    @Test
+    void getRoads_EncodingPolyline_ShouldWriteEncodedCoordinates() throws Exception {
+        when(gisApiService.findNearbyFeatures(anyDouble(), anyDouble(), anyDouble(), eq("mv_road_network"), anyInt(),
+                isNull(), isNull()))
+                .thenReturn(Mono.just(road()));
+
+        webTestClient.get().uri("/api/map/roads?lon=-120.6596&lat=35.2828&encoding=polyline")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].coordinates").isEqualTo("_p~iF~ps|U_ulLnnqC_mqNvxq`@");
+
+        webTestClient.get().uri("/api/map/roads?lon=-120.6596&lat=35.2828")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].coordinates[0][0]").isEqualTo(-120.2);
+    }
+
+    /**
+     * Test that the roads stream writes encoded polylines when requested by Accept header.
+     * 
+     * @throws Exception if the test fails
+     */
+    @Test
+    void getRoads_AcceptNdjsonPolyline_ShouldStreamEncodedCoordinates() throws Exception {
+        when(gisApiService.streamNearbyFeatures(anyDouble(), anyDouble(), anyDouble(), eq("mv_road_network"), anyInt(),
+                isNull(), isNull()))
+                .thenReturn(Flux.fromIterable(road()));
+
+        String body = webTestClient.get().uri("/api/map/roads?lon=-120.6596&lat=35.2828")
+                .header("Accept", "application/x-ndjson;encoding=polyline;precision=6")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBody(String.class)
+                .returnResult()
+                .getResponseBody();
+        
+        assertTrue(body.contains("\"coordinates\":\"_izlhA~rlgdF_{geC~ywl@_kwzCn`{nI\""));
     }
 
     /**
@@ -161,20 +507,20 @@ class MapDataControllerTest {
         mockPOI.put("geometry", "Point");
         
         when(gisApiService.findNearbyFeatures(anyDouble(), anyDouble(), anyDouble(), anyString(), anyInt()))
-                .thenReturn(List.of(mockPOI));
-
-        mockMvc.perform(get("/api/map/pois")
-                .param("lon", "-120.6596")
-                .param("lat", "35.2828"))
-                .andExpect(status().isOk())
-                .andExpect(content().contentType("application/json"))
-                .andExpect(jsonPath("$").isArray())
-                .andExpect(jsonPath("$[0].osmId").value(11111))
-                .andExpect(jsonPath("$[0].name").value("Test POI"))
-                .andExpect(jsonPath("$[0].type").value("atm"))
-                .andExpect(jsonPath("$[0].longitude").value(-120.6596))
-                .andExpect(jsonPath("$[0].latitude").value(35.2828))
-                .andExpect(jsonPath("$[0].geometry").value("Point"));
+                .thenReturn(Mono.just(List.of(mockPOI)));
+
+        webTestClient.get().uri("/api/map/pois?lon=-120.6596&lat=35.2828")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType("application/json")
+                .expectBody()
+                .jsonPath("$").isArray()
+                .jsonPath("$[0].osmId").isEqualTo(11111)
+                .jsonPath("$[0].name").isEqualTo("Test POI")
+                .jsonPath("$[0].type").isEqualTo("atm")
+                .jsonPath("$[0].longitude").isEqualTo(-120.6596)
+                .jsonPath("$[0].latitude").isEqualTo(35.2828)
+                .jsonPath("$[0].geometry").isEqualTo("Point");
     }
 
     /**
@@ -186,15 +532,14 @@ class MapDataControllerTest {
     void getPOIs_WithLimit_ShouldPassLimitToService() throws Exception {
         // Mock the GIS API service response
         when(gisApiService.findNearbyFeatures(anyDouble(), anyDouble(), anyDouble(), anyString(), anyInt()))
-                .thenReturn(List.of());
-
-        mockMvc.perform(get("/api/map/pois")
-                .param("lon", "-120.6596")
-                .param("lat", "35.2828")
-                .param("limit", "15"))
-                .andExpect(status().isOk())
-                .andExpect(content().contentType("application/json"))
-                .andExpect(jsonPath("$").isArray());
+                .thenReturn(Mono.just(List.of()));
+
+        webTestClient.get().uri("/api/map/pois?lon=-120.6596&lat=35.2828&limit=15")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType("application/json")
+                .expectBody()
+                .jsonPath("$").isArray();
     }
 
     /**
@@ -210,14 +555,71 @@ class MapDataControllerTest {
         mockSummary.put("roads", 54534);
         mockSummary.put("pois", 3629);
         
-        when(gisApiService.getSpatialSummary()).thenReturn(mockSummary);
-
-        mockMvc.perform(get("/api/map/spatial/summary"))
-                .andExpect(status().isOk())
-                .andExpect(content().contentType("application/json"))
-                .andExpect(jsonPath("$.restaurants").value(710))
-                .andExpect(jsonPath("$.roads").value(54534))
-                .andExpect(jsonPath("$.pois").value(3629));
+        when(gisApiService.getSpatialSummary()).thenReturn(Mono.just(mockSummary));
+
+        webTestClient.get().uri("/api/map/spatial/summary")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType("application/json")
+                .expectBody()
+                .jsonPath("$.restaurants").isEqualTo(710)
+                .jsonPath("$.roads").isEqualTo(54534)
+                .jsonPath("$.pois").isEqualTo(3629);
+    }
+
+    /**
+     * Test that a document served from the cache carries its age in seconds in the
+     * X-Data-Age header, but not in the Age header that clients count against max-age.
+     * 
+     * @throws Exception if the test fails
+     */
+    @Test
+    void getSpatialSummary_Cached_ShouldReturnDataAgeHeader() throws Exception {
+        when(gisApiService.getSpatialSummary()).thenReturn(Mono.just(Map.of("restaurants", 710)));
+        when(gisApiService.getSpatialSummaryAge()).thenReturn(Optional.of(DataAge.of(Duration.ofMillis(125500))));
+
+        webTestClient.get().uri("/api/map/spatial/summary")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("X-Data-Age", "125")
+                .expectHeader().doesNotExist(HttpHeaders.AGE);
+    }
+
+    /**
+     * Test that a document served past its lifetime because the GIS API failed carries its
+     * age in the Age header as well.
+     * 
+     * @throws Exception if the test fails
+     */
+    @Test
+    void getSpatialSummary_StaleIfError_ShouldReturnAgeHeader() throws Exception {
+        when(gisApiService.getSpatialSummary()).thenReturn(Mono.just(Map.of("restaurants", 710)));
+        when(gisApiService.getSpatialSummaryAge())
+                .thenReturn(Optional.of(DataAge.staleIfError(Duration.ofSeconds(7200))));
+
+        webTestClient.get().uri("/api/map/spatial/summary")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("X-Data-Age", "7200")
+                .expectHeader().valueEquals(HttpHeaders.AGE, "7200");
+    }
+
+    /**
+     * Test that nearby features that are neither available from the GIS API nor cached
+     * are answered with 503 and are not cached by clients.
+     * 
+     * @throws Exception if the test fails
+     */
+    @Test
+    void getRoads_DataUnavailable_ShouldReturnServiceUnavailable() throws Exception {
+        when(gisApiService.findNearbyFeatures(anyDouble(), anyDouble(), anyDouble(), eq("mv_road_network"), anyInt(),
+                isNull(), isNull()))
+                .thenReturn(Mono.error(new DataUnavailableException("unavailable", new IllegalStateException("down"))));
+
+        webTestClient.get().uri("/api/map/roads?lon=-120.6596&lat=35.2828")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.SERVICE_UNAVAILABLE)
+                .expectHeader().cacheControl(CacheControl.noStore());
     }
 
     /**
@@ -237,20 +639,22 @@ class MapDataControllerTest {
         mockFeature.put("distance", 0.0);
         mockFeature.put("geometry", "Point");
         
-        when(gisApiService.findNearbyFeatures(anyDouble(), anyDouble(), anyDouble(), anyString(), anyInt()))
-                .thenReturn(List.of(mockFeature));
-
-        mockMvc.perform(get("/api/map/spatial/nearby?lon=-120.6596&lat=35.2828&distance=1000&table=mv_restaurants&limit=1"))
-                .andExpect(status().isOk())
-                .andExpect(content().contentType("application/json"))
-                .andExpect(jsonPath("$").isArray())
-                .andExpect(jsonPath("$[0].osmId").value(12345))
-                .andExpect(jsonPath("$[0].name").value("Test Restaurant"))
-                .andExpect(jsonPath("$[0].type").value("restaurant"))
-                .andExpect(jsonPath("$[0].latitude").value(35.2828))
-                .andExpect(jsonPath("$[0].longitude").value(-120.6596))
-                .andExpect(jsonPath("$[0].distance").value(0.0))
-                .andExpect(jsonPath("$[0].geometry").value("Point"));
+        when(gisApiService.findNearbyFeatures(anyDouble(), anyDouble(), anyDouble(), anyString(), anyInt(), isNull(), isNull()))
+                .thenReturn(Mono.just(List.of(mockFeature)));
+
+        webTestClient.get().uri("/api/map/spatial/nearby?lon=-120.6596&lat=35.2828&distance=1000&table=mv_restaurants&limit=1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType("application/json")
+                .expectBody()
+                .jsonPath("$").isArray()
+                .jsonPath("$[0].osmId").isEqualTo(12345)
+                .jsonPath("$[0].name").isEqualTo("Test Restaurant")
+                .jsonPath("$[0].type").isEqualTo("restaurant")
+                .jsonPath("$[0].latitude").isEqualTo(35.2828)
+                .jsonPath("$[0].longitude").isEqualTo(-120.6596)
+                .jsonPath("$[0].distance").isEqualTo(0.0)
+                .jsonPath("$[0].geometry").isEqualTo("Point");
     }
 
     /**
@@ -266,14 +670,16 @@ class MapDataControllerTest {
         mockStatus.put("record_counts", Map.of("restaurants", 710, "roads", 54534, "pois", 3629));
         mockStatus.put("health", "healthy");
         
-        when(gisApiService.getDataStatus()).thenReturn(mockStatus);
-
-        mockMvc.perform(get("/api/map/data/status"))
-                .andExpect(status().isOk())
-                .andExpect(content().contentType("application/json"))
-                .andExpect(jsonPath("$.health").value("healthy"))
-                .andExpect(jsonPath("$.database.status").value("healthy"))
-                .andExpect(jsonPath("$.record_counts.restaurants").value(710));
+        when(gisApiService.getDataStatus()).thenReturn(Mono.just(mockStatus));
+
+        webTestClient.get().uri("/api/map/data/status")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType("application/json")
+                .expectBody()
+                .jsonPath("$.health").isEqualTo("healthy")
+                .jsonPath("$.database.status").isEqualTo("healthy")
+                .jsonPath("$.record_counts.restaurants").isEqualTo(710);
     }
 
     /**
@@ -291,14 +697,25 @@ class MapDataControllerTest {
         ));
         mockMetadata.put("coordinate_systems", List.of("EPSG:3857", "EPSG:4326"));
         
-        when(gisApiService.getDataMetadata()).thenReturn(mockMetadata);
-
-        mockMvc.perform(get("/api/map/data/metadata"))
-                .andExpect(status().isOk())
-                .andExpect(content().contentType("application/json"))
-                .andExpect(jsonPath("$.layers").isArray())
-                .andExpect(jsonPath("$.layers[0].name").value("restaurants"))
-                .andExpect(jsonPath("$.coordinate_systems").isArray())
-                .andExpect(jsonPath("$.coordinate_systems[0]").value("EPSG:3857"));
+        when(gisApiService.getDataMetadata()).thenReturn(Mono.just(mockMetadata));
+
+        webTestClient.get().uri("/api/map/data/metadata")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType("application/json")
+                .expectBody()
+                .jsonPath("$.layers").isArray()
+                .jsonPath("$.layers[0].name").isEqualTo("restaurants")
+                .jsonPath("$.coordinate_systems").isArray()
+                .jsonPath("$.coordinate_systems[0]").isEqualTo("EPSG:3857");
+    }
+
+    private static FeatureTable road() {
+        return FeatureTable.builder()
+                .beginFeature(1L)
+                .geometry(FeatureTable.GeometryType.LINE_STRING)
+                .beginPart().vertex(-120.2, 38.5).vertex(-120.95, 40.7).vertex(-126.453, 43.252)
+                .endFeature()
+                .build();
     }
 }
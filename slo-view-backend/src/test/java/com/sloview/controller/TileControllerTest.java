@@ -0,0 +1,81 @@
+package com.sloview.controller;
+
+import com.sloview.service.TileCacheService;
+import com.sloview.service.VectorTileService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.CacheControl;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the TileController.
+ *
+ * Tests the vector tile endpoint responses for built, unknown and not yet indexed tiles.
+ */
+@WebFluxTest(controllers = TileController.class)
+class TileControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private VectorTileService vectorTileService;
+
+    @MockBean
+    private TileCacheService tileCacheService;
+
+    /**
+     * Test that a tile is returned as a cacheable vector tile.
+     */
+    @Test
+    void getTile_ShouldReturnVectorTile() {
+        byte[] tile = {0x1a, 0x00};
+        when(vectorTileService.hasLayer("roads")).thenReturn(true);
+        when(tileCacheService.getTile("roads", 14, 2700, 6480)).thenReturn(Mono.just(ByteBuffer.wrap(tile)));
+
+        webTestClient.get().uri("/api/map/tiles/roads/14/2700/6480.mvt")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType("application/vnd.mapbox-vector-tile")
+                .expectHeader().cacheControl(CacheControl.maxAge(Duration.ofSeconds(300)).cachePublic())
+                .expectBody(byte[].class).isEqualTo(tile);
+    }
+
+    /**
+     * Test that unknown layers and tile coordinates outside the zoom level are not found.
+     */
+    @Test
+    void getTile_UnknownLayerOrTile_ShouldReturnNotFound() {
+        when(vectorTileService.hasLayer(anyString())).thenReturn(false);
+        when(vectorTileService.hasLayer("roads")).thenReturn(true);
+
+        webTestClient.get().uri("/api/map/tiles/buildings/14/2700/6480.mvt")
+                .exchange()
+                .expectStatus().isNotFound();
+        webTestClient.get().uri("/api/map/tiles/roads/2/4/0.mvt")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    /**
+     * Test that tiles of a layer that is not indexed yet are reported as unavailable.
+     */
+    @Test
+    void getTile_LayerNotIndexed_ShouldReturnServiceUnavailable() {
+        when(vectorTileService.hasLayer("pois")).thenReturn(true);
+        when(tileCacheService.getTile("pois", 10, 170, 405)).thenReturn(Mono.empty());
+
+        webTestClient.get().uri("/api/map/tiles/pois/10/170/405.mvt")
+                .exchange()
+                .expectStatus().isEqualTo(503);
+    }
+}
@@ -0,0 +1,170 @@
+package com.sloview.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the FeatureTable.
+ *
+ * Tests that rows expose and serialize the same fields as the map-based features they replace.
+ */
+class FeatureTableTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Test that a restaurant row serializes like the equivalent map, including null placeholders.
+     */
+    @Test
+    void serialize_Restaurant_ShouldMatchMapFormat() throws Exception {
+        FeatureTable table = FeatureTable.builder()
+                .beginFeature(42L)
+                .property("name", "Firestone Grill")
+                .property("amenity", "restaurant")
+                .location(-120.6636, 35.2799)
+                .property("tourism", null)
+                .property("shop", null)
+                .endFeature()
+                .build();
+
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("osmId", 42L);
+        expected.put("name", "Firestone Grill");
+        expected.put("amenity", "restaurant");
+        expected.put("longitude", -120.6636);
+        expected.put("latitude", 35.2799);
+        expected.put("tourism", null);
+        expected.put("shop", null);
+
+        assertEquals(objectMapper.valueToTree(List.of(expected)), objectMapper.valueToTree(table));
+        assertEquals(expected, table.get(0));
+    }
+
+    /**
+     * Test that line strings and polygons keep their coordinates in GeoJSON order.
+     */
+    @Test
+    void serialize_Geometries_ShouldWriteCoordinates() throws Exception {
+        FeatureTable table = FeatureTable.builder()
+                .beginFeature(1L)
+                .geometry(FeatureTable.GeometryType.LINE_STRING)
+                .beginPart().vertex(1.0, 2.0).vertex(3.0, 4.0)
+                .location(1.0, 2.0)
+                .distance(12.5)
+                .endFeature()
+                .beginFeature(2L)
+                .geometry(FeatureTable.GeometryType.POLYGON)
+                .beginPart().vertex(0.0, 0.0).vertex(1.0, 0.0).vertex(0.0, 1.0)
+                .beginPart().vertex(0.1, 0.1).vertex(0.2, 0.1).vertex(0.1, 0.2)
+                .endFeature()
+                .build();
+
+        JsonNode json = objectMapper.valueToTree(table);
+
+        assertEquals("LineString", json.get(0).get("geometry").asText());
+        assertEquals("[[1.0,2.0],[3.0,4.0]]", json.get(0).get("coordinates").toString());
+        assertEquals(12.5, json.get(0).get("distance").asDouble());
+        assertEquals(2, json.get(1).get("coordinates").size());
+        assertEquals("[0.1,0.2]", json.get(1).get("coordinates").get(1).get(2).toString());
+        assertTrue(json.get(1).path("longitude").isMissingNode());
+        assertEquals(json.get(1).get("coordinates"), objectMapper.valueToTree(table.get(1).get("coordinates")));
+    }
+
+    /**
+     * Test that polyline views encode lines and rings in the Google polyline format and round
+     * the representative point to the same precision.
+     */
+    @Test
+    void withPolylineCoordinates_ShouldWriteEncodedPolylines() throws Exception {
+        FeatureTable table = FeatureTable.builder()
+                .beginFeature(1L)
+                .geometry(FeatureTable.GeometryType.LINE_STRING)
+                .beginPart().vertex(-120.2, 38.5).vertex(-120.95, 40.7).vertex(-126.453, 43.252)
+                .location(-120.6636123, 35.2799456)
+                .endFeature()
+                .beginFeature(2L)
+                .geometry(FeatureTable.GeometryType.POLYGON)
+                .beginPart().vertex(-120.2, 38.5).vertex(-120.95, 40.7).vertex(-126.453, 43.252)
+                .endFeature()
+                .build()
+                .withPolylineCoordinates(5);
+
+        JsonNode json = objectMapper.valueToTree(table);
+
+        assertEquals("_p~iF~ps|U_ulLnnqC_mqNvxq`@", json.get(0).get("coordinates").asText());
+        assertEquals(-120.66361, json.get(0).get("longitude").asDouble());
+        assertEquals(35.27995, json.get(0).get("latitude").asDouble());
+        assertEquals("[\"_p~iF~ps|U_ulLnnqC_mqNvxq`@\"]", json.get(1).get("coordinates").toString());
+        assertEquals(json.get(1).get("coordinates"), objectMapper.valueToTree(table.get(1).get("coordinates")));
+        assertEquals(json.get(0), objectMapper.valueToTree(FeatureTable.withPolylineCoordinates(
+                table.withPolylineCoordinates(0).get(0), 5)));
+    }
+
+    /**
+     * Test that selections and concatenation keep the rows and replace distances.
+     */
+    @Test
+    void selectAndConcat_ShouldPreserveRows() {
+        FeatureTable.Builder builder = FeatureTable.builder();
+        for (long id = 1; id <= 5; id++) {
+            builder.beginFeature(id).property("name", "Feature " + id).location(id, id).endFeature();
+        }
+        FeatureTable table = builder.build();
+
+        FeatureTable selected = table.slice(1, 5).select(new int[] {3, 0}, new double[] {1.5, 2.5});
+        assertEquals(5L, selected.get(0).get("osmId"));
+        assertEquals(2.5, selected.get(1).get("distance"));
+        assertEquals("Feature 2", selected.get(1).get("name"));
+        assertNull(table.get(0).get("distance"));
+
+        FeatureTable combined = FeatureTable.concat(List.of(selected, table.slice(0, 1)));
+        assertEquals(3, combined.size());
+        assertEquals(List.of(5L, 2L, 1L), List.of(combined.get(0).get("osmId"), combined.get(1).get("osmId"),
+                combined.get(2).get("osmId")));
+        assertEquals(1.5, combined.getDistance(0));
+    }
+
+    /**
+     * Test that simplification drops vertices within the tolerance, keeps line endpoints
+     * and never reduces a polygon ring below a triangle.
+     */
+    @Test
+    void simplify_ShouldDropVerticesWithinTolerance() {
+        // About 1 m of noise around two straight 500 m legs meeting 200 m off their baseline
+        FeatureTable.Builder builder = FeatureTable.builder()
+                .beginFeature(1L)
+                .geometry(FeatureTable.GeometryType.LINE_STRING)
+                .beginPart();
+        for (int i = 0; i <= 100; i++) {
+            double lat = 35.0 + (i % 2 == 0 ? 0.0 : 0.00001) + 0.0018 * (1 - Math.abs(i - 50) / 50.0);
+            builder.vertex(-120.0 + i * 0.00011, lat);
+        }
+        FeatureTable table = builder.endFeature()
+                .beginFeature(2L)
+                .geometry(FeatureTable.GeometryType.POLYGON)
+                .beginPart().vertex(0.0, 0.0).vertex(0.001, 0.0).vertex(0.001, 0.001)
+                .vertex(0.0005, 0.0011).vertex(0.0, 0.001).vertex(0.0, 0.0)
+                .endFeature()
+                .build();
+
+        List<?> full = table.getCoordinates(0);
+        assertEquals(101, full.size());
+
+        List<?> simplified = table.simplify(10.0).getCoordinates(0);
+        assertEquals(List.of(full.get(0), full.get(50), full.get(100)), simplified);
+        assertEquals(full, table.simplify(0.5).slice(0, 1).getCoordinates(0));
+
+        List<?> ring = (List<?>) table.simplify(100000.0).getCoordinates(1).get(0);
+        assertEquals(4, ring.size());
+        assertEquals(ring.get(0), ring.get(3));
+    }
+}
@@ -0,0 +1,79 @@
+package com.sloview.service;
+
+import com.sloview.model.FeatureTable;
+import com.sloview.spatial.IndexedLayer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Unit tests for the ClusterService.
+ *
+ * Tests building the cluster index once per published layer and answering before a table
+ * is indexed.
+ */
+class ClusterServiceTest {
+
+    private static final double CENTER_LON = -120.6596;
+    private static final double CENTER_LAT = 35.2828;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final SpatialIndexService spatialIndexService = new SpatialIndexService(registry);
+    private final ClusterService clusterService = new ClusterService(spatialIndexService, new GisMetrics(registry), 16, 60);
+
+    /**
+     * Test that concurrent queries share one build of the cluster index, that later queries
+     * reuse it, and that a newly published layer is clustered again.
+     */
+    @Test
+    void getClusters_ConcurrentQueries_ShouldBuildIndexOncePerLayer() {
+        spatialIndexService.publish(layer(500));
+
+        List<List<Map<String, Object>>> results = Mono.zip(clusters(), clusters(), clusters())
+                .map(all -> List.of(all.getT1(), all.getT2(), all.getT3()))
+                .block(Duration.ofSeconds(5));
+        assertEquals(results.get(0), results.get(1));
+        assertEquals(results.get(0), results.get(2));
+        clusters().block(Duration.ofSeconds(5));
+        assertEquals(1, builds());
+
+        spatialIndexService.publish(layer(600));
+        clusters().block(Duration.ofSeconds(5));
+        assertEquals(2, builds());
+    }
+
+    /**
+     * Test that a table that is not indexed yet has no clusters.
+     */
+    @Test
+    void getClusters_NotIndexed_ShouldReturnEmpty() {
+        StepVerifier.create(clusters())
+                .expectComplete()
+                .verify(Duration.ofSeconds(1));
+    }
+
+    private Mono<List<Map<String, Object>>> clusters() {
+        return clusterService.getClusters("mv_restaurants", -121, 35, -120, 36, 10);
+    }
+
+    private long builds() {
+        return registry.get("gis.transform").tag("operation", "clusters.build").timer().count();
+    }
+
+    private static IndexedLayer layer(int points) {
+        FeatureTable.Builder builder = FeatureTable.builder();
+        for (int i = 0; i < points; i++) {
+            builder.beginFeature(i + 1L)
+                    .location(CENTER_LON + (i % 25) * 0.01, CENTER_LAT + (i / 25) * 0.01)
+                    .endFeature();
+        }
+        return IndexedLayer.build("mv_restaurants", builder.build(), CENTER_LON, CENTER_LAT, 60000, false);
+    }
+}
@@ -0,0 +1,388 @@
+package com.sloview.service;
+
+import com.sloview.cache.ResponseCaches;
+import com.sloview.model.FeatureTable;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the GISApiService.
+ *
+ * Tests loading the restaurant cache page by page against a stubbed GIS API: splitting
+ * failing pages, restarting at a smaller page size, loading without a total, keeping the
+ * previous cache when a load fails, refreshing changed pages by dataset fingerprint and
+ * racing concurrent loads.
+ */
+class GISApiServiceTest {
+
+    private static final String BASE_URL = "http://gis-api";
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private final Set<String> failingPages = Collections.synchronizedSet(new HashSet<>());
+    private volatile int restaurantCount = 10;
+    private volatile boolean reportTotal = true;
+    private volatile Function<Integer, Integer> rowsOnPage;
+    private volatile String datasetVersion;
+    private final Map<Integer, String> names = new ConcurrentHashMap<>();
+    private final AtomicInteger notModified = new AtomicInteger();
+    private volatile String heldPage;
+    private volatile Mono<Void> heldResponse;
+
+    /**
+     * Test that a page that keeps failing is fetched as two pages of half the size covering
+     * the same rows, and that the next load uses the smaller page size.
+     */
+    @Test
+    void loadRestaurants_PageFails_ShouldSplitPageIntoHalves() {
+        GISApiService service = service(4, 2);
+        failingPages.add("page=2&limit=4");
+
+        service.loadRestaurantsInBackground().block();
+
+        assertEquals(ids(1, 10), loadedIds(service));
+        assertTrue(requests.contains("page=3&limit=2"));
+        assertTrue(requests.contains("page=4&limit=2"));
+        assertEquals(2, ReflectionTestUtils.getField(service, "restaurantPageSize"));
+        assertEquals(1.0, registry.get("gis.restaurants.page.splits").counter().count());
+    }
+
+    /**
+     * Test that a configured page size that is not a power of two is rounded down, so that a
+     * split page still covers exactly the rows of the original page.
+     */
+    @Test
+    void loadRestaurants_OddPageSize_ShouldSplitWithoutMissingRows() {
+        GISApiService service = service(5, 2);
+        failingPages.add("page=2&limit=5");
+        failingPages.add("page=2&limit=4");
+
+        service.loadRestaurantsInBackground().block();
+
+        assertEquals(ids(1, 10), loadedIds(service));
+        assertTrue(requests.stream().noneMatch(request -> request.endsWith("limit=5")));
+    }
+
+    /**
+     * Test that a first page that keeps failing starts the load over at half the page size.
+     */
+    @Test
+    void loadRestaurants_FirstPageFails_ShouldStartOverAtHalfSize() {
+        GISApiService service = service(4, 2);
+        failingPages.add("page=1&limit=4");
+
+        service.loadRestaurantsInBackground().block();
+
+        assertEquals(ids(1, 10), loadedIds(service));
+        assertEquals(List.of("page=1&limit=4", "page=1&limit=2", "page=2&limit=2", "page=3&limit=2",
+                "page=4&limit=2", "page=5&limit=2"), requests);
+    }
+
+    /**
+     * Test that without a reported total, pages are fetched in waves until the first page
+     * that is not full.
+     */
+    @Test
+    void loadRestaurants_TotalMissing_ShouldFetchWavesUntilShortPage() {
+        GISApiService service = service(4, 2);
+        reportTotal = false;
+
+        service.loadRestaurantsInBackground().block();
+
+        assertEquals(ids(1, 10), loadedIds(service));
+        assertFalse(requests.contains("page=4&limit=4"));
+    }
+
+    /**
+     * Test that without a reported total, a short page followed by a non-empty page fails the
+     * load instead of caching a list with missing rows.
+     */
+    @Test
+    void loadRestaurants_TotalMissingAndShortPageInside_ShouldNotLoad() {
+        GISApiService service = service(4, 2);
+        reportTotal = false;
+        rowsOnPage = page -> page == 2 ? 3 : 4;
+
+        service.loadRestaurantsInBackground().block();
+
+        assertTrue(service.getRestaurantsVersion().isEmpty());
+    }
+
+    /**
+     * Test that a load that cannot fetch every page keeps the complete cache of the previous load.
+     */
+    @Test
+    void loadRestaurants_LoadFails_ShouldKeepCompleteCache() {
+        GISApiService service = service(4, 4);
+        service.loadRestaurantsInBackground().block();
+        String version = service.getRestaurantsVersion().orElseThrow();
+
+        restaurantCount = 12;
+        failingPages.add("page=3&limit=4");
+        service.loadRestaurantsInBackground().block();
+
+        assertEquals(ids(1, 10), loadedIds(service));
+        assertEquals(version, service.getRestaurantsVersion().orElseThrow());
+        assertEquals(1.0, loads("failed"));
+    }
+
+    /**
+     * Test that a refresh under an unchanged versioned fingerprint keeps the cache without
+     * fetching any restaurant page.
+     */
+    @Test
+    void loadRestaurants_FingerprintUnchanged_ShouldNotFetchPages() {
+        GISApiService service = service(4, 2);
+        ReflectionTestUtils.setField(service, "restaurantFullReloadMs", 3600000L);
+        datasetVersion = "2024-01-01";
+        service.loadRestaurantsInBackground().block();
+        requests.clear();
+
+        service.loadRestaurantsInBackground().block();
+
+        assertTrue(requests.isEmpty());
+        assertEquals(ids(1, 10), loadedIds(service));
+        assertEquals(1.0, loads("unchanged"));
+    }
+
+    /**
+     * Test that a changed fingerprint fetches every page conditionally, and that only the
+     * page whose content changed is replaced.
+     */
+    @Test
+    void loadRestaurants_FingerprintChanged_ShouldRefreshChangedPages() {
+        GISApiService service = service(4, 2);
+        ReflectionTestUtils.setField(service, "restaurantFullReloadMs", 3600000L);
+        datasetVersion = "2024-01-01";
+        service.loadRestaurantsInBackground().block();
+        String version = service.getRestaurantsVersion().orElseThrow();
+
+        datasetVersion = "2024-01-02";
+        names.put(6, "Renamed");
+        service.loadRestaurantsInBackground().block();
+
+        assertEquals(2, notModified.get());
+        assertEquals("Renamed", loadedName(service, 5));
+        assertNotEquals(version, service.getRestaurantsVersion().orElseThrow());
+    }
+
+    /**
+     * Test that when the dataset reports only a record count, edits that keep the count are
+     * picked up once the unversioned refresh interval has passed.
+     */
+    @Test
+    void loadRestaurants_CountOnlyFingerprint_ShouldRefreshPagesPeriodically() {
+        GISApiService service = service(4, 2);
+        ReflectionTestUtils.setField(service, "restaurantFullReloadMs", 3600000L);
+        service.loadRestaurantsInBackground().block();
+        names.put(6, "Renamed");
+
+        requests.clear();
+        service.loadRestaurantsInBackground().block();
+        assertTrue(requests.isEmpty());
+        assertEquals("Restaurant 6", loadedName(service, 5));
+
+        ReflectionTestUtils.setField(service, "restaurantUnversionedRefreshMs", 0L);
+        service.loadRestaurantsInBackground().block();
+        assertEquals(3, requests.size());
+        assertEquals("Renamed", loadedName(service, 5));
+    }
+
+    /**
+     * Test that when two loads race, the load that started from an older snapshot and
+     * finishes last is discarded, and that readers only ever see a complete snapshot.
+     */
+    @Test
+    void loadRestaurants_ConcurrentLoads_ShouldDiscardSupersededLoad() throws Exception {
+        GISApiService service = service(4, 2);
+        Sinks.Empty<Void> release = Sinks.empty();
+        heldPage = "page=2&limit=4";
+        heldResponse = release.asMono();
+
+        List<String> violations = new CopyOnWriteArrayList<>();
+        AtomicBoolean reading = new AtomicBoolean(true);
+        Thread reader = new Thread(() -> {
+            while (reading.get()) {
+                if (service.getRestaurantsVersion().isPresent()) {
+                    List<Map<String, Object>> restaurants = service.getRestaurants(null).block();
+                    Set<Object> loads = new HashSet<>();
+                    restaurants.forEach(restaurant -> loads.add(((String) restaurant.get("name")).split(" ")[0]));
+                    if (restaurants.size() != 10 || loads.size() != 1) {
+                        violations.add(restaurants.size() + " restaurants from loads " + loads);
+                    }
+                }
+            }
+        });
+        reader.start();
+
+        // The first load starts from the empty snapshot and waits on its second page
+        Disposable first = service.loadRestaurantsInBackground().subscribe();
+        for (int i = 1; i <= 10; i++) {
+            names.put(i, "Second " + i);
+        }
+        service.loadRestaurantsInBackground().block();
+        String version = service.getRestaurantsVersion().orElseThrow();
+
+        release.tryEmitEmpty();
+        for (int i = 0; i < 100 && !first.isDisposed(); i++) {
+            Thread.sleep(10);
+        }
+        reading.set(false);
+        reader.join();
+
+        assertTrue(first.isDisposed());
+        assertEquals(version, service.getRestaurantsVersion().orElseThrow());
+        assertEquals("Second 6", loadedName(service, 5));
+        assertEquals(List.of(), violations);
+        assertEquals(1.0, loads("discarded"));
+    }
+
+    private GISApiService service(int pageSize, int minPageSize) {
+        UpstreamRateLimiter rateLimiter = new UpstreamRateLimiter(100, 36000, 0, 100, 5000, 100, 60000, registry);
+        UpstreamGuard upstreamGuard = new UpstreamGuard(rateLimiter, 100, 100, 50, 60000, 10, 10,
+                1000, 10000, 4, 30000, registry);
+        ResponseCaches responseCaches = new ResponseCaches(60000, 60000, 60000, 1000, 4,
+                60000, 60000, 60000, registry);
+        WebClient webClient = WebClient.builder()
+                .exchangeFunction(this::exchange)
+                .build();
+        GISApiService service = new GISApiService(new SpatialIndexService(registry), upstreamGuard,
+                responseCaches, webClient, new GisMetrics(registry), registry);
+        ReflectionTestUtils.setField(service, "gisApiBaseUrl", BASE_URL);
+        ReflectionTestUtils.setField(service, "maxRestaurantPageSize", pageSize);
+        ReflectionTestUtils.setField(service, "minRestaurantPageSize", minPageSize);
+        ReflectionTestUtils.setField(service, "restaurantLoadConcurrency", 2);
+        ReflectionTestUtils.setField(service, "restaurantPageRetries", 0);
+        ReflectionTestUtils.setField(service, "restaurantFullReloadMs", 0L);
+        ReflectionTestUtils.setField(service, "restaurantUnversionedRefreshMs", 3600000L);
+        ReflectionTestUtils.setField(service, "encodedRestaurantLimits", Set.of(100));
+        ReflectionTestUtils.invokeMethod(service, "configureRestaurantPageSizes");
+        return service;
+    }
+
+    /**
+     * Answers the restaurants endpoint from a numbered list of restaurants with an ETag per
+     * page, the data status endpoint with the restaurant count and dataset version, and every
+     * other endpoint with a 404.
+     */
+    private ClientResponse respond(ClientRequest request) {
+        URI url = request.url();
+        if (url.getPath().equals("/api/v1/data/status")) {
+            String version = datasetVersion != null ? ",\"last_updated\":\"" + datasetVersion + "\"" : "";
+            return json("{\"data\":{\"record_counts\":{\"restaurants\":" + restaurantCount + "}" + version + "}}");
+        }
+        if (url.getPath().equals("/api/v1/data/metadata")) {
+            return json("{\"data\":{}}");
+        }
+        if (!url.getPath().equals("/api/v1/restaurants")) {
+            return ClientResponse.create(HttpStatus.NOT_FOUND).build();
+        }
+        String query = url.getQuery();
+        requests.add(query);
+        if (failingPages.contains(query)) {
+            return ClientResponse.create(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        Map<String, List<String>> params = UriComponentsBuilder.fromUri(url).build().getQueryParams();
+        int page = Integer.parseInt(params.get("page").get(0));
+        int limit = Integer.parseInt(params.get("limit").get(0));
+        int from = (page - 1) * limit;
+        int to = Math.min(restaurantCount, from + (rowsOnPage != null ? rowsOnPage.apply(page) : limit));
+
+        StringBuilder features = new StringBuilder();
+        for (int id = from + 1; id <= to; id++) {
+            if (features.length() > 0) {
+                features.append(',');
+            }
+            features.append("{\"id\":\"").append(id).append("\",\"properties\":{\"name\":\"")
+                    .append(names.getOrDefault(id, "Restaurant " + id))
+                    .append("\",\"type\":\"restaurant\"},\"geometry\":{\"coordinates\":[")
+                    .append(-13431000 + id).append(",4218000]}}");
+        }
+        String pagination = reportTotal ? ",\"pagination\":{\"total\":" + restaurantCount + "}" : "";
+        String body = "{\"data\":{\"features\":[" + features + "]" + pagination + "}}";
+        String etag = "\"" + Integer.toHexString(body.hashCode()) + "\"";
+        if (request.headers().getIfNoneMatch().contains(etag)) {
+            notModified.incrementAndGet();
+            return ClientResponse.create(HttpStatus.NOT_MODIFIED).header(HttpHeaders.ETAG, etag).build();
+        }
+        return ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .header(HttpHeaders.ETAG, etag)
+                .body(body)
+                .build();
+    }
+
+    /**
+     * Answers a request, holding back the first response for the held page until it is released.
+     */
+    private Mono<ClientResponse> exchange(ClientRequest request) {
+        ClientResponse response = respond(request);
+        if (heldResponse != null && request.url().getQuery() != null && request.url().getQuery().equals(heldPage)) {
+            Mono<Void> release = heldResponse;
+            heldResponse = null;
+            return release.thenReturn(response);
+        }
+        return Mono.just(response);
+    }
+
+    private static ClientResponse json(String body) {
+        return ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body(body)
+                .build();
+    }
+
+    private static List<Long> loadedIds(GISApiService service) {
+        FeatureTable restaurants = (FeatureTable) service.getRestaurants(null).block();
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < restaurants.size(); i++) {
+            ids.add(restaurants.getOsmId(i));
+        }
+        return ids;
+    }
+
+    private double loads(String result) {
+        return registry.get("gis.cache.loads").tag("result", result).counter().count();
+    }
+
+    private static Object loadedName(GISApiService service, int index) {
+        return service.getRestaurants(null).block().get(index).get("name");
+    }
+
+    private static List<Long> ids(long from, long to) {
+        List<Long> ids = new ArrayList<>();
+        for (long id = from; id <= to; id++) {
+            ids.add(id);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,75 @@
+package com.sloview.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Unit tests for the GeoJsonFeatureDecoder.
+ *
+ * Tests that features are decoded correctly regardless of how the body is split into buffers.
+ */
+class GeoJsonFeatureDecoderTest {
+
+    private static final String RESPONSE = "{\"success\":true,\"features\":[{\"id\":\"0\"}],"
+            + "\"data\":{\"type\":\"FeatureCollection\",\"meta\":{\"features\":[1,2]},\"features\":["
+            + "{\"id\":\"1\",\"properties\":{\"name\":\"Higuera St\",\"tags\":[\"a\",{\"b\":null}]},"
+            + "\"geometry\":{\"type\":\"LineString\",\"coordinates\":[[-120.66,35.28],[-120.65,35.29]]}},"
+            + "null,"
+            + "{\"id\":\"2\",\"properties\":{\"name\":\"Café \\\"Roma\\\"\"},"
+            + "\"geometry\":{\"type\":\"Point\",\"coordinates\":[-120.66,35.28]}}"
+            + "],\"pagination\":{\"total\":2}}}";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final GeoJsonFeatureDecoder decoder = new GeoJsonFeatureDecoder(objectMapper);
+
+    /**
+     * Test that only the elements of data.features are emitted, whatever the buffer boundaries.
+     */
+    @Test
+    void decode_AnyBufferSplit_ShouldEmitDataFeatures() throws Exception {
+        byte[] bytes = RESPONSE.getBytes(StandardCharsets.UTF_8);
+        List<JsonNode> expected = new ArrayList<>();
+        expected.add(objectMapper.readTree(RESPONSE).path("data").path("features").get(0));
+        expected.add(objectMapper.readTree(RESPONSE).path("data").path("features").get(2));
+
+        for (int chunk = 1; chunk <= bytes.length; chunk += 7) {
+            StepVerifier.create(decoder.decode(split(bytes, chunk)).collectList())
+                    .assertNext(features -> assertEquals(expected, features))
+                    .verifyComplete();
+        }
+    }
+
+    /**
+     * Test that a truncated body is reported as an error.
+     */
+    @Test
+    void decode_TruncatedBody_ShouldFail() {
+        byte[] bytes = RESPONSE.substring(0, RESPONSE.length() / 2).getBytes(StandardCharsets.UTF_8);
+
+        StepVerifier.create(decoder.decode(split(bytes, 64)))
+                .thenConsumeWhile(feature -> true)
+                .expectError()
+                .verify();
+    }
+
+    private static Flux<DataBuffer> split(byte[] bytes, int chunk) {
+        List<DataBuffer> buffers = new ArrayList<>();
+        for (int from = 0; from < bytes.length; from += chunk) {
+            byte[] part = new byte[Math.min(chunk, bytes.length - from)];
+            System.arraycopy(bytes, from, part, 0, part.length);
+            buffers.add(DefaultDataBufferFactory.sharedInstance.wrap(part));
+        }
+        return Flux.fromIterable(buffers);
+    }
+}
@@ -0,0 +1,145 @@
+package com.sloview.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the TileCacheService.
+ *
+ * Tests building missing tiles off the calling thread, sharing concurrent builds and
+ * dropping tiles of data that is no longer indexed.
+ */
+class TileCacheServiceTest {
+
+    private final VectorTileService vectorTileService = mock(VectorTileService.class);
+    private final GISApiService gisApiService = mock(GISApiService.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Test that concurrent requests for the same missing tile share one build, which does
+     * not run on the requesting thread.
+     */
+    @Test
+    void getTile_ConcurrentMisses_ShouldBuildOnceOffCallingThread() throws Exception {
+        TileCacheService service = service();
+        byte[] tile = {0x1a, 0x00};
+        AtomicInteger builds = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        Thread caller = Thread.currentThread();
+        when(vectorTileService.getLayerContentTag("roads")).thenReturn(Optional.of("tag1"));
+        when(vectorTileService.getTile("roads", 14, 2700, 6480)).thenAnswer(invocation -> {
+            builds.incrementAndGet();
+            assertNotEquals(caller, Thread.currentThread());
+            release.await(1, TimeUnit.SECONDS);
+            return Optional.of(tile);
+        });
+
+        Mono<List<ByteBuffer>> tiles = Mono.zip(
+                service.getTile("roads", 14, 2700, 6480),
+                service.getTile("roads", 14, 2700, 6480))
+                .map(pair -> List.of(pair.getT1(), pair.getT2()));
+        StepVerifier.create(tiles)
+                .then(release::countDown)
+                .expectNext(List.of(ByteBuffer.wrap(tile), ByteBuffer.wrap(tile)))
+                .expectComplete()
+                .verify(Duration.ofSeconds(2));
+        assertEquals(1, builds.get());
+    }
+
+    /**
+     * Test that tiles of a layer that is not indexed yet are not built.
+     */
+    @Test
+    void getTile_LayerNotIndexed_ShouldReturnEmpty() {
+        TileCacheService service = service();
+        when(vectorTileService.getLayerContentTag("pois")).thenReturn(Optional.empty());
+
+        StepVerifier.create(service.getTile("pois", 10, 170, 405))
+                .expectComplete()
+                .verify(Duration.ofSeconds(1));
+    }
+
+    /**
+     * Test that warming after the indexed data changed replaces the store by one without
+     * the tiles of the previous data, so the store does not grow with every change.
+     */
+    @Test
+    void warmIfReady_ContentTagChanged_ShouldNotGrowStore() throws Exception {
+        TileCacheService service = service();
+        when(gisApiService.fetchDatasetVersion()).thenReturn(Mono.just("v1"));
+        when(vectorTileService.getSignature()).thenReturn("/sig");
+        when(vectorTileService.getLayers()).thenReturn(Set.of("roads"));
+        when(vectorTileService.getLayerLoadedAt("roads")).thenReturn(OptionalLong.of(System.currentTimeMillis()));
+        when(vectorTileService.getTile(anyString(), anyInt(), anyInt(), anyInt())).thenReturn(Optional.of(new byte[100]));
+        service.openStore();
+        service.checkDatasetVersion();
+
+        when(vectorTileService.getLayerContentTag("roads")).thenReturn(Optional.of("roads-1"));
+        warm(service);
+        double tiles = registry.get("gis.tiles.cache.tiles").gauge().value();
+        double bytes = registry.get("gis.tiles.cache.bytes").gauge().value();
+
+        for (int tag = 2; tag <= 4; tag++) {
+            when(vectorTileService.getLayerContentTag("roads")).thenReturn(Optional.of("roads-" + tag));
+            warm(service);
+        }
+
+        assertTrue(tiles > 0);
+        assertEquals(tiles * 4, registry.get("gis.tiles.warmed").counter().count());
+        assertEquals(tiles, registry.get("gis.tiles.cache.tiles").gauge().value());
+        assertEquals(bytes, registry.get("gis.tiles.cache.bytes").gauge().value());
+        service.closeStore();
+    }
+
+    /**
+     * Warms the store and waits until the background warm-up finished.
+     */
+    private static void warm(TileCacheService service) throws InterruptedException {
+        Map<String, String> before = warmedTags(service);
+        service.warmIfReady();
+        AtomicBoolean warming = (AtomicBoolean) ReflectionTestUtils.getField(service, "warming");
+        for (int i = 0; i < 200 && (warming.get() || Objects.equals(before, warmedTags(service))); i++) {
+            Thread.sleep(10);
+        }
+        assertNotEquals(before, warmedTags(service));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, String> warmedTags(TileCacheService service) {
+        return (Map<String, String>) ReflectionTestUtils.getField(service, "warmedTags");
+    }
+
+    private TileCacheService service() {
+        return new TileCacheService(vectorTileService, gisApiService, true, directory.toString(), 4096,
+                new double[] {-120.7, 35.2, -120.6, 35.3}, 14, 14, registry);
+    }
+}
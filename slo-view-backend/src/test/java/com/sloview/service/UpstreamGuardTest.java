@@ -0,0 +1,205 @@
+package com.sloview.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Unit tests for the UpstreamGuard.
+ *
+ * Tests opening and probing circuits, bulkhead separation of priorities and adaptive timeouts.
+ */
+class UpstreamGuardTest {
+
+    private static final String URL = "http://gis-api/api/v1/spatial/summary?x=1";
+    private static final UpstreamRateLimiter.Priority INTERACTIVE = UpstreamRateLimiter.Priority.INTERACTIVE;
+    private static final UpstreamRateLimiter.Priority BACKGROUND = UpstreamRateLimiter.Priority.BACKGROUND;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicInteger calls = new AtomicInteger();
+
+    /**
+     * Test that a circuit opens once the failure rate of the recent calls reaches the
+     * threshold, and then rejects calls without making them.
+     */
+    @Test
+    void call_FailureRateReached_ShouldOpenCircuitAndRejectImmediately() {
+        UpstreamGuard guard = guard(60000, 10, 1000, 10000);
+
+        for (int i = 0; i < 4; i++) {
+            StepVerifier.create(guard.call(URL, INTERACTIVE, timeout -> count(serverError())))
+                    .expectError(WebClientResponseException.class)
+                    .verify(Duration.ofSeconds(1));
+        }
+
+        assertEquals(UpstreamGuard.State.OPEN, guard.getState(URL));
+        StepVerifier.create(guard.call(URL, INTERACTIVE, timeout -> count(Mono.just("ok"))))
+                .expectError(UpstreamUnavailableException.class)
+                .verify(Duration.ofMillis(100));
+        assertEquals(4, calls.get());
+        assertEquals(1.0, registry.get("gis.upstream.rejected").tag("reason", "circuit_open").counter().count());
+        assertEquals(1.0, registry.get("gis.upstream.circuit.transitions").tag("state", "open").counter().count());
+    }
+
+    /**
+     * Test that client errors other than 429 do not count as upstream failures.
+     */
+    @Test
+    void call_ClientErrors_ShouldKeepCircuitClosed() {
+        UpstreamGuard guard = guard(60000, 10, 1000, 10000);
+
+        for (int i = 0; i < 6; i++) {
+            StepVerifier.create(guard.call(URL, INTERACTIVE, timeout -> Mono.<String>error(
+                            WebClientResponseException.create(404, "Not Found", null, null, null))))
+                    .expectError(WebClientResponseException.class)
+                    .verify(Duration.ofSeconds(1));
+        }
+
+        assertEquals(UpstreamGuard.State.CLOSED, guard.getState(URL));
+    }
+
+    /**
+     * Test that after the open period a single probe call is let through, and that the
+     * circuit closes when it succeeds.
+     */
+    @Test
+    void call_AfterOpenPeriod_ShouldProbeOnceAndClose() throws InterruptedException {
+        UpstreamGuard guard = guard(50, 10, 1000, 10000);
+        for (int i = 0; i < 4; i++) {
+            guard.call(URL, INTERACTIVE, timeout -> serverError()).onErrorResume(e -> Mono.empty()).block();
+        }
+        Thread.sleep(100);
+
+        StepVerifier.create(guard.call(URL, INTERACTIVE, timeout -> Mono.just("probe").delayElement(Duration.ofMillis(200))))
+                .then(() -> StepVerifier.create(guard.call(URL, INTERACTIVE, timeout -> Mono.just("during probe")))
+                        .expectError(UpstreamUnavailableException.class)
+                        .verify(Duration.ofMillis(100)))
+                .expectNext("probe")
+                .expectComplete()
+                .verify(Duration.ofSeconds(1));
+
+        assertEquals(UpstreamGuard.State.CLOSED, guard.getState(URL));
+        assertEquals(1.0, registry.get("gis.upstream.circuit.transitions").tag("state", "closed").counter().count());
+        StepVerifier.create(guard.call(URL, INTERACTIVE, timeout -> Mono.just("ok")))
+                .expectNext("ok")
+                .expectComplete()
+                .verify(Duration.ofMillis(100));
+    }
+
+    /**
+     * Test that a full interactive bulkhead rejects interactive calls but leaves background
+     * calls unaffected.
+     */
+    @Test
+    void call_InteractiveBulkheadFull_ShouldRejectInteractiveOnly() {
+        UpstreamGuard guard = guard(60000, 1, 1000, 10000);
+
+        Disposable pending = guard.call(URL, INTERACTIVE, timeout -> Mono.<String>never()).subscribe();
+        try {
+            StepVerifier.create(guard.call(URL, INTERACTIVE, timeout -> Mono.just("interactive")))
+                    .expectError(UpstreamUnavailableException.class)
+                    .verify(Duration.ofMillis(100));
+            StepVerifier.create(guard.call(URL, BACKGROUND, timeout -> Mono.just("background")))
+                    .expectNext("background")
+                    .expectComplete()
+                    .verify(Duration.ofMillis(100));
+        } finally {
+            pending.dispose();
+        }
+
+        StepVerifier.create(guard.call(URL, INTERACTIVE, timeout -> Mono.just("interactive")))
+                .expectNext("interactive")
+                .expectComplete()
+                .verify(Duration.ofMillis(100));
+    }
+
+    /**
+     * Test that the interactive timeout starts at the maximum, adapts down to the minimum
+     * for a fast endpoint, and fails calls that exceed it.
+     */
+    @Test
+    void call_FastEndpoint_ShouldLowerTimeoutAndTimeOutSlowCalls() {
+        UpstreamGuard guard = guard(60000, 10, 50, 5000);
+        assertEquals(Duration.ofMillis(5000), guard.getTimeout(URL));
+
+        for (int i = 0; i < 30; i++) {
+            guard.call(URL, INTERACTIVE, timeout -> Mono.just("fast")).block();
+        }
+
+        assertEquals(Duration.ofMillis(50), guard.getTimeout(URL));
+        StepVerifier.create(guard.call(URL, INTERACTIVE, timeout -> Mono.<String>never().timeout(timeout)))
+                .expectError(TimeoutException.class)
+                .verify(Duration.ofSeconds(1));
+    }
+
+    /**
+     * Test that every timed out interactive call doubles the timeout up to the maximum,
+     * and that the backoff decays again as calls succeed.
+     */
+    @Test
+    void call_Timeouts_ShouldBackOffTimeout() {
+        UpstreamGuard guard = guard(0, 10, 50, 150);
+        for (int i = 0; i < 30; i++) {
+            guard.call(URL, INTERACTIVE, timeout -> Mono.just("fast")).block();
+        }
+        assertEquals(Duration.ofMillis(50), guard.getTimeout(URL));
+
+        guard.call(URL, INTERACTIVE, timeout -> Mono.<String>error(new TimeoutException())).onErrorResume(e -> Mono.empty()).block();
+        assertEquals(Duration.ofMillis(100), guard.getTimeout(URL));
+        guard.call(URL, INTERACTIVE, timeout -> Mono.<String>error(new TimeoutException())).onErrorResume(e -> Mono.empty()).block();
+        assertEquals(Duration.ofMillis(150), guard.getTimeout(URL));
+
+        for (int i = 0; i < 30; i++) {
+            guard.call(URL, INTERACTIVE, timeout -> Mono.just("fast")).block();
+        }
+        assertEquals(Duration.ofMillis(50), guard.getTimeout(URL));
+    }
+
+    /**
+     * Test that the probe call of a half-open circuit is made with the maximum timeout
+     * rather than the learned one.
+     */
+    @Test
+    void call_Probe_ShouldUseMaximumTimeout() throws InterruptedException {
+        UpstreamGuard guard = guard(50, 10, 50, 5000);
+        for (int i = 0; i < 30; i++) {
+            guard.call(URL, INTERACTIVE, timeout -> Mono.just("fast")).block();
+        }
+        for (int i = 0; i < 4; i++) {
+            guard.call(URL, INTERACTIVE, timeout -> serverError()).onErrorResume(e -> Mono.empty()).block();
+        }
+        assertEquals(UpstreamGuard.State.OPEN, guard.getState(URL));
+        Thread.sleep(100);
+
+        StepVerifier.create(guard.call(URL, INTERACTIVE, timeout -> Mono.just(timeout)))
+                .expectNext(Duration.ofMillis(5000))
+                .expectComplete()
+                .verify(Duration.ofSeconds(1));
+    }
+
+    private UpstreamGuard guard(long openMs, int interactiveBulkhead, long minTimeoutMs, long maxTimeoutMs) {
+        UpstreamRateLimiter rateLimiter = new UpstreamRateLimiter(100, 36000, 0, 100, 5000, 100, 60000, registry);
+        return new UpstreamGuard(rateLimiter, 4, 4, 50, openMs, interactiveBulkhead, 10,
+                minTimeoutMs, maxTimeoutMs, 4, 30000, registry);
+    }
+
+    private Mono<String> count(Mono<String> call) {
+        return Mono.defer(() -> {
+            calls.incrementAndGet();
+            return call;
+        });
+    }
+
+    private static Mono<String> serverError() {
+        return Mono.error(WebClientResponseException.create(503, "Service Unavailable", null, null, null));
+    }
+}
@@ -0,0 +1,104 @@
+package com.sloview.service;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the UpstreamRateLimiter.
+ *
+ * Tests burst admission, the hourly budget accounting, wait times and request shedding.
+ */
+class UpstreamRateLimiterTest {
+
+    /**
+     * Test that requests up to the burst capacity are admitted immediately and counted
+     * against the hourly budget.
+     */
+    @Test
+    void acquire_WithinBurst_ShouldAdmitImmediately() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        UpstreamRateLimiter limiter = new UpstreamRateLimiter(3, 100, 10, 5, 5000, 5, 60000, registry);
+
+        for (int i = 0; i < 3; i++) {
+            StepVerifier.create(limiter.acquire())
+                    .expectComplete()
+                    .verify(Duration.ofMillis(100));
+        }
+
+        assertEquals(97, limiter.getRemainingHourlyBudget());
+        assertEquals(97.0, registry.get("gis.upstream.budget.remaining").gauge().value());
+    }
+
+    /**
+     * Test that the time a request waited for a token is recorded for its priority.
+     */
+    @Test
+    void acquire_Queued_ShouldRecordWaitTime() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        UpstreamRateLimiter limiter = new UpstreamRateLimiter(1, 36000, 0, 5, 5000, 5, 60000, registry);
+
+        StepVerifier.create(limiter.acquire())
+                .expectComplete()
+                .verify(Duration.ofMillis(100));
+        // The next token is available after 100 ms
+        StepVerifier.create(limiter.acquire())
+                .expectComplete()
+                .verify(Duration.ofSeconds(1));
+
+        Timer wait = registry.get("gis.upstream.wait").tag("priority", "interactive").timer();
+        assertEquals(2, wait.count());
+        assertTrue(wait.max(TimeUnit.MILLISECONDS) >= 50);
+    }
+
+    /**
+     * Test that requests are shed once the queue of their priority is full.
+     */
+    @Test
+    void acquire_QueueFull_ShouldShedRequest() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        UpstreamRateLimiter limiter = new UpstreamRateLimiter(1, 1, 0, 1, 60000, 1, 60000, registry);
+
+        StepVerifier.create(limiter.acquire())
+                .expectComplete()
+                .verify(Duration.ofMillis(100));
+
+        // Occupies the only queue slot until its subscription is cancelled
+        limiter.acquire().subscribe().dispose();
+        limiter.acquire().subscribe();
+
+        StepVerifier.create(limiter.acquire())
+                .expectError(UpstreamBudgetExceededException.class)
+                .verify(Duration.ofMillis(100));
+        assertEquals(1.0, registry.get("gis.upstream.shed").tag("priority", "interactive").counter().count());
+    }
+
+    /**
+     * Test that background requests do not use the part of the hourly budget reserved
+     * for interactive requests.
+     */
+    @Test
+    void acquire_BackgroundWithinReserve_ShouldWait() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        UpstreamRateLimiter limiter = new UpstreamRateLimiter(10, 10, 9, 5, 5000, 5, 60000, registry);
+
+        StepVerifier.create(limiter.acquire(UpstreamRateLimiter.Priority.BACKGROUND))
+                .expectComplete()
+                .verify(Duration.ofMillis(100));
+        StepVerifier.create(limiter.acquire(UpstreamRateLimiter.Priority.BACKGROUND))
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(200))
+                .thenCancel()
+                .verify();
+        StepVerifier.create(limiter.acquire(UpstreamRateLimiter.Priority.INTERACTIVE))
+                .expectComplete()
+                .verify(Duration.ofMillis(100));
+    }
+}
@@ -0,0 +1,170 @@
+package com.sloview.spatial;
+
+import com.sloview.model.FeatureTable;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the in-memory spatial index.
+ *
+ * Tests that the packed R-tree and the indexed layer return the same features as a
+ * brute force scan.
+ */
+class IndexedLayerTest {
+
+    private static final double CENTER_LON = -120.6596;
+    private static final double CENTER_LAT = 35.2828;
+
+    /**
+     * Test that a packed R-tree box search matches a linear scan.
+     */
+    @Test
+    void search_ShouldMatchBruteForce() {
+        Random random = new Random(42);
+        int n = 5000;
+        double[] minX = new double[n];
+        double[] minY = new double[n];
+        double[] maxX = new double[n];
+        double[] maxY = new double[n];
+        for (int i = 0; i < n; i++) {
+            minX[i] = random.nextDouble() * 100;
+            minY[i] = random.nextDouble() * 100;
+            maxX[i] = minX[i] + random.nextDouble();
+            maxY[i] = minY[i] + random.nextDouble();
+        }
+        PackedRTree tree = PackedRTree.build(minX, minY, maxX, maxY);
+
+        for (int q = 0; q < 50; q++) {
+            double qMinX = random.nextDouble() * 90;
+            double qMinY = random.nextDouble() * 90;
+            double qMaxX = qMinX + random.nextDouble() * 10;
+            double qMaxY = qMinY + random.nextDouble() * 10;
+
+            Set<Integer> expected = new TreeSet<>();
+            for (int i = 0; i < n; i++) {
+                if (minX[i] <= qMaxX && minY[i] <= qMaxY && maxX[i] >= qMinX && maxY[i] >= qMinY) {
+                    expected.add(i);
+                }
+            }
+            Set<Integer> actual = new TreeSet<>();
+            tree.search(qMinX, qMinY, qMaxX, qMaxY, actual::add);
+
+            assertEquals(expected, actual);
+        }
+    }
+
+    /**
+     * Test that nearby queries return the nearest features first, with recomputed distances.
+     */
+    @Test
+    void nearby_ShouldReturnNearestFeaturesInOrder() {
+        Random random = new Random(7);
+        FeatureTable.Builder builder = FeatureTable.builder();
+        for (long id = 1; id <= 2000; id++) {
+            point(builder, id, CENTER_LON + (random.nextDouble() - 0.5) * 0.2,
+                    CENTER_LAT + (random.nextDouble() - 0.5) * 0.2);
+        }
+        FeatureTable features = builder.build();
+        IndexedLayer layer = IndexedLayer.build("mv_restaurants", features, CENTER_LON, CENTER_LAT, 60000, false);
+
+        List<Map<String, Object>> results = layer.nearby(CENTER_LON, CENTER_LAT, 2000, 25);
+
+        List<Double> expected = new ArrayList<>();
+        for (Map<String, Object> feature : features) {
+            double d = GeoMath.haversine(CENTER_LON, CENTER_LAT,
+                    (Double) feature.get("longitude"), (Double) feature.get("latitude"));
+            if (d <= 2000) {
+                expected.add(d);
+            }
+        }
+        expected.sort(Double::compare);
+
+        assertEquals(Math.min(25, expected.size()), results.size());
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(expected.get(i), (Double) results.get(i).get("distance"), 1e-9);
+        }
+    }
+
+    /**
+     * Test that line features are matched by their distance to the closest segment.
+     */
+    @Test
+    void nearby_ShouldMeasureDistanceToLineSegments() {
+        FeatureTable road = FeatureTable.builder()
+                .beginFeature(1L)
+                .property("name", "Test Road")
+                .geometry(FeatureTable.GeometryType.LINE_STRING)
+                .beginPart()
+                .vertex(CENTER_LON - 0.01, CENTER_LAT)
+                .vertex(CENTER_LON + 0.01, CENTER_LAT)
+                .location(CENTER_LON - 0.01, CENTER_LAT)
+                .endFeature()
+                .build();
+        IndexedLayer layer = IndexedLayer.build("mv_road_network", road, CENTER_LON, CENTER_LAT, 60000, false);
+
+        // About 111 m north of the middle of the road, far from both end points
+        List<Map<String, Object>> results = layer.nearby(CENTER_LON, CENTER_LAT + 0.001, 200, 10);
+
+        assertEquals(1, results.size());
+        assertEquals(111.2, (Double) results.get(0).get("distance"), 0.5);
+    }
+
+    /**
+     * Test that bounding box queries are capped and ordered by OSM id.
+     */
+    @Test
+    void inBounds_ShouldReturnLowestIdsInsideBox() {
+        FeatureTable.Builder builder = FeatureTable.builder();
+        for (long id = 100; id > 0; id--) {
+            // Even ids inside the box, odd ids far outside
+            double offset = id % 2 == 0 ? 0.001 * id / 100 : 0.5;
+            point(builder, id, CENTER_LON + offset, CENTER_LAT + offset);
+        }
+        IndexedLayer layer = IndexedLayer.build("mv_restaurants", builder.build(), CENTER_LON, CENTER_LAT, 60000, false);
+
+        List<Map<String, Object>> results = layer.inBounds(CENTER_LON - 0.01, CENTER_LAT - 0.01,
+                CENTER_LON + 0.01, CENTER_LAT + 0.01, 5);
+
+        assertEquals(5, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals((long) (i + 1) * 2, results.get(i).get("osmId"));
+        }
+    }
+
+    /**
+     * Test that queries reaching outside the replicated area are not answered locally.
+     */
+    @Test
+    void covers_ShouldRejectQueriesOutsideReplicatedArea() {
+        FeatureTable.Builder builder = FeatureTable.builder();
+        point(builder, 1L, CENTER_LON, CENTER_LAT);
+        IndexedLayer layer = IndexedLayer.build("mv_restaurants", builder.build(),
+                CENTER_LON, CENTER_LAT, 10000, false);
+
+        assertTrue(layer.covers(CENTER_LON, CENTER_LAT, 5000));
+        assertFalse(layer.covers(CENTER_LON, CENTER_LAT, 20000));
+        assertFalse(layer.covers(CENTER_LON + 1.0, CENTER_LAT, 1000));
+        assertTrue(layer.coversBounds(CENTER_LON - 0.05, CENTER_LAT - 0.05, CENTER_LON + 0.05, CENTER_LAT + 0.05));
+        assertFalse(layer.coversBounds(CENTER_LON - 0.05, CENTER_LAT - 0.05, CENTER_LON + 0.2, CENTER_LAT + 0.05));
+    }
+
+    private static void point(FeatureTable.Builder builder, long id, double lon, double lat) {
+        builder.beginFeature(id)
+                .property("name", "Feature " + id)
+                .property("type", "restaurant")
+                .location(lon, lat)
+                .distance(0.0)
+                .geometry(FeatureTable.GeometryType.POINT)
+                .endFeature();
+    }
+}
@@ -0,0 +1,89 @@
+package com.sloview.spatial;
+
+import com.sloview.model.FeatureTable;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the PointClusterIndex.
+ *
+ * Tests that every zoom level accounts for all points and that clusters split up at
+ * their expansion zoom.
+ */
+class PointClusterIndexTest {
+
+    private static final double CENTER_LON = -120.6596;
+    private static final double CENTER_LAT = 35.2828;
+
+    /**
+     * Test that the clusters and points of every zoom level add up to all points, with
+     * fewer entries at lower zoom levels and no clustering above the maximum zoom.
+     */
+    @Test
+    void getClusters_EveryZoom_ShouldCountAllPoints() {
+        Random random = new Random(3);
+        FeatureTable.Builder builder = FeatureTable.builder();
+        for (long id = 1; id <= 3000; id++) {
+            builder.beginFeature(id)
+                    .location(CENTER_LON + (random.nextDouble() - 0.5) * 0.5,
+                            CENTER_LAT + (random.nextDouble() - 0.5) * 0.5)
+                    .endFeature();
+        }
+        builder.beginFeature(9999L).endFeature();
+        PointClusterIndex index = PointClusterIndex.build(builder.build(), 16, 60);
+
+        assertEquals(3000, index.size());
+        int previous = 0;
+        for (int zoom = 0; zoom <= 17; zoom++) {
+            List<Map<String, Object>> entries = index.getClusters(-180, -85, 180, 85, zoom);
+            int total = 0;
+            for (Map<String, Object> entry : entries) {
+                total += entry.containsKey("cluster") ? (Integer) entry.get("count") : 1;
+            }
+            assertEquals(3000, total);
+            assertEquals(index.size(zoom), entries.size());
+            assertTrue(entries.size() >= previous);
+            previous = entries.size();
+        }
+        assertEquals(3000, previous);
+        assertNull(index.getClusters(-180, -85, 180, 85, 17).get(0).get("cluster"));
+    }
+
+    /**
+     * Test that two distant groups form one cluster each, centered on the group, and that a
+     * cluster splits into separate entries at its expansion zoom.
+     */
+    @Test
+    void getClusters_TwoGroups_ShouldSplitAtExpansionZoom() {
+        FeatureTable.Builder builder = FeatureTable.builder();
+        for (int i = 0; i < 10; i++) {
+            builder.beginFeature(i + 1).location(CENTER_LON + i * 0.0001, CENTER_LAT).endFeature();
+            builder.beginFeature(i + 101).location(CENTER_LON + 1 + i * 0.0001, CENTER_LAT).endFeature();
+        }
+        PointClusterIndex index = PointClusterIndex.build(builder.build(), 16, 40);
+
+        List<Map<String, Object>> clusters = index.getClusters(CENTER_LON - 0.1, CENTER_LAT - 0.1,
+                CENTER_LON + 0.1, CENTER_LAT + 0.1, 10);
+
+        assertEquals(1, clusters.size());
+        Map<String, Object> cluster = clusters.get(0);
+        assertEquals(true, cluster.get("cluster"));
+        assertEquals(10, cluster.get("count"));
+        assertEquals(CENTER_LON + 0.00045, (Double) cluster.get("longitude"), 1e-9);
+        assertEquals(CENTER_LAT, (Double) cluster.get("latitude"), 1e-9);
+
+        int expansionZoom = (Integer) cluster.get("expansionZoom");
+        assertTrue(expansionZoom > 10);
+        assertEquals(1, index.getClusters(CENTER_LON - 0.1, CENTER_LAT - 0.1,
+                CENTER_LON + 0.1, CENTER_LAT + 0.1, expansionZoom - 1).size());
+        assertTrue(index.getClusters(CENTER_LON - 0.1, CENTER_LAT - 0.1,
+                CENTER_LON + 0.1, CENTER_LAT + 0.1, expansionZoom).size() > 1);
+    }
+}
@@ -0,0 +1,123 @@
+package com.sloview.tiles;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the TileStore.
+ *
+ * Tests storing tiles across segments, reopening a store file and copying selected layers.
+ */
+class TileStoreTest {
+
+    private static final int SEGMENT_SIZE = 256;
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Test that stored tiles are returned unchanged, including across segment boundaries.
+     */
+    @Test
+    void put_ManyTiles_ShouldBeReadableAcrossSegments() throws Exception {
+        try (TileStore store = TileStore.create(directory.resolve("tiles.dat"), SEGMENT_SIZE, "v1")) {
+            for (int x = 0; x < 20; x++) {
+                assertTrue(store.put("roads", 14, x, 7, tile(x, 40)));
+            }
+
+            assertEquals(20, store.size());
+            for (int x = 0; x < 20; x++) {
+                assertArrayEquals(tile(x, 40), bytes(store.get("roads", 14, x, 7)));
+            }
+            assertTrue(store.get("roads", 14, 20, 7).isEmpty());
+            assertFalse(store.put("roads", 14, 99, 7, new byte[SEGMENT_SIZE]));
+        }
+    }
+
+    /**
+     * Test that reopening a store restores its version and tiles, and accepts new tiles.
+     */
+    @Test
+    void open_ExistingStore_ShouldRestoreTiles() throws Exception {
+        Path file = directory.resolve("tiles.dat");
+        try (TileStore store = TileStore.create(file, SEGMENT_SIZE, "v1")) {
+            for (int x = 0; x < 10; x++) {
+                store.put("pois", 12, x, 3, tile(x, 50));
+            }
+            store.put("pois", 12, 0, 4, new byte[0]);
+        }
+
+        try (TileStore store = TileStore.open(file, SEGMENT_SIZE).orElseThrow()) {
+            assertEquals("v1", store.getVersion());
+            assertEquals(11, store.size());
+            assertArrayEquals(tile(9, 50), bytes(store.get("pois", 12, 9, 3)));
+            assertEquals(0, store.get("pois", 12, 0, 4).orElseThrow().remaining());
+
+            store.put("pois", 12, 10, 3, tile(10, 50));
+        }
+
+        try (TileStore store = TileStore.open(file, SEGMENT_SIZE).orElseThrow()) {
+            assertEquals(12, store.size());
+            assertArrayEquals(tile(10, 50), bytes(store.get("pois", 12, 10, 3)));
+        }
+    }
+
+    /**
+     * Test that copying a store keeps only the tiles of the selected layers, and that the
+     * copy can be reopened.
+     */
+    @Test
+    void copyTo_SelectedLayers_ShouldDropOtherTiles() throws Exception {
+        Path copyFile = directory.resolve("tiles.dat.compact");
+        try (TileStore store = TileStore.create(directory.resolve("tiles.dat"), SEGMENT_SIZE, "v1")) {
+            for (int x = 0; x < 10; x++) {
+                store.put("roads@old", 14, x, 7, tile(x, 40));
+                store.put("roads@new", 14, x, 7, tile(x + 10, 40));
+            }
+            assertEquals(Set.of("roads@old", "roads@new"), store.getLayers());
+
+            store.copyTo(copyFile, "roads@new"::equals);
+        }
+
+        try (TileStore copy = TileStore.open(copyFile, SEGMENT_SIZE).orElseThrow()) {
+            assertEquals("v1", copy.getVersion());
+            assertEquals(Set.of("roads@new"), copy.getLayers());
+            assertEquals(10, copy.size());
+            assertArrayEquals(tile(19, 40), bytes(copy.get("roads@new", 14, 9, 7)));
+            assertTrue(copy.get("roads@old", 14, 9, 7).isEmpty());
+        }
+    }
+
+    /**
+     * Test that files that are not tile stores are not opened.
+     */
+    @Test
+    void open_MissingFile_ShouldReturnEmpty() throws Exception {
+        assertTrue(TileStore.open(directory.resolve("missing.dat"), SEGMENT_SIZE).isEmpty());
+    }
+
+    private static byte[] tile(int seed, int length) {
+        byte[] tile = new byte[length];
+        for (int i = 0; i < length; i++) {
+            tile[i] = (byte) (seed * 31 + i);
+        }
+        return tile;
+    }
+
+    private static byte[] bytes(Optional<ByteBuffer> buffer) {
+        ByteBuffer tile = buffer.orElseThrow();
+        byte[] bytes = new byte[tile.remaining()];
+        tile.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,268 @@
+package com.sloview.tiles;
+
+import com.sloview.model.FeatureTable;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the VectorTileEncoder.
+ *
+ * Tests the encoded layer structure, geometry commands, clipping, ring orientation and
+ * point thinning by decoding the produced protobuf messages.
+ */
+class VectorTileEncoderTest {
+
+    private final VectorTileEncoder encoder = new VectorTileEncoder(4096, 64);
+
+    /**
+     * Test that a point in the middle of a tile is encoded with its id, tags and position.
+     */
+    @Test
+    void encode_Point_ShouldWriteLayerAndFeature() {
+        FeatureTable features = FeatureTable.builder()
+                .beginFeature(42L)
+                .property("name", "Firestone Grill")
+                .property("stars", 4)
+                .location(WebMercator.longitude(0.5, 0), WebMercator.latitude(0.5, 0))
+                .geometry(FeatureTable.GeometryType.POINT)
+                .endFeature()
+                .build();
+
+        Layer layer = decode(encoder.encode("restaurants", features, 0, 0, 0, 0));
+
+        assertEquals("restaurants", layer.name);
+        assertEquals(4096, layer.extent);
+        assertEquals(2, layer.version);
+        assertEquals(List.of("name", "stars"), layer.keys);
+        assertEquals(1, layer.features.size());
+        Feature feature = layer.features.get(0);
+        assertEquals(42L, feature.id);
+        assertEquals(1, feature.type);
+        assertEquals(List.of(9, 4096, 4096), feature.geometry);
+    }
+
+    /**
+     * Test that a line leaving the tile is cut at the buffer edge.
+     */
+    @Test
+    void encode_LineCrossingTile_ShouldClipToBuffer() {
+        FeatureTable features = FeatureTable.builder()
+                .beginFeature(1L)
+                .geometry(FeatureTable.GeometryType.LINE_STRING)
+                .beginPart()
+                .vertex(WebMercator.longitude(0.5, 0), WebMercator.latitude(0.5, 0))
+                .vertex(WebMercator.longitude(3.0, 0), WebMercator.latitude(0.5, 0))
+                .endFeature()
+                .build();
+
+        Layer layer = decode(encoder.encode("roads", features, 0, 0, 0, 0));
+
+        // MoveTo(2048, 2048), LineTo(+2112, 0)
+        assertEquals(List.of(9, 4096, 4096, 10, 4224, 0), layer.features.get(0).geometry);
+    }
+
+    /**
+     * Test that polygon exterior rings are written clockwise in tile coordinates
+     * whatever the input orientation.
+     */
+    @Test
+    void encode_CounterClockwisePolygon_ShouldWriteClockwiseExterior() {
+        FeatureTable features = FeatureTable.builder()
+                .beginFeature(1L)
+                .geometry(FeatureTable.GeometryType.POLYGON)
+                .beginPart()
+                .vertex(lon(1000), lat(1000))
+                .vertex(lon(1000), lat(2000))
+                .vertex(lon(2000), lat(2000))
+                .vertex(lon(2000), lat(1000))
+                .vertex(lon(1000), lat(1000))
+                .endFeature()
+                .build();
+
+        Feature feature = decode(encoder.encode("pois", features, 0, 0, 0, 0)).features.get(0);
+
+        assertEquals(3, feature.type);
+        int[] x = new int[4];
+        int[] y = new int[4];
+        int cursorX = 0;
+        int cursorY = 0;
+        int vertex = 0;
+        for (int i = 0; i < feature.geometry.size() && vertex < 4; i++) {
+            int command = feature.geometry.get(i) & 7;
+            int count = feature.geometry.get(i) >> 3;
+            if (command == 7) {
+                continue;
+            }
+            for (int c = 0; c < count; c++) {
+                cursorX += unZigZag(feature.geometry.get(++i));
+                cursorY += unZigZag(feature.geometry.get(++i));
+                x[vertex] = cursorX;
+                y[vertex] = cursorY;
+                vertex++;
+            }
+        }
+        long area = 0;
+        for (int i = 0; i < 4; i++) {
+            int j = (i + 1) % 4;
+            area += (long) x[i] * y[j] - (long) x[j] * y[i];
+        }
+        assertTrue(area > 0, "exterior ring should have a positive surveyor's area");
+        assertEquals(7 | 1 << 3, feature.geometry.get(feature.geometry.size() - 1));
+    }
+
+    /**
+     * Test that points sharing a thinning cell are reduced to the first one.
+     */
+    @Test
+    void encode_ClusteredPoints_ShouldBeThinned() {
+        FeatureTable.Builder builder = FeatureTable.builder();
+        for (int i = 0; i < 10; i++) {
+            builder.beginFeature(i + 1)
+                    .location(lon(100 + i), lat(100))
+                    .geometry(FeatureTable.GeometryType.POINT)
+                    .endFeature();
+        }
+        FeatureTable features = builder.build();
+
+        assertEquals(10, decode(encoder.encode("pois", features, 0, 0, 0, 0)).features.size());
+        List<Feature> thinned = decode(encoder.encode("pois", features, 0, 0, 0, 64)).features;
+        assertEquals(1, thinned.size());
+        assertEquals(1L, thinned.get(0).id);
+    }
+
+    private static double lon(int tileX) {
+        return WebMercator.longitude(tileX / 4096.0, 0);
+    }
+
+    private static double lat(int tileY) {
+        return WebMercator.latitude(tileY / 4096.0, 0);
+    }
+
+    private static int unZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static Layer decode(byte[] tile) {
+        Reader reader = new Reader(tile, 0, tile.length);
+        Layer layer = null;
+        while (reader.hasMore()) {
+            int tag = (int) reader.varint();
+            if (tag >> 3 == 3) {
+                layer = decodeLayer(reader.message());
+            } else {
+                reader.skip(tag & 7);
+            }
+        }
+        return layer;
+    }
+
+    private static Layer decodeLayer(Reader reader) {
+        Layer layer = new Layer();
+        while (reader.hasMore()) {
+            int tag = (int) reader.varint();
+            switch (tag >> 3) {
+                case 1: layer.name = reader.string(); break;
+                case 2: layer.features.add(decodeFeature(reader.message())); break;
+                case 3: layer.keys.add(reader.string()); break;
+                case 5: layer.extent = (int) reader.varint(); break;
+                case 15: layer.version = (int) reader.varint(); break;
+                default: reader.skip(tag & 7);
+            }
+        }
+        return layer;
+    }
+
+    private static Feature decodeFeature(Reader reader) {
+        Feature feature = new Feature();
+        while (reader.hasMore()) {
+            int tag = (int) reader.varint();
+            switch (tag >> 3) {
+                case 1: feature.id = reader.varint(); break;
+                case 3: feature.type = (int) reader.varint(); break;
+                case 4:
+                    Reader packed = reader.message();
+                    while (packed.hasMore()) {
+                        feature.geometry.add((int) packed.varint());
+                    }
+                    break;
+                default: reader.skip(tag & 7);
+            }
+        }
+        return feature;
+    }
+
+    private static final class Layer {
+        private String name;
+        private int extent;
+        private int version;
+        private final List<String> keys = new ArrayList<>();
+        private final List<Feature> features = new ArrayList<>();
+    }
+
+    private static final class Feature {
+        private long id;
+        private int type;
+        private final List<Integer> geometry = new ArrayList<>();
+    }
+
+    /**
+     * Reads the protobuf wire format.
+     */
+    private static final class Reader {
+        private final byte[] data;
+        private int position;
+        private final int end;
+
+        Reader(byte[] data, int position, int end) {
+            this.data = data;
+            this.position = position;
+            this.end = end;
+        }
+
+        boolean hasMore() {
+            return position < end;
+        }
+
+        long varint() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[position++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        Reader message() {
+            int length = (int) varint();
+            Reader message = new Reader(data, position, position + length);
+            position += length;
+            return message;
+        }
+
+        String string() {
+            Reader bytes = message();
+            return new String(data, bytes.position, bytes.end - bytes.position, StandardCharsets.UTF_8);
+        }
+
+        void skip(int wireType) {
+            if (wireType == 0) {
+                varint();
+            } else if (wireType == 1) {
+                position += 8;
+            } else if (wireType == 2) {
+                message();
+            } else {
+                position += 4;
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.sloview.service;
+
+import com.sloview.cache.ResponseCaches;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.util.Map;
+
+/**
+ * Spring context with the GIS services wired as in the application, their properties at
+ * the defaults of {@code application.properties}, and the GIS API answered by
+ * {@link GeoJsonFixtures}. Scheduling is not enabled, so nothing refreshes while a
+ * benchmark runs.
+ */
+final class BenchmarkServices {
+
+    private BenchmarkServices() {
+    }
+
+    /**
+     * Starts the context and waits until the restaurant cache is loaded.
+     *
+     * @return Running context; close it in the benchmark's tear-down
+     */
+    static AnnotationConfigApplicationContext start() {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.getBeanFactory().setConversionService(new DefaultConversionService());
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark",
+                Map.of("gis.api.base-url", "http://gis-api.fixture")));
+        context.registerBean(MeterRegistry.class, SimpleMeterRegistry::new);
+        context.registerBean("gisApiWebClient", WebClient.class,
+                () -> WebClient.builder().exchangeFunction(GeoJsonFixtures.gisApi()).build());
+        context.register(SpatialIndexService.class, UpstreamRateLimiter.class, UpstreamGuard.class,
+                ResponseCaches.class, GisMetrics.class, GISApiService.class);
+        context.refresh();
+
+        context.getBean(GISApiService.class).loadRestaurantsInBackground().block();
+        return context;
+    }
+}
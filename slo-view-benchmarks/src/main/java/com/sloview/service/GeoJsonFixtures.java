@@ -0,0 +1,242 @@
+package com.sloview.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * GeoJSON responses in the shape the GIS API returns them, generated with a fixed seed
+ * so every run measures the same data.
+ *
+ * Restaurants are Web Mercator points with the name and type properties of
+ * {@code /api/v1/restaurants}. Roads are WGS84 line strings of a few dozen vertices and
+ * POIs are WGS84 points, both with the full OSM property set of
+ * {@code /api/v1/spatial/optimized/nearby}, including the null columns a PostGIS row
+ * carries. Coordinates lie around San Luis Obispo.
+ */
+final class GeoJsonFixtures {
+
+    static final int RESTAURANTS = 710;
+    static final int ROADS = 3000;
+    static final int POIS = 5000;
+
+    private static final double CENTER_LON = -120.6596;
+    private static final double CENTER_LAT = 35.2828;
+    private static final double EARTH_RADIUS = 6378137.0;
+    // Size of the buffers a response body arrives in
+    private static final int CHUNK_SIZE = 8192;
+
+    private static final String[] HIGHWAYS = {"residential", "residential", "residential", "service", "tertiary",
+            "secondary", "primary", "unclassified", "footway", "track"};
+    private static final String[] STREETS = {"Higuera", "Marsh", "Monterey", "Chorro", "Osos", "Santa Rosa",
+            "Foothill", "Broad", "Johnson", "Orcutt", "Los Osos Valley", "Madonna", "Grand", "California"};
+    private static final String[] SUFFIXES = {"Street", "Road", "Avenue", "Drive", "Way", "Lane"};
+    private static final String[] AMENITIES = {"restaurant", "cafe", "fast_food", "bench", "parking", "bank",
+            "school", "place_of_worship", "fuel", "pharmacy", null, null};
+    private static final String[] SHOPS = {"supermarket", "convenience", "clothes", "hairdresser", "bakery"};
+    private static final String[] CUISINES = {"mexican", "american", "pizza", "italian", "thai", "coffee_shop"};
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private GeoJsonFixtures() {
+    }
+
+    /**
+     * @return A {@code /api/v1/restaurants} response for one page
+     */
+    static String restaurantsPage(int page, int limit) {
+        Random random = new Random(42);
+        ArrayNode features = MAPPER.createArrayNode();
+        for (int i = 0; i < RESTAURANTS; i++) {
+            double lon = CENTER_LON + (random.nextDouble() - 0.5) * 0.4;
+            double lat = CENTER_LAT + (random.nextDouble() - 0.5) * 0.4;
+            String name = STREETS[random.nextInt(STREETS.length)] + " " + CUISINES[random.nextInt(CUISINES.length)]
+                    + " " + (i + 1);
+            if (i < (page - 1) * limit || i >= page * limit) {
+                continue;
+            }
+            ObjectNode feature = features.addObject();
+            feature.put("id", String.valueOf(300000000L + i * 7919L));
+            feature.put("type", "Feature");
+            ObjectNode geometry = feature.putObject("geometry");
+            geometry.put("type", "Point");
+            geometry.putArray("coordinates")
+                    .add(Math.toRadians(lon) * EARTH_RADIUS)
+                    .add(Math.log(Math.tan(Math.PI / 4 + Math.toRadians(lat) / 2)) * EARTH_RADIUS);
+            ObjectNode properties = feature.putObject("properties");
+            properties.put("name", name);
+            properties.put("type", "restaurant");
+        }
+        ObjectNode root = MAPPER.createObjectNode();
+        root.put("success", true);
+        ObjectNode data = root.putObject("data");
+        data.set("features", features);
+        data.putObject("pagination").put("page", page).put("limit", limit).put("total", RESTAURANTS);
+        return write(root);
+    }
+
+    /**
+     * @return A {@code /api/v1/spatial/optimized/nearby} response of the road network
+     */
+    static String roads(int count) {
+        Random random = new Random(7);
+        ArrayNode features = MAPPER.createArrayNode();
+        for (int i = 0; i < count; i++) {
+            ObjectNode feature = feature(features, 100000000L + i * 104729L);
+            double lon = CENTER_LON + (random.nextDouble() - 0.5) * 0.5;
+            double lat = CENTER_LAT + (random.nextDouble() - 0.5) * 0.5;
+            double heading = random.nextDouble() * 2 * Math.PI;
+            ObjectNode geometry = feature.putObject("geometry");
+            geometry.put("type", "LineString");
+            ArrayNode coordinates = geometry.putArray("coordinates");
+            int vertices = 4 + random.nextInt(40);
+            for (int v = 0; v < vertices; v++) {
+                coordinates.addArray().add(lon).add(lat);
+                heading += (random.nextDouble() - 0.5) * 0.6;
+                double step = 0.0001 + random.nextDouble() * 0.0004;
+                lon += Math.cos(heading) * step;
+                lat += Math.sin(heading) * step;
+            }
+            String highway = HIGHWAYS[random.nextInt(HIGHWAYS.length)];
+            ObjectNode properties = feature.putObject("properties");
+            properties.put("osm_id", feature.get("id").asLong());
+            properties.put("name", STREETS[random.nextInt(STREETS.length)] + " " + SUFFIXES[random.nextInt(SUFFIXES.length)]);
+            properties.put("highway", highway);
+            properties.put("type", highway);
+            properties.put("ref", random.nextInt(10) == 0 ? "CA " + (1 + random.nextInt(227)) : null);
+            properties.put("oneway", random.nextInt(5) == 0 ? "yes" : null);
+            properties.put("surface", random.nextBoolean() ? "asphalt" : null);
+            properties.putNull("bridge");
+            properties.putNull("tunnel");
+            properties.putNull("access");
+            properties.put("distance", random.nextDouble() * 60000);
+        }
+        return collection(features);
+    }
+
+    /**
+     * @return A {@code /api/v1/spatial/optimized/nearby} response of points of interest
+     */
+    static String pois(int count) {
+        Random random = new Random(11);
+        ArrayNode features = MAPPER.createArrayNode();
+        for (int i = 0; i < count; i++) {
+            ObjectNode feature = feature(features, 200000000L + i * 7907L);
+            ObjectNode geometry = feature.putObject("geometry");
+            geometry.put("type", "Point");
+            geometry.putArray("coordinates")
+                    .add(CENTER_LON + (random.nextDouble() - 0.5) * 0.5)
+                    .add(CENTER_LAT + (random.nextDouble() - 0.5) * 0.5);
+            String amenity = AMENITIES[random.nextInt(AMENITIES.length)];
+            String shop = amenity == null ? SHOPS[random.nextInt(SHOPS.length)] : null;
+            ObjectNode properties = feature.putObject("properties");
+            properties.put("osm_id", feature.get("id").asLong());
+            properties.put("name", random.nextInt(4) == 0 ? null : STREETS[random.nextInt(STREETS.length)] + " " + (i + 1));
+            properties.put("amenity", amenity);
+            properties.put("shop", shop);
+            properties.putNull("tourism");
+            properties.putNull("leisure");
+            properties.putNull("historic");
+            properties.put("cuisine", "restaurant".equals(amenity) ? CUISINES[random.nextInt(CUISINES.length)] : null);
+            properties.put("addr:street", random.nextBoolean() ? STREETS[random.nextInt(STREETS.length)] + " Street" : "");
+            properties.put("addr:housenumber", random.nextBoolean() ? String.valueOf(100 + random.nextInt(3000)) : "");
+            properties.put("type", amenity != null ? amenity : shop);
+            properties.put("distance", random.nextDouble() * 60000);
+        }
+        return collection(features);
+    }
+
+    /**
+     * @return The body split into the buffers it would arrive in from the network
+     */
+    static Flux<DataBuffer> chunks(byte[] body) {
+        return Flux.range(0, (body.length + CHUNK_SIZE - 1) / CHUNK_SIZE)
+                .map(i -> DefaultDataBufferFactory.sharedInstance.wrap(
+                        Arrays.copyOfRange(body, i * CHUNK_SIZE, Math.min(body.length, (i + 1) * CHUNK_SIZE))));
+    }
+
+    /**
+     * Answers requests to the GIS API endpoints the restaurant cache and the spatial index
+     * load from, without a network round trip.
+     */
+    static ExchangeFunction gisApi() {
+        byte[] roads = bytes(roads(ROADS));
+        byte[] pois = bytes(pois(POIS));
+        byte[] status = bytes("{\"success\":true,\"data\":{\"health\":\"healthy\",\"last_updated\":\"fixture\","
+                + "\"record_counts\":{\"restaurants\":" + RESTAURANTS + "}}}");
+        byte[] metadata = bytes("{\"success\":true,\"data\":{\"version\":\"fixture\"}}");
+        byte[] summary = bytes("{\"success\":true,\"data\":{\"restaurants\":" + RESTAURANTS + "}}");
+        return request -> {
+            UriComponents uri = UriComponentsBuilder.fromUri(request.url()).build();
+            byte[] body;
+            switch (uri.getPath()) {
+                case "/api/v1/restaurants":
+                    body = bytes(restaurantsPage(Integer.parseInt(uri.getQueryParams().getFirst("page")),
+                            Integer.parseInt(uri.getQueryParams().getFirst("limit"))));
+                    break;
+                case "/api/v1/spatial/optimized/nearby":
+                    body = "mv_road_network".equals(uri.getQueryParams().getFirst("table")) ? roads : pois;
+                    break;
+                case "/api/v1/data/status":
+                    body = status;
+                    break;
+                case "/api/v1/data/metadata":
+                    body = metadata;
+                    break;
+                case "/api/v1/spatial/summary":
+                    body = summary;
+                    break;
+                default:
+                    return Mono.just(ClientResponse.create(HttpStatus.NOT_FOUND).build());
+            }
+            return Mono.just(ClientResponse.create(HttpStatus.OK)
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .body(chunks(body))
+                    .build());
+        };
+    }
+
+    static byte[] bytes(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static ObjectNode feature(ArrayNode features, long id) {
+        ObjectNode feature = features.addObject();
+        feature.put("id", String.valueOf(id));
+        feature.put("type", "Feature");
+        return feature;
+    }
+
+    private static String collection(ArrayNode features) {
+        ObjectNode root = MAPPER.createObjectNode();
+        root.put("success", true);
+        ObjectNode data = root.putObject("data");
+        data.put("type", "FeatureCollection");
+        data.set("features", features);
+        return write(root);
+    }
+
+    private static String write(ObjectNode root) {
+        try {
+            return MAPPER.writeValueAsString(root);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.sloview.service;
+
+import com.sloview.cache.EncodedResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of reads from the loaded restaurant cache, the path of every
+ * {@code /api/map/points/amenity/restaurant/wgs84} request. A limit of 0 stands for no limit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RestaurantCacheBenchmark {
+
+    @Param({"10", "100", "0"})
+    private int limit;
+
+    private AnnotationConfigApplicationContext context;
+    private GISApiService service;
+    private Integer requestLimit;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkServices.start();
+        service = context.getBean(GISApiService.class);
+        requestLimit = limit > 0 ? limit : null;
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> getRestaurants() {
+        return service.getRestaurants(requestLimit).block();
+    }
+
+    /**
+     * Pre-serialized response bodies, kept for the full list and the configured limits.
+     */
+    @Benchmark
+    public Optional<EncodedResponse> getEncodedRestaurants() {
+        return service.getEncodedRestaurants(requestLimit);
+    }
+}
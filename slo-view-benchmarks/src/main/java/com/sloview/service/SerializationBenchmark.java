@@ -0,0 +1,93 @@
+package com.sloview.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sloview.model.FeatureTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end benchmarks from a GIS API response body to the JSON the frontend receives:
+ * decoding, transformation and serialization of restaurants, roads and POIs, with plain
+ * or encoded polyline coordinates ({@code encoding=polyline}). The serialization of an
+ * already transformed table is measured on its own as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"restaurants", "roads", "pois"})
+    private String dataset;
+
+    // Polyline precision, 0 for plain coordinates
+    @Param({"0", "5"})
+    private int polylinePrecision;
+
+    private AnnotationConfigApplicationContext context;
+    private GISApiService service;
+    private GeoJsonFeatureDecoder decoder;
+    private ObjectMapper objectMapper;
+    private String restaurantsResponse;
+    private byte[] nearbyResponse;
+    private FeatureTable transformed;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkServices.start();
+        service = context.getBean(GISApiService.class);
+        objectMapper = new ObjectMapper();
+        decoder = new GeoJsonFeatureDecoder(objectMapper);
+        if ("restaurants".equals(dataset)) {
+            restaurantsResponse = GeoJsonFixtures.restaurantsPage(1, GeoJsonFixtures.RESTAURANTS);
+        } else {
+            nearbyResponse = GeoJsonFixtures.bytes("roads".equals(dataset)
+                    ? GeoJsonFixtures.roads(GeoJsonFixtures.ROADS)
+                    : GeoJsonFixtures.pois(GeoJsonFixtures.POIS));
+        }
+        transformed = transform();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] transformAndSerialize() throws JsonProcessingException {
+        return serialize(transform());
+    }
+
+    @Benchmark
+    public byte[] serialize() throws JsonProcessingException {
+        return serialize(transformed);
+    }
+
+    private FeatureTable transform() {
+        if (restaurantsResponse != null) {
+            return service.transformRestaurantsResponse(restaurantsResponse);
+        }
+        return service.transformNearbyFeatures(decoder.decode(GeoJsonFixtures.chunks(nearbyResponse))).block();
+    }
+
+    private byte[] serialize(FeatureTable features) throws JsonProcessingException {
+        FeatureTable output = polylinePrecision > 0 ? features.withPolylineCoordinates(polylinePrecision) : features;
+        return objectMapper.writeValueAsBytes(output);
+    }
+}
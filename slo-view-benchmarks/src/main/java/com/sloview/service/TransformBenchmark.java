@@ -0,0 +1,98 @@
+package com.sloview.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sloview.model.FeatureTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the transformations applied to GIS API responses: restaurant pages,
+ * streamed nearby responses of roads and POIs, and the Web Mercator to WGS84 conversion.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransformBenchmark {
+
+    private static final int POINTS = 1024;
+
+    private AnnotationConfigApplicationContext context;
+    private GISApiService service;
+    private GeoJsonFeatureDecoder decoder;
+    private String restaurantsPage;
+    private byte[] roadsResponse;
+    private byte[] poisResponse;
+    private final double[] x = new double[POINTS];
+    private final double[] y = new double[POINTS];
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkServices.start();
+        service = context.getBean(GISApiService.class);
+        decoder = new GeoJsonFeatureDecoder(new ObjectMapper());
+        restaurantsPage = GeoJsonFixtures.restaurantsPage(1, 256);
+        roadsResponse = GeoJsonFixtures.bytes(GeoJsonFixtures.roads(GeoJsonFixtures.ROADS));
+        poisResponse = GeoJsonFixtures.bytes(GeoJsonFixtures.pois(GeoJsonFixtures.POIS));
+        Random random = new Random(3);
+        for (int i = 0; i < POINTS; i++) {
+            x[i] = -13433000 + random.nextDouble() * 40000;
+            y[i] = 4203000 + random.nextDouble() * 40000;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * One restaurant page of 256 features, from the response string to a feature table.
+     */
+    @Benchmark
+    public FeatureTable transformRestaurantsResponse() {
+        return service.transformRestaurantsResponse(restaurantsPage);
+    }
+
+    /**
+     * A whole nearby response of 3000 roads, decoded from 8 KB buffers and transformed
+     * feature by feature.
+     */
+    @Benchmark
+    public FeatureTable transformNearbyRoads() {
+        return service.transformNearbyFeatures(decoder.decode(GeoJsonFixtures.chunks(roadsResponse))).block();
+    }
+
+    /**
+     * A whole nearby response of 5000 POIs.
+     */
+    @Benchmark
+    public FeatureTable transformNearbyPois() {
+        return service.transformNearbyFeatures(decoder.decode(GeoJsonFixtures.chunks(poisResponse))).block();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public void transformToWGS84(Blackhole blackhole) {
+        for (int i = 0; i < POINTS; i++) {
+            blackhole.consume(service.transformToWGS84(x[i], y[i]));
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.sloview.loadtest;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * A backend endpoint the load driver requests, with the parameters a map client would
+ * send when panning and zooming around San Luis Obispo.
+ */
+final class Endpoint {
+
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String[] TILE_LAYERS = {"restaurants", "roads", "pois"};
+
+    /**
+     * All endpoints with their default weight in the request mix: mostly the restaurant
+     * list and viewport queries the frontend issues on every pan, fewer nearby and tile
+     * requests, and occasional summary and status polls.
+     */
+    static final List<Endpoint> ALL = Arrays.asList(
+            new Endpoint("restaurants", 20, null, random -> "/api/map/points/amenity/restaurant/wgs84"),
+            new Endpoint("points", 20, null, random -> viewport("/api/map/points", random)
+                    + "&table=mv_restaurants&zoom=" + zoom(random)),
+            new Endpoint("clusters", 15, null, random -> viewport("/api/map/clusters", random)
+                    + "&table=planet_osm_point&zoom=" + zoom(random)),
+            new Endpoint("nearby-restaurants", 10, null, random -> nearby("/api/map/restaurants", random)),
+            new Endpoint("roads", 10, null, random -> nearby("/api/map/roads", random) + "&zoom=" + zoom(random)),
+            new Endpoint("pois", 10, null, random -> nearby("/api/map/pois", random)),
+            new Endpoint("roads-stream", 3, NDJSON, random -> nearby("/api/map/roads", random) + "&zoom=" + zoom(random)),
+            new Endpoint("tiles", 10, null, Endpoint::tile),
+            new Endpoint("summary", 1, null, random -> "/api/map/spatial/summary"),
+            new Endpoint("status", 1, null, random -> "/api/map/data/status"));
+
+    final String name;
+    final int weight;
+    final String accept;
+    private final Function<Random, String> path;
+
+    private Endpoint(String name, int weight, String accept, Function<Random, String> path) {
+        this.name = name;
+        this.weight = weight;
+        this.accept = accept;
+        this.path = path;
+    }
+
+    static Endpoint named(String name) {
+        return ALL.stream()
+                .filter(endpoint -> endpoint.name.equals(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown endpoint: " + name));
+    }
+
+    /**
+     * @return Path and query of a request with random parameters
+     */
+    String path(Random random) {
+        return path.apply(random);
+    }
+
+    private static String viewport(String path, Random random) {
+        double width = 0.01 + random.nextDouble() * 0.1;
+        double height = width * 0.6;
+        double minLon = GisFixtures.CENTER_LON - 0.1 + random.nextDouble() * 0.2 - width / 2;
+        double minLat = GisFixtures.CENTER_LAT - 0.1 + random.nextDouble() * 0.2 - height / 2;
+        return path + String.format(Locale.ROOT, "?minLon=%.5f&minLat=%.5f&maxLon=%.5f&maxLat=%.5f",
+                minLon, minLat, minLon + width, minLat + height);
+    }
+
+    private static String nearby(String path, Random random) {
+        return path + String.format(Locale.ROOT, "?lon=%.5f&lat=%.5f&distance=%d&limit=%d",
+                GisFixtures.CENTER_LON + (random.nextDouble() - 0.5) * 0.2,
+                GisFixtures.CENTER_LAT + (random.nextDouble() - 0.5) * 0.2,
+                500 + random.nextInt(4500),
+                100 + random.nextInt(900));
+    }
+
+    private static String tile(Random random) {
+        int z = 12 + random.nextInt(5);
+        double lon = GisFixtures.CENTER_LON + (random.nextDouble() - 0.5) * 0.2;
+        double lat = Math.toRadians(GisFixtures.CENTER_LAT + (random.nextDouble() - 0.5) * 0.2);
+        int tiles = 1 << z;
+        int x = (int) Math.floor((lon + 180) / 360 * tiles);
+        int y = (int) Math.floor((1 - Math.log(Math.tan(lat) + 1 / Math.cos(lat)) / Math.PI) / 2 * tiles);
+        return "/api/map/tiles/" + TILE_LAYERS[random.nextInt(TILE_LAYERS.length)] + "/" + z + "/" + x + "/" + y + ".mvt";
+    }
+
+    private static int zoom(Random random) {
+        return 11 + random.nextInt(7);
+    }
+}
@@ -0,0 +1,90 @@
+package com.sloview.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies, status classes and transferred bytes of the requests to one endpoint.
+ * Latencies are recorded in microseconds; all methods are thread safe.
+ */
+final class EndpointStats {
+
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(5);
+
+    final String name;
+    private final Recorder latencies = new Recorder(MAX_LATENCY_MICROS, 3);
+    private final LongAdder success = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder clientErrors = new LongAdder();
+    private final LongAdder serverErrors = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private Histogram histogram;
+
+    EndpointStats(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @param status HTTP status, or 0 if the request failed without a response
+     * @param latencyNanos Time from the (intended) start of the request to the end of the body
+     * @param bodyBytes Body bytes as transferred, i.e. compressed if the response was
+     */
+    void record(int status, long latencyNanos, long bodyBytes) {
+        latencies.recordValue(Math.min(MAX_LATENCY_MICROS, Math.max(1, latencyNanos / 1000)));
+        bytes.add(bodyBytes);
+        if (status == 0) {
+            failures.increment();
+        } else if (status == 304) {
+            notModified.increment();
+        } else if (status < 400) {
+            success.increment();
+        } else if (status < 500) {
+            clientErrors.increment();
+        } else {
+            serverErrors.increment();
+        }
+    }
+
+    /**
+     * Takes the latencies recorded so far; called once when the run ends.
+     */
+    void finish() {
+        histogram = latencies.getIntervalHistogram();
+    }
+
+    Histogram histogram() {
+        return histogram;
+    }
+
+    long requests() {
+        return histogram.getTotalCount();
+    }
+
+    long success() {
+        return success.sum();
+    }
+
+    long notModified() {
+        return notModified.sum();
+    }
+
+    long clientErrors() {
+        return clientErrors.sum();
+    }
+
+    long serverErrors() {
+        return serverErrors.sum();
+    }
+
+    long failures() {
+        return failures.sum();
+    }
+
+    long bytes() {
+        return bytes.sum();
+    }
+}
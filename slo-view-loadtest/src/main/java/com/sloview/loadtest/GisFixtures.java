@@ -0,0 +1,177 @@
+package com.sloview.loadtest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Generated GIS API responses for endpoints without a recording.
+ *
+ * The data is seeded, so every run serves the same responses: Web Mercator restaurant
+ * points for {@code /api/v1/restaurants}, and WGS84 roads and points of interest around
+ * San Luis Obispo with the OSM property set of {@code /api/v1/spatial/optimized/nearby}.
+ * Nearby responses hold the first {@code limit} features of the table regardless of the
+ * query location, which is enough for the backend to index and serve them. Responses are
+ * serialized once per distinct request and reused.
+ */
+final class GisFixtures {
+
+    static final double CENTER_LON = -120.6596;
+    static final double CENTER_LAT = 35.2828;
+
+    private static final double EARTH_RADIUS = 6378137.0;
+    private static final String[] HIGHWAYS = {"residential", "residential", "residential", "service", "tertiary",
+            "secondary", "primary", "unclassified", "footway", "track"};
+    private static final String[] STREETS = {"Higuera", "Marsh", "Monterey", "Chorro", "Osos", "Santa Rosa",
+            "Foothill", "Broad", "Johnson", "Orcutt", "Los Osos Valley", "Madonna", "Grand", "California"};
+    private static final String[] AMENITIES = {"restaurant", "cafe", "fast_food", "bench", "parking", "bank",
+            "school", "place_of_worship", "fuel", "pharmacy"};
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final int restaurants;
+    private final int maxFeatures;
+    private final String version;
+    private final Map<String, byte[]> responses = new ConcurrentHashMap<>();
+
+    /**
+     * @param restaurants Number of restaurants the restaurants endpoint pages through
+     * @param maxFeatures Largest number of features a nearby response holds
+     * @param version Dataset version reported by the status and metadata endpoints
+     */
+    GisFixtures(int restaurants, int maxFeatures, String version) {
+        this.restaurants = restaurants;
+        this.maxFeatures = maxFeatures;
+        this.version = version;
+    }
+
+    /**
+     * @param path Endpoint path
+     * @param query Request parameters
+     * @return Response body, or null for unknown endpoints
+     */
+    byte[] response(String path, Map<String, String> query) {
+        switch (path) {
+            case "/api/v1/restaurants": {
+                int page = Math.max(1, parse(query.get("page"), 1));
+                int limit = Math.max(1, parse(query.get("limit"), 10));
+                return responses.computeIfAbsent("restaurants " + page + " " + limit, key -> restaurantsPage(page, limit));
+            }
+            case "/api/v1/spatial/optimized/nearby": {
+                String table = query.getOrDefault("table", "mv_restaurants");
+                int limit = Math.max(0, Math.min(maxFeatures, parse(query.get("limit"), 10)));
+                return responses.computeIfAbsent("nearby " + table + " " + limit, key -> nearby(table, limit));
+            }
+            case "/api/v1/spatial/summary":
+                return write(data(node -> node.put("restaurants", restaurants).put("roads", maxFeatures)
+                        .put("pois", maxFeatures)));
+            case "/api/v1/data/status":
+                return write(data(node -> {
+                    node.put("health", "healthy").put("last_updated", version);
+                    node.putObject("record_counts").put("restaurants", restaurants);
+                }));
+            case "/api/v1/data/metadata":
+                return write(data(node -> node.put("version", version)));
+            default:
+                return null;
+        }
+    }
+
+    private byte[] restaurantsPage(int page, int limit) {
+        Random random = new Random(42);
+        ArrayNode features = mapper.createArrayNode();
+        int end = Math.min(restaurants, page * limit);
+        for (int i = 0; i < end; i++) {
+            double lon = CENTER_LON + (random.nextDouble() - 0.5) * 0.4;
+            double lat = CENTER_LAT + (random.nextDouble() - 0.5) * 0.4;
+            String name = STREETS[random.nextInt(STREETS.length)] + " Grill " + (i + 1);
+            if (i < (page - 1) * limit) {
+                continue;
+            }
+            ObjectNode feature = feature(features, 300000000L + i * 7919L);
+            feature.putObject("geometry").put("type", "Point").putArray("coordinates")
+                    .add(Math.toRadians(lon) * EARTH_RADIUS)
+                    .add(Math.log(Math.tan(Math.PI / 4 + Math.toRadians(lat) / 2)) * EARTH_RADIUS);
+            feature.putObject("properties").put("name", name).put("type", "restaurant");
+        }
+        return write(data(node -> {
+            node.set("features", features);
+            node.putObject("pagination").put("page", page).put("limit", limit).put("total", restaurants);
+        }));
+    }
+
+    private byte[] nearby(String table, int limit) {
+        Random random = new Random(table.hashCode());
+        ArrayNode features = mapper.createArrayNode();
+        boolean roads = table.contains("road");
+        for (int i = 0; i < limit; i++) {
+            ObjectNode feature = feature(features, 100000000L + i * 104729L);
+            double lon = CENTER_LON + (random.nextDouble() - 0.5) * 0.5;
+            double lat = CENTER_LAT + (random.nextDouble() - 0.5) * 0.5;
+            ObjectNode geometry = feature.putObject("geometry");
+            ObjectNode properties = mapper.createObjectNode();
+            properties.put("osm_id", 100000000L + i * 104729L);
+            if (roads) {
+                geometry.put("type", "LineString");
+                ArrayNode coordinates = geometry.putArray("coordinates");
+                double heading = random.nextDouble() * 2 * Math.PI;
+                int vertices = 4 + random.nextInt(40);
+                for (int v = 0; v < vertices; v++) {
+                    coordinates.addArray().add(lon).add(lat);
+                    heading += (random.nextDouble() - 0.5) * 0.6;
+                    double step = 0.0001 + random.nextDouble() * 0.0004;
+                    lon += Math.cos(heading) * step;
+                    lat += Math.sin(heading) * step;
+                }
+                String highway = HIGHWAYS[random.nextInt(HIGHWAYS.length)];
+                properties.put("name", STREETS[random.nextInt(STREETS.length)] + " Street");
+                properties.put("highway", highway).put("type", highway);
+                properties.put("surface", random.nextBoolean() ? "asphalt" : null);
+                properties.putNull("bridge");
+                properties.putNull("tunnel");
+            } else {
+                geometry.put("type", "Point").putArray("coordinates").add(lon).add(lat);
+                String amenity = table.contains("restaurant") ? "restaurant" : AMENITIES[random.nextInt(AMENITIES.length)];
+                properties.put("name", STREETS[random.nextInt(STREETS.length)] + " " + (i + 1));
+                properties.put("amenity", amenity).put("type", amenity);
+                properties.putNull("shop");
+                properties.putNull("tourism");
+                properties.putNull("leisure");
+            }
+            properties.put("distance", random.nextDouble() * 60000);
+            feature.set("properties", properties);
+        }
+        return write(data(node -> node.put("type", "FeatureCollection").set("features", features)));
+    }
+
+    private ObjectNode feature(ArrayNode features, long id) {
+        return features.addObject().put("id", String.valueOf(id)).put("type", "Feature");
+    }
+
+    private ObjectNode data(java.util.function.Consumer<ObjectNode> content) {
+        ObjectNode root = mapper.createObjectNode();
+        root.put("success", true);
+        content.accept(root.putObject("data"));
+        return root;
+    }
+
+    private byte[] write(ObjectNode root) {
+        try {
+            return mapper.writeValueAsBytes(root);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int parse(String value, int defaultValue) {
+        try {
+            return value != null ? (int) Double.parseDouble(value) : defaultValue;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
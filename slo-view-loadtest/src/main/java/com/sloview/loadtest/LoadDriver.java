@@ -0,0 +1,260 @@
+package com.sloview.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives load against the {@code /api/map/*} endpoints of a running backend and reports
+ * throughput and latency percentiles per endpoint.
+ *
+ * Two load models are supported. With {@code --concurrency} a fixed number of clients
+ * each send their next request as soon as the previous one completes (closed model),
+ * which finds the throughput an instance saturates at. With {@code --rate} requests are
+ * started on a fixed schedule regardless of how fast the backend answers (open model),
+ * and latency is measured from the scheduled start, so queueing in a slow backend shows
+ * up in the percentiles instead of silently lowering the request rate.
+ *
+ * <pre>
+ * java -jar target/loadtest.jar --target http://localhost:8080 --rate 200 --duration 60s --json run.json
+ * </pre>
+ */
+public final class LoadDriver {
+
+    private final HttpClient client;
+    private final URI target;
+    private final Duration timeout;
+    private final boolean gzip;
+    private final Random random;
+    private final List<Endpoint> mix = new ArrayList<>();
+    private final Map<String, EndpointStats> stats = new LinkedHashMap<>();
+    private final int totalWeight;
+    private final AtomicLong completed = new AtomicLong();
+    private volatile long measureFrom;
+
+    LoadDriver(Options options) {
+        this.target = URI.create(options.string("target", "http://localhost:8080"));
+        this.timeout = options.duration("timeout", Duration.ofSeconds(30));
+        this.gzip = options.flag("gzip", false);
+        this.random = new Random(options.integer("seed", 1));
+        this.client = HttpClient.newBuilder()
+                .version(options.flag("http2", false) ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        int weights = 0;
+        for (Map.Entry<Endpoint, Integer> entry : parseMix(options.string("mix", null)).entrySet()) {
+            for (int i = 0; i < entry.getValue(); i++) {
+                mix.add(entry.getKey());
+            }
+            weights += entry.getValue();
+            stats.put(entry.getKey().name, new EndpointStats(entry.getKey().name));
+        }
+        if (weights == 0) {
+            throw new IllegalArgumentException("The request mix is empty");
+        }
+        this.totalWeight = weights;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new Options(args);
+        LoadDriver driver = new LoadDriver(options);
+        Duration warmup = options.duration("warmup", Duration.ofSeconds(10));
+        Duration duration = options.duration("duration", Duration.ofSeconds(60));
+        int concurrency = options.integer("concurrency", 16);
+        double rate = options.decimal("rate", 0);
+
+        Map<String, Object> run = new LinkedHashMap<>();
+        run.put("label", options.string("label", ""));
+        run.put("target", driver.target.toString());
+        run.put("model", rate > 0 ? "open" : "closed");
+        if (rate > 0) {
+            run.put("rate", rate);
+        } else {
+            run.put("concurrency", concurrency);
+        }
+        run.put("warmupSeconds", warmup.toMillis() / 1000.0);
+        run.put("gzip", driver.gzip);
+        run.put("mix", driver.weights());
+        System.out.println("Driving " + run);
+
+        long start = System.nanoTime();
+        driver.measureFrom = start + warmup.toNanos();
+        long end = driver.measureFrom + duration.toNanos();
+        Thread progress = driver.startProgress(start);
+        if (rate > 0) {
+            driver.runOpen(rate, start, end);
+        } else {
+            driver.runClosed(concurrency, end);
+        }
+        progress.interrupt();
+
+        List<EndpointStats> results = new ArrayList<>(driver.stats.values());
+        results.forEach(EndpointStats::finish);
+        Report report = new Report(run, results, duration.toMillis() / 1000.0);
+        report.print();
+        String json = options.string("json", null);
+        if (json != null) {
+            report.writeJson(Path.of(json));
+            System.out.println("Wrote " + json);
+        }
+    }
+
+    /**
+     * Closed model: each client waits for its response before sending the next request.
+     */
+    private void runClosed(int concurrency, long end) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            next(end, done);
+        }
+        done.await();
+    }
+
+    private void next(long end, CountDownLatch done) {
+        long start = System.nanoTime();
+        if (start >= end) {
+            done.countDown();
+            return;
+        }
+        send(start).whenComplete((ignored, error) -> next(end, done));
+    }
+
+    /**
+     * Open model: requests start on a fixed schedule, whether or not earlier ones completed.
+     */
+    private void runOpen(double rate, long start, long end) throws InterruptedException {
+        List<CompletableFuture<Void>> inFlight = new ArrayList<>();
+        double interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        for (long i = 0; ; i++) {
+            long scheduled = start + (long) (i * interval);
+            if (scheduled >= end) {
+                break;
+            }
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            inFlight.add(send(scheduled));
+            if (inFlight.size() >= 10000) {
+                inFlight.removeIf(CompletableFuture::isDone);
+            }
+        }
+        CompletableFuture.allOf(inFlight.toArray(new CompletableFuture[0])).join();
+    }
+
+    /**
+     * @param start Time the request started, or was scheduled to start; latency counts from here
+     */
+    private CompletableFuture<Void> send(long start) {
+        Endpoint endpoint = mix.get(random.nextInt(totalWeight));
+        HttpRequest.Builder request = HttpRequest.newBuilder(target.resolve(endpoint.path(random)))
+                .timeout(timeout)
+                .GET();
+        if (endpoint.accept != null) {
+            request.header("Accept", endpoint.accept);
+        }
+        if (gzip) {
+            request.header("Accept-Encoding", "gzip");
+        }
+        return client.sendAsync(request.build(),
+                        info -> HttpResponse.BodySubscribers.fromSubscriber(new ByteCounter(), ByteCounter::bytes))
+                .handle((response, error) -> {
+                    if (start >= measureFrom) {
+                        stats.get(endpoint.name).record(error == null ? response.statusCode() : 0,
+                                System.nanoTime() - start, error == null ? response.body() : 0);
+                    }
+                    completed.incrementAndGet();
+                    return null;
+                });
+    }
+
+    private Thread startProgress(long start) {
+        Thread thread = new Thread(() -> {
+            long previous = 0;
+            try {
+                while (true) {
+                    Thread.sleep(5000);
+                    long count = completed.get();
+                    System.out.println(String.format("%4ds %8d requests, %.0f req/s%s",
+                            TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start), count,
+                            (count - previous) / 5.0, System.nanoTime() < measureFrom ? " (warmup)" : ""));
+                    previous = count;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "progress");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private Map<String, Integer> weights() {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        mix.forEach(endpoint -> weights.merge(endpoint.name, 1, Integer::sum));
+        return weights;
+    }
+
+    /**
+     * @param mix Weights such as {@code restaurants=5,tiles=2}, or null for the default mix
+     */
+    private static Map<Endpoint, Integer> parseMix(String mix) {
+        Map<Endpoint, Integer> weights = new LinkedHashMap<>();
+        if (mix == null) {
+            Endpoint.ALL.forEach(endpoint -> weights.put(endpoint, endpoint.weight));
+            return weights;
+        }
+        for (String part : mix.split(",")) {
+            String[] entry = part.trim().split("=");
+            weights.put(Endpoint.named(entry[0]), entry.length > 1 ? Integer.parseInt(entry[1]) : 1);
+        }
+        return weights;
+    }
+
+    /**
+     * Counts body bytes without keeping them.
+     */
+    private static final class ByteCounter implements Flow.Subscriber<List<ByteBuffer>> {
+
+        private long bytes;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            for (ByteBuffer buffer : buffers) {
+                bytes += buffer.remaining();
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+
+        long bytes() {
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.sloview.loadtest;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Recorded GIS API responses in a directory.
+ *
+ * A response is stored under its endpoint path, in a file named after the sorted query
+ * parameters, e.g. {@code api/v1/spatial/optimized/nearby/distance=50000&lat=35.28&...json}.
+ * A {@code default.json} next to them answers every query of that endpoint without an
+ * exact recording.
+ */
+final class Recordings {
+
+    private static final int MAX_NAME_LENGTH = 200;
+
+    private final Path directory;
+
+    Recordings(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return Recorded body, or null if neither this query nor the endpoint default was recorded
+     */
+    byte[] find(String path, Map<String, String> query) {
+        Path exact = file(path, query);
+        Path fallback = endpoint(path).resolve("default.json");
+        try {
+            if (Files.isRegularFile(exact)) {
+                return Files.readAllBytes(exact);
+            }
+            return Files.isRegularFile(fallback) ? Files.readAllBytes(fallback) : null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void save(String path, Map<String, String> query, byte[] body) {
+        Path file = file(path, query);
+        try {
+            Files.createDirectories(file.getParent());
+            Files.write(file, body);
+        } catch (IOException e) {
+            System.err.println("Warning: Failed to record " + file + ": " + e.getMessage());
+        }
+    }
+
+    private Path file(String path, Map<String, String> query) {
+        String name = new TreeMap<>(query).entrySet().stream()
+                .map(entry -> entry.getKey() + "=" + entry.getValue())
+                .collect(Collectors.joining("&"))
+                .replaceAll("[^A-Za-z0-9=&._-]", "_");
+        if (name.isEmpty()) {
+            name = "_";
+        }
+        if (name.length() > MAX_NAME_LENGTH) {
+            name = name.substring(0, MAX_NAME_LENGTH) + "-" + Integer.toHexString(name.hashCode());
+        }
+        return endpoint(path).resolve(name + ".json");
+    }
+
+    private Path endpoint(String path) {
+        Path endpoint = directory.resolve(path.replaceAll("^/+", "")).normalize();
+        if (!endpoint.startsWith(directory.normalize())) {
+            throw new IllegalArgumentException("Path outside the recordings directory: " + path);
+        }
+        return endpoint;
+    }
+}
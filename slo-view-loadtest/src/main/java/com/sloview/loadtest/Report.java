@@ -0,0 +1,103 @@
+package com.sloview.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Per-endpoint throughput, status and latency percentile summary of a load run, printed
+ * as a table and optionally written as JSON to compare runs.
+ */
+final class Report {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final Map<String, Object> run;
+    private final List<EndpointStats> endpoints;
+    private final double seconds;
+
+    /**
+     * @param run Settings of the run, included in the JSON report
+     * @param endpoints Finished statistics of each requested endpoint
+     * @param seconds Length of the measured period
+     */
+    Report(Map<String, Object> run, List<EndpointStats> endpoints, double seconds) {
+        this.run = run;
+        this.endpoints = endpoints;
+        this.seconds = seconds;
+    }
+
+    void print() {
+        System.out.println();
+        System.out.println(String.format(Locale.ROOT, "%-20s %9s %9s %8s %8s %6s %6s %6s %9s %9s %9s %9s %9s %10s",
+                "endpoint", "requests", "req/s", "2xx", "304", "4xx", "5xx", "fail",
+                "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "KiB/req"));
+        Histogram total = new Histogram(3);
+        long[] totals = new long[7];
+        for (EndpointStats stats : endpoints) {
+            if (stats.requests() == 0) {
+                continue;
+            }
+            total.add(stats.histogram());
+            long[] counts = {stats.requests(), stats.success(), stats.notModified(), stats.clientErrors(),
+                    stats.serverErrors(), stats.failures(), stats.bytes()};
+            for (int i = 0; i < counts.length; i++) {
+                totals[i] += counts[i];
+            }
+            System.out.println(row(stats.name, counts, stats.histogram()));
+        }
+        System.out.println(row("total", totals, total));
+    }
+
+    void writeJson(Path file) throws IOException {
+        ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        ObjectNode root = mapper.createObjectNode();
+        root.set("run", mapper.valueToTree(run));
+        root.put("seconds", seconds);
+        ObjectNode results = root.putObject("endpoints");
+        for (EndpointStats stats : endpoints) {
+            if (stats.requests() == 0) {
+                continue;
+            }
+            ObjectNode node = results.putObject(stats.name);
+            node.put("requests", stats.requests());
+            node.put("throughput", stats.requests() / seconds);
+            node.put("success", stats.success());
+            node.put("notModified", stats.notModified());
+            node.put("clientErrors", stats.clientErrors());
+            node.put("serverErrors", stats.serverErrors());
+            node.put("failures", stats.failures());
+            node.put("bytes", stats.bytes());
+            ObjectNode latency = node.putObject("latencyMs");
+            Histogram histogram = stats.histogram();
+            latency.put("mean", histogram.getMean() / 1000);
+            for (double percentile : PERCENTILES) {
+                latency.put("p" + format(percentile), histogram.getValueAtPercentile(percentile) / 1000.0);
+            }
+            latency.put("max", histogram.getMaxValue() / 1000.0);
+        }
+        mapper.writeValue(file.toFile(), root);
+    }
+
+    private String row(String name, long[] counts, Histogram histogram) {
+        return String.format(Locale.ROOT, "%-20s %9d %9.1f %8d %8d %6d %6d %6d %9.1f %9.1f %9.1f %9.1f %9.1f %10.1f",
+                name, counts[0], counts[0] / seconds, counts[1], counts[2], counts[3], counts[4], counts[5],
+                histogram.getValueAtPercentile(50) / 1000.0,
+                histogram.getValueAtPercentile(90) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getMaxValue() / 1000.0,
+                counts[0] > 0 ? counts[6] / 1024.0 / counts[0] : 0);
+    }
+
+    private static String format(double percentile) {
+        return percentile == Math.rint(percentile) ? String.valueOf((int) percentile) : String.valueOf(percentile);
+    }
+}
@@ -0,0 +1,153 @@
+package com.sloview.loadtest;
+
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+import reactor.netty.http.server.HttpServer;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stand-in for the FastAPI GIS API, so the backend can be load tested without a database.
+ *
+ * Answers {@code /api/v1/*} from recorded responses, falling back to generated data for
+ * the endpoints the backend uses. Every response can be delayed by a fixed latency plus
+ * random jitter, and a share of requests can be failed with 500 or throttled with 429 to
+ * see how the backend behaves when its upstream degrades. With {@code --record} requests
+ * without a recording are forwarded to a real GIS API and its responses are saved.
+ *
+ * <pre>
+ * java -cp target/loadtest.jar com.sloview.loadtest.StubGisApi --port 9901 --latency 80ms --jitter 40ms
+ * </pre>
+ */
+public final class StubGisApi {
+
+    private final Recordings recordings;
+    private final GisFixtures fixtures;
+    private final HttpClient recordClient;
+    private final Duration latency;
+    private final long jitterMillis;
+    private final double errorRate;
+    private final double throttleRate;
+    private final int retryAfterSeconds;
+
+    private final AtomicLong served = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+
+    StubGisApi(Options options) {
+        String recordingsDir = options.string("recordings", null);
+        this.recordings = recordingsDir != null ? new Recordings(Path.of(recordingsDir)) : null;
+        this.fixtures = new GisFixtures(options.integer("restaurants", 710), options.integer("nearby-features", 3000),
+                options.string("version", "stub"));
+        String recordUrl = options.string("record", null);
+        if (recordUrl != null && recordings == null) {
+            throw new IllegalArgumentException("--record requires --recordings");
+        }
+        this.recordClient = recordUrl != null ? HttpClient.create().baseUrl(recordUrl) : null;
+        this.latency = options.duration("latency", Duration.ZERO);
+        this.jitterMillis = options.duration("jitter", Duration.ZERO).toMillis();
+        this.errorRate = options.decimal("error-rate", 0);
+        this.throttleRate = options.decimal("throttle-rate", 0);
+        this.retryAfterSeconds = options.integer("retry-after", 1);
+    }
+
+    public static void main(String[] args) {
+        Options options = new Options(args);
+        StubGisApi stub = new StubGisApi(options);
+        DisposableServer server = HttpServer.create()
+                .host(options.string("host", "127.0.0.1"))
+                .port(options.integer("port", 9901))
+                .handle(stub::handle)
+                .bindNow();
+        System.out.println("Stub GIS API listening on " + server.host() + ":" + server.port()
+                + " (latency " + stub.latency.toMillis() + "ms + up to " + stub.jitterMillis + "ms, "
+                + "error rate " + stub.errorRate + ", throttle rate " + stub.throttleRate + ")");
+        Flux.interval(Duration.ofSeconds(10)).subscribe(tick -> stub.printCounts());
+        server.onDispose().block();
+    }
+
+    private Mono<Void> handle(HttpServerRequest request, HttpServerResponse response) {
+        QueryStringDecoder uri = new QueryStringDecoder(request.uri());
+        Map<String, String> query = new LinkedHashMap<>();
+        uri.parameters().forEach((name, values) -> query.put(name, values.get(values.size() - 1)));
+
+        Mono<Void> reply = Mono.defer(() -> {
+            double roll = ThreadLocalRandom.current().nextDouble();
+            if (roll < throttleRate) {
+                throttled.incrementAndGet();
+                return response.status(HttpResponseStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaderNames.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                        .send();
+            }
+            if (roll < throttleRate + errorRate) {
+                errors.incrementAndGet();
+                return response.status(HttpResponseStatus.INTERNAL_SERVER_ERROR).send();
+            }
+            return body(uri.path(), uri.rawQuery(), query)
+                    .map(body -> send(request, response, body))
+                    .defaultIfEmpty(Mono.defer(() -> response.status(HttpResponseStatus.NOT_FOUND).send()))
+                    .flatMap(send -> send);
+        });
+        Duration delay = delay();
+        return delay.isZero() ? reply : Mono.delay(delay).then(reply);
+    }
+
+    private Mono<byte[]> body(String path, String rawQuery, Map<String, String> query) {
+        byte[] recorded = recordings != null ? recordings.find(path, query) : null;
+        if (recorded != null) {
+            return Mono.just(recorded);
+        }
+        if (recordClient != null) {
+            return recordClient.get()
+                    .uri(rawQuery.isEmpty() ? path : path + "?" + rawQuery)
+                    .responseSingle((upstream, content) -> upstream.status().code() == 200
+                            ? content.asByteArray()
+                            : Mono.empty())
+                    .doOnNext(body -> recordings.save(path, query, body));
+        }
+        return Mono.justOrEmpty(fixtures.response(path, query));
+    }
+
+    private Mono<Void> send(HttpServerRequest request, HttpServerResponse response, byte[] body) {
+        String etag = "\"" + Integer.toHexString(Arrays.hashCode(body)) + "-" + body.length + "\"";
+        List<String> ifNoneMatch = request.requestHeaders().getAll(HttpHeaderNames.IF_NONE_MATCH);
+        if (ifNoneMatch.contains(etag)) {
+            notModified.incrementAndGet();
+            return response.status(HttpResponseStatus.NOT_MODIFIED).header(HttpHeaderNames.ETAG, etag).send();
+        }
+        served.incrementAndGet();
+        return response.status(HttpResponseStatus.OK)
+                .header(HttpHeaderNames.CONTENT_TYPE, "application/json")
+                .header(HttpHeaderNames.CONTENT_LENGTH, String.valueOf(body.length))
+                .header(HttpHeaderNames.ETAG, etag)
+                .sendByteArray(Mono.just(body))
+                .then();
+    }
+
+    private Duration delay() {
+        if (jitterMillis <= 0) {
+            return latency;
+        }
+        return latency.plusMillis(ThreadLocalRandom.current().nextLong(jitterMillis + 1));
+    }
+
+    private void printCounts() {
+        System.out.println("Served " + served.get() + ", not modified " + notModified.get()
+                + ", errors " + errors.get() + ", throttled " + throttled.get());
+    }
+}